@@ -3,15 +3,30 @@ package org.obiba.magma.support;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 
 import javax.annotation.Nullable;
 
 import org.obiba.magma.Datasource;
 import org.obiba.magma.DatasourceCopierProgressListener;
 import org.obiba.magma.MagmaEngine;
+import org.obiba.magma.MagmaRuntimeException;
 import org.obiba.magma.Value;
 import org.obiba.magma.ValueSet;
 import org.obiba.magma.ValueTable;
@@ -20,12 +35,18 @@ import org.obiba.magma.ValueTableWriter.ValueSetWriter;
 import org.obiba.magma.ValueTableWriter.VariableWriter;
 import org.obiba.magma.Variable;
 import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.VectorSource;
 import org.obiba.magma.support.MultiplexingValueTableWriter.MultiplexedValueSetWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 
 @SuppressWarnings("UnusedDeclaration")
 public class DatasourceCopier {
@@ -101,19 +122,74 @@ public class DatasourceCopier {
       return this;
     }
 
+    /**
+     * Copy the tables of a datasource in parallel, each table by one of at most {@code parallelism} threads. The
+     * listeners are then notified from these threads.
+     * <p/>
+     * Unless a limit is set with {@link #withMaxTablesPerDestination(int)}, one table at a time is written to the
+     * destination datasource: the tables are then only copied in parallel to a destination that allows it.
+     *
+     * @param parallelism
+     * @return
+     */
+    public Builder withTableParallelism(int parallelism) {
+      if(parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
+      copier.tableParallelism = parallelism;
+      return this;
+    }
+
+    public Builder withThreads(@Nullable ThreadFactory factory) {
+      copier.threadFactory = factory;
+      return this;
+    }
+
+    /**
+     * Limit the number of tables that are copied at the same time to a destination datasource. When tables are copied
+     * in parallel, it is one by default.
+     * <p/>
+     * Only set a higher limit for destinations which table writers can be created and used concurrently. The datasources
+     * based on {@link AbstractDatasource} register their new tables in a list that is not synchronized, and the file
+     * based ones (CSV, FS, Excel) share their file between their table writers: they allow a single table writer at a
+     * time.
+     *
+     * @param maxTables
+     * @return
+     */
+    public Builder withMaxTablesPerDestination(int maxTables) {
+      if(maxTables < 1) throw new IllegalArgumentException("maxTables must be positive");
+      copier.maxTablesPerDestination = maxTables;
+      return this;
+    }
+
+    /**
+     * Copy the values by chunks of entities: the values of the variables that support vectors are read for all the
+     * entities of a chunk at once, instead of value set by value set.
+     * <p/>
+     * When all the variables support vectors, the value sets are not read from the source table: unless a value set
+     * listener is registered with {@link #withListener(DatasourceCopyEventListener)}, the copy events are notified with
+     * a {@link ValueSetBean} of the entity, which timestamps are the ones of the table.
+     *
+     * @param chunkSize number of entities of a chunk
+     * @return
+     */
+    public Builder withVectorCopy(int chunkSize) {
+      if(chunkSize < 1) throw new IllegalArgumentException("chunkSize must be positive");
+      copier.vectorChunkSize = chunkSize;
+      return this;
+    }
+
     public DatasourceCopier build() {
       return new DatasourceCopier(copier);
     }
 
+    /**
+     * Reports the progress of each source table, as tables may be copied at the same time.
+     */
     private static class DatasourceCopyProgressListener implements DatasourceCopyValueSetEventListener {
 
       private final DatasourceCopierProgressListener progressListener;
 
-      private long entitiesToCopy = 0;
-
-      private long entitiesCopied = 0;
-
-      private int nextPercentIncrement = 0;
+      private final ConcurrentMap<ValueTable, TableProgress> progresses = new MapMaker().weakKeys().makeMap();
 
       private DatasourceCopyProgressListener(DatasourceCopierProgressListener progressListener) {
         this.progressListener = progressListener;
@@ -121,31 +197,50 @@ public class DatasourceCopier {
 
       @Override
       public void onValueSetCopy(ValueTable source, ValueSet valueSet) {
-        if (entitiesToCopy == 0) {
-          entitiesToCopy = source.getValueSetCount();
+        if(!progresses.containsKey(source)) {
+          progresses.putIfAbsent(source, new TableProgress(source.getValueSetCount()));
         }
       }
 
       @Override
       public void onValueSetCopied(ValueTable source, ValueSet valueSet, String... tables) {
-        entitiesCopied++;
-        printProgress(source);
+        TableProgress progress = progresses.get(source);
+        if(progress != null) printProgress(source, progress);
       }
 
-      private void printProgress(ValueTable source) {
+      private void printProgress(ValueTable source, TableProgress progress) {
         try {
-          if(entitiesToCopy > 0) {
-            int percentComplete = (int) (entitiesCopied / (double) entitiesToCopy * 100);
-            if(percentComplete >= nextPercentIncrement) {
-              log.info("Copy {}% complete.", percentComplete);
-              progressListener.status(source.getName(), entitiesCopied, entitiesToCopy, percentComplete);
-              nextPercentIncrement = percentComplete + 1;
+          synchronized(progress) {
+            progress.entitiesCopied++;
+            if(progress.entitiesToCopy > 0) {
+              int percentComplete = (int) (progress.entitiesCopied / (double) progress.entitiesToCopy * 100);
+              if(percentComplete >= progress.nextPercentIncrement) {
+                log.info("Copy of {} {}% complete.", source.getName(), percentComplete);
+                progressListener
+                    .status(source.getName(), progress.entitiesCopied, progress.entitiesToCopy, percentComplete);
+                progress.nextPercentIncrement = percentComplete + 1;
+              }
             }
+            // a table copied again starts over
+            if(progress.entitiesCopied >= progress.entitiesToCopy) progresses.remove(source, progress);
           }
         } catch(RuntimeException e) {
           // Ignore
         }
       }
+
+      private static final class TableProgress {
+
+        private final long entitiesToCopy;
+
+        private long entitiesCopied = 0;
+
+        private int nextPercentIncrement = 0;
+
+        private TableProgress(long entitiesToCopy) {
+          this.entitiesToCopy = entitiesToCopy;
+        }
+      }
     }
   }
 
@@ -161,6 +256,19 @@ public class DatasourceCopier {
 
   private MultiplexingStrategy multiplexer = null;
 
+  private int tableParallelism = 1;
+
+  @Nullable
+  private ThreadFactory threadFactory;
+
+  private int maxTablesPerDestination = 0;
+
+  // number of entities which values are read at once, 0 to copy value set by value set
+  private int vectorChunkSize = 0;
+
+  // permits to write tables to each destination, when their number is limited
+  private final ConcurrentMap<Datasource, Semaphore> destinationPermits = new MapMaker().weakKeys().makeMap();
+
   private DatasourceCopier() {
   }
 
@@ -171,6 +279,10 @@ public class DatasourceCopier {
     listeners = ImmutableList.copyOf(other.listeners);
     variableTransformer = other.variableTransformer;
     multiplexer = other.multiplexer;
+    tableParallelism = other.tableParallelism;
+    threadFactory = other.threadFactory;
+    maxTablesPerDestination = other.maxTablesPerDestination;
+    vectorChunkSize = other.vectorChunkSize;
   }
 
   public void copy(String sourceDatasource, String destinationDatasource) throws IOException {
@@ -189,10 +301,56 @@ public class DatasourceCopier {
     Set<ValueTable> tables = source.getValueTables();
     int nbTables = tables.size();
     log.info("Copying Datasource '{}' to '{}' ({} tables)", source.getName(), destination.getName(), nbTables);
-    int i = 1;
-    for(ValueTable table : tables) {
-      log.debug("Copy table {} / {}", i++, nbTables);
-      copy(table, destination);
+    int parallelism = Math.min(tableParallelism, nbTables);
+    int maxTables = getMaxTablesPerDestination();
+    if(maxTables > 0) parallelism = Math.min(parallelism, maxTables);
+    if(parallelism > 1) {
+      copyInParallel(tables, destination, parallelism);
+    } else {
+      int i = 1;
+      for(ValueTable table : tables) {
+        log.debug("Copy table {} / {}", i++, nbTables);
+        copy(table, destination);
+      }
+    }
+  }
+
+  private void copyInParallel(Iterable<ValueTable> tables, final Datasource destination, int parallelism)
+      throws IOException {
+    ExecutorService executor = threadFactory == null //
+        ? Executors.newFixedThreadPool(parallelism) //
+        : Executors.newFixedThreadPool(parallelism, threadFactory);
+    CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+    List<Future<Void>> futures = Lists.newArrayList();
+    try {
+      for(final ValueTable table : tables) {
+        futures.add(completionService.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            copy(table, destination);
+            return null;
+          }
+        }));
+      }
+      // wait for the copies in the order they complete, so that the first failure stops the others
+      for(int i = 1; i <= futures.size(); i++) {
+        completionService.take().get();
+        log.debug("Copied table {} / {}", i, futures.size());
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MagmaRuntimeException("Interrupted while copying tables to " + destination.getName(), e);
+    } catch(ExecutionException e) {
+      Throwable cause = e.getCause();
+      if(cause instanceof IOException) throw (IOException) cause;
+      if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if(cause instanceof Error) throw (Error) cause;
+      throw new MagmaRuntimeException(cause);
+    } finally {
+      for(Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      executor.shutdownNow();
     }
   }
 
@@ -208,6 +366,8 @@ public class DatasourceCopier {
       stopwatch = Stopwatch.createStarted();
       log.debug("  --> {} variables, {} valueSets", sourceTable.getVariableCount(), sourceTable.getValueSetCount());
     }
+    Semaphore permits = getDestinationPermits(destination);
+    if(permits != null) acquire(permits, destination);
     try(ValueTableWriter tableWriter = innerValueTableWriter(sourceTable, destinationTableName, destination)) {
       String destTableName = destinationTableName;
       if (destination.hasValueTable(destinationTableName)) {
@@ -215,6 +375,8 @@ public class DatasourceCopier {
         destTableName = destination.getValueTable(destinationTableName).getName();
       }
       copy(sourceTable, destTableName, tableWriter);
+    } finally {
+      if(permits != null) permits.release();
     }
     if(log.isDebugEnabled()) {
       //noinspection ConstantConditions
@@ -222,6 +384,39 @@ public class DatasourceCopier {
     }
   }
 
+  /**
+   * Number of tables that can be written at the same time to a destination: one by default when tables are copied in
+   * parallel.
+   *
+   * @return 0 if it is not limited
+   */
+  private int getMaxTablesPerDestination() {
+    if(maxTablesPerDestination > 0) return maxTablesPerDestination;
+    return tableParallelism > 1 ? 1 : 0;
+  }
+
+  @Nullable
+  private Semaphore getDestinationPermits(Datasource destination) {
+    int maxTables = getMaxTablesPerDestination();
+    if(maxTables == 0) return null;
+    Semaphore permits = destinationPermits.get(destination);
+    if(permits == null) {
+      Semaphore created = new Semaphore(maxTables, true);
+      permits = destinationPermits.putIfAbsent(destination, created);
+      if(permits == null) permits = created;
+    }
+    return permits;
+  }
+
+  private static void acquire(Semaphore permits, Datasource destination) {
+    try {
+      permits.acquire();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MagmaRuntimeException("Interrupted while waiting to copy a table to " + destination.getName(), e);
+    }
+  }
+
   private void copy(ValueTable sourceTable, String destinationTableName, ValueTableWriter tableWriter)
       throws IOException {
     copyMetadata(sourceTable, destinationTableName, tableWriter);
@@ -233,10 +428,104 @@ public class DatasourceCopier {
     if(!copyValues) return;
 
     log.debug("Copy values from {} {}", sourceTable.getClass(), sourceTable.getName());
+    Variable[] variables = Iterables.toArray(sourceTable.getVariables(), Variable.class);
+    // the variables are transformed once per table, not once per value
+    Variable[] destinationVariables = new Variable[variables.length];
+    for(int i = 0; i < variables.length; i++) {
+      destinationVariables[i] = variableTransformer.transform(variables[i]);
+    }
+    if(vectorChunkSize > 0) {
+      copyValueChunks(sourceTable, destinationTableName, tableWriter, variables, destinationVariables);
+    } else {
+      copyValueSets(sourceTable, destinationTableName, tableWriter, variables, destinationVariables);
+    }
+  }
+
+  private void copyValueSets(ValueTable sourceTable, String destinationTableName, ValueTableWriter tableWriter,
+      Variable[] variables, Variable[] destinationVariables) {
     for(ValueSet valueSet : sourceTable.getValueSets()) {
       try(ValueSetWriter valueSetWriter = tableWriter.writeValueSet(valueSet.getVariableEntity())) {
-        copyValues(sourceTable, valueSet, destinationTableName, valueSetWriter);
+        notifyListeners(sourceTable, valueSet, false);
+        for(int i = 0; i < variables.length; i++) {
+          writeValue(valueSetWriter, destinationVariables[i], sourceTable.getValue(variables[i], valueSet));
+        }
+        notifyCopied(sourceTable, valueSet, destinationTableName, valueSetWriter);
+      }
+    }
+  }
+
+  /**
+   * Reads the values of the entities of a chunk variable by variable, in a buffer of one column per variable, then
+   * writes them value set by value set. The variables that do not support vectors are read value set by value set.
+   */
+  private void copyValueChunks(ValueTable sourceTable, String destinationTableName, ValueTableWriter tableWriter,
+      Variable[] variables, Variable[] destinationVariables) {
+    VectorSource[] vectorSources = new VectorSource[variables.length];
+    int nbVectors = 0;
+    for(int i = 0; i < variables.length; i++) {
+      VariableValueSource source = sourceTable.getVariableValueSource(variables[i].getName());
+      if(source.supportVectorSource()) {
+        vectorSources[i] = source.asVectorSource();
+        nbVectors++;
+      }
+    }
+    // listeners get the value sets of the source table, whatever these cost to read
+    boolean readValueSets = nbVectors < variables.length || hasValueSetListeners();
+    log.debug("Copy values of {} variables ({} as vectors) by chunks of {} entities", variables.length, nbVectors,
+        vectorChunkSize);
+
+    Value[][] columns = new Value[variables.length][vectorChunkSize];
+    SortedSet<VariableEntity> entities = ImmutableSortedSet.copyOf(sourceTable.getVariableEntities());
+    for(List<VariableEntity> chunk : Iterables.partition(entities, vectorChunkSize)) {
+      SortedSet<VariableEntity> chunkEntities = ImmutableSortedSet.copyOf(chunk);
+      for(int i = 0; i < variables.length; i++) {
+        if(vectorSources[i] != null) {
+          readColumn(variables[i], vectorSources[i].getValues(chunkEntities), columns[i], chunkEntities.size());
+        }
       }
+      int row = 0;
+      for(VariableEntity entity : chunkEntities) {
+        // the value set is only read when some values are not in the buffer or when listeners are registered
+        ValueSet valueSet = readValueSets ? sourceTable.getValueSet(entity) : new ValueSetBean(sourceTable, entity);
+        try(ValueSetWriter valueSetWriter = tableWriter.writeValueSet(entity)) {
+          notifyListeners(sourceTable, valueSet, false);
+          for(int i = 0; i < variables.length; i++) {
+            Value value = vectorSources[i] == null ? sourceTable.getValue(variables[i], valueSet) : columns[i][row];
+            writeValue(valueSetWriter, destinationVariables[i], value);
+          }
+          notifyCopied(sourceTable, valueSet, destinationTableName, valueSetWriter);
+        }
+        row++;
+      }
+    }
+  }
+
+  private static void readColumn(Variable variable, Iterable<Value> values, Value[] column, int size) {
+    Iterator<Value> iterator = values.iterator();
+    for(int row = 0; row < size; row++) {
+      if(!iterator.hasNext()) {
+        throw new MagmaRuntimeException(
+            "Expecting " + size + " values of variable " + variable.getName() + ", got " + row);
+      }
+      column[row] = iterator.next();
+    }
+    // the values of the previous chunk are not retained
+    Arrays.fill(column, size, column.length, null);
+  }
+
+  private void writeValue(ValueSetWriter valueSetWriter, Variable destinationVariable, Value value) {
+    if(!value.isNull() || copyNullValues) {
+      valueSetWriter.writeValue(destinationVariable, value);
+    }
+  }
+
+  private void notifyCopied(ValueTable sourceTable, ValueSet valueSet, String destinationTableName,
+      ValueSetWriter valueSetWriter) {
+    if(valueSetWriter instanceof MultiplexedValueSetWriter) {
+      Set<String> tables = ((MultiplexedValueSetWriter) valueSetWriter).getTables();
+      notifyListeners(sourceTable, valueSet, true, tables.toArray(new String[tables.size()]));
+    } else {
+      notifyListeners(sourceTable, valueSet, true, destinationTableName);
     }
   }
 
@@ -250,12 +539,7 @@ public class DatasourceCopier {
         valueSetWriter.writeValue(variableTransformer.transform(variable), value);
       }
     }
-    if(valueSetWriter instanceof MultiplexedValueSetWriter) {
-      Set<String> tables = ((MultiplexedValueSetWriter) valueSetWriter).getTables();
-      notifyListeners(sourceTable, valueSet, true, tables.toArray(new String[tables.size()]));
-    } else {
-      notifyListeners(sourceTable, valueSet, true, destinationTableName);
-    }
+    notifyCopied(sourceTable, valueSet, destinationTableName, valueSetWriter);
   }
 
   public void copyMetadata(ValueTable sourceTable, String destinationTableName, ValueTableWriter tableWriter)
@@ -286,12 +570,7 @@ public class DatasourceCopier {
         vsw.writeValue(variableTransformer.transform(variable), value);
       }
     }
-    if(vsw instanceof MultiplexedValueSetWriter) {
-      Set<String> tables = ((MultiplexedValueSetWriter) vsw).getTables();
-      notifyListeners(source, valueSet, true, tables.toArray(new String[tables.size()]));
-    } else {
-      notifyListeners(source, valueSet, true, tableName);
-    }
+    notifyCopied(source, valueSet, tableName, vsw);
   }
 
   public ValueTableWriter createValueTableWriter(ValueTable source, String destinationTableName,
@@ -318,6 +597,20 @@ public class DatasourceCopier {
     }
   }
 
+  /**
+   * Whether value set listeners other than the logging, throughput and progress ones (which only need the entity of
+   * the value set) are registered.
+   */
+  private boolean hasValueSetListeners() {
+    for(DatasourceCopyEventListener listener : listeners) {
+      if(listener instanceof DatasourceCopyValueSetEventListener && !(listener instanceof LoggingListener) &&
+          !(listener instanceof ThroughputListener) && !(listener instanceof Builder.DatasourceCopyProgressListener)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void notifyListeners(ValueTable source, ValueSet valueSet, boolean copied, String... destination) {
     for(DatasourceCopyEventListener listener : listeners) {
       if(listener instanceof DatasourceCopyValueSetEventListener) {
@@ -426,22 +719,33 @@ public class DatasourceCopier {
 
     private long allDuration = 0;
 
-    private long start;
+    // tables may be copied by several threads
+    private final ThreadLocal<Long> start = new ThreadLocal<>();
 
     @Override
     public void onValueSetCopy(ValueTable source, ValueSet valueSet) {
-      start = System.currentTimeMillis();
+      start.set(System.currentTimeMillis());
     }
 
     @SuppressWarnings("MagicNumber")
     @Override
     public void onValueSetCopied(ValueTable source, ValueSet valueSet, String... tables) {
-      long duration = System.currentTimeMillis() - start;
-      allDuration += duration;
-      count++;
-      log.trace("ValueSet copied in {}s. Average copy duration for {} valueSets: {}s.",
-          TWO_DECIMAL_PLACES.format(duration / 1000.0d), count,
-          TWO_DECIMAL_PLACES.format(allDuration / (double) count / 1000.0d));
+      Long started = start.get();
+      if(started == null) return;
+      long duration = System.currentTimeMillis() - started;
+      long n;
+      long total;
+      synchronized(this) {
+        allDuration += duration;
+        n = ++count;
+        total = allDuration;
+      }
+      if(log.isTraceEnabled()) {
+        synchronized(TWO_DECIMAL_PLACES) {
+          log.trace("ValueSet copied in {}s. Average copy duration for {} valueSets: {}s.",
+              TWO_DECIMAL_PLACES.format(duration / 1000.0d), n, TWO_DECIMAL_PLACES.format(total / (double) n / 1000.0d));
+        }
+      }
     }
 
   }
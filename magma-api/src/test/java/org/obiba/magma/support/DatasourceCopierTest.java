@@ -0,0 +1,355 @@
+package org.obiba.magma.support;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.validation.constraints.NotNull;
+
+import org.junit.Test;
+import org.obiba.magma.DatasourceCopierProgressListener;
+import org.obiba.magma.MagmaRuntimeException;
+import org.obiba.magma.NoSuchValueSetException;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueSet;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.ValueTableWriter;
+import org.obiba.magma.ValueType;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.VectorSource;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.TextType;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class DatasourceCopierTest extends AbstractMagmaTest {
+
+  private static final int TABLES = 6;
+
+  private static final int ENTITIES = 20;
+
+  @Test
+  public void test_copy_sequential() throws IOException {
+    CountingDatasource destination = new CountingDatasource(null);
+    DatasourceCopier.Builder.newCopier().build().copy(newSource(), destination);
+
+    assertCopied(destination);
+    assertThat(destination.maxWriters.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_copy_parallel_tables() throws IOException {
+    CountingDatasource destination = new CountingDatasource(null);
+    final ConcurrentMap<String, Integer> progress = Maps.newConcurrentMap();
+    DatasourceCopier.Builder.newCopier() //
+        .withTableParallelism(3) //
+        .withMaxTablesPerDestination(3) //
+        .withProgressListener(new DatasourceCopierProgressListener() {
+          @Override
+          public void status(String table, long entitiesCopied, long entitiesToCopy, int percentComplete) {
+            progress.put(table, percentComplete);
+          }
+        }) //
+        .build().copy(newSource(), destination);
+
+    assertCopied(destination);
+    assertThat(destination.maxWriters.get()).isLessThanOrEqualTo(3);
+    assertThat(progress).hasSize(TABLES);
+    for(Integer percentComplete : progress.values()) {
+      assertThat(percentComplete).isEqualTo(100);
+    }
+  }
+
+  @Test
+  public void test_copy_parallel_tables_one_at_a_time_by_default() throws IOException {
+    StaticDatasource destination = new StaticDatasource("destination");
+    final AtomicInteger copying = new AtomicInteger();
+    final AtomicInteger maxCopying = new AtomicInteger();
+    DatasourceCopier.Builder.newCopier() //
+        .withTableParallelism(4) //
+        .withListener(new DatasourceCopier.DatasourceCopyValueSetEventListener() {
+          @Override
+          public void onValueSetCopy(ValueTable source, ValueSet valueSet) {
+            int current = copying.incrementAndGet();
+            synchronized(maxCopying) {
+              if(current > maxCopying.get()) maxCopying.set(current);
+            }
+          }
+
+          @Override
+          public void onValueSetCopied(ValueTable source, ValueSet valueSet, String... tables) {
+            copying.decrementAndGet();
+          }
+        }) //
+        .build().copy(newSource(), destination);
+
+    assertCopied(destination);
+    assertThat(maxCopying.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_copy_parallel_tables_with_destination_limit() throws IOException {
+    CountingDatasource destination = new CountingDatasource(null);
+    DatasourceCopier.Builder.newCopier() //
+        .withTableParallelism(4) //
+        .withMaxTablesPerDestination(2) //
+        .build().copy(newSource(), destination);
+
+    assertCopied(destination);
+    assertThat(destination.maxWriters.get()).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  public void test_copy_parallel_tables_failure() throws IOException {
+    CountingDatasource destination = new CountingDatasource("table3");
+    try {
+      DatasourceCopier.Builder.newCopier().withTableParallelism(3).withMaxTablesPerDestination(3).build()
+          .copy(newSource(), destination);
+      fail("Expecting the failure of the copy of table3");
+    } catch(MagmaRuntimeException e) {
+      assertThat(e.getMessage()).isEqualTo("table3");
+    }
+  }
+
+  @Test
+  public void test_copy_vectors() throws IOException {
+    CountingDatasource destination = new CountingDatasource(null);
+    StaticDatasource source = new StaticDatasource("source");
+    VectorValueTable table = newVectorTable(source);
+    source.addValueTable(table);
+    final AtomicInteger transforms = new AtomicInteger();
+    DatasourceCopier.Builder.newCopier() //
+        .withVectorCopy(7) //
+        .dontCopyNullValues() //
+        .withVariableTransformer(new DatasourceCopier.VariableTransformer() {
+          @Override
+          public Variable transform(Variable variable) {
+            transforms.incrementAndGet();
+            return Variable.Builder.sameAs(variable).name("copy-" + variable.getName()).build();
+          }
+        }) //
+        .build().copy(source, destination);
+
+    ValueTable copy = destination.getValueTable("vectors");
+    assertThat(copy.getVariableEntities()).hasSize(ENTITIES);
+    for(int e = 1; e <= ENTITIES; e++) {
+      ValueSetBean valueSet = new ValueSetBean(copy, new VariableEntityBean("Participant", "" + e));
+      assertThat(copy.getValue(copy.getVariable("copy-var"), valueSet)).isEqualTo(TextType.get().valueOf("v-" + e));
+      assertThat(copy.getValue(copy.getVariable("copy-other"), valueSet))
+          .isEqualTo(e % 2 == 0 ? TextType.get().valueOf("o-" + e) : TextType.get().nullValue());
+    }
+    // 20 entities are read by chunks of 7
+    assertThat(table.vectorReads).containsExactly(7, 7, 6);
+    // the variables are transformed once when copying the metadata and once when copying the values
+    assertThat(transforms.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void test_copy_all_vectors_notifies_value_sets_of_the_table() throws IOException {
+    StaticDatasource source = new StaticDatasource("source");
+    VectorValueTable table = newVectorTable(source);
+    table.allVectors = true;
+    source.addValueTable(table);
+    final List<ValueSet> valueSets = Lists.newArrayList();
+    DatasourceCopier.Builder.newCopier() //
+        .withVectorCopy(7) //
+        .withListener(new DatasourceCopier.DatasourceCopyValueSetEventListener() {
+          @Override
+          public void onValueSetCopy(ValueTable sourceTable, ValueSet valueSet) {
+            valueSets.add(valueSet);
+          }
+
+          @Override
+          public void onValueSetCopied(ValueTable sourceTable, ValueSet valueSet, String... tables) {
+          }
+        }) //
+        .build().copy(source, new CountingDatasource(null));
+
+    assertThat(valueSets).hasSize(ENTITIES);
+    assertThat(table.valueSetReads.get()).isEqualTo(ENTITIES);
+    assertThat(table.vectorReads).containsExactly(7, 7, 7, 7, 6, 6);
+  }
+
+  @Test
+  public void test_copy_all_vectors_does_not_read_value_sets() throws IOException {
+    StaticDatasource source = new StaticDatasource("source");
+    VectorValueTable table = newVectorTable(source);
+    table.allVectors = true;
+    source.addValueTable(table);
+    CountingDatasource destination = new CountingDatasource(null);
+    DatasourceCopier.Builder.newCopier() //
+        .withVectorCopy(7) //
+        .withLoggingListener() //
+        .withThroughtputListener() //
+        .withProgressListener(new DatasourceCopierProgressListener() {
+          @Override
+          public void status(String table, long entitiesCopied, long entitiesToCopy, int percentComplete) {
+          }
+        }) //
+        .build().copy(source, destination);
+
+    assertThat(destination.getValueTable("vectors").getVariableEntities()).hasSize(ENTITIES);
+    assertThat(table.valueSetReads.get()).isEqualTo(0);
+  }
+
+  private VectorValueTable newVectorTable(StaticDatasource source) {
+    ImmutableList.Builder<String> entities = ImmutableList.builder();
+    for(int e = 1; e <= ENTITIES; e++) {
+      entities.add("" + e);
+    }
+    VectorValueTable table = new VectorValueTable(source, entities.build());
+    table.addVariables(TextType.get(), "var", "other");
+    for(int e = 1; e <= ENTITIES; e++) {
+      table.addValues("" + e, "var", TextType.get().valueOf("v-" + e), "other",
+          e % 2 == 0 ? TextType.get().valueOf("o-" + e) : null);
+    }
+    return table;
+  }
+
+  private void assertCopied(StaticDatasource destination) {
+    assertThat(destination.getValueTables()).hasSize(TABLES);
+    for(int t = 1; t <= TABLES; t++) {
+      ValueTable table = destination.getValueTable("table" + t);
+      assertThat(table.getVariableEntities()).hasSize(ENTITIES);
+      VariableEntity entity = new VariableEntityBean("Participant", "5");
+      assertThat(table.getValue(table.getVariable("var"), table.getValueSet(entity)))
+          .isEqualTo(TextType.get().valueOf("table" + t + "-5"));
+    }
+  }
+
+  private StaticDatasource newSource() {
+    StaticDatasource source = new StaticDatasource("source");
+    ImmutableList.Builder<String> entities = ImmutableList.builder();
+    for(int e = 1; e <= ENTITIES; e++) {
+      entities.add("" + e);
+    }
+    for(int t = 1; t <= TABLES; t++) {
+      StaticValueTable table = new StaticValueTable(source, "table" + t, entities.build());
+      table.addVariables(TextType.get(), "var");
+      for(int e = 1; e <= ENTITIES; e++) {
+        table.addValues("" + e, "var", TextType.get().valueOf("table" + t + "-" + e));
+      }
+      source.addValueTable(table);
+    }
+    return source;
+  }
+
+  /**
+   * A table which variable "var" supports vectors, that records the number of entities of each vector read.
+   */
+  private static class VectorValueTable extends StaticValueTable {
+
+    private final List<Integer> vectorReads = Lists.newArrayList();
+
+    private final AtomicInteger valueSetReads = new AtomicInteger();
+
+    // whether all the variables support vectors, or only "var"
+    private boolean allVectors;
+
+    private VectorValueTable(StaticDatasource datasource, Iterable<String> entities) {
+      super(datasource, "vectors", entities);
+    }
+
+    @Override
+    public ValueSet getValueSet(VariableEntity entity) throws NoSuchValueSetException {
+      valueSetReads.incrementAndGet();
+      return super.getValueSet(entity);
+    }
+
+    @Override
+    public VariableValueSource getVariableValueSource(String variableName) {
+      VariableValueSource source = super.getVariableValueSource(variableName);
+      if(!allVectors && !"var".equals(variableName)) return source;
+      return new AbstractVariableValueSourceWrapper(source) {
+        @Override
+        public boolean supportVectorSource() {
+          return true;
+        }
+
+        @NotNull
+        @Override
+        public VectorSource asVectorSource() {
+          return new VectorSource() {
+            @Override
+            public ValueType getValueType() {
+              return getWrapped().getValueType();
+            }
+
+            @Override
+            public Iterable<Value> getValues(SortedSet<VariableEntity> entities) {
+              vectorReads.add(entities.size());
+              ImmutableList.Builder<Value> values = ImmutableList.builder();
+              for(VariableEntity entity : entities) {
+                values.add(getWrapped().getValue(new ValueSetBean(VectorValueTable.this, entity)));
+              }
+              return values.build();
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /**
+   * Counts the writers that are open at the same time.
+   */
+  private static class CountingDatasource extends StaticDatasource {
+
+    private final String failingTable;
+
+    private final AtomicInteger writers = new AtomicInteger();
+
+    private final AtomicInteger maxWriters = new AtomicInteger();
+
+    private CountingDatasource(String failingTable) {
+      super("destination");
+      this.failingTable = failingTable;
+    }
+
+    @NotNull
+    @Override
+    public synchronized ValueTableWriter createWriter(@NotNull String tableName, @NotNull String entityType) {
+      if(tableName.equals(failingTable)) throw new MagmaRuntimeException(tableName);
+      final ValueTableWriter writer = super.createWriter(tableName, entityType);
+      int open = writers.incrementAndGet();
+      if(open > maxWriters.get()) maxWriters.set(open);
+      return new ValueTableWriter() {
+        @Override
+        public VariableWriter writeVariables() {
+          return writer.writeVariables();
+        }
+
+        @NotNull
+        @Override
+        public ValueSetWriter writeValueSet(@NotNull VariableEntity entity) {
+          return writer.writeValueSet(entity);
+        }
+
+        @Override
+        public void close() {
+          writers.decrementAndGet();
+          writer.close();
+        }
+      };
+    }
+
+    @Override
+    public synchronized boolean hasValueTable(String name) {
+      return super.hasValueTable(name);
+    }
+
+    @Override
+    public synchronized ValueTable getValueTable(String name) {
+      return super.getValueTable(name);
+    }
+  }
+}
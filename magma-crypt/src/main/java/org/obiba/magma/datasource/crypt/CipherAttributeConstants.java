@@ -47,6 +47,12 @@ final class CipherAttributeConstants {
    */
   static final String CIPHER_IV = "magma.crypt.iv";
 
+  /**
+   * The key value for the entry IV length attribute. Stores the length of the initialisation vector that is generated
+   * for each entry and stored at its beginning, when entries are not encrypted with the same algorithm parameters.
+   */
+  static final String CIPHER_ENTRY_IV_LENGTH = "magma.crypt.entryIvLength";
+
   /**
    * The key value for the transformation string attribute. Stores the transformation used by the {@code Cipher}.
    *
@@ -1,5 +1,6 @@
 package org.obiba.magma.datasource.crypt;
 
+import javax.annotation.Nullable;
 import javax.crypto.Cipher;
 
 /**
@@ -21,4 +22,47 @@ public interface DatasourceCipherFactory {
    */
   Cipher createDecryptingCipher();
 
+  /**
+   * Returns the length of the initialisation vector that is generated for each entry and stored at the beginning of
+   * the encrypted entry, 0 when all the entries are processed with the datasource's algorithm parameters (the default).
+   *
+   * @return the entry initialisation vector length, in bytes.
+   */
+  default int getEntryIvLength() {
+    return 0;
+  }
+
+  /**
+   * Returns a {@code Cipher} configured for encryption, taken from a pool of instances. The instance must be given back
+   * with {@link #releaseCipher(Cipher)} once the entry is encrypted. By default, a new instance is created by {@link
+   * #createEncryptingCipher()}.
+   *
+   * @param iv the entry initialisation vector, null when {@link #getEntryIvLength()} is 0.
+   * @return an initialised encrypting {@code Cipher} instance.
+   */
+  default Cipher acquireEncryptingCipher(@Nullable byte[] iv) {
+    return createEncryptingCipher();
+  }
+
+  /**
+   * Returns a {@code Cipher} configured for decryption, taken from a pool of instances. The instance must be given back
+   * with {@link #releaseCipher(Cipher)} once the entry is decrypted. By default, a new instance is created by {@link
+   * #createDecryptingCipher()}.
+   *
+   * @param iv the entry initialisation vector, null when {@link #getEntryIvLength()} is 0.
+   * @return an initialised decrypting {@code Cipher} instance.
+   */
+  default Cipher acquireDecryptingCipher(@Nullable byte[] iv) {
+    return createDecryptingCipher();
+  }
+
+  /**
+   * Gives back a {@code Cipher} to the pool, it will be initialised again when acquired. By default, the instance is
+   * not reused.
+   *
+   * @param cipher a {@code Cipher} instance obtained from this factory.
+   */
+  default void releaseCipher(Cipher cipher) {
+  }
+
 }
@@ -2,28 +2,55 @@ package org.obiba.magma.datasource.crypt;
 
 import java.security.AlgorithmParameters;
 import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import javax.annotation.Nullable;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
 
 import org.obiba.magma.crypt.MagmaCryptRuntimeException;
 
 /**
  * A default implementation of {@code DatasourceCipherProvider} that uses the specified {@code transformation}, {@code
  * SecretKey} and {@code AlgorithmParameters} instances to initialise {@code Cipher} instances.
+ * <p/>
+ * When entries have their own initialisation vector, it is used instead of the {@code AlgorithmParameters}.
  */
 class DefaultDatasourceCipherFactory implements DatasourceCipherFactory {
 
+  /**
+   * Authentication tag length of the GCM mode, in bits.
+   */
+  static final int GCM_TAG_LENGTH = 128;
+
   private final String transformation;
 
   private final SecretKey secretKey;
 
   private final AlgorithmParameters algorithmParameters;
 
+  private final int entryIvLength;
+
+  /**
+   * {@code Cipher} instances that were released, getting an instance from the provider is much more expensive than
+   * initialising it again.
+   */
+  private final Queue<Cipher> pool = new ConcurrentLinkedQueue<>();
+
   DefaultDatasourceCipherFactory(String transformation, SecretKey secretKey, AlgorithmParameters parameters) {
+    this(transformation, secretKey, parameters, 0);
+  }
+
+  DefaultDatasourceCipherFactory(String transformation, SecretKey secretKey, @Nullable AlgorithmParameters parameters,
+      int entryIvLength) {
     this.transformation = transformation;
     this.secretKey = secretKey;
     algorithmParameters = parameters;
+    this.entryIvLength = entryIvLength;
   }
 
   @Override
@@ -48,4 +75,54 @@ class DefaultDatasourceCipherFactory implements DatasourceCipherFactory {
     }
   }
 
+  @Override
+  public int getEntryIvLength() {
+    return entryIvLength;
+  }
+
+  @Override
+  public Cipher acquireEncryptingCipher(@Nullable byte[] iv) {
+    try {
+      return acquireCipher(Cipher.ENCRYPT_MODE, iv);
+    } catch(GeneralSecurityException e) {
+      throw new MagmaCryptRuntimeException("Invalid parameters for encrypting Datasource.", e);
+    }
+  }
+
+  @Override
+  public Cipher acquireDecryptingCipher(@Nullable byte[] iv) {
+    try {
+      return acquireCipher(Cipher.DECRYPT_MODE, iv);
+    } catch(GeneralSecurityException e) {
+      throw new MagmaCryptRuntimeException("Invalid parameters for decrypting Datasource.", e);
+    }
+  }
+
+  @Override
+  public void releaseCipher(Cipher cipher) {
+    pool.offer(cipher);
+  }
+
+  private Cipher acquireCipher(int mode, @Nullable byte[] iv) throws GeneralSecurityException {
+    Cipher cipher = pool.poll();
+    if(cipher == null) {
+      cipher = Cipher.getInstance(transformation);
+    }
+    if(entryIvLength > 0) {
+      if(iv == null || iv.length != entryIvLength) {
+        throw new MagmaCryptRuntimeException("Invalid entry initialisation vector.");
+      }
+      cipher.init(mode, secretKey, getParameterSpec(iv));
+    } else {
+      cipher.init(mode, secretKey, algorithmParameters);
+    }
+    return cipher;
+  }
+
+  private AlgorithmParameterSpec getParameterSpec(byte... iv) {
+    return transformation.contains("/GCM/")
+        ? new GCMParameterSpec(GCM_TAG_LENGTH, iv)
+        : new IvParameterSpec(iv);
+  }
+
 }
@@ -39,6 +39,8 @@ import org.obiba.magma.crypt.NoSuchKeyException;
  * <li>{@link CipherAttributeConstants#PUBLIC_KEY_FORMAT}</li>
  * <li>{@link CipherAttributeConstants#PUBLIC_KEY_ALGORITHM}</li>
  * </ul>
+ * The {@link CipherAttributeConstants#CIPHER_ALGORITHM_PARAMETERS} attribute is replaced by the
+ * {@link CipherAttributeConstants#CIPHER_ENTRY_IV_LENGTH} one when each entry has its own initialisation vector.
  *
  * @see GeneratedSecretKeyDatasourceEncryptionStrategy
  */
@@ -69,8 +71,9 @@ public class EncryptedSecretKeyDatasourceEncryptionStrategy implements Datasourc
     try {
       SecretKey secretKey = getSecretKey(ds);
       String transformation = ds.getAttributeStringValue(CipherAttributeConstants.CIPHER_TRANSFORMATION);
+      int entryIvLength = getEntryIvLength(ds);
       return new DefaultDatasourceCipherFactory(transformation, secretKey,
-          getAlgorithmParameters(ds, secretKey.getAlgorithm()));
+          entryIvLength > 0 ? null : getAlgorithmParameters(ds, secretKey.getAlgorithm()), entryIvLength);
     } catch(NoSuchAttributeException e) {
       throw new MagmaCryptRuntimeException(
           "Missing metadata in Datasource '" + ds.getName() + "' to extract secret key. Expected attribute '" +
@@ -102,6 +105,14 @@ public class EncryptedSecretKeyDatasourceEncryptionStrategy implements Datasourc
     return algorithmParameters;
   }
 
+  private int getEntryIvLength(AttributeAware datasource) {
+    if(datasource.hasAttribute(CipherAttributeConstants.CIPHER_ENTRY_IV_LENGTH)) {
+      Value value = datasource.getAttribute(CipherAttributeConstants.CIPHER_ENTRY_IV_LENGTH).getValue();
+      return value.isNull() ? 0 : ((Number) value.getValue()).intValue();
+    }
+    return 0;
+  }
+
   private SecretKey getSecretKey(AttributeAware datasource)
       throws MagmaCryptRuntimeException, GeneralSecurityException {
     String algorithm = datasource.getAttributeStringValue(CipherAttributeConstants.SECRET_KEY_ALGORITHM);
@@ -17,6 +17,7 @@ import org.obiba.magma.MagmaRuntimeException;
 import org.obiba.magma.crypt.KeyProvider;
 import org.obiba.magma.crypt.MagmaCryptRuntimeException;
 import org.obiba.magma.type.BinaryType;
+import org.obiba.magma.type.IntegerType;
 import org.obiba.magma.type.TextType;
 
 /**
@@ -35,9 +36,15 @@ import org.obiba.magma.type.TextType;
  * <li>{@link CipherAttributeConstants#PUBLIC_KEY_FORMAT}</li>
  * <li>{@link CipherAttributeConstants#PUBLIC_KEY_ALGORITHM}</li>
  * </ul>
+ * With the GCM and CTR modes, a new initialisation vector is generated for each entry instead: the
+ * {@link CipherAttributeConstants#CIPHER_ENTRY_IV_LENGTH} attribute is added in place of the algorithm parameters and
+ * the initialisation vector.
  */
 public class GeneratedSecretKeyDatasourceEncryptionStrategy implements DatasourceEncryptionStrategy {
 
+  // Initialisation vector length of the GCM mode, as recommended by NIST SP 800-38D
+  private static final int GCM_IV_LENGTH = 12;
+
   private String algorithm = "AES";
 
   private String mode = "CFB";
@@ -78,6 +85,12 @@ public class GeneratedSecretKeyDatasourceEncryptionStrategy implements Datasourc
       String transformation = getTransformation();
 
       SecretKey sk = getSecretKey(ds);
+      int entryIvLength = getEntryIvLength(transformation);
+      if(entryIvLength > 0) {
+        ds.setAttributeValue(CipherAttributeConstants.CIPHER_TRANSFORMATION, TextType.get().valueOf(transformation));
+        ds.setAttributeValue(CipherAttributeConstants.CIPHER_ENTRY_IV_LENGTH, IntegerType.get().valueOf(entryIvLength));
+        return new DefaultDatasourceCipherFactory(transformation, sk, null, entryIvLength);
+      }
       AlgorithmParameters parameters = initialiseParameters(ds, transformation, sk);
 
       return new DefaultDatasourceCipherFactory(transformation, sk, parameters);
@@ -118,6 +131,20 @@ public class GeneratedSecretKeyDatasourceEncryptionStrategy implements Datasourc
     this.keySize = keySize;
   }
 
+  /**
+   * Entries encrypted with the GCM or CTR modes must not share the same initialisation vector.
+   *
+   * @param transformation
+   * @return
+   * @throws NoSuchAlgorithmException
+   * @throws NoSuchPaddingException
+   */
+  private int getEntryIvLength(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+    if("GCM".equalsIgnoreCase(mode)) return GCM_IV_LENGTH;
+    if("CTR".equalsIgnoreCase(mode)) return Cipher.getInstance(transformation).getBlockSize();
+    return 0;
+  }
+
   private SecretKey getSecretKey(Datasource datasource) throws NoSuchAlgorithmException {
     KeyGenerator keyGen = KeyGenerator.getInstance(algorithm);
     keyGen.init(keySize);
@@ -0,0 +1,127 @@
+package org.obiba.magma.datasource.crypt;
+
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.obiba.magma.crypt.MagmaCryptRuntimeException;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DefaultDatasourceCipherFactoryTest {
+
+  private static final byte[] PLAIN = "some entry content".getBytes();
+
+  private SecretKey secretKey;
+
+  @Before
+  public void before() throws GeneralSecurityException {
+    KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+    keyGenerator.init(128);
+    secretKey = keyGenerator.generateKey();
+  }
+
+  @Test
+  public void test_entry_iv_length() throws GeneralSecurityException {
+    assertThat(newFactory("AES/GCM/NoPadding", 12).getEntryIvLength()).isEqualTo(12);
+    assertThat(newCfbFactory().getEntryIvLength()).isEqualTo(0);
+  }
+
+  @Test
+  public void test_released_gcm_cipher_is_reused_with_new_iv() throws GeneralSecurityException {
+    DatasourceCipherFactory factory = newFactory("AES/GCM/NoPadding", 12);
+
+    Cipher cipher = factory.acquireEncryptingCipher(iv(12, 1));
+    byte[] first = cipher.doFinal(PLAIN);
+    factory.releaseCipher(cipher);
+    Cipher reused = factory.acquireEncryptingCipher(iv(12, 2));
+    byte[] second = reused.doFinal(PLAIN);
+
+    assertThat(reused).isSameAs(cipher);
+    assertThat(first).isEqualTo(encrypt("AES/GCM/NoPadding", new GCMParameterSpec(128, iv(12, 1))));
+    assertThat(second).isEqualTo(encrypt("AES/GCM/NoPadding", new GCMParameterSpec(128, iv(12, 2))));
+  }
+
+  @Test
+  public void test_released_cipher_in_the_middle_of_an_entry_does_not_leak_state() throws GeneralSecurityException {
+    DatasourceCipherFactory factory = newFactory("AES/CTR/NoPadding", 16);
+
+    Cipher cipher = factory.acquireEncryptingCipher(iv(16, 1));
+    // an entry which stream was not properly finished: 7 bytes of a block are pending
+    cipher.update(new byte[23]);
+    factory.releaseCipher(cipher);
+    Cipher reused = factory.acquireEncryptingCipher(iv(16, 2));
+
+    assertThat(reused).isSameAs(cipher);
+    assertThat(reused.doFinal(PLAIN)).isEqualTo(encrypt("AES/CTR/NoPadding", new IvParameterSpec(iv(16, 2))));
+  }
+
+  @Test
+  public void test_released_encrypting_cipher_is_reused_for_decryption() throws GeneralSecurityException {
+    DatasourceCipherFactory factory = newFactory("AES/GCM/NoPadding", 12);
+
+    Cipher cipher = factory.acquireEncryptingCipher(iv(12, 1));
+    byte[] encrypted = cipher.doFinal(PLAIN);
+    factory.releaseCipher(cipher);
+    Cipher reused = factory.acquireDecryptingCipher(iv(12, 1));
+
+    assertThat(reused).isSameAs(cipher);
+    assertThat(reused.doFinal(encrypted)).isEqualTo(PLAIN);
+  }
+
+  @Test
+  public void test_pooled_cfb_cipher_uses_datasource_parameters() throws GeneralSecurityException {
+    DatasourceCipherFactory factory = newCfbFactory();
+    byte[] expected = factory.createEncryptingCipher().doFinal(PLAIN);
+
+    Cipher cipher = factory.acquireEncryptingCipher(null);
+    cipher.update(new byte[5]);
+    factory.releaseCipher(cipher);
+
+    assertThat(factory.acquireEncryptingCipher(null).doFinal(PLAIN)).isEqualTo(expected);
+    assertThat(factory.acquireDecryptingCipher(null).doFinal(expected)).isEqualTo(PLAIN);
+  }
+
+  @Test(expected = MagmaCryptRuntimeException.class)
+  public void test_missing_entry_iv() throws GeneralSecurityException {
+    newFactory("AES/GCM/NoPadding", 12).acquireDecryptingCipher(null);
+  }
+
+  @Test(expected = MagmaCryptRuntimeException.class)
+  public void test_invalid_entry_iv_length() throws GeneralSecurityException {
+    newFactory("AES/CTR/NoPadding", 16).acquireEncryptingCipher(iv(12, 1));
+  }
+
+  private DatasourceCipherFactory newFactory(String transformation, int entryIvLength) {
+    return new DefaultDatasourceCipherFactory(transformation, secretKey, null, entryIvLength);
+  }
+
+  private DatasourceCipherFactory newCfbFactory() throws GeneralSecurityException {
+    Cipher cipher = Cipher.getInstance("AES/CFB/NoPadding");
+    cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+    return new DefaultDatasourceCipherFactory("AES/CFB/NoPadding", secretKey, cipher.getParameters());
+  }
+
+  private byte[] encrypt(String transformation, AlgorithmParameterSpec parameterSpec)
+      throws GeneralSecurityException {
+    Cipher cipher = Cipher.getInstance(transformation);
+    cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
+    return cipher.doFinal(PLAIN);
+  }
+
+  private static byte[] iv(int length, int seed) {
+    byte[] iv = new byte[length];
+    for(int i = 0; i < length; i++) {
+      iv[i] = (byte) (seed * 31 + i);
+    }
+    return iv;
+  }
+
+}
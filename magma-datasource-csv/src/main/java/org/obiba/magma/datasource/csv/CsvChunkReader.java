@@ -0,0 +1,146 @@
+package org.obiba.magma.datasource.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.obiba.magma.MagmaRuntimeException;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Reads the records of a csv data file by chunks (see {@link CsvChunkSplitter}). Chunks are split in records on a
+ * fork-join pool and are returned in the order of the file. Records are tokenised lazily (see {@link CsvRecord}).
+ */
+class CsvChunkReader {
+
+  private final CsvDatasource datasource;
+
+  private final File file;
+
+  private final List<CsvIndexEntry> chunks;
+
+  private final long fileLength;
+
+  private CsvChunkReader(CsvDatasource datasource, File file, List<CsvIndexEntry> chunks, long fileLength) {
+    this.datasource = datasource;
+    this.file = file;
+    this.chunks = chunks;
+    this.fileLength = fileLength;
+  }
+
+  /**
+   * Split the data file in chunks, skipping the lines and the header record that precede the data records.
+   *
+   * @param datasource
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  static CsvChunkReader create(CsvDatasource datasource, File file) throws IOException {
+    long fileLength = file.length();
+    // the csv reader skips the raw lines before the first row, then the data reader skips as many records plus the
+    // header (see CsvValueTable.getCsvDataReader())
+    int skip = datasource.getFirstRow() - 1;
+    List<CsvIndexEntry> chunks = new CsvChunkSplitter(file, datasource.getQuote().getCharacter())
+        .split(datasource.getChunkSize(), skip, skip + 1);
+    return new CsvChunkReader(datasource, file, chunks, fileLength);
+  }
+
+  int getChunkCount() {
+    return chunks.size();
+  }
+
+  /**
+   * Whether the data file was modified (i.e. records were appended) since it was split in chunks.
+   *
+   * @return
+   */
+  boolean isUpToDate() {
+    return file.length() == fileLength;
+  }
+
+  /**
+   * Parse the records of a chunk in the calling thread.
+   *
+   * @param index
+   * @return
+   */
+  List<CsvRecord> readChunk(int index) {
+    CsvIndexEntry chunk = chunks.get(index);
+    long length = chunk.getEnd() - chunk.getStart();
+    if(length > Integer.MAX_VALUE) {
+      throw new MagmaRuntimeException("CSV chunk is too large: " + chunk);
+    }
+    try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate((int) length);
+      while(buffer.hasRemaining()) {
+        if(channel.read(buffer, chunk.getStart() + buffer.position()) == -1) break;
+      }
+      String text = new String(buffer.array(), 0, buffer.position(), Charset.forName(datasource.getCharacterSet()));
+      List<CsvRecord> records = new ArrayList<>();
+      try(CsvRecordReader reader = datasource.getCsvRecordReader(new StringReader(text))) {
+        CsvRecord record;
+        while((record = reader.readNext()) != null) {
+          records.add(record);
+        }
+      }
+      return records;
+    } catch(IOException e) {
+      throw new MagmaRuntimeException("Failed reading CSV data file chunk " + chunk, e);
+    }
+  }
+
+  /**
+   * Iterate over the parsed chunks in file order. Chunks are parsed in advance on the fork-join pool, at most as many
+   * chunks as the pool parallelism.
+   *
+   * @param pool
+   * @return
+   */
+  Iterator<List<CsvRecord>> readChunks(final ForkJoinPool pool) {
+    return new AbstractIterator<List<CsvRecord>>() {
+
+      private final Deque<ForkJoinTask<List<CsvRecord>>> pending = new ArrayDeque<>();
+
+      private int next = 0;
+
+      @Override
+      protected List<CsvRecord> computeNext() {
+        while(next < chunks.size() && pending.size() < pool.getParallelism()) {
+          pending.add(pool.submit(new ReadChunkTask(next++)));
+        }
+        return pending.isEmpty() ? endOfData() : pending.poll().join();
+      }
+    };
+  }
+
+  private class ReadChunkTask extends RecursiveTask<List<CsvRecord>> {
+
+    private static final long serialVersionUID = 6157367823423480581L;
+
+    private final int index;
+
+    private ReadChunkTask(int index) {
+      this.index = index;
+    }
+
+    @Override
+    protected List<CsvRecord> compute() {
+      return readChunk(index);
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+package org.obiba.magma.datasource.csv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a csv file in chunks of approximately the requested size. A chunk always ends at the end of a record: new
+ * lines that are within quotes do not delimit records.
+ * <p>
+ * The file is scanned as raw bytes, which is only valid for character sets where the quote and new line characters are
+ * encoded as single ASCII bytes that cannot be part of a multi-byte sequence (UTF-8, ISO-8859-x, ...).
+ */
+class CsvChunkSplitter {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+
+  private final byte quote;
+
+  CsvChunkSplitter(File file, char quote) {
+    this.file = file;
+    this.quote = (byte) quote;
+  }
+
+  /**
+   * Check that records boundaries can be detected from the raw bytes of a file in the given character set.
+   *
+   * @param charset
+   * @param quote
+   * @return
+   */
+  static boolean isSupported(Charset charset, char quote) {
+    return isSingleByte(charset, quote) && isSingleByte(charset, (char) CsvValueTable.NEWLINE_CHARACTER);
+  }
+
+  private static boolean isSingleByte(Charset charset, char c) {
+    byte[] bytes = String.valueOf(c).getBytes(charset);
+    return bytes.length == 1 && bytes[0] == c;
+  }
+
+  /**
+   * Split the file in chunks of records.
+   *
+   * @param chunkSize approximate size in bytes of a chunk
+   * @param linesToSkip number of raw lines to skip at the beginning of the file
+   * @param recordsToSkip number of records (usually the header) to skip after the raw lines
+   * @return the chunks in file order, empty if there is no record after the skipped ones
+   * @throws IOException
+   */
+  @SuppressWarnings({ "OverlyLongMethod", "OverlyNestedMethod" })
+  List<CsvIndexEntry> split(long chunkSize, int linesToSkip, int recordsToSkip) throws IOException {
+    List<CsvIndexEntry> chunks = new ArrayList<>();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long position = 0;
+    long start = 0;
+    int skippedLines = 0;
+    int skippedRecords = 0;
+    boolean inQuotes = false;
+    boolean escaped = false;
+    try(InputStream in = new FileInputStream(file)) {
+      int read;
+      while((read = in.read(buffer)) != -1) {
+        for(int i = 0; i < read; i++) {
+          byte b = buffer[i];
+          if(escaped) {
+            escaped = false;
+            if(b == quote || b == CsvDatasource.DEL_CHAR) continue;
+          }
+          if(b == CsvDatasource.DEL_CHAR) {
+            escaped = true;
+          } else if(b == quote) {
+            // escaped quotes are doubled, so toggling on each of them leaves the state unchanged
+            inQuotes = !inQuotes;
+          } else if(b == CsvValueTable.NEWLINE_CHARACTER) {
+            long end = position + i + 1;
+            if(skippedLines < linesToSkip) {
+              skippedLines++;
+              inQuotes = false;
+              start = end;
+            } else if(!inQuotes) {
+              if(skippedRecords < recordsToSkip) {
+                skippedRecords++;
+                start = end;
+              } else if(end - start >= chunkSize) {
+                chunks.add(new CsvIndexEntry(start, end));
+                start = end;
+              }
+            }
+          }
+        }
+        position += read;
+      }
+    }
+    if(position > start && skippedLines == linesToSkip && skippedRecords == recordsToSkip) {
+      chunks.add(new CsvIndexEntry(start, position));
+    }
+    return chunks;
+  }
+
+}
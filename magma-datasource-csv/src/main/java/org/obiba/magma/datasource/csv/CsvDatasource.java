@@ -1,5 +1,6 @@
 package org.obiba.magma.datasource.csv;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
@@ -9,12 +10,14 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
@@ -42,6 +45,10 @@ public class CsvDatasource extends AbstractDatasource {
 
   public static final char DEL_CHAR = (char) 127;
 
+  public static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+  private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+
   private final Map<String, CsvValueTable> valueTables = new HashMap<>();
 
   private String[] defaultVariablesHeader = "name#valueType#entityType#mimeType#unit#occurrenceGroup#repeatable#script"
@@ -55,6 +62,13 @@ public class CsvDatasource extends AbstractDatasource {
 
   private int firstRow = 1;
 
+  private int parallelism = 1;
+
+  private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+  @Nullable
+  private ForkJoinPool parsingPool;
+
   public CsvDatasource(String name) {
     super(name, TYPE);
   }
@@ -114,6 +128,14 @@ public class CsvDatasource extends AbstractDatasource {
     return this;
   }
 
+  @Override
+  protected synchronized void onDispose() {
+    if(parsingPool != null) {
+      parsingPool.shutdownNow();
+      parsingPool = null;
+    }
+  }
+
   @NotNull
   @Override
   public ValueTableWriter createWriter(@NotNull String tableName, @NotNull String entityType) {
@@ -164,7 +186,8 @@ public class CsvDatasource extends AbstractDatasource {
 
   Writer getWriter(File file) {
     try {
-      return new OutputStreamWriter(new FileOutputStream(file, true), getCharacterSet());
+      return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), getCharacterSet()),
+          WRITER_BUFFER_SIZE);
     } catch(IOException e) {
       throw new DatasourceParsingException("Can not get csv writer.", e, "CsvCannotObtainWriter");
     }
@@ -176,8 +199,21 @@ public class CsvDatasource extends AbstractDatasource {
   }
 
   CSVReader getCsvReader(Reader reader) {
+    return getCsvReader(reader, getFirstRow() - 1);
+  }
+
+  CSVReader getCsvReader(Reader reader, int skipLines) {
     // we don't want escape processing try DEL as a rare character until we can turn it off
-    return new CSVReader(reader, separator.getCharacter(), quote.getCharacter(), DEL_CHAR, getFirstRow() - 1);
+    return new CSVReader(reader, separator.getCharacter(), quote.getCharacter(), DEL_CHAR, skipLines);
+  }
+
+  @Nullable
+  CsvRecordReader getCsvRecordReader(@Nullable File file) {
+    return file == null ? null : getCsvRecordReader(getReader(file));
+  }
+
+  CsvRecordReader getCsvRecordReader(Reader reader) {
+    return new CsvRecordReader(reader, separator.getCharacter(), quote.getCharacter());
   }
 
   CSVParser getCsvParser() {
@@ -225,4 +261,44 @@ public class CsvDatasource extends AbstractDatasource {
     return firstRow;
   }
 
+  /**
+   * Set the number of threads used for parsing the data files. When greater than 1, data files are split in chunks at
+   * record boundaries and chunks are parsed concurrently. Default is 1 (sequential parsing).
+   */
+  public void setParallelism(int parallelism) {
+    if(parallelism < 1) throw new IllegalArgumentException("parallelism must be greater than 0");
+    this.parallelism = parallelism;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Set the approximate size in bytes of the data file chunks that are parsed concurrently.
+   */
+  public void setChunkSize(long chunkSize) {
+    if(chunkSize < 1) throw new IllegalArgumentException("chunk size must be greater than 0");
+    this.chunkSize = chunkSize;
+  }
+
+  public long getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Data files are parsed in parallel if requested and if the record boundaries can be detected in the raw bytes of
+   * the file with the current character set and quote.
+   */
+  boolean isParallelParsing() {
+    return parallelism > 1 && CsvChunkSplitter.isSupported(Charset.forName(characterSet), quote.getCharacter());
+  }
+
+  synchronized ForkJoinPool getParsingPool() {
+    if(parsingPool == null) {
+      parsingPool = new ForkJoinPool(parallelism);
+    }
+    return parsingPool;
+  }
+
 }
@@ -0,0 +1,175 @@
+package org.obiba.magma.datasource.csv;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import org.obiba.magma.MagmaRuntimeException;
+
+import au.com.bytecode.opencsv.CSVParser;
+import au.com.bytecode.opencsv.CSVReader;
+
+/**
+ * A record of a csv file, kept as raw text. The record is tokenised lazily: the offsets of the fields are located only
+ * up to the requested field and only the requested fields are decoded.
+ * <p>
+ * Fields are decoded as {@link CSVParser} would do. Records for which the field offsets cannot be located safely
+ * (multi-line records, unterminated quotes, escape characters) are entirely parsed at first access.
+ */
+class CsvRecord {
+
+  private static final String[] NO_FIELDS = new String[0];
+
+  @Nullable
+  private final String text;
+
+  private final char separator;
+
+  private final char quote;
+
+  /**
+   * All the fields, when the record was entirely parsed.
+   */
+  @Nullable
+  private String[] fields;
+
+  /**
+   * Start offsets of the fields located so far.
+   */
+  private int[] offsets;
+
+  private int offsetCount;
+
+  /**
+   * Position in the text from which next fields are to be located.
+   */
+  private int scanPosition;
+
+  private boolean scanCompleted;
+
+  CsvRecord(String text, char separator, char quote) {
+    this.text = text;
+    this.separator = separator;
+    this.quote = quote;
+  }
+
+  private CsvRecord(String... fields) {
+    text = null;
+    separator = 0;
+    quote = 0;
+    this.fields = fields;
+  }
+
+  /**
+   * Wrap a record that was already parsed.
+   *
+   * @param fields
+   * @return
+   */
+  static CsvRecord of(@Nullable String... fields) {
+    return new CsvRecord(fields == null ? NO_FIELDS : fields);
+  }
+
+  /**
+   * Get the decoded value of a field.
+   *
+   * @param index
+   * @return null if the record does not have such field
+   */
+  @Nullable
+  synchronized String getField(int index) {
+    if(fields == null && !locateField(index)) {
+      fields = parse();
+    }
+    if(fields != null) {
+      return index < fields.length ? fields[index] : null;
+    }
+    if(index >= offsetCount) return null;
+    int start = offsets[index];
+    int end = index + 1 < offsetCount ? offsets[index + 1] - 1 : text.length();
+    return decode(start, end);
+  }
+
+  /**
+   * Get all the decoded fields.
+   *
+   * @return
+   */
+  synchronized String[] getFields() {
+    if(fields == null) {
+      fields = parse();
+    }
+    return Arrays.copyOf(fields, fields.length);
+  }
+
+  /**
+   * Locate the field offsets up to the one following the requested field.
+   *
+   * @param index
+   * @return false if the offsets cannot be safely located and the whole record needs to be parsed
+   */
+  @SuppressWarnings({ "ConstantConditions", "OverlyComplexMethod" })
+  private boolean locateField(int index) {
+    if(offsets == null) {
+      if(text.indexOf(CsvDatasource.DEL_CHAR) >= 0 || text.indexOf('\n') >= 0) return false;
+      offsets = new int[16];
+      offsets[offsetCount++] = 0;
+    }
+    boolean inQuotes = false;
+    int length = text.length();
+    int i = scanPosition;
+    // the end of the requested field is known when the next field is located or when the end of the text is reached
+    while(index + 1 >= offsetCount && !scanCompleted) {
+      if(i == length) {
+        if(inQuotes) return false;
+        scanCompleted = true;
+        break;
+      }
+      char c = text.charAt(i++);
+      if(c == quote) {
+        // escaped quotes are doubled, so toggling on each of them leaves the state unchanged
+        inQuotes = !inQuotes;
+      } else if(c == separator && !inQuotes) {
+        if(offsetCount == offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[offsetCount++] = i;
+        scanPosition = i;
+      }
+    }
+    return true;
+  }
+
+  private String decode(int start, int end) {
+    String field = text.substring(start, end);
+    int firstQuote = field.indexOf(quote);
+    if(firstQuote == -1) return field;
+    int last = field.length() - 1;
+    if(firstQuote == 0 && last > 0 && field.indexOf(quote, 1) == last) {
+      return field.substring(1, last);
+    }
+    // the parser checks the position of quotes within the line: the field must keep its position relative to the
+    // start of the line (up to the third character)
+    String prefix = start == 0 ? "" : start == 1 ? String.valueOf(separator) : "x" + separator;
+    try {
+      String[] tokens = new CSVParser(separator, quote, CsvDatasource.DEL_CHAR).parseLine(prefix + field);
+      return tokens[tokens.length - 1];
+    } catch(IOException e) {
+      throw new MagmaRuntimeException("Failed parsing CSV field: " + field, e);
+    }
+  }
+
+  @SuppressWarnings("ConstantConditions")
+  private String[] parse() {
+    try(CSVReader reader = new CSVReader(new StringReader(text), separator, quote, CsvDatasource.DEL_CHAR)) {
+      String[] parsed = reader.readNext();
+      // an empty line has one empty field
+      return parsed == null ? new String[] { "" } : parsed;
+    } catch(IOException e) {
+      throw new MagmaRuntimeException("Failed parsing CSV record: " + text, e);
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+package org.obiba.magma.datasource.csv;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads the records of a csv file as raw text, without tokenising them (see {@link CsvRecord}). A record spans several
+ * lines when a quoted value contains new lines.
+ */
+class CsvRecordReader implements Closeable {
+
+  private final BufferedReader reader;
+
+  private final char separator;
+
+  private final char quote;
+
+  CsvRecordReader(Reader reader, char separator, char quote) {
+    this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    this.separator = separator;
+    this.quote = quote;
+  }
+
+  /**
+   * Skip raw lines, regardless of the records they belong to.
+   *
+   * @param lines
+   * @throws IOException
+   */
+  void skipLines(int lines) throws IOException {
+    for(int i = 0; i < lines; i++) {
+      if(reader.readLine() == null) return;
+    }
+  }
+
+  /**
+   * Read the next record.
+   *
+   * @return null if end of file was reached
+   * @throws IOException
+   */
+  @Nullable
+  CsvRecord readNext() throws IOException {
+    String line = reader.readLine();
+    if(line == null) return null;
+    if(!isInQuotes(line, false)) return new CsvRecord(line, separator, quote);
+
+    // quoted value with new lines: the record continues on next lines
+    StringBuilder text = new StringBuilder(line);
+    boolean inQuotes = true;
+    while(inQuotes && (line = reader.readLine()) != null) {
+      text.append('\n').append(line);
+      inQuotes = isInQuotes(line, true);
+    }
+    return new CsvRecord(text.toString(), separator, quote);
+  }
+
+  /**
+   * Check whether a quoted value is still open at the end of the line.
+   *
+   * @param line
+   * @param inQuotes whether a quoted value is open at the beginning of the line
+   * @return
+   */
+  private boolean isInQuotes(String line, boolean inQuotes) {
+    boolean open = inQuotes;
+    int length = line.length();
+    for(int i = 0; i < length; i++) {
+      char c = line.charAt(i);
+      if(c == quote) {
+        open = !open;
+      } else if(c == CsvDatasource.DEL_CHAR && i + 1 < length &&
+          (line.charAt(i + 1) == quote || line.charAt(i + 1) == CsvDatasource.DEL_CHAR)) {
+        // escaped character
+        i++;
+      }
+    }
+    return open;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+}
@@ -1,6 +1,7 @@
 package org.obiba.magma.datasource.csv;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Map;
 
 import javax.annotation.Nullable;
@@ -15,43 +16,79 @@ import org.obiba.magma.support.DatasourceParsingException;
 import org.obiba.magma.support.ValueSetBean;
 import org.obiba.magma.type.BinaryType;
 
+import com.google.common.base.Strings;
+
 public class CsvValueSet extends ValueSetBean {
 
 //  private static final Logger log = LoggerFactory.getLogger(CsvValueSet.class);
 
   private final Map<String, Integer> headerMap;
 
-  private final String[] line;
+  private final CsvRecord record;
+
+  /**
+   * Converted values, by field position.
+   */
+  private Value[] values;
 
   //
   public CsvValueSet(CsvValueTable table, VariableEntity entity, Map<String, Integer> headerMap, String[] line) {
+    this(table, entity, headerMap, CsvRecord.of(line));
+  }
+
+  CsvValueSet(CsvValueTable table, VariableEntity entity, Map<String, Integer> headerMap, CsvRecord record) {
     super(table, entity);
     this.headerMap = headerMap;
-    this.line = line;
+    this.record = record;
   }
 
+  /**
+   * Get the value of a variable: only the corresponding field of the record is decoded and converted, once.
+   *
+   * @param variable
+   * @return
+   */
   public Value getValue(Variable variable) {
-    Value value = variable.getValueType().nullValue();
-    if (line == null || line.length == 0) return value;
-
     Integer pos = headerMap.get(variable.getName());
+    if(pos == null) return variable.getValueType().nullValue();
+
+    Value value = getCachedValue(pos);
+    if(value == null) {
+      value = readValue(variable, pos);
+      cacheValue(pos, value);
+    }
+    return value;
+  }
 
-    if(pos != null && pos < line.length) {
-      String strValue = line[pos];
-      if(strValue.length() > 0) {
-        try {
-          value = getValue(variable, strValue);
-        } catch(MagmaRuntimeException e) {
-          throw new DatasourceParsingException(
-              "Unable to get value for entity " + getVariableEntity().getIdentifier() + " and variable " +
-                  variable.getName() + ": " + e.getMessage(), e, "CsvUnableToGetVariableValueForEntity",
-              getVariableEntity().getIdentifier(), variable.getName(), e.getMessage());
-        }
+  private Value readValue(Variable variable, int pos) {
+    Value value = variable.getValueType().nullValue();
+    String strValue = record.getField(pos);
+    if(!Strings.isNullOrEmpty(strValue)) {
+      try {
+        value = getValue(variable, strValue);
+      } catch(MagmaRuntimeException e) {
+        throw new DatasourceParsingException(
+            "Unable to get value for entity " + getVariableEntity().getIdentifier() + " and variable " +
+                variable.getName() + ": " + e.getMessage(), e, "CsvUnableToGetVariableValueForEntity",
+            getVariableEntity().getIdentifier(), variable.getName(), e.getMessage());
       }
     }
     return value;
   }
 
+  private synchronized Value getCachedValue(int pos) {
+    return values == null || pos >= values.length ? null : values[pos];
+  }
+
+  private synchronized void cacheValue(int pos, Value value) {
+    if(values == null) {
+      values = new Value[Math.max(pos, headerMap.size()) + 1];
+    } else if(pos >= values.length) {
+      values = Arrays.copyOf(values, pos + 1);
+    }
+    values[pos] = value;
+  }
+
   private Value getValue(Variable variable, String strValue) {
     return variable.getValueType().equals(BinaryType.get()) //
         ? getBinaryValue(variable, strValue) //
@@ -4,7 +4,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -35,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableSet;
 
 import au.com.bytecode.opencsv.CSVReader;
@@ -67,9 +71,26 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
 
   final Set<VariableEntity> entities = new LinkedHashSet<>();
 
-  private final Map<String, String[]> entityLinesBuffer = new LinkedHashMap<>();
+  private final Map<String, CsvRecord> entityLinesBuffer = new LinkedHashMap<>();
 
-  private CSVReader csvDataReader;
+  private CsvRecordReader csvDataReader;
+
+  /**
+   * Data file writer of the table writer being used, which lines are buffered until the data file is read.
+   */
+  @Nullable
+  private CSVWriter csvDataWriter;
+
+  /**
+   * Chunks of the data file, when it is parsed in parallel.
+   */
+  @Nullable
+  private CsvChunkReader chunkReader;
+
+  /**
+   * Index of the data file chunk in which each entity line is, when the data file is parsed in parallel.
+   */
+  private final Map<String, Integer> entityChunks = new HashMap<>();
 
   private boolean isVariablesFileEmpty;
 
@@ -120,14 +141,38 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
     }
     // check if line is in the buffer
     if(entityLinesBuffer.containsKey(entity.getIdentifier())) {
-      String[] line = entityLinesBuffer.get(entity.getIdentifier());
-      entityLinesBuffer.remove(entity.getIdentifier());
-      return new CsvValueSet(this, entity, dataHeaderMap, line);
+      CsvRecord record = entityLinesBuffer.remove(entity.getIdentifier());
+      return new CsvValueSet(this, entity, dataHeaderMap, record);
+    }
+    // read line from the data file chunk
+    Integer chunk = entityChunks.get(entity.getIdentifier());
+    if(chunkReader != null && chunk != null) {
+      return readValueSet(entity, chunk);
     }
     // read line from data file
     return readValueSet(entity);
   }
 
+  /**
+   * When the data file is parsed in parallel, value sets are read by chunks of the data file in the order of the file.
+   * Otherwise value sets are read one at a time.
+   *
+   * @return
+   */
+  @Override
+  public Iterable<ValueSet> getValueSets() {
+    final CsvChunkReader reader = chunkReader;
+    if(reader == null || !reader.isUpToDate()) {
+      return super.getValueSets();
+    }
+    return new Iterable<ValueSet>() {
+      @Override
+      public Iterator<ValueSet> iterator() {
+        return new ChunkedValueSetIterator(reader.readChunks(getCsvDatasource().getParsingPool()));
+      }
+    };
+  }
+
   @Override
   public void initialise() {
     try {
@@ -142,6 +187,8 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
   @Override
   public void dispose() {
     resetCsvDataReader();
+    chunkReader = null;
+    entityChunks.clear();
   }
 
   //
@@ -154,35 +201,65 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
    * @param entity
    * @return
    */
-  @SuppressWarnings({ "OverlyLongMethod", "PMD.NcssMethodCount" })
   private ValueSet readValueSet(VariableEntity entity) {
-    boolean found = false;
-    String[] line = null;
     try {
-      boolean firstRead = csvDataReader == null;
-      String[] current = getCsvDataReader().readNext();
-      // skip header
-      if(firstRead) current = getCsvDataReader().readNext();
-      while(current != null && !found) {
-        String id = current.length > 0 ? current[0] : "";
-        if(entity.getIdentifier().equals(id)) {
-          line = current;
-          found = true;
-        } else {
-          // put in the buffer
-          entityLinesBuffer.put(id, current);
-          current = getCsvDataReader().readNext();
-        }
-      }
-      if(!found) {
-        // re-read from the start
+      flushValueWriter();
+      boolean fromStart = csvDataReader == null;
+      CsvRecord line = readUntil(entity);
+      if(line == null && !fromStart) {
+        // the line may be before the current position: re-read once from the start
         resetCsvDataReader();
-        return getValueSet(entity);
+        line = readUntil(entity);
       }
+      if(line == null) throw new NoSuchValueSetException(this, entity);
+      return new CsvValueSet(this, entity, dataHeaderMap, line);
     } catch(IOException e) {
       throw new MagmaRuntimeException("Failed reading CSV data file", e);
     }
-    return new CsvValueSet(this, entity, dataHeaderMap, line);
+  }
+
+  /**
+   * Read the data CSV file until the line of the entity, buffering the lines of the other entities.
+   *
+   * @param entity
+   * @return null if the end of the file is reached
+   * @throws IOException
+   */
+  @Nullable
+  private CsvRecord readUntil(VariableEntity entity) throws IOException {
+    boolean firstRead = csvDataReader == null;
+    CsvRecord current = getCsvDataReader().readNext();
+    // skip header
+    if(firstRead) current = getCsvDataReader().readNext();
+    while(current != null) {
+      String id = getIdentifier(current);
+      if(entity.getIdentifier().equals(id)) return current;
+      // put in the buffer
+      entityLinesBuffer.put(id, current);
+      current = getCsvDataReader().readNext();
+    }
+    return null;
+  }
+
+  /**
+   * Read the value set from a chunk of the data CSV file and buffer the other entities of this chunk.
+   *
+   * @param entity
+   * @param chunk
+   * @return
+   */
+  @SuppressWarnings("ConstantConditions")
+  private ValueSet readValueSet(VariableEntity entity, int chunk) {
+    CsvRecord line = null;
+    for(CsvRecord current : chunkReader.readChunk(chunk)) {
+      String id = getIdentifier(current);
+      if(line == null && entity.getIdentifier().equals(id)) {
+        line = current;
+      } else if(!Strings.isNullOrEmpty(id)) {
+        entityLinesBuffer.put(id, current);
+      }
+    }
+    return line == null ? readValueSet(entity) : new CsvValueSet(this, entity, dataHeaderMap, line);
   }
 
   private void initialiseVariables() throws IOException {
@@ -201,9 +278,10 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
     if(dataFile == null) return;
 
     // Obtain the variable names from the first line of the data file. Header line is = entity_id + variable names
-    try(CSVReader dataHeaderReader = getCsvDataReader()) {
-      String[] line = dataHeaderReader.readNext();
-      if(line != null) {
+    try(CsvRecordReader dataHeaderReader = getCsvDataReader()) {
+      CsvRecord record = dataHeaderReader.readNext();
+      if(record != null) {
+        String[] line = record.getFields();
         // skip first header as it's the participant ID
         for(int i = 1; i < line.length; i++) {
           String variableName = line[i].trim();
@@ -286,7 +364,26 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
 
   @Nullable
   CSVWriter getValueWriter() {
-    return getCsvDatasource().getCsvWriter(dataFile);
+    csvDataWriter = getCsvDatasource().getCsvWriter(dataFile);
+    return csvDataWriter;
+  }
+
+  /**
+   * Forget the data file writer once it is closed.
+   *
+   * @param writer
+   */
+  void releaseValueWriter(CSVWriter writer) {
+    if(csvDataWriter == writer) csvDataWriter = null;
+  }
+
+  /**
+   * Write the buffered lines to the data file, so that they can be read back.
+   *
+   * @throws IOException
+   */
+  void flushValueWriter() throws IOException {
+    if(csvDataWriter != null) csvDataWriter.flush();
   }
 
   @Nullable
@@ -300,13 +397,16 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
    * @return
    */
   @SuppressWarnings("OverlyNestedMethod")
-  private CSVReader getCsvDataReader() {
+  private CsvRecordReader getCsvDataReader() {
     if(csvDataReader == null) {
-      csvDataReader = getCsvDatasource().getCsvReader(dataFile);
+      csvDataReader = getCsvDatasource().getCsvRecordReader(dataFile);
       try {
         // move to the first row
-        if(csvDataReader != null) for(int i = 1; i < getCsvDatasource().getFirstRow(); i++)
-          csvDataReader.readNext();
+        if(csvDataReader != null) {
+          csvDataReader.skipLines(getCsvDatasource().getFirstRow() - 1);
+          for(int i = 1; i < getCsvDatasource().getFirstRow(); i++)
+            csvDataReader.readNext();
+        }
       } catch(IOException e) {
         // ignore
       }
@@ -405,34 +505,73 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
       return;
     }
 
-    try(CSVReader dataHeaderReader = getCsvDataReader()) {
+    try(CsvRecordReader dataHeaderReader = getCsvDataReader()) {
       // skip first line (headers)
-      String[] line = dataHeaderReader.readNext();
+      CsvRecord line = dataHeaderReader.readNext();
       // first line(s) is headers = entity_id + variable names
-      isDataFileEmpty = line == null || line.length == 0;
-      buildEntitySet(dataHeaderReader);
+      isDataFileEmpty = line == null || line.getFields().length == 0;
+      if(getCsvDatasource().isParallelParsing()) {
+        buildEntitySetInParallel();
+      } else {
+        buildEntitySet(dataHeaderReader);
+      }
     } finally {
       resetCsvDataReader();
     }
   }
 
+  /**
+   * Get the entity identifier of a data record (first field).
+   *
+   * @param record
+   * @return empty string if the record has no fields
+   */
+  private static String getIdentifier(CsvRecord record) {
+    String identifier = record.getField(0);
+    return identifier == null ? "" : identifier;
+  }
+
   /**
    * Read the entity indetifiers from the non-empty CSV data lines (first field).
    *
    * @param dataHeaderReader
    * @throws IOException
    */
-  private void buildEntitySet(CSVReader dataHeaderReader) throws IOException {
-    String[] line;
+  private void buildEntitySet(CsvRecordReader dataHeaderReader) throws IOException {
+    CsvRecord line;
     while((line = dataHeaderReader.readNext()) != null) {
-      if(line.length == 0) continue;
-      String identifier = line[0];
+      String identifier = getIdentifier(line);
       if(Strings.isNullOrEmpty(identifier)) continue;
       isDataFileEmpty = false;
       entities.add(new VariableEntityBean(entityType, identifier));
     }
   }
 
+  /**
+   * Read the entity identifiers from the non-empty CSV data lines (first field), by parsing the chunks of the data file
+   * in parallel. The chunk of each entity is indexed for later value set reads.
+   *
+   * @throws IOException
+   */
+  @SuppressWarnings("ConstantConditions")
+  private void buildEntitySetInParallel() throws IOException {
+    chunkReader = CsvChunkReader.create(getCsvDatasource(), dataFile);
+    entityChunks.clear();
+    Iterator<List<CsvRecord>> chunks = chunkReader.readChunks(getCsvDatasource().getParsingPool());
+    for(int chunk = 0; chunks.hasNext(); chunk++) {
+      for(CsvRecord line : chunks.next()) {
+        String identifier = getIdentifier(line);
+        if(Strings.isNullOrEmpty(identifier)) continue;
+        isDataFileEmpty = false;
+        if(entities.add(new VariableEntityBean(entityType, identifier))) {
+          entityChunks.put(identifier, chunk);
+        }
+      }
+    }
+    log.debug("Table {}: {} entities read from {} chunks of data file {}", getName(), entities.size(),
+        chunkReader.getChunkCount(), dataFile.getName());
+  }
+
   /**
    * Returns missing {@link Variable}s. All variables will be of the default value "text". Missing variables are created
    * for variables names specified in a csv data file that are not provided with associated {@link Variable}s when the
@@ -479,4 +618,38 @@ public class CsvValueTable extends AbstractValueTable implements Initialisable,
     return missingVariables;
   }
 
+  /**
+   * Iterates over the value sets of the data file chunks, in the order of the file. Only the first line of an entity is
+   * considered.
+   */
+  private class ChunkedValueSetIterator extends AbstractIterator<ValueSet> {
+
+    private final Iterator<List<CsvRecord>> chunks;
+
+    private final Set<String> identifiers = new HashSet<>();
+
+    private Iterator<CsvRecord> lines = Collections.emptyIterator();
+
+    private ChunkedValueSetIterator(Iterator<List<CsvRecord>> chunks) {
+      this.chunks = chunks;
+    }
+
+    @Override
+    protected ValueSet computeNext() {
+      while(lines.hasNext() || chunks.hasNext()) {
+        if(!lines.hasNext()) {
+          lines = chunks.next().iterator();
+          continue;
+        }
+        CsvRecord line = lines.next();
+        String identifier = getIdentifier(line);
+        if(!Strings.isNullOrEmpty(identifier) && identifiers.add(identifier)) {
+          return new CsvValueSet(CsvValueTable.this, new VariableEntityBean(entityType, identifier), dataHeaderMap,
+              line);
+        }
+      }
+      return endOfData();
+    }
+  }
+
 }
@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.MagmaRuntimeException;
@@ -28,6 +29,14 @@ public class CsvValueTableWriter implements ValueTableWriter {
 
   private final CsvValueTable valueTable;
 
+  /**
+   * Data file writer, opened at first value set write and kept open (and buffered) until this writer is closed. The
+   * buffered lines are flushed when the table reads the data file, so that the value sets can be read back before this
+   * writer is closed.
+   */
+  @Nullable
+  private CSVWriter dataWriter;
+
   public CsvValueTableWriter(CsvValueTable valueTable) {
     this.valueTable = valueTable;
   }
@@ -45,10 +54,34 @@ public class CsvValueTableWriter implements ValueTableWriter {
 
   @Override
   public void close() {
+    if(dataWriter == null) return;
+    try {
+      dataWriter.close();
+    } catch(IOException e) {
+      throw new MagmaRuntimeException(e);
+    } finally {
+      valueTable.releaseValueWriter(dataWriter);
+      dataWriter = null;
+    }
+  }
+
+  private CSVWriter getDataWriter() {
+    if(dataWriter == null) {
+      dataWriter = valueTable.getValueWriter();
+      if(dataWriter == null) {
+        throw new DatasourceParsingException(
+            "Cannot create data writer. Table " + valueTable.getName() + " does not have data file.",
+            "CsvCannotCreateWriter", valueTable.getName());
+      }
+    }
+    return dataWriter;
   }
 
   private class CsvVariableWriter implements VariableWriter {
 
+    @Nullable
+    private CSVWriter variableWriter;
+
     @Override
     public void writeVariable(@NotNull Variable variable) {
       try {
@@ -73,19 +106,29 @@ public class CsvValueTableWriter implements ValueTableWriter {
     }
 
     private void writeVariableToCsv(String... strings) throws IOException {
-      try(CSVWriter writer = valueTable.getVariableWriter()) {
-        if(writer == null) {
+      if(variableWriter == null) {
+        variableWriter = valueTable.getVariableWriter();
+        if(variableWriter == null) {
           throw new DatasourceParsingException(
               "Cannot create variable writer. Table " + valueTable.getName() + " does not have variable file.",
               "CsvCannotCreateWriter", valueTable.getName());
         }
-        log.trace("write '{}'", Arrays.toString(strings));
-        writer.writeNext(strings);
       }
+      log.trace("write '{}'", Arrays.toString(strings));
+      variableWriter.writeNext(strings);
     }
 
     @Override
-    public void close() {}
+    public void close() {
+      if(variableWriter == null) return;
+      try {
+        variableWriter.close();
+      } catch(IOException e) {
+        throw new MagmaRuntimeException(e);
+      } finally {
+        variableWriter = null;
+      }
+    }
 
   }
 
@@ -104,7 +147,8 @@ public class CsvValueTableWriter implements ValueTableWriter {
       //noinspection ConstantConditions
       csvLine = new CsvLine(entity, valueTable.getParentFile());
 
-      // Populate with existing values, if available
+      // Populate with existing values, if available. New entities (i.e. when writing in an empty table) are not read
+      // back. Lines written so far are flushed by the table before it reads back an existing entity.
       if(valueTable.hasValueSet(entity)) {
         ValueSet valueSet = valueTable.getValueSet(entity);
         for(Variable variable : valueTable.getVariables()) {
@@ -180,16 +224,9 @@ public class CsvValueTableWriter implements ValueTableWriter {
       csvLine.setHeaderMap(getExistingHeaderMap());
     }
 
-    private void writeValueToCsv(String... strings) throws IOException {
-      try(CSVWriter writer = valueTable.getValueWriter()) {
-        if(writer == null) {
-          throw new DatasourceParsingException(
-              "Cannot create data writer. Table " + valueTable.getName() + " does not have data file.",
-              "CsvCannotCreateWriter", valueTable.getName());
-        }
-        log.trace("write '{}'", Arrays.toString(strings));
-        writer.writeNext(strings);
-      }
+    private void writeValueToCsv(String... strings) {
+      log.trace("write '{}'", Arrays.toString(strings));
+      getDataWriter().writeNext(strings);
     }
 
     private Map<String, Integer> getExistingHeaderMap() {
@@ -26,6 +26,10 @@ public class CsvDatasourceFactory extends AbstractDatasourceFactory {
 
   private int firstRow = 1;
 
+  private int parallelism = 1;
+
+  private long chunkSize = CsvDatasource.DEFAULT_CHUNK_SIZE;
+
   public void setBundle(File bundle) {
     this.bundle = bundle;
   }
@@ -50,6 +54,14 @@ public class CsvDatasourceFactory extends AbstractDatasourceFactory {
     this.firstRow = firstRow;
   }
 
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public void setChunkSize(long chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
   public CsvDatasourceFactory addTable(File tableDirectory) {
     if(tableDirectory != null && !hasTable(tableDirectory.getName())) {
       getTables().add(new TableBundle(tableDirectory));
@@ -107,6 +119,8 @@ public class CsvDatasourceFactory extends AbstractDatasourceFactory {
       datasource.setSeparator(Separator.fromString(separator));
     }
     datasource.setFirstRow(firstRow);
+    datasource.setParallelism(parallelism);
+    datasource.setChunkSize(chunkSize);
 
     for(TableBundle tableBundle : getTables()) {
       if(tableBundle.hasRefTable()) {
@@ -557,6 +557,43 @@ public class CsvDatasourceTest extends AbstractMagmaTest {
     assertEolValue(table, "5", "Nero", "NERO CLAVDIVS CAESAR AVGVSTVS GERMANICVS");
   }
 
+  @Test
+  public void test_parallel_data_read() throws IOException {
+    File dataFile = File.createTempFile("magma", "test-parallel");
+    dataFile.deleteOnExit();
+    FileUtils.writeStringToFile(dataFile, "entity_id,Name,\"Complete name\"\n" + //
+        "1,Augustus,\"GAIVS IVLIVS \nCAESAR OCTAVIANVS\"\n" + //
+        "2,Tiberius,\"TIBERIVS IVLIVS CAESAR AVGVSTVS\"\r" + //
+        "3,Caligula,\"GAIVS IVLIVS CAESAR AVGVSTVS GERMANICVS\"\r\n" + //
+        "4,Claudius,\"TIBERIVS CLAVDIVS CAESAR \"\"AVGVSTVS\"\"\n GERMANICVS\"\n\n" + //
+        "5,Nero,\"NERO CLAVDIVS CAESAR AVGVSTVS GERMANICVS\"", "utf-8");
+
+    CsvDatasource datasource = new CsvDatasource("csv-datasource")
+        .addValueTable("Table1", dataFile, DEFAULT_ENTITY_TYPE);
+    datasource.setParallelism(2);
+    // one chunk per record
+    datasource.setChunkSize(1);
+    datasource.initialise();
+
+    ValueTable table = datasource.getValueTable("Table1");
+    assertThat(table.getVariableEntities()).containsExactly(new VariableEntityBean(DEFAULT_ENTITY_TYPE, "1"),
+        new VariableEntityBean(DEFAULT_ENTITY_TYPE, "2"), new VariableEntityBean(DEFAULT_ENTITY_TYPE, "3"),
+        new VariableEntityBean(DEFAULT_ENTITY_TYPE, "4"), new VariableEntityBean(DEFAULT_ENTITY_TYPE, "5"));
+
+    int count = 0;
+    for(ValueSet valueSet : table.getValueSets()) {
+      assertThat(valueSet.getVariableEntity().getIdentifier()).isEqualTo(String.valueOf(++count));
+    }
+    assertThat(count).isEqualTo(5);
+
+    assertEolValue(table, "5", "Nero", "NERO CLAVDIVS CAESAR AVGVSTVS GERMANICVS");
+    assertEolValue(table, "1", "Augustus", "GAIVS IVLIVS \nCAESAR OCTAVIANVS");
+    assertEolValue(table, "3", "Caligula", "GAIVS IVLIVS CAESAR AVGVSTVS GERMANICVS");
+    assertEolValue(table, "2", "Tiberius", "TIBERIVS IVLIVS CAESAR AVGVSTVS");
+    assertEolValue(table, "4", "Claudius", "TIBERIVS CLAVDIVS CAESAR \"AVGVSTVS\"\n GERMANICVS");
+    datasource.dispose();
+  }
+
   private void assertEolVariable(ValueTable table, String name) {
     Variable variable = table.getVariable(name);
     assertThat(variable).isNotNull();
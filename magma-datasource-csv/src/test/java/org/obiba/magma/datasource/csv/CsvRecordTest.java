@@ -0,0 +1,106 @@
+package org.obiba.magma.datasource.csv;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class CsvRecordTest {
+
+  @Test
+  public void test_quoted_separators() throws IOException {
+    assertSameAsOpenCsv("a,\"b,c\",d");
+    assertSameAsOpenCsv("\"a,b\",\",\",\",,\"");
+    assertSameAsOpenCsv("a;\"b;c\";d", ';');
+    assertSameAsOpenCsv("a\t\"b\tc\"\td", '\t');
+  }
+
+  @Test
+  public void test_escaped_quotes() throws IOException {
+    assertSameAsOpenCsv("a,\"b \"\"quoted\"\" c\",d");
+    assertSameAsOpenCsv("\"\"\"\",x,\"\"\"\"\"\"");
+    assertSameAsOpenCsv("\"\"\"a,b\"\"\",c");
+    assertSameAsOpenCsv("a,\"b" + CsvDatasource.DEL_CHAR + "\"c\",d");
+    assertSameAsOpenCsv("a,b\"c\"d,e");
+    assertSameAsOpenCsv("ab\"c,d\"e,f");
+  }
+
+  @Test
+  public void test_embedded_new_lines() throws IOException {
+    assertSameAsOpenCsv("a,\"line1\nline2\",c\nnext,record,here");
+    assertSameAsOpenCsv("\"\n\",\"a\n\nb\n\"\n\"x\"\"\ny\",z");
+    assertSameAsOpenCsv("a,\"b\r\nc\",d\r\ne,f,g");
+  }
+
+  @Test
+  public void test_empty_trailing_fields() throws IOException {
+    assertSameAsOpenCsv("a,b,,\n,,\na,\n\"\"\na,\"\"\n\"\",");
+    assertSameAsOpenCsv("a\n\nb,\n");
+  }
+
+  @Test
+  public void test_byte_order_mark() throws IOException {
+    assertSameAsOpenCsv("\uFEFFid,name\n1,x");
+    assertSameAsOpenCsv("\uFEFF\"id\",\"name\"\n1,x");
+  }
+
+  @Test
+  public void test_skip_lines() throws IOException {
+    try(CsvRecordReader reader = new CsvRecordReader(new StringReader("header\n\"a\nb\"\nc,d"), ',', '"')) {
+      reader.skipLines(1);
+      assertThat(reader.readNext().getFields()).containsOnly("a\nb");
+      assertThat(reader.readNext().getFields()).containsOnly("c", "d");
+      assertThat(reader.readNext()).isNull();
+    }
+  }
+
+  @Test
+  public void test_parsed_record() {
+    assertThat(CsvRecord.of("a", "b").getField(1)).isEqualTo("b");
+    assertThat(CsvRecord.of("a", "b").getField(2)).isNull();
+    assertThat(CsvRecord.of((String[]) null).getFields()).isEmpty();
+  }
+
+  private void assertSameAsOpenCsv(String csv) throws IOException {
+    assertSameAsOpenCsv(csv, ',');
+  }
+
+  private void assertSameAsOpenCsv(String csv, char separator) throws IOException {
+    List<String[]> expected;
+    try(CSVReader reader = new CSVReader(new StringReader(csv), separator, '"', CsvDatasource.DEL_CHAR)) {
+      expected = reader.readAll();
+    }
+
+    List<String[]> records = Lists.newArrayList();
+    List<String[]> fields = Lists.newArrayList();
+    try(CsvRecordReader reader = new CsvRecordReader(new StringReader(csv), separator, '"');
+        CsvRecordReader fieldReader = new CsvRecordReader(new StringReader(csv), separator, '"')) {
+      CsvRecord record;
+      while((record = reader.readNext()) != null) {
+        records.add(record.getFields());
+        // fields decoded one at a time, without parsing the whole record
+        CsvRecord lazyRecord = fieldReader.readNext();
+        List<String> lazyFields = Lists.newArrayList();
+        String field;
+        while((field = lazyRecord.getField(lazyFields.size())) != null) {
+          lazyFields.add(field);
+        }
+        fields.add(lazyFields.toArray(new String[lazyFields.size()]));
+      }
+    }
+
+    assertThat(records).as(csv).hasSize(expected.size());
+    for(int i = 0; i < expected.size(); i++) {
+      assertThat(records.get(i)).as(csv + " record " + i).isEqualTo(expected.get(i));
+      assertThat(fields.get(i)).as(csv + " fields of record " + i).isEqualTo(expected.get(i));
+    }
+  }
+
+}
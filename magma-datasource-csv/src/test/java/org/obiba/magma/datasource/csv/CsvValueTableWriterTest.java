@@ -21,6 +21,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.obiba.magma.Datasource;
 import org.obiba.magma.MagmaRuntimeException;
+import org.obiba.magma.NoSuchValueSetException;
 import org.obiba.magma.Value;
 import org.obiba.magma.ValueSequence;
 import org.obiba.magma.ValueSet;
@@ -293,6 +294,120 @@ public class CsvValueTableWriterTest extends AbstractMagmaTest {
     datasource.dispose();
   }
 
+  @Test
+  public void test_writing_data_only_many_value_sets_with_one_writer() throws Exception {
+    File tempTestDirectory = new TempTableBuilder("TableDataOnly").addData().build();
+    File dataFile = new File(tempTestDirectory.getCanonicalFile() + "/TableDataOnly", "data.csv");
+
+    CsvDatasource datasource = new CsvDatasource("csv-datasource").addValueTable("TableDataOnly", null, dataFile);
+    datasource.initialise();
+
+    Variable cityVariable = Variable.Builder.newVariable("City", TextType.get(), "Participant").build();
+
+    Map<Variable, Value> values = Maps.newHashMap();
+    try(ValueTableWriter writer = datasource.createWriter("TableDataOnly", DEFAULT_ENTITY_TYPE)) {
+      for(int i = 1; i <= 1000; i++) {
+        values.put(cityVariable, TextType.get().valueOf("City " + i));
+        writeValueSet(new VariableEntityBean(DEFAULT_ENTITY_TYPE, String.valueOf(i)), writer, values);
+      }
+    }
+    datasource.dispose();
+
+    CsvDatasource readDatasource = new CsvDatasource("read-csv-datasource")
+        .addValueTable("TableDataOnly", null, dataFile);
+    readDatasource.initialise();
+
+    ValueTable table = readDatasource.getValueTable("TableDataOnly");
+    Variable variable = table.getVariable("City");
+    assertThat(table.getVariableEntities()).hasSize(1000);
+    assertThat(readValue(table, new VariableEntityBean(DEFAULT_ENTITY_TYPE, "1"), variable))
+        .isEqualTo(TextType.get().valueOf("City 1"));
+    assertThat(readValue(table, new VariableEntityBean(DEFAULT_ENTITY_TYPE, "1000"), variable))
+        .isEqualTo(TextType.get().valueOf("City 1000"));
+    readDatasource.dispose();
+  }
+
+  @Test
+  public void test_reading_value_sets_before_writer_is_closed() throws Exception {
+    File tempTestDirectory = new TempTableBuilder("TableDataOnly").addData().build();
+    File dataFile = new File(tempTestDirectory.getCanonicalFile() + "/TableDataOnly", "data.csv");
+    Variable cityVariable = Variable.Builder.newVariable("City", TextType.get(), "Participant").build();
+
+    // write the header and a first line
+    CsvDatasource setupDatasource = new CsvDatasource("setup-datasource").addValueTable("TableDataOnly", null, dataFile);
+    setupDatasource.initialise();
+    Map<Variable, Value> values = Maps.newHashMap();
+    values.put(cityVariable, TextType.get().valueOf("City 0"));
+    try(ValueTableWriter writer = setupDatasource.createWriter("TableDataOnly", DEFAULT_ENTITY_TYPE)) {
+      writeValueSet(new VariableEntityBean(DEFAULT_ENTITY_TYPE, "0"), writer, values);
+    }
+    setupDatasource.dispose();
+
+    CsvDatasource datasource = new CsvDatasource("csv-datasource").addValueTable("TableDataOnly", null, dataFile);
+    datasource.initialise();
+    ValueTable table = datasource.getValueTable("TableDataOnly");
+    Variable variable = table.getVariable("City");
+    try(ValueTableWriter writer = datasource.createWriter("TableDataOnly", DEFAULT_ENTITY_TYPE)) {
+      for(int i = 1; i <= 100; i++) {
+        values.put(cityVariable, TextType.get().valueOf("City " + i));
+        writeValueSet(new VariableEntityBean(DEFAULT_ENTITY_TYPE, String.valueOf(i)), writer, values);
+        // the line just written and a line written before are read back
+        for(int id : new int[] { i, i / 2 }) {
+          ValueSet valueSet = table.getValueSet(new VariableEntityBean(DEFAULT_ENTITY_TYPE, String.valueOf(id)));
+          assertThat(table.getValue(variable, valueSet)).isEqualTo(TextType.get().valueOf("City " + id));
+        }
+      }
+    }
+    datasource.dispose();
+  }
+
+  @Test
+  public void test_lines_are_buffered_until_writer_is_closed() throws Exception {
+    File tempTestDirectory = new TempTableBuilder("TableDataOnly").addData().build();
+    File dataFile = new File(tempTestDirectory.getCanonicalFile() + "/TableDataOnly", "data.csv");
+    Variable cityVariable = Variable.Builder.newVariable("City", TextType.get(), "Participant").build();
+    Map<Variable, Value> values = Maps.newHashMap();
+
+    CsvDatasource datasource = new CsvDatasource("csv-datasource").addValueTable("TableDataOnly", null, dataFile);
+    datasource.initialise();
+    long length = dataFile.length();
+    try(ValueTableWriter writer = datasource.createWriter("TableDataOnly", DEFAULT_ENTITY_TYPE)) {
+      for(int i = 1; i <= 1000; i++) {
+        values.put(cityVariable, TextType.get().valueOf("City " + i));
+        writeValueSet(new VariableEntityBean(DEFAULT_ENTITY_TYPE, String.valueOf(i)), writer, values);
+      }
+      // the lines are not flushed one by one
+      assertThat(dataFile.length()).isEqualTo(length);
+    }
+    assertThat(dataFile.length()).isGreaterThan(length + 1000 * "City 1".length());
+    datasource.dispose();
+
+    CsvDatasource readDatasource = new CsvDatasource("read-datasource").addValueTable("TableDataOnly", null, dataFile);
+    readDatasource.initialise();
+    ValueTable table = readDatasource.getValueTable("TableDataOnly");
+    assertThat(table.getVariableEntities()).hasSize(1000);
+    ValueSet valueSet = table.getValueSet(new VariableEntityBean(DEFAULT_ENTITY_TYPE, "1000"));
+    assertThat(table.getValue(table.getVariable("City"), valueSet)).isEqualTo(TextType.get().valueOf("City 1000"));
+    readDatasource.dispose();
+  }
+
+  @Test(expected = NoSuchValueSetException.class)
+  public void test_reading_value_set_without_line_fails() throws Exception {
+    File tempTestDirectory = new TempTableBuilder("TableDataOnly").addData().build();
+    File dataFile = new File(tempTestDirectory.getCanonicalFile() + "/TableDataOnly", "data.csv");
+
+    CsvDatasource datasource = new CsvDatasource("csv-datasource").addValueTable("TableDataOnly", null, dataFile);
+    datasource.initialise();
+    try {
+      CsvValueTable table = (CsvValueTable) datasource.getValueTable("TableDataOnly");
+      VariableEntity entity = new VariableEntityBean(DEFAULT_ENTITY_TYPE, "no-line");
+      ((CsvVariableEntityProvider) table.getVariableEntityProvider()).add(entity);
+      table.getValueSet(entity);
+    } finally {
+      datasource.dispose();
+    }
+  }
+
   @Test(expected = MagmaRuntimeException.class)
   public void test_writing_variables_header_in_file_without_required_name_causes_error() throws Exception {
     String tableName = "TableVariablesOnly";
@@ -18,6 +18,7 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.apache.poi.POIXMLDocument;
@@ -35,6 +36,7 @@ import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.BuiltinFormats;
 import org.apache.poi.ss.usermodel.Cell;
@@ -48,6 +50,7 @@ import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -94,6 +97,11 @@ public class ExcelDatasource extends AbstractDatasource {
 
   private static final int BOLD_WEIGHT = 700;
 
+  /**
+   * Number of rows of a value sheet kept in memory when streaming a new workbook.
+   */
+  private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
   private Workbook excelWorkbook;
 
   private Sheet variablesSheet;
@@ -108,8 +116,34 @@ public class ExcelDatasource extends AbstractDatasource {
 
   private Map<String, CellStyle> excelStyles;
 
+  private ExcelDictionaryIndex dictionaryIndex;
+
+  /**
+   * Number of variables written to the dictionary sheets, used to detect the changes made in place.
+   */
+  private int dictionaryModCount;
+
   private final Map<String, ExcelValueTable> valueTablesMapOnInit = new LinkedHashMap<>(100);
 
+  private boolean streaming = false;
+
+  /**
+   * Package of the Excel 2007 workbook which table sheets are streamed.
+   */
+  @Nullable
+  private OPCPackage streamingContainer;
+
+  /**
+   * Workbook in which the value sheets of a new Excel 2007 workbook are streamed, wrapping {@link #excelWorkbook}.
+   */
+  @Nullable
+  private SXSSFWorkbook streamingWorkbook;
+
+  /**
+   * Readers of the table sheets, by sheet name.
+   */
+  private final Map<String, ExcelSheetReader> sheetReaders = new LinkedHashMap<>();
+
   /**
    * Excel workbook will be read from the provided file if it exists, and will be written in the file at datasource
    * disposal.
@@ -144,6 +178,22 @@ public class ExcelDatasource extends AbstractDatasource {
     excelInput = input;
   }
 
+  /**
+   * Stream the table sheets of an Excel 2007 workbook instead of holding them in memory. When the workbook exists, the
+   * values of the table sheets are read on demand, only the Variables and Categories sheets are loaded and the
+   * datasource is read-only. When the workbook is created, the rows of the table sheets are flushed to temporary files
+   * as they are written, only the Variables and Categories sheets are kept in memory.
+   *
+   * @param streaming
+   */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  public boolean isStreaming() {
+    return streaming;
+  }
+
   @Override
   protected void onInitialise() {
     if(excelFile != null) {
@@ -152,14 +202,23 @@ public class ExcelDatasource extends AbstractDatasource {
       createWorkbookFromInputStream();
     } else {
       // Create a XSSFWorkbook that will be written in output stream
-      excelWorkbook = new XSSFWorkbook();
+      excelWorkbook = createXSSFWorkbook();
     }
 
     createExcelStyles();
   }
 
   private void createWorbookFromFile(){
-    if(excelFile.exists()) {
+    if(excelFile.exists() && streaming && !excelFile.getName().endsWith("xls")) {
+      try {
+        // read the package from the file, not from memory
+        createXSSFWorkbook(OPCPackage.open(excelFile.getPath(), PackageAccess.READ));
+      } catch(IOException e) {
+        throw new MagmaRuntimeException("Exception reading excel spreadsheet " + excelFile.getName(), e);
+      } catch(OpenXML4JException | SAXException e) {
+        throw new MagmaRuntimeException("Invalid excel spreadsheet format " + excelFile.getName(), e);
+      }
+    } else if(excelFile.exists()) {
       try (InputStream input = new FileInputStream(excelFile)) {
         createWorkbookFromInputStream(input);
       } catch(IOException e) {
@@ -170,8 +229,18 @@ public class ExcelDatasource extends AbstractDatasource {
         log.warn(
             "Creating an ExcelDatasource using Excel 97 format which only supports 256 columns. This may not be sufficient for large amounts of variables. Specify a filename with an extension other than 'xls' to use Excel 2007 format.");
 
-      excelWorkbook = excelFile.getName().endsWith("xls") ? new HSSFWorkbook() : new XSSFWorkbook();
+      excelWorkbook = excelFile.getName().endsWith("xls") ? new HSSFWorkbook() : createXSSFWorkbook();
+    }
+  }
+
+  private XSSFWorkbook createXSSFWorkbook() {
+    XSSFWorkbook workbook = new XSSFWorkbook();
+    if(streaming) {
+      // only the sheets created through the streaming workbook are streamed
+      streamingWorkbook = new SXSSFWorkbook(workbook, ROW_ACCESS_WINDOW_SIZE);
+      streamingWorkbook.setCompressTempFiles(true);
     }
+    return workbook;
   }
 
   private void createWorkbookFromInputStream() {
@@ -210,11 +279,17 @@ public class ExcelDatasource extends AbstractDatasource {
   }
 
   private void createXSSFWorkbook(InputStream inp) throws IOException, SAXException, OpenXML4JException {
+    createXSSFWorkbook(OPCPackage.open(inp));
+  }
+
+  private void createXSSFWorkbook(OPCPackage container) throws IOException, SAXException, OpenXML4JException {
     excelWorkbook = new XSSFWorkbook();
-    OPCPackage container = OPCPackage.open(inp);
     ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(container);
     XSSFReader reader = new XSSFReader(container);
     parseSheets(reader, strings, excelWorkbook, VARIABLES_SHEET, CATEGORIES_SHEET);
+    if(streaming) {
+      streamingContainer = container;
+    }
   }
 
   private void parseSheets(XSSFReader reader, ReadOnlySharedStringsTable strings, Workbook excelWorkbook, String... sheetNames) throws SAXException, IOException,
@@ -228,6 +303,8 @@ public class ExcelDatasource extends AbstractDatasource {
         if(Arrays.asList(sheetNames).contains(sName)) {
           XMLReader parser = buildSheetParser(strings, reader.getStylesTable(), excelWorkbook, sName);
           parser.parse(new InputSource(sheet));
+        } else if(streaming) {
+          sheetReaders.put(sName, new ExcelSheetReader(sName, iter.getSheetPart(), strings, reader.getStylesTable()));
         }
       }
     }
@@ -245,6 +322,9 @@ public class ExcelDatasource extends AbstractDatasource {
   @Override
   @NotNull
   public ValueTableWriter createWriter(@NotNull String name, @NotNull String entityType) {
+    if(streamingContainer != null) {
+      throw new UnsupportedOperationException("Excel datasource is read-only when streaming: " + getName());
+    }
     ExcelValueTable valueTable = null;
 
     if(hasValueTable(name)) {
@@ -263,11 +343,23 @@ public class ExcelDatasource extends AbstractDatasource {
    * @throws IOException
    */
   private void writeWorkbook(OutputStream excelOutputStream) throws IOException {
-    excelWorkbook.write(excelOutputStream);
+    if(streamingWorkbook == null) {
+      excelWorkbook.write(excelOutputStream);
+    } else {
+      streamingWorkbook.write(excelOutputStream);
+    }
   }
 
   @Override
   protected void onDispose() {
+    if(streamingContainer != null) {
+      for(ExcelSheetReader sheetReader : sheetReaders.values()) {
+        sheetReader.close();
+      }
+      // read-only, nothing to save
+      streamingContainer.revert();
+      return;
+    }
     // Write the workbook (datasource) to file/OutputStream if any of them is defined
     try(OutputStream out = excelFile == null ? excelOutput : new FileOutputStream(excelFile)) {
       if(out != null) {
@@ -275,6 +367,11 @@ public class ExcelDatasource extends AbstractDatasource {
       }
     } catch(Exception e) {
       throw new MagmaRuntimeException("Could not write to excel output stream", e);
+    } finally {
+      if(streamingWorkbook != null) {
+        // delete the temporary files of the streamed sheets
+        streamingWorkbook.dispose();
+      }
     }
   }
 
@@ -302,9 +399,12 @@ public class ExcelDatasource extends AbstractDatasource {
     }
 
     // find other tables from their sheet name
+    Collection<String> workbookSheetNames = new LinkedHashSet<>(sheetReaders.keySet());
     int sheetCount = excelWorkbook.getNumberOfSheets();
     for(int i = 0; i < sheetCount; i++) {
-      String sheetName = excelWorkbook.getSheetAt(i).getSheetName();
+      workbookSheetNames.add(excelWorkbook.getSheetAt(i).getSheetName());
+    }
+    for(String sheetName : workbookSheetNames) {
       if(!sheetNames.contains(sheetName) && !SHEET_RESERVED_NAMES.contains(sheetName)) {
         valueTablesMapOnInit.put(sheetName, new ExcelValueTable(this, sheetName, "Participant"));
       }
@@ -367,6 +467,30 @@ public class ExcelDatasource extends AbstractDatasource {
     return categoriesSheet;
   }
 
+  /**
+   * Get the index of the Variables and Categories sheets rows, (re)built if rows were added since last call.
+   *
+   * @param converter
+   * @return
+   */
+  synchronized ExcelDictionaryIndex getDictionaryIndex(VariableConverter converter) {
+    if(dictionaryIndex == null || !dictionaryIndex.isUpToDate(this)) {
+      dictionaryIndex = new ExcelDictionaryIndex(this, converter);
+    }
+    return dictionaryIndex;
+  }
+
+  synchronized int getDictionaryModCount() {
+    return dictionaryModCount;
+  }
+
+  /**
+   * Invalidate the index of the Variables and Categories sheets rows after the dictionary was written.
+   */
+  synchronized void dictionaryModified() {
+    dictionaryModCount++;
+  }
+
   public Set<String> getVariablesCustomAttributeNames() {
     return getCustomAttributeNames(getVariablesSheet(), VariableConverter.reservedVariableHeaders);
   }
@@ -440,6 +564,30 @@ public class ExcelDatasource extends AbstractDatasource {
     return sheet;
   }
 
+  /**
+   * Get the sheet of the values of a table, create it if necessary. The sheet is streamed if the workbook is.
+   *
+   * @param tableName
+   * @return
+   */
+  Sheet createValueSheetIfNotExist(String tableName) {
+    if(streamingWorkbook == null) {
+      return createSheetIfNotExist(tableName);
+    }
+    String sheetName = getSheetName(tableName);
+    Sheet sheet = streamingWorkbook.getSheet(sheetName);
+    return sheet == null ? streamingWorkbook.createSheet(sheetName) : sheet;
+  }
+
+  /**
+   * Whether the value sheets are created in the streaming workbook.
+   *
+   * @return
+   */
+  boolean isWritingStreamedSheets() {
+    return streamingWorkbook != null;
+  }
+
   /**
    * Get converted sheet name from table name.
    *
@@ -466,6 +614,17 @@ public class ExcelDatasource extends AbstractDatasource {
     return excelWorkbook.getSheet(getSheetName(tableName));
   }
 
+  /**
+   * Get the reader of the streamed sheet from table name.
+   *
+   * @param tableName
+   * @return null if the datasource is not streaming or if the sheet does not exist
+   */
+  @Nullable
+  ExcelSheetReader getSheetReader(String tableName) {
+    return sheetReaders.get(getSheetName(tableName));
+  }
+
   private void createExcelStyles() {
     excelStyles = new HashMap<>();
 
@@ -0,0 +1,118 @@
+package org.obiba.magma.datasource.excel;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.obiba.magma.datasource.excel.support.VariableConverter;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * Rows of the Variables and Categories sheets by table and by variable, built in a single pass over each sheet so that
+ * loading the dictionaries of all the tables is linear in the number of rows. The custom attribute names, read from the
+ * header row of each sheet, are shared by all the tables as well.
+ */
+class ExcelDictionaryIndex {
+
+  /**
+   * Rows of the Variables sheet by table name.
+   */
+  private final ListMultimap<String, Integer> variableRows = ArrayListMultimap.create();
+
+  /**
+   * Rows of the Categories sheet by table name and variable name.
+   */
+  private final ListMultimap<String, Integer> categoryRows = ArrayListMultimap.create();
+
+  /**
+   * Rows of the Categories sheet without variable name, by table name.
+   */
+  private final ListMultimap<String, Integer> unidentifiedCategoryRows = ArrayListMultimap.create();
+
+  private final Set<String> variableAttributeNames;
+
+  private final Set<String> categoryAttributeNames;
+
+  private final int variableRowCount;
+
+  private final int categoryRowCount;
+
+  private final int dictionaryModCount;
+
+  ExcelDictionaryIndex(ExcelDatasource datasource, VariableConverter converter) {
+    dictionaryModCount = datasource.getDictionaryModCount();
+    variableRowCount = getVariableRowCount(datasource);
+    variableAttributeNames = variableRowCount > 0
+        ? ImmutableSet.copyOf(datasource.getVariablesCustomAttributeNames())
+        : ImmutableSet.<String>of();
+    for(int rowIndex = 1; rowIndex < variableRowCount; rowIndex++) {
+      Row variableRow = datasource.getVariablesSheet().getRow(rowIndex);
+      variableRows.put(converter.getVariableTableName(variableRow), rowIndex);
+    }
+
+    Sheet categoriesSheet = datasource.getCategoriesSheet();
+    categoryRowCount = categoriesSheet.getPhysicalNumberOfRows();
+    categoryAttributeNames = categoryRowCount > 0
+        ? ImmutableSet.copyOf(datasource.getCategoriesCustomAttributeNames())
+        : ImmutableSet.<String>of();
+    for(int rowIndex = 1; rowIndex < categoryRowCount; rowIndex++) {
+      Row categoryRow = categoriesSheet.getRow(rowIndex);
+      if(categoryRow == null) continue;
+      String tableName = converter.getCategoryTableName(categoryRow);
+      String variableName = converter.getCategoryVariableName(categoryRow);
+      if(variableName.isEmpty()) {
+        unidentifiedCategoryRows.put(tableName, rowIndex);
+      } else {
+        categoryRows.put(key(tableName, variableName), rowIndex);
+      }
+    }
+  }
+
+  /**
+   * Whether the dictionary was not written and no rows were added to the sheets since the index was built. Variables
+   * written in place (same rows) are detected by the modification count of the datasource.
+   *
+   * @param datasource
+   * @return
+   */
+  boolean isUpToDate(ExcelDatasource datasource) {
+    return dictionaryModCount == datasource.getDictionaryModCount() &&
+        variableRowCount == getVariableRowCount(datasource) &&
+        categoryRowCount == datasource.getCategoriesSheet().getPhysicalNumberOfRows();
+  }
+
+  List<Integer> getVariableRows(String tableName) {
+    return ImmutableList.copyOf(variableRows.get(tableName));
+  }
+
+  List<Integer> getCategoryRows(String tableName, String variableName) {
+    return ImmutableList.copyOf(categoryRows.get(key(tableName, variableName)));
+  }
+
+  List<Integer> getUnidentifiedCategoryRows(String tableName) {
+    return ImmutableList.copyOf(unidentifiedCategoryRows.get(tableName));
+  }
+
+  Set<String> getVariableAttributeNames() {
+    return variableAttributeNames;
+  }
+
+  Set<String> getCategoryAttributeNames() {
+    return categoryAttributeNames;
+  }
+
+  private static int getVariableRowCount(ExcelDatasource datasource) {
+    // do not create the Variables sheet if there is none
+    return datasource.hasVariablesSheet() ? datasource.getVariablesSheet().getPhysicalNumberOfRows() : 0;
+  }
+
+  private static String key(String tableName, String variableName) {
+    return tableName + "." + variableName;
+  }
+
+}
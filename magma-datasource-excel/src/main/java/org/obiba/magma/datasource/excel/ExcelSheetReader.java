@@ -0,0 +1,286 @@
+package org.obiba.magma.datasource.excel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.obiba.magma.MagmaRuntimeException;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Reads the rows of a sheet of an Excel 2007 workbook on demand, by streaming the sheet XML part instead of loading it
+ * in a user model {@link org.apache.poi.ss.usermodel.Sheet}.
+ * <p>
+ * Rows are identified by their position in the sheet, the header row being at position 0. A cursor stays open on the
+ * sheet so that reading rows in increasing positions is done in a single pass; reading a row before the cursor
+ * restarts from the beginning of the sheet. Cells of the rows that are skipped are not decoded.
+ */
+class ExcelSheetReader {
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+  private final String sheetName;
+
+  private final PackagePart sheetPart;
+
+  private final ReadOnlySharedStringsTable strings;
+
+  private final StylesTable styles;
+
+  /**
+   * Whether the numbers formatted with a cell style are dates.
+   */
+  private final Map<Integer, Boolean> dateStyles = Maps.newHashMap();
+
+  @Nullable
+  private InputStream cursorInput;
+
+  @Nullable
+  private XMLStreamReader cursor;
+
+  /**
+   * Position of the last row read by the cursor.
+   */
+  private int cursorPosition = -1;
+
+  private int lastRowPosition = -1;
+
+  @Nullable
+  private List<String> lastRow;
+
+  ExcelSheetReader(String sheetName, PackagePart sheetPart, ReadOnlySharedStringsTable strings, StylesTable styles) {
+    this.sheetName = sheetName;
+    this.sheetPart = sheetPart;
+    this.strings = strings;
+    this.styles = styles;
+  }
+
+  String getSheetName() {
+    return sheetName;
+  }
+
+  /**
+   * Get the cells of a row.
+   *
+   * @param position position of the row in the sheet, 0 being the header row
+   * @return the cell values by column index, empty strings for blank cells, null if there is no such row
+   */
+  @Nullable
+  synchronized List<String> getRow(int position) {
+    if(position == lastRowPosition) return lastRow;
+    try {
+      if(cursor == null || position <= cursorPosition) {
+        openCursor();
+      }
+      while(cursorPosition < position - 1) {
+        if(!nextRow(-1, null)) return null;
+      }
+      List<String> row = new ArrayList<>();
+      if(!nextRow(-1, row)) return null;
+      lastRowPosition = position;
+      lastRow = row;
+      return row;
+    } catch(XMLStreamException | IOException e) {
+      throw new MagmaRuntimeException("Failed reading sheet " + sheetName, e);
+    }
+  }
+
+  /**
+   * Read the cells of a column in a single pass over the sheet.
+   *
+   * @param column column index
+   * @return the cell values by row position, null when the row has no such cell
+   */
+  List<String> getColumn(int column) {
+    List<String> values = new ArrayList<>();
+    try(InputStream input = sheetPart.getInputStream()) {
+      XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+      try {
+        List<String> row = new ArrayList<>();
+        while(nextRow(reader, column, row)) {
+          values.add(row.size() > column ? row.get(column) : null);
+          row.clear();
+        }
+      } finally {
+        reader.close();
+      }
+    } catch(XMLStreamException | IOException e) {
+      throw new MagmaRuntimeException("Failed reading sheet " + sheetName, e);
+    }
+    return values;
+  }
+
+  synchronized void close() {
+    closeCursor();
+    lastRow = null;
+    lastRowPosition = -1;
+  }
+
+  private void openCursor() throws IOException, XMLStreamException {
+    closeCursor();
+    cursorInput = sheetPart.getInputStream();
+    cursor = XML_INPUT_FACTORY.createXMLStreamReader(cursorInput);
+    cursorPosition = -1;
+  }
+
+  private void closeCursor() {
+    try {
+      if(cursor != null) cursor.close();
+      if(cursorInput != null) cursorInput.close();
+    } catch(XMLStreamException | IOException e) {
+      // ignore
+    }
+    cursor = null;
+    cursorInput = null;
+  }
+
+  private boolean nextRow(int column, @Nullable List<String> row) throws XMLStreamException {
+    //noinspection ConstantConditions
+    boolean found = nextRow(cursor, column, row);
+    if(found) cursorPosition++;
+    return found;
+  }
+
+  /**
+   * Move the reader to the end of the next row.
+   *
+   * @param reader
+   * @param column index of the only cell to decode, -1 for all of them
+   * @param row receives the decoded cells if not null
+   * @return false if there are no more rows
+   * @throws XMLStreamException
+   */
+  @SuppressWarnings({ "OverlyComplexMethod", "OverlyLongMethod" })
+  private boolean nextRow(XMLStreamReader reader, int column, @Nullable List<String> row) throws XMLStreamException {
+    boolean inRow = false;
+    int cellColumn = -1;
+    String cellType = null;
+    String cellStyle = null;
+    StringBuilder text = null;
+    boolean inText = false;
+    while(reader.hasNext()) {
+      int event = reader.next();
+      if(event == XMLStreamConstants.START_ELEMENT) {
+        String name = reader.getLocalName();
+        if("row".equals(name)) {
+          if(row == null) {
+            skipElement(reader);
+            return true;
+          }
+          inRow = true;
+          cellColumn = -1;
+        } else if(inRow && "c".equals(name)) {
+          String ref = reader.getAttributeValue(null, "r");
+          cellColumn = ref == null ? cellColumn + 1 : columnIndex(ref);
+          if(column >= 0 && cellColumn != column) {
+            skipElement(reader);
+            continue;
+          }
+          cellType = reader.getAttributeValue(null, "t");
+          cellStyle = reader.getAttributeValue(null, "s");
+          text = new StringBuilder();
+        } else if(text != null && ("v".equals(name) || "t".equals(name))) {
+          inText = true;
+        }
+      } else if(event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+        if(inText) text.append(reader.getText());
+      } else if(event == XMLStreamConstants.END_ELEMENT) {
+        String name = reader.getLocalName();
+        if("v".equals(name) || "t".equals(name)) {
+          inText = false;
+        } else if("c".equals(name) && text != null) {
+          //noinspection ConstantConditions
+          while(row.size() < cellColumn) {
+            row.add("");
+          }
+          row.add(decodeCell(cellType, cellStyle, text.toString()));
+          text = null;
+        } else if("row".equals(name)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while(depth > 0) {
+      int event = reader.next();
+      if(event == XMLStreamConstants.START_ELEMENT) depth++;
+      else if(event == XMLStreamConstants.END_ELEMENT) depth--;
+    }
+  }
+
+  private String decodeCell(@Nullable String type, @Nullable String style, String text) {
+    if(text.isEmpty()) return text;
+    if("s".equals(type)) {
+      return strings.getEntryAt(Integer.parseInt(text));
+    }
+    if("b".equals(type)) {
+      return String.valueOf("1".equals(text));
+    }
+    if(type == null || "n".equals(type)) {
+      if(style != null && isDateStyle(Integer.parseInt(style))) {
+        return formatDate(DateUtil.getJavaDate(Double.parseDouble(text)));
+      }
+      return text.endsWith(".0") ? text.substring(0, text.length() - 2) : text;
+    }
+    // inline strings, formula results and errors
+    return text;
+  }
+
+  private boolean isDateStyle(int styleIndex) {
+    Boolean date = dateStyles.get(styleIndex);
+    if(date == null) {
+      XSSFCellStyle cellStyle = styles.getStyleAt(styleIndex);
+      short formatIndex = cellStyle.getDataFormat();
+      String formatString = cellStyle.getDataFormatString();
+      if(formatString == null) formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+      date = DateUtil.isADateFormat(formatIndex, formatString);
+      dateStyles.put(styleIndex, date);
+    }
+    return date;
+  }
+
+  private String formatDate(Date date) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(date);
+    boolean midnight = calendar.get(Calendar.HOUR_OF_DAY) == 0 && calendar.get(Calendar.MINUTE) == 0 &&
+        calendar.get(Calendar.SECOND) == 0;
+    return new SimpleDateFormat(midnight ? "yyyy-MM-dd" : "yyyy-MM-dd HH:mm:ss").format(date);
+  }
+
+  /**
+   * Get the column index from a cell reference such as "AB12".
+   *
+   * @param ref
+   * @return
+   */
+  private static int columnIndex(String ref) {
+    int column = -1;
+    for(int i = 0; i < ref.length() && Character.isLetter(ref.charAt(i)); i++) {
+      column = (column + 1) * 26 + ref.charAt(i) - 'A';
+    }
+    return column;
+  }
+
+}
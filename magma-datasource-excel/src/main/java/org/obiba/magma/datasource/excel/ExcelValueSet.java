@@ -0,0 +1,32 @@
+package org.obiba.magma.datasource.excel;
+
+import javax.validation.constraints.NotNull;
+
+import org.obiba.magma.Value;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.support.ValueSetBean;
+
+/**
+ * Value set of an entity which values are read on demand from the row of the streamed value sheet.
+ */
+class ExcelValueSet extends ValueSetBean {
+
+  private final int row;
+
+  ExcelValueSet(ExcelValueTable table, VariableEntity entity, int row) {
+    super(table, entity);
+    this.row = row;
+  }
+
+  @NotNull
+  @Override
+  public ExcelValueTable getValueTable() {
+    return (ExcelValueTable) super.getValueTable();
+  }
+
+  Value getValue(Variable variable) {
+    return getValueTable().getValue(variable, row);
+  }
+
+}
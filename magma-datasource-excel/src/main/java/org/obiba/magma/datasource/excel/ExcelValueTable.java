@@ -14,11 +14,13 @@ import javax.validation.constraints.NotNull;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.obiba.magma.Datasource;
 import org.obiba.magma.Initialisable;
 import org.obiba.magma.MagmaRuntimeException;
 import org.obiba.magma.NoSuchValueSetException;
 import org.obiba.magma.Timestamps;
+import org.obiba.magma.Value;
 import org.obiba.magma.ValueSet;
 import org.obiba.magma.Variable;
 import org.obiba.magma.VariableEntity;
@@ -32,8 +34,8 @@ import org.obiba.magma.support.VariableEntityProvider;
 import org.obiba.magma.type.TextType;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @SuppressWarnings("OverlyCoupledClass")
 public class ExcelValueTable extends AbstractValueTable implements Initialisable {
@@ -46,12 +48,28 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
   private final Map<String, Integer> variableColumns = Maps.newHashMap();
 
   /**
-   * Maps a variable's name to its list of categories (row indices)
+   * Rows of the Variables and Categories sheets by table and variable
    */
-  private final Map<String, List<Integer>> variableCategoryRows = Maps.newHashMap();
+  private ExcelDictionaryIndex dictionaryIndex;
 
   private final VariableConverter converter;
 
+  /**
+   * Reader of the value sheet when the datasource is streaming, null otherwise.
+   */
+  @Nullable
+  private ExcelSheetReader sheetReader;
+
+  /**
+   * Maps an entity identifier to the position of its row in the streamed value sheet.
+   */
+  private final Map<String, Integer> entityRows = Maps.newLinkedHashMap();
+
+  /**
+   * Identifiers of the entities written in the value sheet when it is streamed, as its rows are flushed.
+   */
+  private final Set<String> writtenEntities = Sets.newLinkedHashSet();
+
   public ExcelValueTable(Datasource excelDatasource, String name, String entityType) {
     super(excelDatasource, name);
     setVariableEntityProvider(new ExcelVariableEntityProvider(entityType));
@@ -62,6 +80,7 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
   public void initialise() {
     super.initialise();
     try {
+      initSheetReader();
       initVariableCategoryRows();
       readVariables();
     } catch(RuntimeException e) {
@@ -79,12 +98,64 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
 
   @Override
   public ValueSet getValueSet(VariableEntity entity) throws NoSuchValueSetException {
-    throw new UnsupportedOperationException("getValueSet not supported");
+    if(sheetReader == null) {
+      throw new UnsupportedOperationException("getValueSet not supported");
+    }
+    Integer row = entityRows.get(entity.getIdentifier());
+    if(row == null) {
+      throw new NoSuchValueSetException(this, entity);
+    }
+    return new ExcelValueSet(this, entity, row);
   }
 
   @Override
   public Timestamps getValueSetTimestamps(VariableEntity entity) throws NoSuchValueSetException {
-    throw new UnsupportedOperationException("getValueSetTimestamps not supported");
+    if(sheetReader == null) {
+      throw new UnsupportedOperationException("getValueSetTimestamps not supported");
+    }
+    return getTimestamps();
+  }
+
+  /**
+   * Whether the values are read from the streamed value sheet.
+   *
+   * @return
+   */
+  boolean isStreaming() {
+    return sheetReader != null;
+  }
+
+  /**
+   * Get the value of a variable for the entity which row is at the given position in the streamed value sheet.
+   *
+   * @param variable
+   * @param row
+   * @return
+   */
+  Value getValue(Variable variable, int row) {
+    Integer column = variableColumns.get(variable.getName());
+    //noinspection ConstantConditions
+    List<String> cells = column == null ? null : sheetReader.getRow(row);
+    return ExcelUtil.getValue(variable, cells == null || cells.size() <= column ? null : cells.get(column));
+  }
+
+  /**
+   * Get the values of a variable for the given entities, reading its column of the streamed value sheet at once.
+   *
+   * @param variable
+   * @param entities
+   * @return
+   */
+  Iterable<Value> getValues(Variable variable, Iterable<VariableEntity> entities) {
+    Integer column = variableColumns.get(variable.getName());
+    //noinspection ConstantConditions
+    List<String> cells = column == null ? null : sheetReader.getColumn(column);
+    List<Value> values = new ArrayList<>();
+    for(VariableEntity entity : entities) {
+      Integer row = entityRows.get(entity.getIdentifier());
+      values.add(ExcelUtil.getValue(variable, cells == null || row == null ? null : cells.get(row)));
+    }
+    return values;
   }
 
   public VariableConverter getVariableConverter() {
@@ -98,6 +169,8 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
       return columnIndex;
     }
     Row variableNameRow = getValueTableSheet().getRow(0);
+    // header row of a streamed sheet was flushed
+    if(variableNameRow == null) return -1;
     for(int i = 0; i < variableNameRow.getPhysicalNumberOfCells(); i++) {
       Cell cell = variableNameRow.getCell(i);
       if(ExcelUtil.getCellValueAsString(cell).equals(variable.getName())) {
@@ -113,6 +186,11 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
     if(column == -1) {
       // Add it
       Row variableNameRow = getValueTableSheet().getRow(0);
+      if(variableNameRow == null) {
+        throw new MagmaRuntimeException(
+            "Cannot add a column for variable '" + variable.getName() + "' in table '" + getName() +
+                "': the header row was already flushed.");
+      }
       Cell variableColumn = variableNameRow
           .createCell(variableNameRow.getPhysicalNumberOfCells(), Cell.CELL_TYPE_STRING);
       ExcelUtil.setCellValue(variableColumn, TextType.get(), variable.getName());
@@ -123,6 +201,31 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
     return column;
   }
 
+  /**
+   * Append the row of an entity to the value sheet.
+   *
+   * @param entity
+   * @return
+   */
+  Row createEntityRow(VariableEntity entity) {
+    Sheet tableSheet = getValueTableSheet();
+    Row entityRow = tableSheet.createRow(tableSheet.getPhysicalNumberOfRows());
+    ExcelUtil.setCellValue(entityRow.createCell(0), TextType.get(), entity.getIdentifier());
+    if(isStreamedSheet()) {
+      writtenEntities.add(entity.getIdentifier());
+    }
+    return entityRow;
+  }
+
+  /**
+   * Whether the rows of the value sheet are flushed as they are written.
+   *
+   * @return
+   */
+  boolean isStreamedSheet() {
+    return getDatasource().isWritingStreamedSheets();
+  }
+
   /**
    * Get the value sheet. Create it if necessary.
    *
@@ -130,7 +233,7 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
    */
   Sheet getValueTableSheet() {
     if(valueTableSheet == null) {
-      valueTableSheet = getDatasource().createSheetIfNotExist(getName());
+      valueTableSheet = getDatasource().createValueSheetIfNotExist(getName());
 
       if(valueTableSheet.getPhysicalNumberOfRows() <= 0) {
         valueTableSheet.createRow(0);
@@ -144,6 +247,28 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
     return valueTableSheet;
   }
 
+  /**
+   * Index the rows of the value sheet when it is streamed: the columns of the header and the row of each entity.
+   */
+  private void initSheetReader() {
+    sheetReader = getDatasource().getSheetReader(getName());
+    if(sheetReader == null) return;
+
+    List<String> header = sheetReader.getRow(0);
+    if(header != null) {
+      for(int i = 1; i < header.size(); i++) {
+        variableColumns.put(header.get(i).trim(), i);
+      }
+    }
+    List<String> identifiers = sheetReader.getColumn(0);
+    for(int row = 1; row < identifiers.size(); row++) {
+      String identifier = identifiers.get(row);
+      if(identifier != null && !identifier.isEmpty()) {
+        entityRows.put(identifier, row);
+      }
+    }
+  }
+
   /**
    * Read the variables either from the Variables sheet or from sheet headers.
    *
@@ -182,6 +307,10 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
    * Variables are defined by column names and value type is text. First column is assumed to be participant identifier.
    */
   private void readVariablesFromTableSheet(Collection<String> variableNames) {
+    if(sheetReader != null) {
+      readVariablesFromStreamedSheet(variableNames);
+      return;
+    }
     Sheet sheet = getDatasource().getSheet(getName());
     if(sheet == null) return;
 
@@ -212,22 +341,57 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
     }
   }
 
+  /**
+   * Same as {@link #readVariablesFromTableSheet(Collection)} from the header of the streamed value sheet.
+   */
+  private void readVariablesFromStreamedSheet(Collection<String> variableNames) {
+    //noinspection ConstantConditions
+    String sheetName = sheetReader.getSheetName();
+    Collection<String> columnNames = new ArrayList<>();
+    Collection<ExcelDatasourceParsingException> errors = new ArrayList<>();
+
+    List<String> header = sheetReader.getRow(0);
+    for(int i = 1; header != null && i < header.size(); i++) {
+      String name = header.get(i).trim();
+      if(validateVariableName(sheetName, columnNames, errors, name)) {
+        columnNames.add(name);
+        if(!variableNames.contains(name)) {
+          Variable.Builder variableBuilder = Variable.Builder.newVariable(name, TextType.get(), getEntityType());
+          addVariableValueSource(new ExcelVariableValueSource(variableBuilder.build(), this));
+        }
+      }
+    }
+
+    if(errors.size() > 0) {
+      ExcelDatasourceParsingException parent = new ExcelDatasourceParsingException(
+          "Errors while parsing variables of table: " + getName(), //
+          "TableDefinitionErrors", sheetName, 1, getName());
+      parent.setChildren(errors);
+      throw parent;
+    }
+  }
+
   private boolean validateVariableName(Sheet sheet, Collection<String> columnNames,
       Collection<ExcelDatasourceParsingException> errors, String name) {
+    return validateVariableName(sheet.getSheetName(), columnNames, errors, name);
+  }
+
+  private boolean validateVariableName(String sheetName, Collection<String> columnNames,
+      Collection<ExcelDatasourceParsingException> errors, String name) {
     if(name.isEmpty()) {
       errors.add(new ExcelDatasourceParsingException("Variable name is required in table: " + getName(), //
-          "VariableNameRequired", sheet.getSheetName(), 1, getName()));
+          "VariableNameRequired", sheetName, 1, getName()));
       return false;
     }
     if(name.contains(":")) {
       errors.add(new ExcelDatasourceParsingException(
           "Variable name cannot contain ':' in variable: " + getName() + " / " + name, //
-          "VariableNameCannotContainColon", sheet.getSheetName(), 1, getName(), name));
+          "VariableNameCannotContainColon", sheetName, 1, getName(), name));
       return false;
     }
     if(columnNames.contains(name)) {
       errors.add(new ExcelDatasourceParsingException("Duplicate columns '" + name + "' for table: " + getName(), //
-          "DuplicateColumns", sheet.getSheetName(), 1, getName(), name));
+          "DuplicateColumns", sheetName, 1, getName(), name));
       return false;
     }
     return true;
@@ -256,18 +420,9 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
 
   private void parseCategoryNames(Collection<String> variableNames,
       Collection<ExcelDatasourceParsingException> errors) {
-    Sheet categoriesSheet = getDatasource().getCategoriesSheet();
-    int categoryRowCount = categoriesSheet.getPhysicalNumberOfRows();
-    for(int i = 1; i < categoryRowCount; i++) {
-      Row categoryRow = categoriesSheet.getRow(i);
-      String variableName = converter.getCategoryVariableName(categoryRow);
-      if(converter.getCategoryTableName(categoryRow).equals(getName())) {
-        if(variableName.isEmpty()) {
-          errors.add(new ExcelDatasourceParsingException("Unidentified variable for a category",
-              "CategoryVariableNameRequired", ExcelDatasource.CATEGORIES_SHEET, categoryRow.getRowNum() + 1,
-              getName()));
-        }
-      }
+    for(int rowIndex : dictionaryIndex.getUnidentifiedCategoryRows(getName())) {
+      errors.add(new ExcelDatasourceParsingException("Unidentified variable for a category",
+          "CategoryVariableNameRequired", ExcelDatasource.CATEGORIES_SHEET, rowIndex + 1, getName()));
     }
   }
 
@@ -275,23 +430,20 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
   private Row parseVariableNames(Collection<String> variableNames, Collection<ExcelDatasourceParsingException> errors) {
 
     Sheet variablesSheet = getDatasource().getVariablesSheet();
-    int variableRowCount = variablesSheet.getPhysicalNumberOfRows();
 
     Row firstRow = null;
-    for(int i = 1; i < variableRowCount; i++) {
-      Row variableRow = variablesSheet.getRow(i);
-      if(converter.isVariableRow(variableRow)) {
-        if(firstRow == null) firstRow = variableRow;
-        String name = converter.getVariableName(variableRow);
-
-        if(variableNames.contains(name)) {
-          // do not parse duplicates
-          errors.add(new ExcelDatasourceParsingException("Duplicate variable name", //
-              "DuplicateVariableName", ExcelDatasource.VARIABLES_SHEET, variableRow.getRowNum() + 1, getName(), name));
-        } else {
-          variableNames.add(name);
-          addParsedVariable(errors, variableRow);
-        }
+    for(int rowIndex : dictionaryIndex.getVariableRows(getName())) {
+      Row variableRow = variablesSheet.getRow(rowIndex);
+      if(firstRow == null) firstRow = variableRow;
+      String name = converter.getVariableName(variableRow);
+
+      if(variableNames.contains(name)) {
+        // do not parse duplicates
+        errors.add(new ExcelDatasourceParsingException("Duplicate variable name", //
+            "DuplicateVariableName", ExcelDatasource.VARIABLES_SHEET, variableRow.getRowNum() + 1, getName(), name));
+      } else {
+        variableNames.add(name);
+        addParsedVariable(errors, variableRow);
       }
     }
     return firstRow;
@@ -300,7 +452,7 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
   private void addParsedVariable(Collection<ExcelDatasourceParsingException> errors, Row variableRow) {
     try {
       Variable variable = converter.unmarshall(variableRow);
-      addVariableValueSource(new ExcelVariableValueSource(variable));
+      addVariableValueSource(new ExcelVariableValueSource(variable, this));
     } catch(ExcelDatasourceParsingException pe) {
       errors.add(pe);
     } catch(Exception e) {
@@ -310,28 +462,19 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
   }
 
   public List<Integer> getVariableCategoryRows(String variableName) {
-    List<Integer> rows = variableCategoryRows.get(getName() + "." + variableName);
-    return rows == null ? new ArrayList<Integer>() : rows;
+    return dictionaryIndex.getCategoryRows(getName(), variableName);
+  }
+
+  public Set<String> getVariableAttributeNames() {
+    return getDatasource().getDictionaryIndex(converter).getVariableAttributeNames();
+  }
+
+  public Set<String> getCategoryAttributeNames() {
+    return getDatasource().getDictionaryIndex(converter).getCategoryAttributeNames();
   }
 
   private void initVariableCategoryRows() {
-    Sheet categoriesSheet = getDatasource().getCategoriesSheet();
-    int categoryRowCount = categoriesSheet.getPhysicalNumberOfRows();
-
-    for(int rowIndex = 1; rowIndex < categoryRowCount; rowIndex++) {
-      Row categoryRow = categoriesSheet.getRow(rowIndex);
-      if(categoryRow != null && converter.getCategoryTableName(categoryRow).equals(getName())) {
-        String variableName = converter.getCategoryVariableName(categoryRow);
-        if(variableName.length() != 0) {
-          List<Integer> categoryRows = variableCategoryRows.get(getName() + "." + variableName);
-          if(categoryRows == null) {
-            categoryRows = Lists.newArrayList();
-            variableCategoryRows.put(getName() + "." + variableName, categoryRows);
-          }
-          categoryRows.add(rowIndex);
-        }
-      }
-    }
+    dictionaryIndex = getDatasource().getDictionaryIndex(converter);
   }
 
   private boolean hasVariablesSheet() {
@@ -357,7 +500,15 @@ public class ExcelValueTable extends AbstractValueTable implements Initialisable
     @Override
     public Set<VariableEntity> getVariableEntities() {
       ImmutableSet.Builder<VariableEntity> entitiesBuilder = ImmutableSet.builder();
-      if(valueTableSheet != null) {
+      if(sheetReader != null) {
+        for(String identifier : entityRows.keySet()) {
+          entitiesBuilder.add(new VariableEntityBean(entityType, identifier));
+        }
+      } else if(valueTableSheet instanceof SXSSFSheet) {
+        for(String identifier : writtenEntities) {
+          entitiesBuilder.add(new VariableEntityBean(entityType, identifier));
+        }
+      } else if(valueTableSheet != null) {
         for(int i = 1; i < valueTableSheet.getPhysicalNumberOfRows(); i++) {
           Cell cell = valueTableSheet.getRow(i).getCell(0);
           entitiesBuilder.add(new VariableEntityBean(entityType, ExcelUtil.getCellValueAsString(cell)));
@@ -11,7 +11,6 @@ import org.obiba.magma.Variable;
 import org.obiba.magma.VariableEntity;
 import org.obiba.magma.datasource.excel.support.ExcelUtil;
 import org.obiba.magma.datasource.excel.support.VariableConverter;
-import org.obiba.magma.type.TextType;
 
 public class ExcelValueTableWriter implements ValueTableWriter {
 
@@ -67,6 +66,12 @@ public class ExcelValueTableWriter implements ValueTableWriter {
       updateCategorySheetHeaderRow(headerRowCategories);
 
       converter.marshall(variable, headerRowVariables, headerRowCategories);
+      valueTable.getDatasource().dictionaryModified();
+
+      if(valueTable.isStreamedSheet()) {
+        // the header row is flushed with the first rows of values: add the column while it can be
+        valueTable.getVariableColumn(variable);
+      }
     }
 
     @Override
@@ -115,9 +120,7 @@ public class ExcelValueTableWriter implements ValueTableWriter {
     private final Row entityRow;
 
     private ExcelValueSetWriter(VariableEntity entity) {
-      Sheet tableSheet = valueTable.getValueTableSheet();
-      entityRow = tableSheet.createRow(tableSheet.getPhysicalNumberOfRows());
-      ExcelUtil.setCellValue(entityRow.createCell(0), TextType.get(), entity.getIdentifier());
+      entityRow = valueTable.createEntityRow(entity);
     }
 
     @Override
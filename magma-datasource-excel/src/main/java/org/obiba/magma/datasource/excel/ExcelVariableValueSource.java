@@ -1,5 +1,8 @@
 package org.obiba.magma.datasource.excel;
 
+import java.util.SortedSet;
+
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.AbstractVariableValueSource;
@@ -7,6 +10,7 @@ import org.obiba.magma.Value;
 import org.obiba.magma.ValueSet;
 import org.obiba.magma.ValueType;
 import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
 import org.obiba.magma.VariableValueSource;
 import org.obiba.magma.VectorSource;
 import org.obiba.magma.VectorSourceNotSupportedException;
@@ -15,8 +19,20 @@ public class ExcelVariableValueSource extends AbstractVariableValueSource implem
 
   private final Variable variable;
 
+  @Nullable
+  private final ExcelValueTable valueTable;
+
   public ExcelVariableValueSource(Variable variable) {
+    this(variable, null);
+  }
+
+  /**
+   * @param variable
+   * @param valueTable the table which values can be read when its value sheet is streamed
+   */
+  public ExcelVariableValueSource(Variable variable, @Nullable ExcelValueTable valueTable) {
     this.variable = variable;
+    this.valueTable = valueTable;
   }
 
   @NotNull
@@ -33,18 +49,35 @@ public class ExcelVariableValueSource extends AbstractVariableValueSource implem
 
   @Override
   public boolean supportVectorSource() {
-    return false;
+    return valueTable != null && valueTable.isStreaming();
   }
 
   @NotNull
   @Override
   public VectorSource asVectorSource() {
-    throw new VectorSourceNotSupportedException(getClass());
+    if(!supportVectorSource()) {
+      throw new VectorSourceNotSupportedException(getClass());
+    }
+    return new VectorSource() {
+      @Override
+      public ValueType getValueType() {
+        return variable.getValueType();
+      }
+
+      @Override
+      public Iterable<Value> getValues(SortedSet<VariableEntity> entities) {
+        //noinspection ConstantConditions
+        return valueTable.getValues(variable, entities);
+      }
+    };
   }
 
   @NotNull
   @Override
   public Value getValue(ValueSet valueSet) {
+    if(valueSet instanceof ExcelValueSet) {
+      return ((ExcelValueSet) valueSet).getValue(variable);
+    }
     throw new UnsupportedOperationException();
   }
 
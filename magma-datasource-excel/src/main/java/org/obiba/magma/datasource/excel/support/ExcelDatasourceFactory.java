@@ -17,6 +17,8 @@ public class ExcelDatasourceFactory extends AbstractDatasourceFactory {
 
   private boolean readOnly = false;
 
+  private boolean streaming = false;
+
   public void setFile(File file) {
     this.file = file;
   }
@@ -25,9 +27,23 @@ public class ExcelDatasourceFactory extends AbstractDatasourceFactory {
     this.readOnly = readOnly;
   }
 
+  /**
+   * Stream the table sheets of the file, see {@link ExcelDatasource#setStreaming(boolean)}.
+   *
+   * @param streaming
+   */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
   @NotNull
   @Override
   protected Datasource internalCreate() {
+    if(streaming) {
+      ExcelDatasource datasource = new ExcelDatasource(getName(), file);
+      datasource.setStreaming(true);
+      return datasource;
+    }
     if(readOnly) {
       try {
         return new ExcelDatasource(getName(), new FileInputStream(file));
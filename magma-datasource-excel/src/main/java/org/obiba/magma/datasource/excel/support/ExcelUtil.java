@@ -9,6 +9,7 @@ import javax.validation.constraints.NotNull;
 import org.apache.poi.ss.usermodel.Cell;
 import org.obiba.magma.Value;
 import org.obiba.magma.ValueType;
+import org.obiba.magma.Variable;
 import org.obiba.magma.type.BinaryType;
 import org.obiba.magma.type.BooleanType;
 import org.obiba.magma.type.DateTimeType;
@@ -115,6 +116,28 @@ public class ExcelUtil {
     return value;
   }
 
+  /**
+   * Get the value of a variable from the string content of a cell.
+   *
+   * @param variable
+   * @param cellValue
+   * @return
+   */
+  public static Value getValue(Variable variable, @Nullable String cellValue) {
+    ValueType valueType = variable.getValueType();
+    if(cellValue == null || cellValue.isEmpty()) {
+      return variable.isRepeatable() ? valueType.nullSequence() : valueType.nullValue();
+    }
+    if(variable.isRepeatable()) {
+      return valueType.sequenceOf(cellValue);
+    }
+    // booleans are written as 1 or 0
+    if(valueType.getName().equals(BooleanType.get().getName()) && ("1".equals(cellValue) || "0".equals(cellValue))) {
+      return valueType.valueOf("1".equals(cellValue));
+    }
+    return valueType.valueOf(cellValue);
+  }
+
   /**
    * Find in user headers the given magma excel header.
    *
@@ -107,12 +107,18 @@ public class VariableConverter {
    * @return
    */
   public boolean isVariableRow(Row variableRow) {
+    return valueTable.getName().equals(getVariableTableName(variableRow));
+  }
+
+  /**
+   * Get the table name for a variable row.
+   *
+   * @param variableRow
+   * @return if no table column is defined, returns the default table name
+   */
+  public String getVariableTableName(Row variableRow) {
     Integer idx = getVariableHeaderIndex(TABLE);
-    String table = ExcelDatasource.DEFAULT_TABLE_NAME;
-    if(idx != null) {
-      table = getVariableCellValue(variableRow, TABLE);
-    }
-    return valueTable.getName().equals(table);
+    return idx == null ? ExcelDatasource.DEFAULT_TABLE_NAME : getVariableCellValue(variableRow, TABLE);
   }
 
   public String getVariableName(Row variableRow) {
@@ -517,7 +523,7 @@ public class VariableConverter {
    */
   private Iterable<String> getAttributeNamesVariables() {
     if(attributeNamesVariables == null) {
-      attributeNamesVariables = valueTable.getDatasource().getVariablesCustomAttributeNames();
+      attributeNamesVariables = valueTable.getVariableAttributeNames();
     }
     return attributeNamesVariables;
   }
@@ -613,7 +619,7 @@ public class VariableConverter {
    */
   private Iterable<String> getAttributeNamesCategories() {
     if(attributeNamesCategories == null) {
-      attributeNamesCategories = valueTable.getDatasource().getCategoriesCustomAttributeNames();
+      attributeNamesCategories = valueTable.getCategoryAttributeNames();
     }
     return attributeNamesCategories;
   }
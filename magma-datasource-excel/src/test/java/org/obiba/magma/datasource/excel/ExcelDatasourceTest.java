@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -17,13 +18,20 @@ import org.obiba.magma.Category;
 import org.obiba.magma.Datasource;
 import org.obiba.magma.Initialisable;
 import org.obiba.magma.MagmaRuntimeException;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueSet;
 import org.obiba.magma.ValueTable;
 import org.obiba.magma.ValueTableWriter;
+import org.obiba.magma.ValueTableWriter.ValueSetWriter;
 import org.obiba.magma.ValueTableWriter.VariableWriter;
 import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
 import org.obiba.magma.support.DatasourceParsingException;
 import org.obiba.magma.support.Disposables;
+import org.obiba.magma.support.VariableEntityBean;
 import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.BooleanType;
 import org.obiba.magma.type.IntegerType;
 import org.obiba.magma.type.TextType;
 
@@ -224,6 +232,104 @@ public class ExcelDatasourceTest extends AbstractMagmaTest {
     tmpExcelFile.delete();
   }
 
+  @Test
+  public void test_streaming_read_values() throws IOException {
+    File tmpExcelFile = createTempFile(".xlsx");
+
+    Variable textVariable = Variable.Builder.newVariable("text", TextType.get(), "Participant").build();
+    Variable intVariable = Variable.Builder.newVariable("int", IntegerType.get(), "Participant").build();
+    Variable boolVariable = Variable.Builder.newVariable("bool", BooleanType.get(), "Participant").build();
+
+    ExcelDatasource datasource = new ExcelDatasource("test", tmpExcelFile);
+    datasource.initialise();
+    try(ValueTableWriter tableWriter = datasource.createWriter("test-table", "Participant")) {
+      try(VariableWriter variableWriter = tableWriter.writeVariables()) {
+        variableWriter.writeVariable(textVariable);
+        variableWriter.writeVariable(intVariable);
+        variableWriter.writeVariable(boolVariable);
+      }
+      for(int i = 1; i <= 100; i++) {
+        try(ValueSetWriter valueSetWriter = tableWriter
+            .writeValueSet(new VariableEntityBean("Participant", String.format("%03d", i)))) {
+          valueSetWriter.writeValue(textVariable, TextType.get().valueOf("text" + i));
+          if(i % 10 != 0) valueSetWriter.writeValue(intVariable, IntegerType.get().valueOf(i));
+          valueSetWriter.writeValue(boolVariable, BooleanType.get().valueOf(i % 2 == 0));
+        }
+      }
+    }
+    datasource.dispose();
+
+    datasource = new ExcelDatasource("test", tmpExcelFile);
+    datasource.setStreaming(true);
+    datasource.initialise();
+    ValueTable table = datasource.getValueTable("test-table");
+    assertThat(table.getVariableEntities()).hasSize(100);
+
+    // read backward then forward
+    VariableEntity entity = new VariableEntityBean("Participant", "050");
+    ValueSet valueSet = table.getValueSet(entity);
+    assertThat(table.getValue(textVariable, valueSet).toString()).isEqualTo("text50");
+    assertThat(table.getValue(intVariable, valueSet).isNull()).isTrue();
+    assertThat(table.getValue(boolVariable, valueSet)).isEqualTo(BooleanType.get().trueValue());
+    valueSet = table.getValueSet(new VariableEntityBean("Participant", "007"));
+    assertThat(table.getValue(intVariable, valueSet)).isEqualTo(IntegerType.get().valueOf(7));
+    valueSet = table.getValueSet(new VariableEntityBean("Participant", "099"));
+    assertThat(table.getValue(textVariable, valueSet).toString()).isEqualTo("text99");
+
+    VariableValueSource source = table.getVariableValueSource("int");
+    assertThat(source.supportVectorSource()).isTrue();
+    long sum = 0;
+    for(Value value : source.asVectorSource().getValues(new TreeSet<>(table.getVariableEntities()))) {
+      if(!value.isNull()) sum += (Long) value.getValue();
+    }
+    assertThat(sum).isEqualTo(5050 - 550);
+
+    Disposables.silentlyDispose(datasource);
+    assertThat(tmpExcelFile.length()).isGreaterThan(0);
+    tmpExcelFile.delete();
+  }
+
+  @Test
+  public void test_streaming_write_values() throws IOException {
+    File tmpExcelFile = createTempFile(".xlsx");
+
+    Variable textVariable = Variable.Builder.newVariable("text", TextType.get(), "Participant").build();
+    Variable intVariable = Variable.Builder.newVariable("int", IntegerType.get(), "Participant").build();
+
+    ExcelDatasource datasource = new ExcelDatasource("test", tmpExcelFile);
+    datasource.setStreaming(true);
+    datasource.initialise();
+    try(ValueTableWriter tableWriter = datasource.createWriter("test-table", "Participant")) {
+      try(VariableWriter variableWriter = tableWriter.writeVariables()) {
+        variableWriter.writeVariable(textVariable);
+        variableWriter.writeVariable(intVariable);
+      }
+      for(int i = 1; i <= 1000; i++) {
+        try(ValueSetWriter valueSetWriter = tableWriter
+            .writeValueSet(new VariableEntityBean("Participant", String.valueOf(i)))) {
+          valueSetWriter.writeValue(textVariable, TextType.get().valueOf("text" + i));
+          valueSetWriter.writeValue(intVariable, IntegerType.get().valueOf(i));
+        }
+      }
+    }
+    assertThat(datasource.getValueTable("test-table").getVariableEntities()).hasSize(1000);
+    datasource.dispose();
+
+    datasource = new ExcelDatasource("test", tmpExcelFile);
+    datasource.setStreaming(true);
+    datasource.initialise();
+    ValueTable table = datasource.getValueTable("test-table");
+    assertThat(table.getVariables()).hasSize(2);
+    assertThat(table.getVariable("int").getValueType()).isEqualTo(IntegerType.get());
+    assertThat(table.getVariableEntities()).hasSize(1000);
+    ValueSet valueSet = table.getValueSet(new VariableEntityBean("Participant", "999"));
+    assertThat(table.getValue(textVariable, valueSet).toString()).isEqualTo("text999");
+    assertThat(table.getValue(intVariable, valueSet)).isEqualTo(IntegerType.get().valueOf(999));
+
+    Disposables.silentlyDispose(datasource);
+    tmpExcelFile.delete();
+  }
+
   @Test
   public void test_strings_can_be_written_OPAL_238() throws IOException {
     File tmp = createTempFile(".xlsx");
@@ -0,0 +1,121 @@
+package org.obiba.magma.datasource.excel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obiba.core.util.FileUtil;
+import org.obiba.magma.ValueTableWriter;
+import org.obiba.magma.ValueTableWriter.VariableWriter;
+import org.obiba.magma.Variable;
+import org.obiba.magma.support.Disposables;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.TextType;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ExcelDictionaryIndexTest extends AbstractMagmaTest {
+
+  private ExcelDatasource datasource;
+
+  private ExcelValueTable table;
+
+  @Before
+  public void initialiseDatasource() {
+    datasource = new ExcelDatasource("user-defined",
+        FileUtil.getFileFromResource("org/obiba/magma/datasource/excel/user-defined.xls"));
+    datasource.initialise();
+    table = (ExcelValueTable) datasource.getValueTable("Table1");
+  }
+
+  @After
+  public void disposeDatasource() {
+    Disposables.silentlyDispose(datasource);
+  }
+
+  @Test
+  public void test_rows_are_indexed_by_table_and_variable() {
+    ExcelDictionaryIndex index = new ExcelDictionaryIndex(datasource, table.getVariableConverter());
+
+    List<Integer> variableRows = index.getVariableRows("Table1");
+    assertThat(variableRows).hasSize(4);
+    for(int rowIndex : variableRows) {
+      assertThat(table.getVariableConverter().getVariableTableName(datasource.getVariablesSheet().getRow(rowIndex)))
+          .isEqualTo("Table1");
+    }
+    assertThat(index.getVariableRows("NoSuchTable")).isEmpty();
+
+    List<Integer> categoryRows = index.getCategoryRows("Table1", "Var1");
+    assertThat(categoryRows).hasSize(table.getVariable("Var1").getCategories().size());
+    for(int rowIndex : categoryRows) {
+      assertThat(table.getVariableConverter().getCategoryVariableName(datasource.getCategoriesSheet().getRow(rowIndex)))
+          .isEqualTo("Var1");
+    }
+    assertThat(index.getCategoryRows("Table1", "NoSuchVariable")).isEmpty();
+  }
+
+  @Test
+  public void test_attribute_names_are_indexed() {
+    ExcelDictionaryIndex index = new ExcelDictionaryIndex(datasource, table.getVariableConverter());
+
+    assertThat(index.getVariableAttributeNames()).isEqualTo(datasource.getVariablesCustomAttributeNames());
+    assertThat(index.getCategoryAttributeNames()).isEqualTo(datasource.getCategoriesCustomAttributeNames());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void test_rows_cannot_be_modified() {
+    ExcelDictionaryIndex index = new ExcelDictionaryIndex(datasource, table.getVariableConverter());
+    index.getCategoryRows("Table1", "Var1").clear();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void test_variable_category_rows_cannot_be_modified() {
+    table.getVariableCategoryRows("Var1").clear();
+  }
+
+  @Test
+  public void test_index_is_shared_while_up_to_date() {
+    ExcelDictionaryIndex index = datasource.getDictionaryIndex(table.getVariableConverter());
+
+    assertThat(index.isUpToDate(datasource)).isTrue();
+    assertThat(datasource.getDictionaryIndex(table.getVariableConverter())).isSameAs(index);
+  }
+
+  @Test
+  public void test_index_is_stale_after_variable_written_in_place() throws IOException {
+    File tmpExcelFile = File.createTempFile("magma", ".xlsx");
+    tmpExcelFile.delete();
+    Variable variable = Variable.Builder.newVariable("test-variable", TextType.get(), "Participant").build();
+
+    ExcelDatasource tmpDatasource = new ExcelDatasource("test", tmpExcelFile);
+    tmpDatasource.initialise();
+    try {
+      writeVariable(tmpDatasource, variable);
+      ExcelValueTable tmpTable = (ExcelValueTable) tmpDatasource.getValueTable("test-table");
+      ExcelDictionaryIndex index = tmpDatasource.getDictionaryIndex(tmpTable.getVariableConverter());
+      int variableRowCount = tmpDatasource.getVariablesSheet().getPhysicalNumberOfRows();
+
+      // same variable, same row: the row counts do not change
+      writeVariable(tmpDatasource,
+          Variable.Builder.newVariable("test-variable", TextType.get(), "Participant").unit("kg").build());
+
+      assertThat(tmpDatasource.getVariablesSheet().getPhysicalNumberOfRows()).isEqualTo(variableRowCount);
+      assertThat(index.isUpToDate(tmpDatasource)).isFalse();
+      assertThat(tmpDatasource.getDictionaryIndex(tmpTable.getVariableConverter())).isNotSameAs(index);
+    } finally {
+      Disposables.silentlyDispose(tmpDatasource);
+      tmpExcelFile.delete();
+    }
+  }
+
+  private void writeVariable(ExcelDatasource excelDatasource, Variable variable) throws IOException {
+    try(ValueTableWriter tableWriter = excelDatasource.createWriter("test-table", "Participant");
+        VariableWriter variableWriter = tableWriter.writeVariables()) {
+      variableWriter.writeVariable(variable);
+    }
+  }
+
+}
@@ -0,0 +1,250 @@
+package org.obiba.magma.datasource.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.obiba.magma.MagmaRuntimeException;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueSequence;
+import org.obiba.magma.ValueType;
+import org.obiba.magma.type.BinaryType;
+import org.obiba.magma.type.BooleanType;
+import org.obiba.magma.type.DecimalType;
+import org.obiba.magma.type.IntegerType;
+import org.obiba.magma.xstream.VarLongs;
+
+/**
+ * Binary encoding of the values of a column for a group of rows.
+ * <p>
+ * A chunk starts with the name of the value type of its values and the number of rows. Rows are then either encoded
+ * one after the other ({@link #PLAIN}) or, when values repeat, as a dictionary of the distinct values followed by runs
+ * of dictionary indices ({@link #DICTIONARY}). Integers, decimals, booleans and binaries are stored in their natural
+ * binary form, other types as their string representation.
+ */
+final class ColumnChunkCodec {
+
+  static final byte PLAIN = 0;
+
+  static final byte DICTIONARY = 1;
+
+  private static final byte NULL_CELL = 0;
+
+  private static final byte VALUE_CELL = 1;
+
+  private static final byte SEQUENCE_CELL = 2;
+
+  private static final byte NULL_SEQUENCE_CELL = 3;
+
+  private ColumnChunkCodec() {}
+
+  /**
+   * Encode the values of a column.
+   *
+   * @param valueType
+   * @param values one value per row, null when the row has no value
+   * @return
+   */
+  static byte[] encode(ValueType valueType, List<Value> values) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeUTF(valueType.getName());
+      VarLongs.write(out, values.size());
+      Map<Value, Integer> dictionary = buildDictionary(valueType, values);
+      if(dictionary == null) {
+        out.writeByte(PLAIN);
+        for(Value value : values) {
+          writeCell(out, valueType, value);
+        }
+      } else {
+        out.writeByte(DICTIONARY);
+        VarLongs.write(out, dictionary.size());
+        for(Value value : dictionary.keySet()) {
+          writeCell(out, valueType, value);
+        }
+        writeRuns(out, valueType, values, dictionary);
+      }
+      out.flush();
+      return bytes.toByteArray();
+    } catch(IOException e) {
+      throw new MagmaRuntimeException(e);
+    }
+  }
+
+  /**
+   * Decode the values of a column.
+   *
+   * @param bytes
+   * @return one value per row
+   */
+  static List<Value> decode(byte[] bytes) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+      ValueType valueType = ValueType.Factory.forName(in.readUTF());
+      int rows = (int) VarLongs.read(in);
+      List<Value> values = new ArrayList<>(rows);
+      if(in.readByte() == PLAIN) {
+        for(int i = 0; i < rows; i++) {
+          values.add(readCell(in, valueType));
+        }
+      } else {
+        int size = (int) VarLongs.read(in);
+        List<Value> dictionary = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+          dictionary.add(readCell(in, valueType));
+        }
+        while(values.size() < rows) {
+          int run = (int) VarLongs.read(in);
+          Value value = dictionary.get((int) VarLongs.read(in));
+          for(int i = 0; i < run; i++) {
+            values.add(value);
+          }
+        }
+      }
+      return values;
+    } catch(IOException e) {
+      throw new MagmaRuntimeException(e);
+    }
+  }
+
+  /**
+   * Collect the distinct values of the column, if a dictionary is worth it.
+   *
+   * @param valueType
+   * @param values
+   * @return null if the values should be encoded as is
+   */
+  @Nullable
+  private static Map<Value, Integer> buildDictionary(ValueType valueType, List<Value> values) {
+    // binary values do not implement equality
+    if(valueType.isBinary()) return null;
+    int maxSize = values.size() / 2;
+    Map<Value, Integer> dictionary = new LinkedHashMap<>();
+    for(Value value : values) {
+      Value key = value == null ? valueType.nullValue() : value;
+      if(!dictionary.containsKey(key)) {
+        if(dictionary.size() == maxSize) return null;
+        dictionary.put(key, dictionary.size());
+      }
+    }
+    return dictionary;
+  }
+
+  private static void writeRuns(DataOutput out, ValueType valueType, List<Value> values,
+      Map<Value, Integer> dictionary) throws IOException {
+    int previous = -1;
+    int run = 0;
+    for(Value value : values) {
+      int index = dictionary.get(value == null ? valueType.nullValue() : value);
+      if(index != previous && run > 0) {
+        VarLongs.write(out, run);
+        VarLongs.write(out, previous);
+        run = 0;
+      }
+      previous = index;
+      run++;
+    }
+    if(run > 0) {
+      VarLongs.write(out, run);
+      VarLongs.write(out, previous);
+    }
+  }
+
+  private static void writeCell(DataOutput out, ValueType valueType, @Nullable Value value) throws IOException {
+    if(value == null) {
+      out.writeByte(NULL_CELL);
+    } else if(value.isSequence()) {
+      if(value.isNull()) {
+        out.writeByte(NULL_SEQUENCE_CELL);
+      } else {
+        out.writeByte(SEQUENCE_CELL);
+        ValueSequence sequence = value.asSequence();
+        VarLongs.write(out, sequence.getSize());
+        for(Value element : sequence.getValue()) {
+          writeCell(out, valueType, element);
+        }
+      }
+    } else if(value.isNull()) {
+      out.writeByte(NULL_CELL);
+    } else {
+      out.writeByte(VALUE_CELL);
+      writeValue(out, valueType, value);
+    }
+  }
+
+  private static Value readCell(DataInput in, ValueType valueType) throws IOException {
+    switch(in.readByte()) {
+      case NULL_CELL:
+        return valueType.nullValue();
+      case NULL_SEQUENCE_CELL:
+        return valueType.nullSequence();
+      case SEQUENCE_CELL:
+        int size = (int) VarLongs.read(in);
+        List<Value> elements = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+          elements.add(readCell(in, valueType));
+        }
+        return valueType.sequenceOf(elements);
+      default:
+        return readValue(in, valueType);
+    }
+  }
+
+  @SuppressWarnings("ChainOfInstanceofChecks")
+  private static void writeValue(DataOutput out, ValueType valueType, Value value) throws IOException {
+    Object object = value.getValue();
+    if(valueType instanceof IntegerType) {
+      VarLongs.writeZigZag(out, ((Number) object).longValue());
+    } else if(valueType instanceof DecimalType) {
+      out.writeLong(Double.doubleToLongBits(((Number) object).doubleValue()));
+    } else if(valueType instanceof BooleanType) {
+      out.writeBoolean((Boolean) object);
+    } else if(valueType instanceof BinaryType) {
+      writeBytes(out, (byte[]) object);
+    } else {
+      //noinspection ConstantConditions
+      writeBytes(out, valueType.toString(value).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @SuppressWarnings("ChainOfInstanceofChecks")
+  private static Value readValue(DataInput in, ValueType valueType) throws IOException {
+    if(valueType instanceof IntegerType) {
+      return valueType.valueOf(VarLongs.readZigZag(in));
+    }
+    if(valueType instanceof DecimalType) {
+      return valueType.valueOf(Double.longBitsToDouble(in.readLong()));
+    }
+    if(valueType instanceof BooleanType) {
+      return valueType.valueOf(in.readBoolean());
+    }
+    if(valueType instanceof BinaryType) {
+      return valueType.valueOf(readBytes(in));
+    }
+    return valueType.valueOf(new String(readBytes(in), StandardCharsets.UTF_8));
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+    VarLongs.write(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[(int) VarLongs.read(in)];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,385 @@
+package org.obiba.magma.datasource.fs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import org.obiba.magma.MagmaRuntimeException;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueType;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.xstream.VarLongs;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Columnar storage of the values of a {@link FsValueTable}.
+ * <p>
+ * Value sets are buffered in groups of rows. When a group is full, the values of each variable are encoded as a column
+ * chunk (see {@link ColumnChunkCodec}) and the chunks of the group are written one after the other in a single entry,
+ * so that the number of entries of the archive only grows with the number of groups. A small index entry lists the
+ * groups, the entity identifiers of their rows and the position of the chunk of each column in the entry of each group.
+ * Reading a variable only decodes its chunks. The entries of the last groups read are kept in memory, so that reading
+ * all the variables of a value set reads the entry of its group once.
+ * <p>
+ * An entity written again is stored in a new row that supersedes the previous one.
+ */
+class FsColumnStore {
+
+  static final String INDEX_NAME = "values.idx";
+
+  private static final int MAGIC = 0x4D434F4C;
+
+  private static final int VERSION = 1;
+
+  private static final int ROW_GROUP_SIZE = 4096;
+
+  private static final int CHUNK_CACHE_SIZE = 256;
+
+  private static final long GROUP_CACHE_WEIGHT = 64 * 1024 * 1024;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final FsValueTable valueTable;
+
+  private final NumberFormat entryFilenameFormat = new DecimalFormat("0000000");
+
+  private final List<String> columns = new ArrayList<>();
+
+  private final Map<String, Integer> columnIndex = Maps.newHashMap();
+
+  private final List<RowGroup> rowGroups = new ArrayList<>();
+
+  /**
+   * Position of the current row of each entity.
+   */
+  private final Map<String, RowLocation> locations = Maps.newHashMap();
+
+  /**
+   * Value sets written but not yet stored in a row group.
+   */
+  private final Map<String, Map<String, Value>> pendingRows = new LinkedHashMap<>();
+
+  /**
+   * Value type of the columns of the pending value sets.
+   */
+  private final Map<String, ValueType> pendingColumns = new LinkedHashMap<>();
+
+  private boolean modified = false;
+
+  private final LoadingCache<ColumnChunk, List<Value>> chunkCache = CacheBuilder.newBuilder()
+      .maximumSize(CHUNK_CACHE_SIZE).build(new CacheLoader<ColumnChunk, List<Value>>() {
+        @Override
+        public List<Value> load(ColumnChunk chunk) throws Exception {
+          return ColumnChunkCodec.decode(readChunk(chunk));
+        }
+      });
+
+  /**
+   * Encoded chunks of the row groups, by entry name.
+   */
+  private final LoadingCache<String, byte[]> groupCache = CacheBuilder.newBuilder()
+      .maximumWeight(GROUP_CACHE_WEIGHT).weigher(new Weigher<String, byte[]>() {
+        @Override
+        public int weigh(String entryName, byte[] bytes) {
+          return bytes.length;
+        }
+      }).build(new CacheLoader<String, byte[]>() {
+        @Override
+        public byte[] load(String entryName) throws Exception {
+          try(InputStream in = valueTable.createInputStream(entryName)) {
+            return ByteStreams.toByteArray(in);
+          }
+        }
+      });
+
+  FsColumnStore(FsValueTable valueTable) {
+    this.valueTable = valueTable;
+  }
+
+  /**
+   * Whether the values of the table are stored in columns.
+   *
+   * @param valueTable
+   * @return
+   */
+  static boolean isColumnar(FsValueTable valueTable) {
+    return valueTable.getEntry(INDEX_NAME).exists();
+  }
+
+  synchronized void readIndex() {
+    try(DataInputStream in = new DataInputStream(
+        new BufferedInputStream(valueTable.createInputStream(INDEX_NAME), BUFFER_SIZE))) {
+      if(in.readInt() != MAGIC || in.readByte() > VERSION) {
+        throw new MagmaRuntimeException("Unsupported columnar values index in table " + valueTable.getName());
+      }
+      int columnCount = (int) VarLongs.read(in);
+      for(int i = 0; i < columnCount; i++) {
+        addColumn(in.readUTF());
+      }
+      int groupCount = (int) VarLongs.read(in);
+      for(int i = 0; i < groupCount; i++) {
+        RowGroup group = new RowGroup(in.readUTF());
+        int rowCount = (int) VarLongs.read(in);
+        for(int row = 0; row < rowCount; row++) {
+          group.identifiers.add(in.readUTF());
+        }
+        int chunkCount = (int) VarLongs.read(in);
+        for(int c = 0; c < chunkCount; c++) {
+          int column = (int) VarLongs.read(in);
+          long offset = VarLongs.read(in);
+          int length = (int) VarLongs.read(in);
+          group.chunks.put(column, new ColumnChunk(group.entryName, offset, length));
+        }
+        addRowGroup(group);
+      }
+    } catch(IOException e) {
+      throw new MagmaRuntimeException(e);
+    }
+  }
+
+  /**
+   * Store the values of an entity. Previous values of this entity are discarded.
+   *
+   * @param entity
+   * @param values
+   */
+  synchronized void writeValues(VariableEntity entity, Map<Variable, Value> values) {
+    Map<String, Value> row = Maps.newHashMap();
+    for(Map.Entry<Variable, Value> entry : values.entrySet()) {
+      ValueType valueType = entry.getKey().getValueType();
+      Value value = entry.getValue();
+      if(value == null) continue;
+      row.put(entry.getKey().getName(), value.getValueType() == valueType ? value : valueType.convert(value));
+      pendingColumns.put(entry.getKey().getName(), valueType);
+    }
+    pendingRows.remove(entity.getIdentifier());
+    pendingRows.put(entity.getIdentifier(), row);
+    modified = true;
+    if(pendingRows.size() >= ROW_GROUP_SIZE) {
+      writeRowGroup();
+    }
+  }
+
+  /**
+   * Write the pending value sets and the index.
+   */
+  synchronized void flush() {
+    if(!pendingRows.isEmpty()) {
+      writeRowGroup();
+    }
+    if(modified) {
+      writeIndex();
+      modified = false;
+    }
+  }
+
+  /**
+   * Get the value of a variable for an entity.
+   *
+   * @param entity
+   * @param variable
+   * @return
+   */
+  Value getValue(VariableEntity entity, Variable variable) {
+    RowLocation location;
+    synchronized(this) {
+      Map<String, Value> pending = pendingRows.get(entity.getIdentifier());
+      if(pending != null) {
+        Value value = pending.get(variable.getName());
+        return value == null ? variable.getValueType().nullValue() : value;
+      }
+      location = locations.get(entity.getIdentifier());
+    }
+    List<Value> values = location == null ? null : getColumnValues(location.group, variable.getName());
+    return values == null ? variable.getValueType().nullValue() : values.get(location.row);
+  }
+
+  /**
+   * Get the values of a variable for the given entities.
+   *
+   * @param entities
+   * @param variable
+   * @return
+   */
+  Iterable<Value> getValues(Iterable<VariableEntity> entities, Variable variable) {
+    Map<RowGroup, List<Value>> decoded = Maps.newHashMap();
+    List<Value> values = new ArrayList<>();
+    for(VariableEntity entity : entities) {
+      RowLocation location;
+      synchronized(this) {
+        Map<String, Value> pending = pendingRows.get(entity.getIdentifier());
+        if(pending != null) {
+          Value value = pending.get(variable.getName());
+          values.add(value == null ? variable.getValueType().nullValue() : value);
+          continue;
+        }
+        location = locations.get(entity.getIdentifier());
+      }
+      List<Value> groupValues = null;
+      if(location != null) {
+        // a group is decoded at most once, whatever the order of the entities
+        if(decoded.containsKey(location.group)) {
+          groupValues = decoded.get(location.group);
+        } else {
+          groupValues = getColumnValues(location.group, variable.getName());
+          decoded.put(location.group, groupValues);
+        }
+      }
+      values.add(groupValues == null ? variable.getValueType().nullValue() : groupValues.get(location.row));
+    }
+    return values;
+  }
+
+  @Nullable
+  private List<Value> getColumnValues(RowGroup group, String variableName) {
+    Integer column;
+    synchronized(this) {
+      column = columnIndex.get(variableName);
+    }
+    ColumnChunk chunk = column == null ? null : group.chunks.get(column);
+    if(chunk == null) return null;
+    try {
+      return chunkCache.get(chunk);
+    } catch(ExecutionException e) {
+      throw new MagmaRuntimeException(e.getCause());
+    }
+  }
+
+  private byte[] readChunk(ColumnChunk chunk) throws ExecutionException {
+    return Arrays.copyOfRange(groupCache.get(chunk.entryName), (int) chunk.offset, (int) chunk.offset + chunk.length);
+  }
+
+  private void writeRowGroup() {
+    RowGroup group = new RowGroup("values-" + entryFilenameFormat.format(rowGroups.size() + 1) + ".col");
+    group.identifiers.addAll(pendingRows.keySet());
+
+    try(OutputStream out = new BufferedOutputStream(valueTable.createOutputStream(group.entryName), BUFFER_SIZE)) {
+      long offset = 0;
+      for(Map.Entry<String, ValueType> column : pendingColumns.entrySet()) {
+        List<Value> values = new ArrayList<>(pendingRows.size());
+        for(Map<String, Value> row : pendingRows.values()) {
+          values.add(row.get(column.getKey()));
+        }
+        byte[] bytes = ColumnChunkCodec.encode(column.getValue(), values);
+        out.write(bytes);
+        group.chunks.put(addColumn(column.getKey()), new ColumnChunk(group.entryName, offset, bytes.length));
+        offset += bytes.length;
+      }
+    } catch(IOException e) {
+      throw new MagmaRuntimeException(e);
+    }
+    pendingRows.clear();
+    pendingColumns.clear();
+    addRowGroup(group);
+  }
+
+  private void writeIndex() {
+    try(DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(valueTable.createOutputStream(INDEX_NAME), BUFFER_SIZE))) {
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      VarLongs.write(out, columns.size());
+      for(String column : columns) {
+        out.writeUTF(column);
+      }
+      VarLongs.write(out, rowGroups.size());
+      for(RowGroup group : rowGroups) {
+        out.writeUTF(group.entryName);
+        VarLongs.write(out, group.identifiers.size());
+        for(String identifier : group.identifiers) {
+          out.writeUTF(identifier);
+        }
+        VarLongs.write(out, group.chunks.size());
+        for(Map.Entry<Integer, ColumnChunk> entry : group.chunks.entrySet()) {
+          VarLongs.write(out, entry.getKey());
+          VarLongs.write(out, entry.getValue().offset);
+          VarLongs.write(out, entry.getValue().length);
+        }
+      }
+    } catch(IOException e) {
+      throw new MagmaRuntimeException(e);
+    }
+  }
+
+  private int addColumn(String name) {
+    Integer index = columnIndex.get(name);
+    if(index == null) {
+      index = columns.size();
+      columns.add(name);
+      columnIndex.put(name, index);
+    }
+    return index;
+  }
+
+  private void addRowGroup(RowGroup group) {
+    rowGroups.add(group);
+    for(int row = 0; row < group.identifiers.size(); row++) {
+      locations.put(group.identifiers.get(row), new RowLocation(group, row));
+    }
+  }
+
+  private static class RowGroup {
+
+    private final String entryName;
+
+    private final List<String> identifiers = new ArrayList<>();
+
+    private final Map<Integer, ColumnChunk> chunks = new LinkedHashMap<>();
+
+    private RowGroup(String entryName) {
+      this.entryName = entryName;
+    }
+  }
+
+  private static class RowLocation {
+
+    private final RowGroup group;
+
+    private final int row;
+
+    private RowLocation(RowGroup group, int row) {
+      this.group = group;
+      this.row = row;
+    }
+  }
+
+  /**
+   * Position of the encoded values of a column in the entry of its row group.
+   */
+  private static class ColumnChunk {
+
+    private final String entryName;
+
+    private final long offset;
+
+    private final int length;
+
+    private ColumnChunk(String entryName, long offset, int length) {
+      this.entryName = entryName;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+}
@@ -3,13 +3,17 @@ package org.obiba.magma.datasource.fs;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
@@ -35,6 +39,7 @@ import org.obiba.magma.xstream.MagmaXStreamExtension;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thoughtworks.xstream.XStream;
 
 import de.schlichtherle.io.ArchiveException;
@@ -65,6 +70,16 @@ public class FsDatasource extends AbstractDatasource {
 
   private boolean instanceAttributesModified = false;
 
+  private FsTableFormat tableFormat = FsTableFormat.XML;
+
+  private int parallelism = 1;
+
+  /**
+   * Decodes the value set entries when reading vectors of values, created on demand.
+   */
+  @Nullable
+  private ExecutorService decodingExecutor;
+
   public FsDatasource(String name, java.io.File outputFile,
       @Nullable DatasourceEncryptionStrategy datasourceEncryptionStrategy) {
     this(name, outputFile);
@@ -80,6 +95,34 @@ public class FsDatasource extends AbstractDatasource {
     this.datasourceEncryptionStrategy = datasourceEncryptionStrategy;
   }
 
+  /**
+   * Set the storage format of the values of the tables created by this datasource. Existing tables keep their format.
+   *
+   * @param tableFormat
+   */
+  public void setTableFormat(FsTableFormat tableFormat) {
+    this.tableFormat = tableFormat;
+  }
+
+  public FsTableFormat getTableFormat() {
+    return tableFormat;
+  }
+
+  /**
+   * Set the number of threads decoding the value set entries when reading vectors of values. Entries are decoded in the
+   * calling thread when 1, the default.
+   *
+   * @param parallelism
+   */
+  public void setParallelism(int parallelism) {
+    if(parallelism < 1) throw new IllegalArgumentException("parallelism must be greater than 0");
+    this.parallelism = parallelism;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
   @Override
   protected void onInitialise() {
 
@@ -130,6 +173,12 @@ public class FsDatasource extends AbstractDatasource {
 
   @Override
   public void onDispose() {
+    synchronized(this) {
+      if(decodingExecutor != null) {
+        decodingExecutor.shutdownNow();
+        decodingExecutor = null;
+      }
+    }
     try {
       if(instanceAttributesModified) {
         writeAttributes();
@@ -214,11 +263,23 @@ public class FsDatasource extends AbstractDatasource {
     return new File(datasourceArchive, name);
   }
 
+  synchronized ExecutorService getDecodingExecutor() {
+    if(decodingExecutor == null) {
+      decodingExecutor = Executors.newFixedThreadPool(parallelism,
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fs-" + getName() + "-decoder-%d").build());
+    }
+    return decodingExecutor;
+  }
+
   XStream getXStreamInstance() {
     // TODO: Use the FsDatasource version to obtain the proper XStream instance
     return MagmaEngine.get().getExtension(MagmaXStreamExtension.class).getXStreamFactory().createXStream();
   }
 
+  XStream getBinaryXStreamInstance() {
+    return MagmaEngine.get().getExtension(MagmaXStreamExtension.class).getBinaryXStreamFactory().createXStream();
+  }
+
   @Nullable
   <T> T readEntry(File entry, InputCallback<T> callback) {
     if(entry.exists()) {
@@ -240,16 +301,24 @@ public class FsDatasource extends AbstractDatasource {
   }
 
   Reader createReader(File entry) {
+    return new InputStreamReader(createInputStream(entry), CHARSET);
+  }
+
+  Writer createWriter(File entry) {
+    return new OutputStreamWriter(createOutputStream(entry), CHARSET);
+  }
+
+  InputStream createInputStream(File entry) {
     try {
-      return new InputStreamReader(inputStreamWrapper.wrap(new FileInputStream(entry), entry), CHARSET);
+      return inputStreamWrapper.wrap(new FileInputStream(entry), entry);
     } catch(FileNotFoundException e) {
       throw new MagmaRuntimeException(e);
     }
   }
 
-  Writer createWriter(File entry) {
+  OutputStream createOutputStream(File entry) {
     try {
-      return new OutputStreamWriter(outputStreamWrapper.wrap(new FileOutputStream(entry), entry), CHARSET);
+      return outputStreamWrapper.wrap(new FileOutputStream(entry), entry);
     } catch(FileNotFoundException e) {
       throw new MagmaRuntimeException(e);
     }
@@ -0,0 +1,28 @@
+package org.obiba.magma.datasource.fs;
+
+/**
+ * Storage format of the values of the tables created in a {@link FsDatasource}.
+ */
+public enum FsTableFormat {
+
+  /**
+   * One XStream XML entry per value set.
+   */
+  XML,
+
+  /**
+   * Binary column chunks, one entry per group of value sets, indexed by a small binary entry (see
+   * {@link FsColumnStore}).
+   */
+  COLUMNAR,
+
+  /**
+   * One compact binary entry per value set (see {@link org.obiba.magma.xstream.XStreamValueSetCodec}), referring to the
+   * variable names of a string table entry shared by the value sets. Variables are written in XStream binary form.
+   * <p>
+   * The string table entry is only written when the table writer is closed and when the table is disposed: value sets
+   * written before are not readable if neither happens.
+   */
+  BINARY
+
+}
@@ -1,11 +1,26 @@
 package org.obiba.magma.datasource.fs;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
-
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.AbstractVariableValueSource;
@@ -26,14 +41,33 @@ import org.obiba.magma.datasource.fs.FsDatasource.InputCallback;
 import org.obiba.magma.datasource.fs.FsDatasource.OutputCallback;
 import org.obiba.magma.support.AbstractValueTable;
 import org.obiba.magma.support.ValueSetBean;
+import org.obiba.magma.xstream.StringTable;
 import org.obiba.magma.xstream.XStreamValueSet;
+import org.obiba.magma.xstream.XStreamValueSetCodec;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.thoughtworks.xstream.XStream;
 
 import de.schlichtherle.io.File;
 
 class FsValueTable extends AbstractValueTable implements Initialisable, Disposable {
 
+  private static final int VALUE_SET_CACHE_SIZE = 1000;
+
+  private static final int PENDING_ENTRIES_PER_WORKER = 4;
+
+  static final String VARIABLES_NAME = "variables.xml";
+
+  static final String BINARY_VARIABLES_NAME = "variables.bin";
+
+  private static final String STRINGS_NAME = "strings.bin";
+
+  static final int BUFFER_SIZE = 64 * 1024;
+
   /**
    * The directory of this {@code ValueTable}
    */
@@ -49,11 +83,47 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
    */
   private final FsVariableEntityProvider variableEntityProvider;
 
+  /**
+   * XStream instances used to decode value set entries, one per thread as entries are decoded concurrently.
+   */
+  private final ThreadLocal<XStream> xstreams = new ThreadLocal<XStream>() {
+    @Override
+    protected XStream initialValue() {
+      return getDatasource().getXStreamInstance();
+    }
+  };
+
+  /**
+   * Recently decoded value set entries.
+   */
+  private final LoadingCache<VariableEntity, XStreamValueSet> valueSetCache = CacheBuilder.newBuilder()
+      .maximumSize(VALUE_SET_CACHE_SIZE).build(new CacheLoader<VariableEntity, XStreamValueSet>() {
+        @Override
+        public XStreamValueSet load(VariableEntity entity) throws Exception {
+          return readValueSet(entity);
+        }
+      });
+
+  /**
+   * Values storage when the table is in the {@link FsTableFormat#COLUMNAR} format, null otherwise.
+   */
+  @Nullable
+  private final FsColumnStore columnStore;
+
+  /**
+   * Strings the value set entries refer to when the table is in the {@link FsTableFormat#BINARY} format, null
+   * otherwise.
+   */
+  @Nullable
+  private final StringTable strings;
+
   FsValueTable(FsDatasource datasource, String name) {
     super(datasource, name);
     valueTableEntry = datasource.getEntry(name);
     xstream = datasource.getXStreamInstance();
     setVariableEntityProvider(variableEntityProvider = new FsVariableEntityProvider(this));
+    columnStore = FsColumnStore.isColumnar(this) ? new FsColumnStore(this) : null;
+    strings = getEntry(STRINGS_NAME).exists() ? new StringTable() : null;
   }
 
   FsValueTable(FsDatasource datasource, String name, String entityType) {
@@ -61,6 +131,8 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
     valueTableEntry = datasource.getEntry(name);
     xstream = datasource.getXStreamInstance();
     setVariableEntityProvider(variableEntityProvider = new FsVariableEntityProvider(this, entityType));
+    columnStore = datasource.getTableFormat() == FsTableFormat.COLUMNAR ? new FsColumnStore(this) : null;
+    strings = datasource.getTableFormat() == FsTableFormat.BINARY ? new StringTable() : null;
   }
 
   @Override
@@ -68,7 +140,15 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
     super.initialise();
     try {
       variableEntityProvider.initialise();
-      readVariables();
+      if(strings != null) {
+        readStrings();
+        readBinaryVariables();
+      } else {
+        readVariables();
+      }
+      if(columnStore != null) {
+        columnStore.readIndex();
+      }
     } catch(RuntimeException e) {
       throw e;
     } catch(Exception e) {
@@ -78,6 +158,11 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
 
   @Override
   public void dispose() {
+    valueSetCache.invalidateAll();
+    if(columnStore != null) {
+      columnStore.flush();
+    }
+    writeStrings();
     variableEntityProvider.dispose();
   }
 
@@ -98,6 +183,25 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
     return variableEntityProvider;
   }
 
+  @Nullable
+  FsColumnStore getColumnStore() {
+    return columnStore;
+  }
+
+  /**
+   * Whether the table is in the {@link FsTableFormat#BINARY} format.
+   *
+   * @return
+   */
+  boolean isBinary() {
+    return strings != null;
+  }
+
+  @Nullable
+  StringTable getStrings() {
+    return strings;
+  }
+
   File getEntry(String name) {
     return new File(valueTableEntry, name);
   }
@@ -114,8 +218,16 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
     return getDatasource().createWriter(getEntry(name));
   }
 
+  InputStream createInputStream(String name) {
+    return getDatasource().createInputStream(getEntry(name));
+  }
+
+  OutputStream createOutputStream(String name) {
+    return getDatasource().createOutputStream(getEntry(name));
+  }
+
   private void readVariables() {
-    readEntry("variables.xml", new InputCallback<Void>() {
+    readEntry(VARIABLES_NAME, new InputCallback<Void>() {
       @SuppressWarnings("InfiniteLoopStatement")
       @Override
       public Void readEntry(Reader reader) throws IOException {
@@ -136,7 +248,43 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
 
   }
 
-  private static class FsVariableValueSource extends AbstractVariableValueSource implements VariableValueSource {
+  private void readBinaryVariables() throws IOException, ClassNotFoundException {
+    if(!getEntry(BINARY_VARIABLES_NAME).exists()) return;
+    try(InputStream is = new BufferedInputStream(createInputStream(BINARY_VARIABLES_NAME), BUFFER_SIZE)) {
+      ObjectInputStream ois = getDatasource().getBinaryXStreamInstance().createObjectInputStream(is);
+      while(true) {
+        Variable variable = (Variable) ois.readObject();
+        addVariableValueSource(new FsVariableValueSource(variable));
+      }
+    } catch(EOFException e) {
+      // We reached the end of the ois.
+    }
+  }
+
+  private void readStrings() throws IOException {
+    //noinspection ConstantConditions
+    try(DataInputStream in = new DataInputStream(
+        new BufferedInputStream(createInputStream(STRINGS_NAME), BUFFER_SIZE))) {
+      strings.read(in);
+    }
+  }
+
+  /**
+   * Write the string table of a table in the {@link FsTableFormat#BINARY} format, if strings were added. Called when
+   * the table writer is closed and when the table is disposed, not per value set: rewriting an entry of the archive
+   * would sync the whole archive.
+   */
+  void writeStrings() {
+    if(strings == null || !strings.isModified() && getEntry(STRINGS_NAME).exists()) return;
+    try(DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(createOutputStream(STRINGS_NAME), BUFFER_SIZE))) {
+      strings.write(out);
+    } catch(IOException e) {
+      throw new MagmaRuntimeException(e);
+    }
+  }
+
+  private class FsVariableValueSource extends AbstractVariableValueSource implements VariableValueSource {
 
     private final Variable variable;
 
@@ -159,20 +307,103 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
     @NotNull
     @Override
     public Value getValue(ValueSet valueSet) {
-      return ((LazyValueSet) valueSet).getValueSet().getValue(variable);
+      return ((LazyValueSet) valueSet).getValue(variable);
     }
 
     @Override
     public boolean supportVectorSource() {
-      return false;
+      return true;
     }
 
     @NotNull
     @Override
     public VectorSource asVectorSource() {
-      throw new MagmaRuntimeException("FS Datasource does not support vector source");
+      return new VectorSource() {
+        @Override
+        public ValueType getValueType() {
+          return variable.getValueType();
+        }
+
+        @Override
+        public Iterable<Value> getValues(final SortedSet<VariableEntity> entities) {
+          if(columnStore != null) {
+            return columnStore.getValues(entities, variable);
+          }
+          return new Iterable<Value>() {
+            @Override
+            public Iterator<Value> iterator() {
+              return new ValueIterator(variable, entities.iterator());
+            }
+          };
+        }
+      };
+    }
+
+  }
+
+  /**
+   * Iterates over the values of a variable, decoding the value set entries ahead on the datasource worker pool, at most
+   * a few entries per worker. When an entry cannot be decoded, the entries decoded ahead are cancelled.
+   */
+  private class ValueIterator extends AbstractIterator<Value> {
+
+    private final Variable variable;
+
+    private final Iterator<VariableEntity> entities;
+
+    private final Deque<Future<XStreamValueSet>> pending = new ArrayDeque<>();
+
+    private final int maxPending;
+
+    @Nullable
+    private final ExecutorService executor;
+
+    private ValueIterator(Variable variable, Iterator<VariableEntity> entities) {
+      this.variable = variable;
+      this.entities = entities;
+      int parallelism = getDatasource().getParallelism();
+      maxPending = parallelism * PENDING_ENTRIES_PER_WORKER;
+      executor = parallelism > 1 ? getDatasource().getDecodingExecutor() : null;
+    }
+
+    @Override
+    protected Value computeNext() {
+      if(executor == null) {
+        return entities.hasNext() ? getXStreamValueSet(entities.next()).getValue(variable) : endOfData();
+      }
+      while(entities.hasNext() && pending.size() < maxPending) {
+        final VariableEntity entity = entities.next();
+        pending.add(executor.submit(new Callable<XStreamValueSet>() {
+          @Override
+          public XStreamValueSet call() throws Exception {
+            return getXStreamValueSet(entity);
+          }
+        }));
+      }
+      if(pending.isEmpty()) return endOfData();
+      boolean done = false;
+      try {
+        Value value = pending.poll().get().getValue(variable);
+        done = true;
+        return value;
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MagmaRuntimeException(e);
+      } catch(ExecutionException e) {
+        throw e.getCause() instanceof RuntimeException
+            ? (RuntimeException) e.getCause()
+            : new MagmaRuntimeException(e.getCause());
+      } finally {
+        if(!done) cancelPending();
+      }
     }
 
+    private void cancelPending() {
+      for(Future<XStreamValueSet> future : pending) {
+        future.cancel(true);
+      }
+      pending.clear();
+    }
   }
 
   private class LazyValueSet extends ValueSetBean {
@@ -184,26 +415,73 @@ class FsValueTable extends AbstractValueTable implements Initialisable, Disposab
       super(table, entity);
     }
 
+    Value getValue(Variable variable) {
+      return columnStore == null
+          ? getValueSet().getValue(variable)
+          : columnStore.getValue(getVariableEntity(), variable);
+    }
+
     XStreamValueSet getValueSet() {
       if(valueSet == null) {
-        valueSet = readValueSet(getVariableEntity());
+        valueSet = getXStreamValueSet(getVariableEntity());
       }
       return valueSet;
     }
 
-    private XStreamValueSet readValueSet(VariableEntity entity) {
-      String entryName = variableEntityProvider.getEntityFile(entity);
-      if(entryName == null) {
-        throw new NoSuchValueSetException(FsValueTable.this, entity);
-      }
-      return readEntry(entryName, new InputCallback<XStreamValueSet>() {
-        @Override
-        public XStreamValueSet readEntry(Reader reader) throws IOException {
-          return (XStreamValueSet) xstream.fromXML(reader);
-        }
-      });
+  }
+
+  /**
+   * Get the decoded value set entry of an entity, from the cache when it was recently decoded.
+   *
+   * @param entity
+   * @return
+   */
+  XStreamValueSet getXStreamValueSet(VariableEntity entity) {
+    try {
+      return valueSetCache.getUnchecked(entity);
+    } catch(UncheckedExecutionException e) {
+      throw e.getCause() instanceof RuntimeException
+          ? (RuntimeException) e.getCause()
+          : new MagmaRuntimeException(e.getCause());
     }
+  }
 
+  /**
+   * Discard the decoded value set entry of an entity, when it is written.
+   *
+   * @param entity
+   */
+  void evictXStreamValueSet(VariableEntity entity) {
+    valueSetCache.invalidate(entity);
+  }
+
+  private XStreamValueSet readValueSet(VariableEntity entity) {
+    String entryName = variableEntityProvider.getEntityFile(entity);
+    if(entryName == null) {
+      throw new NoSuchValueSetException(this, entity);
+    }
+    if(strings != null) {
+      return readBinaryValueSet(entity, entryName);
+    }
+    XStreamValueSet valueSet = readEntry(entryName, new InputCallback<XStreamValueSet>() {
+      @Override
+      public XStreamValueSet readEntry(Reader reader) throws IOException {
+        return (XStreamValueSet) xstreams.get().fromXML(reader);
+      }
+    });
+    // the entry of an entity being written does not exist yet
+    return valueSet == null ? new XStreamValueSet(getName(), entity) : valueSet;
+  }
+
+  private XStreamValueSet readBinaryValueSet(VariableEntity entity, String entryName) {
+    // the entry of an entity being written does not exist yet
+    if(!getEntry(entryName).exists()) return new XStreamValueSet(getName(), entity);
+    try(InputStream is = new BufferedInputStream(createInputStream(entryName), BUFFER_SIZE)) {
+      //noinspection ConstantConditions
+      return XStreamValueSetCodec.decode(is, strings);
+    } catch(IOException e) {
+      throw new MagmaRuntimeException("Failed reading value set entry " + entryName + " of table " + getName(), e);
+    }
   }
 
   @NotNull
@@ -1,16 +1,22 @@
 package org.obiba.magma.datasource.fs;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import org.obiba.magma.MagmaRuntimeException;
 import org.obiba.magma.Value;
 import org.obiba.magma.ValueTableWriter;
 import org.obiba.magma.Variable;
 import org.obiba.magma.VariableEntity;
 import org.obiba.magma.xstream.XStreamValueSet;
+import org.obiba.magma.xstream.XStreamValueSetCodec;
 
 import com.thoughtworks.xstream.XStream;
 
@@ -29,8 +35,14 @@ class FsValueTableWriter implements ValueTableWriter {
   @Override
   public ValueSetWriter writeValueSet(@NotNull VariableEntity entity) {
     String entry = valueTable.getVariableEntityProvider().addEntity(entity);
+    if(valueTable.getColumnStore() != null) {
+      return new ColumnarValueSetWriter(valueTable.getColumnStore(), entity);
+    }
+    if(valueTable.isBinary()) {
+      return new BinaryValueSetWriter(entry, entity, new XStreamValueSet(valueTable.getName(), entity));
+    }
     try {
-      return new XStreamValueSetWriter(valueTable.createWriter(entry),
+      return new XStreamValueSetWriter(valueTable.createWriter(entry), entity,
           new XStreamValueSet(valueTable.getName(), entity));
     } catch(IOException e) {
       throw new RuntimeException(e);
@@ -40,7 +52,14 @@ class FsValueTableWriter implements ValueTableWriter {
   @Override
   public VariableWriter writeVariables() {
     try {
-      return new XStreamVariableWriter(valueTable.createWriter("variables.xml"));
+      if(valueTable.isBinary()) {
+        OutputStream os = new BufferedOutputStream(valueTable.createOutputStream(FsValueTable.BINARY_VARIABLES_NAME),
+            FsValueTable.BUFFER_SIZE);
+        return new XStreamVariableWriter(
+            valueTable.getDatasource().getBinaryXStreamInstance().createObjectOutputStream(os, "variables"));
+      }
+      return new XStreamVariableWriter(
+          xstream.createObjectOutputStream(valueTable.createWriter(FsValueTable.VARIABLES_NAME), "variables"));
     } catch(IOException e) {
       throw new RuntimeException(e);
     }
@@ -48,14 +67,18 @@ class FsValueTableWriter implements ValueTableWriter {
 
   @Override
   public void close() {
+    if(valueTable.getColumnStore() != null) {
+      valueTable.getColumnStore().flush();
+    }
+    valueTable.writeStrings();
   }
 
   private class XStreamVariableWriter implements VariableWriter {
 
     ObjectOutputStream oos;
 
-    XStreamVariableWriter(Writer os) throws IOException {
-      oos = xstream.createObjectOutputStream(os, "variables");
+    XStreamVariableWriter(ObjectOutputStream oos) {
+      this.oos = oos;
     }
 
     @Override
@@ -88,10 +111,13 @@ class FsValueTableWriter implements ValueTableWriter {
 
     private final Writer os;
 
+    private final VariableEntity entity;
+
     private final XStreamValueSet valueSet;
 
-    private XStreamValueSetWriter(Writer os, XStreamValueSet valueSet) throws IOException {
+    private XStreamValueSetWriter(Writer os, VariableEntity entity, XStreamValueSet valueSet) throws IOException {
       this.os = os;
+      this.entity = entity;
       this.valueSet = valueSet;
     }
 
@@ -104,6 +130,7 @@ class FsValueTableWriter implements ValueTableWriter {
           os.close();
         } catch(IOException ignored) {
         }
+        valueTable.evictXStreamValueSet(entity);
       }
     }
 
@@ -117,4 +144,70 @@ class FsValueTableWriter implements ValueTableWriter {
       throw new UnsupportedOperationException();
     }
   }
+
+  private class BinaryValueSetWriter implements ValueSetWriter {
+
+    private final String entry;
+
+    private final VariableEntity entity;
+
+    private final XStreamValueSet valueSet;
+
+    private BinaryValueSetWriter(String entry, VariableEntity entity, XStreamValueSet valueSet) {
+      this.entry = entry;
+      this.entity = entity;
+      this.valueSet = valueSet;
+    }
+
+    @Override
+    public void close() {
+      try(OutputStream os = new BufferedOutputStream(valueTable.createOutputStream(entry), FsValueTable.BUFFER_SIZE)) {
+        //noinspection ConstantConditions
+        XStreamValueSetCodec.encode(valueSet, valueTable.getStrings(), os);
+      } catch(IOException e) {
+        throw new MagmaRuntimeException(e);
+      } finally {
+        valueTable.evictXStreamValueSet(entity);
+      }
+    }
+
+    @Override
+    public void writeValue(@NotNull Variable variable, Value value) {
+      valueSet.setValue(variable, value);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class ColumnarValueSetWriter implements ValueSetWriter {
+
+    private final FsColumnStore columnStore;
+
+    private final VariableEntity entity;
+
+    private final Map<Variable, Value> values = new LinkedHashMap<>();
+
+    private ColumnarValueSetWriter(FsColumnStore columnStore, VariableEntity entity) {
+      this.columnStore = columnStore;
+      this.entity = entity;
+    }
+
+    @Override
+    public void close() {
+      columnStore.writeValues(entity, values);
+    }
+
+    @Override
+    public void writeValue(@NotNull Variable variable, Value value) {
+      values.put(variable, value);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
 }
@@ -115,7 +115,8 @@ class FsVariableEntityProvider implements VariableEntityProvider, Initialisable,
 
   String addEntity(VariableEntity entity) {
     if(!entityToFile.containsKey(entity)) {
-      entityToFile.put(entity, entryFilenameFormat.format(entityToFile.size() + 1) + ".xml");
+      String suffix = valueTable.isBinary() ? ".bin" : ".xml";
+      entityToFile.put(entity, entryFilenameFormat.format(entityToFile.size() + 1) + suffix);
       entityToFileMapModified = true;
     }
     return getEntityFile(entity);
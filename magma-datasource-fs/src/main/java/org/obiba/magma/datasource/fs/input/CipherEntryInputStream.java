@@ -0,0 +1,140 @@
+package org.obiba.magma.datasource.fs.input;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+import org.obiba.magma.datasource.crypt.DatasourceCipherFactory;
+
+/**
+ * Decrypts an entry by large blocks, with a {@code Cipher} acquired from the {@link DatasourceCipherFactory} pool when
+ * the entry is first read and released when the stream is closed. When the entries have their own initialisation
+ * vector, it is read from the beginning of the entry.
+ */
+class CipherEntryInputStream extends FilterInputStream {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final DatasourceCipherFactory cipherFactory;
+
+  private Cipher cipher;
+
+  private final byte[] input = new byte[BUFFER_SIZE];
+
+  private byte[] output = new byte[BUFFER_SIZE];
+
+  private int outputPosition;
+
+  private int outputEnd;
+
+  private boolean done;
+
+  private boolean closed;
+
+  CipherEntryInputStream(InputStream is, DatasourceCipherFactory cipherFactory) {
+    super(is);
+    this.cipherFactory = cipherFactory;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return fill() ? output[outputPosition++] & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if(len == 0) return 0;
+    if(!fill()) return -1;
+    int n = Math.min(len, outputEnd - outputPosition);
+    System.arraycopy(output, outputPosition, b, off, n);
+    outputPosition += n;
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = 0;
+    while(skipped < n && fill()) {
+      int count = (int) Math.min(n - skipped, outputEnd - outputPosition);
+      outputPosition += count;
+      skipped += count;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return outputEnd - outputPosition;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(closed) return;
+    closed = true;
+    if(cipher != null) {
+      cipherFactory.releaseCipher(cipher);
+      cipher = null;
+    }
+    in.close();
+  }
+
+  /**
+   * Decrypt the next block when all the decrypted bytes were read.
+   *
+   * @return false at the end of the entry
+   * @throws IOException
+   */
+  private boolean fill() throws IOException {
+    if(closed) throw new IOException("Stream closed");
+    while(outputPosition == outputEnd) {
+      if(done) return false;
+      if(cipher == null) {
+        cipher = cipherFactory.acquireDecryptingCipher(readIv());
+      }
+      int count = in.read(input);
+      try {
+        if(count < 0) {
+          ensureOutputSize(cipher.getOutputSize(0));
+          outputEnd = cipher.doFinal(output, 0);
+          done = true;
+        } else {
+          ensureOutputSize(cipher.getOutputSize(count));
+          outputEnd = cipher.update(input, 0, count, output, 0);
+        }
+      } catch(GeneralSecurityException e) {
+        throw new IOException(e);
+      }
+      outputPosition = 0;
+    }
+    return true;
+  }
+
+  private byte[] readIv() throws IOException {
+    int length = cipherFactory.getEntryIvLength();
+    if(length == 0) return null;
+    byte[] iv = new byte[length];
+    int position = 0;
+    while(position < length) {
+      int count = in.read(iv, position, length - position);
+      if(count < 0) throw new EOFException("Missing entry initialisation vector");
+      position += count;
+    }
+    return iv;
+  }
+
+  private void ensureOutputSize(int size) {
+    if(output.length < size) {
+      output = new byte[size];
+    }
+  }
+
+}
@@ -2,8 +2,6 @@ package org.obiba.magma.datasource.fs.input;
 
 import java.io.InputStream;
 
-import javax.crypto.CipherInputStream;
-
 import org.obiba.magma.datasource.crypt.DatasourceCipherFactory;
 import org.obiba.magma.datasource.fs.InputStreamWrapper;
 
@@ -19,7 +17,7 @@ public class CipherInputStreamWrapper implements InputStreamWrapper {
 
   @Override
   public InputStream wrap(InputStream is, File file) {
-    return new CipherInputStream(is, cipherProvider.createDecryptingCipher());
+    return new CipherEntryInputStream(is, cipherProvider);
   }
 
 }
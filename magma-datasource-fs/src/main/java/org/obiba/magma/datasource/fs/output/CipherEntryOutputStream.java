@@ -0,0 +1,127 @@
+package org.obiba.magma.datasource.fs.output;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+
+import org.obiba.magma.datasource.crypt.DatasourceCipherFactory;
+
+/**
+ * Encrypts an entry by large blocks, with a {@code Cipher} acquired from the {@link DatasourceCipherFactory} pool when
+ * the entry is first written and released when the stream is closed. When the entries have their own initialisation
+ * vector, a random one is generated and written at the beginning of the entry.
+ */
+class CipherEntryOutputStream extends FilterOutputStream {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private final DatasourceCipherFactory cipherFactory;
+
+  private Cipher cipher;
+
+  private final byte[] input = new byte[BUFFER_SIZE];
+
+  private int inputCount;
+
+  private byte[] output = new byte[BUFFER_SIZE];
+
+  private boolean closed;
+
+  CipherEntryOutputStream(OutputStream os, DatasourceCipherFactory cipherFactory) {
+    super(os);
+    this.cipherFactory = cipherFactory;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if(inputCount == input.length) encrypt();
+    input[inputCount++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    int position = off;
+    int remaining = len;
+    while(remaining > 0) {
+      if(inputCount == input.length) encrypt();
+      int count = Math.min(remaining, input.length - inputCount);
+      System.arraycopy(b, position, input, inputCount, count);
+      inputCount += count;
+      position += count;
+      remaining -= count;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    encrypt();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(closed) return;
+    closed = true;
+    try {
+      encrypt();
+      ensureOutputSize(cipher.getOutputSize(0));
+      out.write(output, 0, cipher.doFinal(output, 0));
+    } catch(GeneralSecurityException e) {
+      throw new IOException(e);
+    } finally {
+      if(cipher != null) {
+        cipherFactory.releaseCipher(cipher);
+        cipher = null;
+      }
+      out.close();
+    }
+  }
+
+  /**
+   * Encrypt the pending bytes.
+   *
+   * @throws IOException
+   */
+  private void encrypt() throws IOException {
+    if(cipher == null) {
+      cipher = cipherFactory.acquireEncryptingCipher(writeIv());
+    }
+    if(inputCount == 0) return;
+    try {
+      ensureOutputSize(cipher.getOutputSize(inputCount));
+      out.write(output, 0, cipher.update(input, 0, inputCount, output, 0));
+    } catch(GeneralSecurityException e) {
+      throw new IOException(e);
+    }
+    inputCount = 0;
+  }
+
+  private byte[] writeIv() throws IOException {
+    int length = cipherFactory.getEntryIvLength();
+    if(length == 0) return null;
+    byte[] iv = new byte[length];
+    RANDOM.nextBytes(iv);
+    out.write(iv);
+    return iv;
+  }
+
+  private void ensureOpen() throws IOException {
+    if(closed) throw new IOException("Stream closed");
+  }
+
+  private void ensureOutputSize(int size) {
+    if(output.length < size) {
+      output = new byte[size];
+    }
+  }
+
+}
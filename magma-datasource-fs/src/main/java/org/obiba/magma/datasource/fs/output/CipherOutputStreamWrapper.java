@@ -2,8 +2,6 @@ package org.obiba.magma.datasource.fs.output;
 
 import java.io.OutputStream;
 
-import javax.crypto.CipherOutputStream;
-
 import org.obiba.magma.datasource.crypt.DatasourceCipherFactory;
 import org.obiba.magma.datasource.fs.OutputStreamWrapper;
 
@@ -19,7 +17,7 @@ public class CipherOutputStreamWrapper implements OutputStreamWrapper {
 
   @Override
   public OutputStream wrap(OutputStream os, File file) {
-    return new CipherOutputStream(os, cipherProvider.createEncryptingCipher());
+    return new CipherEntryOutputStream(os, cipherProvider);
   }
 
 }
@@ -8,6 +8,7 @@ import org.obiba.magma.AbstractDatasourceFactory;
 import org.obiba.magma.Datasource;
 import org.obiba.magma.datasource.crypt.DatasourceEncryptionStrategy;
 import org.obiba.magma.datasource.fs.FsDatasource;
+import org.obiba.magma.datasource.fs.FsTableFormat;
 
 public class FsDatasourceFactory extends AbstractDatasourceFactory {
 
@@ -15,6 +16,10 @@ public class FsDatasourceFactory extends AbstractDatasourceFactory {
 
   private DatasourceEncryptionStrategy encryptionStrategy;
 
+  private FsTableFormat tableFormat;
+
+  private int parallelism;
+
   public void setFile(File file) {
     this.file = file;
   }
@@ -23,6 +28,14 @@ public class FsDatasourceFactory extends AbstractDatasourceFactory {
     this.encryptionStrategy = encryptionStrategy;
   }
 
+  public void setTableFormat(FsTableFormat tableFormat) {
+    this.tableFormat = tableFormat;
+  }
+
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
   @NotNull
   @Override
   protected Datasource internalCreate() {
@@ -30,6 +43,12 @@ public class FsDatasourceFactory extends AbstractDatasourceFactory {
     if(encryptionStrategy != null) {
       datasource.setEncryptionStrategy(encryptionStrategy);
     }
+    if(tableFormat != null) {
+      datasource.setTableFormat(tableFormat);
+    }
+    if(parallelism > 0) {
+      datasource.setParallelism(parallelism);
+    }
     return datasource;
   }
 
@@ -0,0 +1,204 @@
+package org.obiba.magma.datasource.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+
+import org.junit.Test;
+import org.obiba.magma.crypt.support.GeneratedKeyPairProvider;
+import org.obiba.magma.datasource.crypt.DatasourceCipherFactory;
+import org.obiba.magma.datasource.crypt.GeneratedSecretKeyDatasourceEncryptionStrategy;
+import org.obiba.magma.datasource.fs.input.CipherInputStreamWrapper;
+import org.obiba.magma.datasource.fs.output.CipherOutputStreamWrapper;
+import org.obiba.magma.support.StaticDatasource;
+import org.obiba.magma.test.AbstractMagmaTest;
+
+import com.google.common.io.ByteStreams;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class CipherEntryStreamTest extends AbstractMagmaTest {
+
+  private static final int AES_BLOCK = 16;
+
+  // size of the blocks processed by the entry streams
+  private static final int STREAM_BLOCK = 64 * 1024;
+
+  private static final int[] SIZES = { 0, 1, AES_BLOCK - 1, AES_BLOCK, AES_BLOCK + 1, STREAM_BLOCK - 1, STREAM_BLOCK,
+      STREAM_BLOCK + 1, 3 * STREAM_BLOCK + 7 };
+
+  @Test
+  public void test_gcm_round_trip() throws Exception {
+    assertRoundTrip(newCipherFactory("GCM"));
+  }
+
+  @Test
+  public void test_ctr_round_trip() throws Exception {
+    assertRoundTrip(newCipherFactory("CTR"));
+  }
+
+  @Test
+  public void test_cfb_round_trip() throws Exception {
+    assertRoundTrip(newCipherFactory("CFB"));
+  }
+
+  @Test
+  public void test_read_legacy_cfb_entries() throws Exception {
+    DatasourceCipherFactory cipherFactory = newCipherFactory("CFB");
+    for(int size : SIZES) {
+      byte[] plain = randomBytes(size);
+      // entries used to be written with a javax.crypto stream
+      ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+      try(OutputStream os = new CipherOutputStream(encrypted, cipherFactory.createEncryptingCipher())) {
+        os.write(plain);
+      }
+
+      assertThat(decrypt(cipherFactory, encrypted.toByteArray())).as("size " + size).isEqualTo(plain);
+      assertThat(encrypt(cipherFactory, plain)).as("size " + size).isEqualTo(encrypted.toByteArray());
+    }
+  }
+
+  @Test
+  public void test_factory_without_pool() throws Exception {
+    final DatasourceCipherFactory cfb = newCipherFactory("CFB");
+    // a factory that only creates ciphers, as before entry initialisation vectors and cipher pools
+    DatasourceCipherFactory cipherFactory = new DatasourceCipherFactory() {
+      @Override
+      public Cipher createEncryptingCipher() {
+        return cfb.createEncryptingCipher();
+      }
+
+      @Override
+      public Cipher createDecryptingCipher() {
+        return cfb.createDecryptingCipher();
+      }
+    };
+
+    assertThat(cipherFactory.getEntryIvLength()).isEqualTo(0);
+    assertRoundTrip(cipherFactory);
+    for(int size : SIZES) {
+      byte[] plain = randomBytes(size);
+      assertThat(decrypt(cfb, encrypt(cipherFactory, plain))).as("size " + size).isEqualTo(plain);
+    }
+  }
+
+  @Test
+  public void test_gcm_detects_tampering() throws Exception {
+    DatasourceCipherFactory cipherFactory = newCipherFactory("GCM");
+    byte[] encrypted = encrypt(cipherFactory, randomBytes(STREAM_BLOCK + 1));
+    // first byte of the initialisation vector, of the content and of the authentication tag
+    for(int position : new int[] { 0, cipherFactory.getEntryIvLength(), encrypted.length - 1 }) {
+      byte[] tampered = Arrays.copyOf(encrypted, encrypted.length);
+      tampered[position] ^= 1;
+      try {
+        decrypt(cipherFactory, tampered);
+        fail("Tampering at " + position + " was not detected");
+      } catch(IOException e) {
+        assertThat(e.getCause()).isInstanceOf(AEADBadTagException.class);
+      }
+    }
+  }
+
+  @Test
+  public void test_entries_have_their_own_iv() throws Exception {
+    DatasourceCipherFactory cipherFactory = newCipherFactory("GCM");
+    byte[] plain = randomBytes(100);
+
+    byte[] first = encrypt(cipherFactory, plain);
+    byte[] second = encrypt(cipherFactory, plain);
+
+    assertThat(first).hasSize(cipherFactory.getEntryIvLength() + 100 + AES_BLOCK);
+    assertThat(Arrays.copyOf(first, cipherFactory.getEntryIvLength()))
+        .isNotEqualTo(Arrays.copyOf(second, cipherFactory.getEntryIvLength()));
+    assertThat(decrypt(cipherFactory, first)).isEqualTo(plain);
+    assertThat(decrypt(cipherFactory, second)).isEqualTo(plain);
+  }
+
+  @Test
+  public void test_entry_closed_before_its_end_does_not_affect_next_entry() throws Exception {
+    for(String mode : new String[] { "GCM", "CTR", "CFB" }) {
+      DatasourceCipherFactory cipherFactory = newCipherFactory(mode);
+      byte[] plain = randomBytes(STREAM_BLOCK + AES_BLOCK + 3);
+      byte[] encrypted = encrypt(cipherFactory, plain);
+
+      // the cipher is released in the middle of the entry, then acquired again for the next one
+      try(InputStream is = new CipherInputStreamWrapper(cipherFactory).wrap(new ByteArrayInputStream(encrypted), null)) {
+        assertThat(is.read()).isEqualTo(plain[0] & 0xff);
+      }
+      try(OutputStream os = new CipherOutputStreamWrapper(cipherFactory).wrap(new ByteArrayOutputStream(), null)) {
+        os.write(plain, 0, AES_BLOCK + 3);
+        os.flush();
+      }
+
+      assertThat(decrypt(cipherFactory, encrypted)).as(mode).isEqualTo(plain);
+      assertThat(decrypt(cipherFactory, encrypt(cipherFactory, plain))).as(mode).isEqualTo(plain);
+    }
+  }
+
+  private void assertRoundTrip(DatasourceCipherFactory cipherFactory) throws IOException {
+    for(int size : SIZES) {
+      byte[] plain = randomBytes(size);
+      byte[] encrypted = encrypt(cipherFactory, plain);
+
+      assertThat(encrypted.length).as("size " + size)
+          .isGreaterThanOrEqualTo(size + cipherFactory.getEntryIvLength());
+      assertThat(decrypt(cipherFactory, encrypted)).as("size " + size).isEqualTo(plain);
+      assertThat(decryptByByte(cipherFactory, encrypted)).as("size " + size).isEqualTo(plain);
+    }
+  }
+
+  private byte[] encrypt(DatasourceCipherFactory cipherFactory, byte[] plain) throws IOException {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+    try(OutputStream os = new CipherOutputStreamWrapper(cipherFactory).wrap(encrypted, null)) {
+      // written in pieces that are not aligned on blocks
+      int position = 0;
+      while(position < plain.length) {
+        int count = Math.min(plain.length - position, 1000);
+        os.write(plain, position, count);
+        position += count;
+      }
+    }
+    return encrypted.toByteArray();
+  }
+
+  private byte[] decrypt(DatasourceCipherFactory cipherFactory, byte[] encrypted) throws IOException {
+    try(InputStream is = new CipherInputStreamWrapper(cipherFactory).wrap(new ByteArrayInputStream(encrypted), null)) {
+      return ByteStreams.toByteArray(is);
+    }
+  }
+
+  private byte[] decryptByByte(DatasourceCipherFactory cipherFactory, byte[] encrypted) throws IOException {
+    ByteArrayOutputStream plain = new ByteArrayOutputStream();
+    try(InputStream is = new CipherInputStreamWrapper(cipherFactory).wrap(new ByteArrayInputStream(encrypted), null)) {
+      int b;
+      while((b = is.read()) != -1) {
+        plain.write(b);
+      }
+    }
+    return plain.toByteArray();
+  }
+
+  private DatasourceCipherFactory newCipherFactory(String mode) throws NoSuchAlgorithmException {
+    GeneratedSecretKeyDatasourceEncryptionStrategy strategy = new GeneratedSecretKeyDatasourceEncryptionStrategy();
+    strategy.setMode(mode);
+    strategy.setKeyProvider(new GeneratedKeyPairProvider());
+    return strategy.createDatasourceCipherFactory(new StaticDatasource("encrypted"));
+  }
+
+  private static byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+}
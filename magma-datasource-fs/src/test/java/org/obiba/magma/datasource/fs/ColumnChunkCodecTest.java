@@ -0,0 +1,122 @@
+package org.obiba.magma.datasource.fs;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueType;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.BinaryType;
+import org.obiba.magma.type.BooleanType;
+import org.obiba.magma.type.DateTimeType;
+import org.obiba.magma.type.DateType;
+import org.obiba.magma.type.DecimalType;
+import org.obiba.magma.type.IntegerType;
+import org.obiba.magma.type.LineStringType;
+import org.obiba.magma.type.LocaleType;
+import org.obiba.magma.type.PointType;
+import org.obiba.magma.type.PolygonType;
+import org.obiba.magma.type.TextType;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ColumnChunkCodecTest extends AbstractMagmaTest {
+
+  @Test
+  public void test_plain_values_of_every_type() {
+    assertRoundTrip(TextType.get(), "héllo", "", "a,b\n\"c\"");
+    assertRoundTrip(IntegerType.get(), 0L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 42L);
+    assertRoundTrip(DecimalType.get(), 0.0, -3.14, Double.MAX_VALUE, Double.MIN_VALUE);
+    assertRoundTrip(BooleanType.get(), true, false);
+    assertRoundTrip(DateType.get(), "2014-01-02", "1970-01-01");
+    assertRoundTrip(DateTimeType.get(), "2014-01-02T10:11:12.345-0500", "1999-12-31T23:59:59.000+0000");
+    assertRoundTrip(LocaleType.get(), "fr", "en_CA");
+    assertRoundTrip(PointType.get(), "[1.5,2.5]", "[-73.6,45.5]");
+    assertRoundTrip(LineStringType.get(), "[[1.0,2.0],[3.0,4.0]]");
+    assertRoundTrip(PolygonType.get(), "[[[1.0,2.0],[3.0,4.0],[5.0,6.0],[1.0,2.0]]]");
+  }
+
+  @Test
+  public void test_binary_values() {
+    List<Value> values = Lists.newArrayList(BinaryType.get().valueOf(new byte[] { 1, 2, 3 }), null,
+        BinaryType.get().valueOf(new byte[0]), BinaryType.get().nullValue());
+
+    List<Value> decoded = ColumnChunkCodec.decode(ColumnChunkCodec.encode(BinaryType.get(), values));
+
+    assertThat(decoded).hasSize(4);
+    assertThat((byte[]) decoded.get(0).getValue()).isEqualTo(new byte[] { 1, 2, 3 });
+    assertThat(decoded.get(1).isNull()).isTrue();
+    assertThat((byte[]) decoded.get(2).getValue()).isEqualTo(new byte[0]);
+    assertThat(decoded.get(3).isNull()).isTrue();
+  }
+
+  @Test
+  public void test_nulls() {
+    List<Value> values = Lists.newArrayList(null, IntegerType.get().nullValue(), IntegerType.get().valueOf(1), null);
+
+    List<Value> decoded = ColumnChunkCodec.decode(ColumnChunkCodec.encode(IntegerType.get(), values));
+
+    assertThat(decoded).containsExactly(IntegerType.get().nullValue(), IntegerType.get().nullValue(),
+        IntegerType.get().valueOf(1), IntegerType.get().nullValue());
+  }
+
+  @Test
+  public void test_sequences() {
+    Value sequence = TextType.get().sequenceOf(
+        ImmutableList.of(TextType.get().valueOf("a"), TextType.get().nullValue(), TextType.get().valueOf("b")));
+    Value empty = TextType.get().sequenceOf(ImmutableList.<Value>of());
+    List<Value> values = Lists.newArrayList(sequence, TextType.get().nullSequence(), empty, null);
+
+    List<Value> decoded = ColumnChunkCodec.decode(ColumnChunkCodec.encode(TextType.get(), values));
+
+    assertThat(decoded).hasSize(4);
+    assertThat(decoded.get(0).isSequence()).isTrue();
+    assertThat(decoded.get(0).asSequence().getValues()).containsExactly(TextType.get().valueOf("a"),
+        TextType.get().nullValue(), TextType.get().valueOf("b"));
+    assertThat(decoded.get(1).isSequence()).isTrue();
+    assertThat(decoded.get(1).isNull()).isTrue();
+    assertThat(decoded.get(2).isSequence()).isTrue();
+    assertThat(decoded.get(2).asSequence().getSize()).isEqualTo(0);
+    assertThat(decoded.get(3).isNull()).isTrue();
+  }
+
+  @Test
+  public void test_dictionary_with_runs() {
+    List<Value> values = Lists.newArrayList();
+    for(int i = 0; i < 100; i++) {
+      values.add(i % 10 < 7 ? TextType.get().valueOf("yes") : i % 10 == 9 ? null : TextType.get().valueOf("no"));
+    }
+
+    byte[] bytes = ColumnChunkCodec.encode(TextType.get(), values);
+    List<Value> decoded = ColumnChunkCodec.decode(bytes);
+
+    assertThat(bytes.length).isLessThan(200);
+    assertThat(decoded).hasSize(values.size());
+    for(int i = 0; i < values.size(); i++) {
+      assertThat(decoded.get(i)).isEqualTo(values.get(i) == null ? TextType.get().nullValue() : values.get(i));
+    }
+  }
+
+  private void assertRoundTrip(ValueType valueType, Object... objects) {
+    List<Value> values = Lists.newArrayList();
+    for(Object object : objects) {
+      values.add(valueType.valueOf(object));
+      values.add(null);
+    }
+    values.add(valueType.nullValue());
+
+    List<Value> decoded = ColumnChunkCodec.decode(ColumnChunkCodec.encode(valueType, values));
+
+    assertThat(decoded).hasSize(values.size());
+    for(int i = 0; i < values.size(); i++) {
+      Value expected = values.get(i) == null ? valueType.nullValue() : values.get(i);
+      assertThat(decoded.get(i).getValueType()).isEqualTo(valueType);
+      assertThat(decoded.get(i)).as(valueType.getName() + " " + Arrays.asList(objects)).isEqualTo(expected);
+    }
+  }
+
+}
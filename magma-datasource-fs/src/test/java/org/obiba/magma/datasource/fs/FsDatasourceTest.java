@@ -0,0 +1,282 @@
+package org.obiba.magma.datasource.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obiba.magma.MagmaEngine;
+import org.obiba.magma.NoSuchValueSetException;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.ValueTableWriter;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.support.DatasourceCopier;
+import org.obiba.magma.support.Disposables;
+import org.obiba.magma.support.Initialisables;
+import org.obiba.magma.support.StaticDatasource;
+import org.obiba.magma.support.StaticValueTable;
+import org.obiba.magma.support.VariableEntityBean;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.DecimalType;
+import org.obiba.magma.type.IntegerType;
+import org.obiba.magma.type.TextType;
+import org.obiba.magma.xstream.MagmaXStreamExtension;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class FsDatasourceTest extends AbstractMagmaTest {
+
+  // more than one row group
+  private static final int ENTITIES = 5000;
+
+  private File archive;
+
+  @Override
+  @Before
+  public void before() {
+    super.before();
+    MagmaEngine.get().extend(new MagmaXStreamExtension());
+  }
+
+  @Override
+  @After
+  public void after() {
+    super.after();
+    if(archive != null) {
+      //noinspection ResultOfMethodCallIgnored
+      archive.delete();
+    }
+  }
+
+  @Test
+  public void test_columnar_write_read() throws IOException {
+    archive = File.createTempFile("magma", "columnar.zip");
+    //noinspection ResultOfMethodCallIgnored
+    archive.delete();
+
+    FsDatasource fs = new FsDatasource("fs", archive);
+    fs.setTableFormat(FsTableFormat.COLUMNAR);
+    Initialisables.initialise(fs);
+    StaticDatasource source = newSource();
+    DatasourceCopier.Builder.newCopier().build().copy(source, fs);
+    Disposables.dispose(fs);
+
+    // one entry per row group, whatever the number of columns
+    assertThat(new de.schlichtherle.io.File(archive, "table/values-0000001.col").exists()).isTrue();
+    assertThat(new de.schlichtherle.io.File(archive, "table/values-0000002.col").exists()).isTrue();
+    assertThat(new de.schlichtherle.io.File(archive, "table/values-0000003.col").exists()).isFalse();
+    assertThat(new de.schlichtherle.io.File(archive, "table/values-0000001-0.col").exists()).isFalse();
+
+    fs = new FsDatasource("fs", archive);
+    Initialisables.initialise(fs);
+    try {
+      assertThat(FsColumnStore.isColumnar((FsValueTable) fs.getValueTable("table"))).isTrue();
+      assertSameValues(source.getValueTable("table"), fs.getValueTable("table"));
+    } finally {
+      Disposables.dispose(fs);
+    }
+  }
+
+  @Test
+  public void test_columnar_rewrite_entity() throws IOException {
+    archive = File.createTempFile("magma", "columnar.zip");
+    //noinspection ResultOfMethodCallIgnored
+    archive.delete();
+
+    FsDatasource fs = new FsDatasource("fs", archive);
+    fs.setTableFormat(FsTableFormat.COLUMNAR);
+    Initialisables.initialise(fs);
+    StaticDatasource source = newSource();
+    DatasourceCopier.Builder.newCopier().build().copy(source, fs);
+    Variable text = source.getValueTable("table").getVariable("text");
+    VariableEntity entity = new VariableEntityBean("Participant", "10");
+    try(ValueTableWriter tableWriter = fs.createWriter("table", "Participant");
+        ValueTableWriter.ValueSetWriter valueSetWriter = tableWriter.writeValueSet(entity)) {
+      valueSetWriter.writeValue(text, TextType.get().valueOf("rewritten"));
+    }
+    Disposables.dispose(fs);
+
+    fs = new FsDatasource("fs", archive);
+    Initialisables.initialise(fs);
+    try {
+      ValueTable table = fs.getValueTable("table");
+      assertThat(table.getValue(text, table.getValueSet(entity))).isEqualTo(TextType.get().valueOf("rewritten"));
+      assertThat(table.getVariableEntities()).hasSize(ENTITIES);
+    } finally {
+      Disposables.dispose(fs);
+    }
+  }
+
+  @Test
+  public void test_binary_write_read() throws IOException {
+    archive = File.createTempFile("magma", "binary.zip");
+    //noinspection ResultOfMethodCallIgnored
+    archive.delete();
+
+    FsDatasource fs = new FsDatasource("fs", archive);
+    fs.setTableFormat(FsTableFormat.BINARY);
+    Initialisables.initialise(fs);
+    StaticDatasource source = newSource();
+    DatasourceCopier.Builder.newCopier().build().copy(source, fs);
+    Disposables.dispose(fs);
+
+    assertThat(new de.schlichtherle.io.File(archive, "table/strings.bin").exists()).isTrue();
+    assertThat(new de.schlichtherle.io.File(archive, "table/variables.bin").exists()).isTrue();
+
+    fs = new FsDatasource("fs", archive);
+    Initialisables.initialise(fs);
+    try {
+      assertThat(((FsValueTable) fs.getValueTable("table")).isBinary()).isTrue();
+      assertSameValues(source.getValueTable("table"), fs.getValueTable("table"));
+    } finally {
+      Disposables.dispose(fs);
+    }
+  }
+
+  @Test
+  public void test_binary_is_smaller_than_xml() throws IOException {
+    File xmlArchive = File.createTempFile("magma", "xml.zip");
+    //noinspection ResultOfMethodCallIgnored
+    xmlArchive.delete();
+    archive = File.createTempFile("magma", "binary.zip");
+    //noinspection ResultOfMethodCallIgnored
+    archive.delete();
+
+    StaticDatasource source = newSource();
+    try {
+      FsDatasource fs = new FsDatasource("fs", xmlArchive);
+      Initialisables.initialise(fs);
+      DatasourceCopier.Builder.newCopier().build().copy(source, fs);
+      Disposables.dispose(fs);
+
+      fs = new FsDatasource("fs", archive);
+      fs.setTableFormat(FsTableFormat.BINARY);
+      Initialisables.initialise(fs);
+      DatasourceCopier.Builder.newCopier().build().copy(source, fs);
+      Disposables.dispose(fs);
+
+      assertThat(archive.length()).isLessThan(xmlArchive.length());
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      xmlArchive.delete();
+    }
+  }
+
+  @Test
+  public void test_parallel_decoding_keeps_entities_order() throws IOException {
+    archive = File.createTempFile("magma", "xml.zip");
+    //noinspection ResultOfMethodCallIgnored
+    archive.delete();
+
+    FsDatasource fs = new FsDatasource("fs", archive);
+    Initialisables.initialise(fs);
+    StaticDatasource source = newSource();
+    DatasourceCopier.Builder.newCopier().build().copy(source, fs);
+    Disposables.dispose(fs);
+    SortedSet<VariableEntity> entities = ImmutableSortedSet.copyOf(source.getValueTable("table").getVariableEntities());
+
+    List<List<Value>> sequential = readVectors(entities, 1);
+    List<List<Value>> parallel = readVectors(entities, 4);
+
+    assertThat(parallel).isEqualTo(sequential);
+    assertThat(sequential.get(0)).hasSize(ENTITIES);
+  }
+
+  @Test(expected = NoSuchValueSetException.class)
+  public void test_parallel_decoding_failure() throws IOException {
+    archive = File.createTempFile("magma", "xml.zip");
+    //noinspection ResultOfMethodCallIgnored
+    archive.delete();
+
+    FsDatasource fs = new FsDatasource("fs", archive);
+    Initialisables.initialise(fs);
+    DatasourceCopier.Builder.newCopier().build().copy(newSource(), fs);
+    Disposables.dispose(fs);
+
+    fs = new FsDatasource("fs", archive);
+    fs.setParallelism(4);
+    Initialisables.initialise(fs);
+    try {
+      SortedSet<VariableEntity> entities = ImmutableSortedSet
+          .of(new VariableEntityBean("Participant", "1"), new VariableEntityBean("Participant", "unknown"),
+              new VariableEntityBean("Participant", "2"));
+      Lists.newArrayList(
+          fs.getValueTable("table").getVariableValueSource("text").asVectorSource().getValues(entities));
+    } finally {
+      Disposables.dispose(fs);
+    }
+  }
+
+  private List<List<Value>> readVectors(SortedSet<VariableEntity> entities, int parallelism) {
+    FsDatasource fs = new FsDatasource("fs", archive);
+    fs.setParallelism(parallelism);
+    Initialisables.initialise(fs);
+    try {
+      ValueTable table = fs.getValueTable("table");
+      List<List<Value>> vectors = Lists.newArrayList();
+      for(Variable variable : table.getVariables()) {
+        vectors.add(Lists.newArrayList(
+            table.getVariableValueSource(variable.getName()).asVectorSource().getValues(entities)));
+      }
+      return vectors;
+    } finally {
+      Disposables.dispose(fs);
+    }
+  }
+
+  static void assertSameValues(ValueTable expected, ValueTable actual) {
+    assertThat(actual.getVariableEntities()).hasSize(expected.getVariableEntities().size());
+    SortedSet<VariableEntity> entities = ImmutableSortedSet.copyOf(expected.getVariableEntities());
+    for(Variable variable : expected.getVariables()) {
+      Variable actualVariable = actual.getVariable(variable.getName());
+      // values read by value set
+      for(VariableEntity entity : ImmutableList.of(entities.first(), entities.last())) {
+        assertThat(actual.getValue(actualVariable, actual.getValueSet(entity)))
+            .isEqualTo(expected.getValue(variable, expected.getValueSet(entity)));
+      }
+      // values read as a vector
+      List<Value> values = Lists
+          .newArrayList(actual.getVariableValueSource(variable.getName()).asVectorSource().getValues(entities));
+      assertThat(values).hasSize(entities.size());
+      int i = 0;
+      for(VariableEntity entity : entities) {
+        assertThat(values.get(i++)).isEqualTo(expected.getValue(variable, expected.getValueSet(entity)));
+      }
+    }
+  }
+
+  static StaticDatasource newSource() {
+    StaticDatasource source = new StaticDatasource("source");
+    ImmutableList.Builder<String> identifiers = ImmutableList.builder();
+    for(int e = 1; e <= ENTITIES; e++) {
+      identifiers.add("" + e);
+    }
+    StaticValueTable table = new StaticValueTable(source, "table", identifiers.build());
+    Variable text = Variable.Builder.newVariable("text", TextType.get(), "Participant").build();
+    Variable integer = Variable.Builder.newVariable("integer", IntegerType.get(), "Participant").build();
+    Variable decimal = Variable.Builder.newVariable("decimal", DecimalType.get(), "Participant").build();
+    Variable repeatable = Variable.Builder.newVariable("repeatable", IntegerType.get(), "Participant").repeatable()
+        .build();
+    for(int e = 1; e <= ENTITIES; e++) {
+      table.addValues("" + e, //
+          text, e % 7 == 0 ? TextType.get().nullValue() : TextType.get().valueOf("text-" + e % 3), //
+          integer, IntegerType.get().valueOf(e - ENTITIES / 2), //
+          decimal, DecimalType.get().valueOf(e / 3.0), //
+          repeatable, IntegerType.get().sequenceOf(
+          ImmutableList.of(IntegerType.get().valueOf(e), IntegerType.get().nullValue())));
+    }
+    source.addValueTable(table);
+    Initialisables.initialise(source);
+    return source;
+  }
+
+}
@@ -1,6 +1,7 @@
 package org.obiba.magma.datasource.limesurvey;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Map;
 
@@ -24,6 +25,16 @@ class LimesurveyValueSet extends ValueSetBean {
     super(table, entity);
   }
 
+  /**
+   * @param table
+   * @param entity
+   * @param row the columns of the entity's survey row, already read
+   */
+  LimesurveyValueSet(ValueTable table, VariableEntity entity, Map<String, Object> row) {
+    super(table, entity);
+    cache = row;
+  }
+
   Value getValue(ValueType type, String field) {
     loadValues();
     Object object = cache.get(field);
@@ -41,11 +52,7 @@ class LimesurveyValueSet extends ValueSetBean {
             @Override
             public Void extractData(ResultSet rs) throws SQLException, DataAccessException {
               if(rs.next()) {
-                for(int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
-                  String column = rs.getMetaData().getColumnName(i);
-                  Object object = rs.getObject(i);
-                  cache.put(column, object);
-                }
+                cache.putAll(readRow(rs));
               }
               return null;
             }
@@ -53,6 +60,22 @@ class LimesurveyValueSet extends ValueSetBean {
     }
   }
 
+  /**
+   * Read the columns of the current row of a result set.
+   *
+   * @param rs
+   * @return the column values by column name
+   * @throws SQLException
+   */
+  static Map<String, Object> readRow(ResultSet rs) throws SQLException {
+    ResultSetMetaData metaData = rs.getMetaData();
+    Map<String, Object> row = Maps.newHashMapWithExpectedSize(metaData.getColumnCount());
+    for(int i = 1; i <= metaData.getColumnCount(); i++) {
+      row.put(metaData.getColumnName(i), rs.getObject(i));
+    }
+    return row;
+  }
+
   @NotNull
   @Override
   public LimesurveyValueTable getValueTable() {
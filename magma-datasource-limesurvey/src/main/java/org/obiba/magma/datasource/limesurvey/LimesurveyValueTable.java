@@ -1,9 +1,11 @@
 package org.obiba.magma.datasource.limesurvey;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedSet;
 
@@ -28,15 +30,19 @@ import org.obiba.magma.support.AbstractValueTable;
 import org.obiba.magma.type.DateTimeType;
 import org.obiba.magma.type.IntegerType;
 import org.obiba.magma.type.TextType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 
-import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 @SuppressWarnings("OverlyCoupledClass")
@@ -44,6 +50,11 @@ class LimesurveyValueTable extends AbstractValueTable {
 
   public static final String PARTICIPANT = "Participant";
 
+  /**
+   * Maximum number of tokens in the IN clause of a query reading values.
+   */
+  static final int TOKEN_BATCH_SIZE = 500;
+
   private final Integer sid;
 
   private Map<Integer, LimeQuestion> mapQuestions;
@@ -58,9 +69,16 @@ class LimesurveyValueTable extends AbstractValueTable {
 
   private final LimesurveyElementProvider elementProvider;
 
+  /**
+   * Template of the queries reading the survey rows by batches of tokens.
+   */
+  private final JdbcTemplate batchJdbcTemplate;
+
   LimesurveyValueTable(LimesurveyDatasource datasource, String name, Integer sid) {
     super(datasource, name);
     this.sid = sid;
+    batchJdbcTemplate = new JdbcTemplate(datasource.getDataSource());
+    batchJdbcTemplate.setFetchSize(TOKEN_BATCH_SIZE);
     elementProvider = new LimesurveyElementProviderJdbc(datasource, sid);
     setVariableEntityProvider(new LimesurveyVariableEntityProvider(PARTICIPANT, datasource, sid));
   }
@@ -390,6 +408,99 @@ class LimesurveyValueTable extends AbstractValueTable {
     return new LimesurveyValueSet(this, entity);
   }
 
+  @Override
+  public Iterable<ValueSet> getValueSets() {
+    final List<VariableEntity> entities = Lists.newArrayList(getVariableEntities());
+    return new Iterable<ValueSet>() {
+      @Override
+      public Iterator<ValueSet> iterator() {
+        return new TokenBatchIterator<ValueSet>(entities) {
+          @Override
+          protected Iterable<ValueSet> readBatch(List<VariableEntity> batch) {
+            return readValueSets(batch);
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Read all the answer columns of a batch of entities in a single query.
+   *
+   * @param batch
+   * @return
+   */
+  private Iterable<ValueSet> readValueSets(List<VariableEntity> batch) {
+    final Map<String, Map<String, Object>> rows = Maps.newHashMapWithExpectedSize(batch.size());
+    queryRows(batch, "*", new RowCallbackHandler() {
+      @Override
+      public void processRow(ResultSet rs) throws SQLException {
+        String token = rs.getString("token");
+        if(!rows.containsKey(token)) {
+          rows.put(token, LimesurveyValueSet.readRow(rs));
+        }
+      }
+    });
+    List<ValueSet> valueSets = Lists.newArrayListWithCapacity(batch.size());
+    for(VariableEntity entity : batch) {
+      Map<String, Object> row = rows.get(entity.getIdentifier());
+      valueSets.add(new LimesurveyValueSet(this, entity, row == null ? Maps.<String, Object>newHashMap() : row));
+    }
+    return valueSets;
+  }
+
+  /**
+   * Query the survey rows of a batch of entities. Rows are handed to the callback as the result set is read, in no
+   * particular order: the result set is forward only and fetched {@link #TOKEN_BATCH_SIZE} rows at a time.
+   *
+   * @param batch entities, at most {@link #TOKEN_BATCH_SIZE}
+   * @param columns
+   * @param callback
+   */
+  private void queryRows(List<VariableEntity> batch, String columns, RowCallbackHandler callback) {
+    List<String> tokens = Lists.newArrayListWithCapacity(batch.size());
+    for(VariableEntity entity : batch) {
+      tokens.add(entity.getIdentifier());
+    }
+    String sql = "SELECT " + columns + " FROM " + quoteAndPrefix("survey_" + getSid()) + " WHERE " +
+        quoteAndPrefix("token") + " IN (:ids)";
+    SqlParameterSource params = new MapSqlParameterSource("ids", tokens);
+    ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+    PreparedStatementCreatorFactory statementFactory = new PreparedStatementCreatorFactory(
+        NamedParameterUtils.substituteNamedParameters(parsedSql, params),
+        NamedParameterUtils.buildSqlParameterList(parsedSql, params));
+    statementFactory.setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+    batchJdbcTemplate.query(
+        statementFactory.newPreparedStatementCreator(NamedParameterUtils.buildValueArray(parsedSql, params, null)),
+        callback);
+  }
+
+  /**
+   * Iterates over items read by batches of {@link #TOKEN_BATCH_SIZE} entities, so that the number of tokens in a query
+   * and the number of rows held in memory are bounded.
+   */
+  private abstract static class TokenBatchIterator<T> extends AbstractIterator<T> {
+
+    private final Iterator<List<VariableEntity>> batches;
+
+    private Iterator<T> batchItems = Collections.emptyIterator();
+
+    private TokenBatchIterator(Iterable<VariableEntity> entities) {
+      batches = Iterables.partition(entities, TOKEN_BATCH_SIZE).iterator();
+    }
+
+    @Override
+    protected T computeNext() {
+      while(!batchItems.hasNext()) {
+        if(!batches.hasNext()) return endOfData();
+        batchItems = readBatch(batches.next()).iterator();
+      }
+      return batchItems.next();
+    }
+
+    protected abstract Iterable<T> readBatch(List<VariableEntity> batch);
+  }
+
   @Override
   public Timestamps getValueSetTimestamps(VariableEntity entity) throws NoSuchValueSetException {
     return new LimesurveyValueSet(this, entity).getTimestamps();
@@ -448,65 +559,45 @@ class LimesurveyValueTable extends AbstractValueTable {
     }
 
     @Override
-    //TODO move into provider implementation
     public Iterable<Value> getValues(final SortedSet<VariableEntity> entities) {
       return new Iterable<Value>() {
 
         @Override
         public Iterator<Value> iterator() {
-          NamedParameterJdbcOperations jdbcTemplate = new NamedParameterJdbcTemplate(getDatasource().getDataSource());
-          MapSqlParameterSource parameters = new MapSqlParameterSource();
-          parameters.addValue("ids", Lists.newArrayList(extractIdentifiers(entities)));
-          String sql = "SELECT " + quoteAndPrefix(getLimesurveyVariableField()) + " FROM " +
-              quoteAndPrefix("survey_" + getSid()) + " WHERE token IN (:ids) ORDER BY token";
-          return new ValueIterator(entities, jdbcTemplate.queryForRowSet(sql, parameters));
-        }
-
-        private Iterable<String> extractIdentifiers(Iterable<VariableEntity> entities) {
-          return Iterables.transform(entities, new Function<VariableEntity, String>() {
-
+          return new TokenBatchIterator<Value>(entities) {
             @Override
-            public String apply(VariableEntity input) {
-              return input.getIdentifier();
+            protected Iterable<Value> readBatch(List<VariableEntity> batch) {
+              return readValues(batch);
             }
-          });
+          };
         }
       };
     }
 
-    private class ValueIterator implements Iterator<Value> {
-
-      private final Iterator<VariableEntity> idsIterator;
-
-      private SqlRowSet rows;
-
-      private ValueIterator(Iterable<VariableEntity> entities, SqlRowSet rows) {
-        idsIterator = entities.iterator();
-        if(!Iterables.isEmpty(entities)) {
-          this.rows = rows;
-        }
-      }
-
-      @Override
-      public boolean hasNext() {
-        return idsIterator.hasNext();
-      }
-
-      @Override
-      public Value next() {
-        if(!hasNext()) {
-          throw new NoSuchElementException();
+    /**
+     * Read the values of a batch of entities in a single query, rows being aligned to entities by token.
+     *
+     * @param batch
+     * @return
+     */
+    private Iterable<Value> readValues(List<VariableEntity> batch) {
+      final Map<String, Object> objects = Maps.newHashMapWithExpectedSize(batch.size());
+      String columns = quoteAndPrefix("token") + ", " + quoteAndPrefix(getLimesurveyVariableField());
+      queryRows(batch, columns, new RowCallbackHandler() {
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+          String token = rs.getString(1);
+          if(!objects.containsKey(token)) {
+            objects.put(token, rs.getObject(2));
+          }
         }
-        idsIterator.next();
-        rows.next();
-        Object object = rows.getObject(getLimesurveyVariableField());
-        return variable.getValueType().valueOf("".equals(object) ? null : object);
-      }
-
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException();
+      });
+      List<Value> values = Lists.newArrayListWithCapacity(batch.size());
+      for(VariableEntity entity : batch) {
+        Object object = objects.get(entity.getIdentifier());
+        values.add(variable.getValueType().valueOf("".equals(object) ? null : object));
       }
+      return values;
     }
 
   }
@@ -0,0 +1,121 @@
+package org.obiba.magma.datasource.limesurvey;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueSet;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class LimesurveyValueTableTest extends AbstractMagmaTest {
+
+  private static final int ENTITY_COUNT = 2 * LimesurveyValueTable.TOKEN_BATCH_SIZE + 1;
+
+  private EmbeddedDatabase database;
+
+  private LimesurveyValueTable table;
+
+  @Before
+  public void createSurvey() {
+    database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.HSQL).generateUniqueName(true).build();
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+    jdbcTemplate.execute("CREATE TABLE settings_global (stg_name VARCHAR(50), stg_value VARCHAR(255))");
+    jdbcTemplate.execute("INSERT INTO settings_global VALUES ('DBVersion', '146')");
+    jdbcTemplate.execute("CREATE TABLE \"surveys\" (sid INTEGER, language VARCHAR(50))");
+    jdbcTemplate.execute("INSERT INTO \"surveys\" VALUES (1, 'en')");
+    jdbcTemplate.execute("CREATE TABLE \"surveys_languagesettings\" " +
+        "(surveyls_survey_id INTEGER, surveyls_language VARCHAR(50), surveyls_title VARCHAR(255))");
+    jdbcTemplate.execute("INSERT INTO \"surveys_languagesettings\" VALUES (1, 'en', 'survey')");
+    jdbcTemplate.execute("CREATE TABLE \"groups\" (gid INTEGER, language VARCHAR(50), group_order INTEGER)");
+    jdbcTemplate.execute("CREATE TABLE \"questions\" (qid INTEGER, sid INTEGER, gid INTEGER, language VARCHAR(50), " +
+        "type VARCHAR(1), title VARCHAR(255), question VARCHAR(255), help VARCHAR(255), question_order INTEGER)");
+    jdbcTemplate.execute("CREATE TABLE \"question_attributes\" (qid INTEGER, attribute VARCHAR(255), value VARCHAR(255))");
+    jdbcTemplate.execute("CREATE TABLE \"survey_1\" (\"token\" VARCHAR(50), \"startdate\" TIMESTAMP, " +
+        "\"submitdate\" TIMESTAMP, \"startlanguage\" VARCHAR(50), \"lastpage\" INTEGER)");
+
+    List<Object[]> rows = Lists.newArrayList();
+    Timestamp date = new Timestamp(System.currentTimeMillis());
+    for(int i = 0; i < ENTITY_COUNT; i++) {
+      rows.add(new Object[] { token(i), date, date, language(i), i });
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO \"survey_1\" VALUES (?, ?, ?, ?, ?)", rows);
+
+    LimesurveyDatasource datasource = new LimesurveyDatasource("lime", database);
+    datasource.initialise();
+    table = (LimesurveyValueTable) datasource.getValueTable("survey");
+  }
+
+  @After
+  public void shutdownDatabase() {
+    database.shutdown();
+  }
+
+  @Test
+  public void test_value_sets_are_read_by_batches_in_entity_order() {
+    List<VariableEntity> entities = Lists.newArrayList(table.getVariableEntities());
+    assertThat(entities).hasSize(ENTITY_COUNT);
+
+    VariableValueSource startLanguage = table.getVariableValueSource("startlanguage");
+    VariableValueSource lastPage = table.getVariableValueSource("lastpage");
+    int position = 0;
+    for(ValueSet valueSet : table.getValueSets()) {
+      VariableEntity entity = entities.get(position++);
+      int index = Integer.parseInt(entity.getIdentifier());
+      assertThat(valueSet.getVariableEntity()).isEqualTo(entity);
+      assertThat(startLanguage.getValue(valueSet).toString()).isEqualTo(language(index));
+      assertThat(lastPage.getValue(valueSet).toString()).isEqualTo(String.valueOf(index));
+    }
+    assertThat(position).isEqualTo(ENTITY_COUNT);
+  }
+
+  @Test
+  public void test_values_are_read_by_batches_in_entity_order() {
+    SortedSet<VariableEntity> entities = ImmutableSortedSet.copyOf(table.getVariableEntities());
+
+    VariableValueSource startLanguage = table.getVariableValueSource("startlanguage");
+    List<Value> values = Lists.newArrayList(startLanguage.asVectorSource().getValues(entities));
+    assertThat(values).hasSize(ENTITY_COUNT);
+    int position = 0;
+    for(VariableEntity entity : entities) {
+      assertThat(values.get(position++).toString()).isEqualTo(language(Integer.parseInt(entity.getIdentifier())));
+    }
+  }
+
+  @Test
+  public void test_missing_rows_give_empty_values() {
+    SortedSet<VariableEntity> entities = ImmutableSortedSet.copyOf(table.getVariableEntities());
+    new JdbcTemplate(database).update("DELETE FROM \"survey_1\" WHERE \"token\" = ?",
+        token(LimesurveyValueTable.TOKEN_BATCH_SIZE));
+
+    List<Value> values = Lists
+        .newArrayList(table.getVariableValueSource("startlanguage").asVectorSource().getValues(entities));
+    assertThat(values).hasSize(ENTITY_COUNT);
+    assertThat(values.get(LimesurveyValueTable.TOKEN_BATCH_SIZE - 1).isNull()).isFalse();
+    assertThat(values.get(LimesurveyValueTable.TOKEN_BATCH_SIZE).isNull()).isTrue();
+    assertThat(values.get(LimesurveyValueTable.TOKEN_BATCH_SIZE + 1).isNull()).isFalse();
+  }
+
+  private static String token(int index) {
+    return String.format("%04d", index);
+  }
+
+  private static String language(int index) {
+    return index % 2 == 0 ? "en" : "fr";
+  }
+
+}
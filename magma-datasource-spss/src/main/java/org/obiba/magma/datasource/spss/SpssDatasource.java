@@ -31,6 +31,8 @@ public class SpssDatasource extends AbstractDatasource {
 
   private final Map<String, SpssValueTable> valueTablesMapOnInit = new LinkedHashMap<>();
 
+  private boolean memoryMapped = false;
+
   public SpssDatasource(String name, List<File> spssFiles, String characterSet, String entityType, String locale) {
     super(name, "spss");
     this.spssFiles = spssFiles;
@@ -39,11 +41,30 @@ public class SpssDatasource extends AbstractDatasource {
     this.locale = locale;
   }
 
+  /**
+   * Read the values directly from the memory-mapped files, decoding only the requested variables of the requested
+   * cases, instead of loading the data of the files in memory.
+   * <p>
+   * This mode is experimental and off by default: the values are decoded by {@link
+   * org.obiba.magma.datasource.spss.support.SpssDataReader} instead of the SPSS library, and must be checked against the
+   * loaded data (see the SPSS datasource tests) before it is enabled.
+   *
+   * @param memoryMapped
+   */
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+
+  public boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
   @Override
   protected void onInitialise() {
 
     for(File spssFile : spssFiles) {
       SpssValueTableFactory factory = new SpssValueTableFactory(this, entityType, spssFile, characterSet, locale);
+      factory.setMemoryMapped(memoryMapped);
       String tableName = factory.getName();
 
       if(!valueTablesMapOnInit.containsKey(tableName)) {
@@ -12,32 +12,27 @@ package org.obiba.magma.datasource.spss;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.Value;
 import org.obiba.magma.ValueTable;
 import org.obiba.magma.Variable;
 import org.obiba.magma.VariableEntity;
-import org.obiba.magma.datasource.spss.support.SpssVariableTypeMapper;
-import org.obiba.magma.datasource.spss.support.SpssVariableValueFactory;
 import org.obiba.magma.support.ValueSetBean;
-import org.opendatafoundation.data.spss.SPSSFile;
-import org.opendatafoundation.data.spss.SPSSVariable;
 
 public class SpssValueSet extends ValueSetBean {
 
+  /**
+   * Values of the variables that were requested so far.
+   */
   private final Map<String, Value> row = new HashMap<>();
 
-  private final SPSSFile spssFile;
-
   private final Map<String, Integer> identifierToVariableIndex;
 
-  public SpssValueSet(ValueTable table, VariableEntity entity, SPSSFile spssFile,
-      Map<String, Integer> map) {
+  public SpssValueSet(ValueTable table, VariableEntity entity, Map<String, Integer> map) {
     super(table, entity);
-    this.spssFile = spssFile;
     identifierToVariableIndex = map;
-    loadVariables();
   }
 
   @NotNull
@@ -46,23 +41,20 @@ public class SpssValueSet extends ValueSetBean {
     return (SpssValueTable) super.getValueTable();
   }
 
-  public Value getValue(Variable variable) {
-    return row.get(variable.getName());
-  }
-
-  //
-  // Private methods
-  //
-
-  private void loadVariables() {
-    VariableEntity variableEntity = getVariableEntity();
-    int variableIndex = identifierToVariableIndex.get(variableEntity.getIdentifier());
-
-    for(int i = 1; i < spssFile.getVariableCount(); i++) {
-      SPSSVariable spssVariable = spssFile.getVariable(i);
-      row.put(spssVariable.getName(),
-          new SpssVariableValueFactory(variableIndex, spssVariable, SpssVariableTypeMapper.map(spssVariable)).create());
+  /**
+   * Get the value of a variable, decoded on first request.
+   *
+   * @param variable
+   * @return null if the variable is not one of the file
+   */
+  @Nullable
+  public synchronized Value getValue(Variable variable) {
+    String name = variable.getName();
+    if(!row.containsKey(name)) {
+      int caseNumber = identifierToVariableIndex.get(getVariableEntity().getIdentifier());
+      row.put(name, getValueTable().createValue(caseNumber, name));
     }
+    return row.get(name);
   }
 
 }
@@ -28,7 +28,9 @@ import org.obiba.magma.Value;
 import org.obiba.magma.ValueSet;
 import org.obiba.magma.ValueType;
 import org.obiba.magma.VariableEntity;
+import org.obiba.magma.datasource.spss.support.SpssDataReader;
 import org.obiba.magma.datasource.spss.support.SpssDatasourceParsingException;
+import org.obiba.magma.datasource.spss.support.SpssMappedValueFactory;
 import org.obiba.magma.datasource.spss.support.SpssVariableTypeMapper;
 import org.obiba.magma.datasource.spss.support.SpssVariableValueFactory;
 import org.obiba.magma.datasource.spss.support.SpssVariableValueSourceFactory;
@@ -54,10 +56,30 @@ public class SpssValueTable extends AbstractValueTable implements Disposable {
 
   private Map<String, Integer> entityToVariableIndex = new HashMap<>();
 
+  private final Map<String, Integer> variableNameToDictionaryIndex = new HashMap<>();
+
+  private final boolean memoryMapped;
+
+  @Nullable
+  private final String characterSet;
+
+  /**
+   * Reads the values from the memory-mapped file, null when the data are loaded in memory.
+   */
+  @Nullable
+  private SpssDataReader dataReader;
+
   public SpssValueTable(Datasource datasource, String name, String entityType, String locale, SPSSFile spssFile) {
+    this(datasource, name, entityType, locale, spssFile, false, null);
+  }
+
+  public SpssValueTable(Datasource datasource, String name, String entityType, String locale, SPSSFile spssFile,
+      boolean memoryMapped, @Nullable String characterSet) {
     super(datasource, name);
     this.spssFile = spssFile;
     this.locale = locale;
+    this.memoryMapped = memoryMapped;
+    this.characterSet = characterSet;
     setVariableEntityProvider(new SpssVariableEntityProvider(entityType));
   }
 
@@ -69,7 +91,7 @@ public class SpssValueTable extends AbstractValueTable implements Disposable {
 
   @Override
   public ValueSet getValueSet(VariableEntity entity) throws NoSuchValueSetException {
-    return new SpssValueSet(this, entity, spssFile, entityToVariableIndex);
+    return new SpssValueSet(this, entity, entityToVariableIndex);
   }
 
   @NotNull
@@ -92,13 +114,54 @@ public class SpssValueTable extends AbstractValueTable implements Disposable {
     };
   }
 
+  /**
+   * Create the value of a variable for a case, decoding it from the memory-mapped file or from the loaded data.
+   *
+   * @param caseNumber case number, starting at 1
+   * @param variableName
+   * @return null if there is no such variable in the file
+   */
+  @Nullable
+  Value createValue(int caseNumber, String variableName) {
+    Integer dictionaryIndex = variableNameToDictionaryIndex.get(variableName);
+    if(dictionaryIndex == null) return null;
+    SPSSVariable spssVariable = spssFile.getVariable(dictionaryIndex);
+    return createValue(caseNumber, dictionaryIndex, spssVariable, SpssVariableTypeMapper.map(spssVariable), false);
+  }
+
+  private Value createValue(int caseNumber, int dictionaryIndex, SPSSVariable spssVariable, ValueType valueType,
+      boolean withValidation) {
+    return dataReader == null
+        ? new SpssVariableValueFactory(caseNumber, spssVariable, valueType, withValidation).create()
+        : new SpssMappedValueFactory(dataReader, caseNumber, dictionaryIndex, spssVariable, valueType, withValidation)
+            .create();
+  }
+
   //
   // Private methods
   //
 
   private void initializeVariableSources() {
     loadMetadata();
-    addVariableValueSources(new SpssVariableValueSourceFactory(spssFile, getEntityType(), locale, entityToVariableIndex));
+    if(memoryMapped) {
+      openDataReader();
+    }
+    for(int i = 1; i < spssFile.getVariableCount(); i++) {
+      variableNameToDictionaryIndex.put(spssFile.getVariable(i).getName(), i);
+    }
+    addVariableValueSources(
+        new SpssVariableValueSourceFactory(spssFile, getEntityType(), locale, entityToVariableIndex, dataReader));
+  }
+
+  private void openDataReader() {
+    if(dataReader != null) return;
+    try {
+      dataReader = SpssDataReader.open(spssFile, characterSet);
+    } catch(IOException e) {
+      String fileName = spssFile.file.getName();
+      throw new DatasourceParsingException("Failed to map data of file " + fileName, e, "SpssFailedToLoadData",
+          fileName);
+    }
   }
 
   private void loadMetadata() {
@@ -117,6 +180,14 @@ public class SpssValueTable extends AbstractValueTable implements Disposable {
 
   @Override
   public void dispose() {
+    if(dataReader != null) {
+      try {
+        dataReader.close();
+      } catch(IOException e) {
+        log.warn("Error occurred while closing SPSS mapped file: {}", e.getMessage());
+      }
+      dataReader = null;
+    }
     if(spssFile != null) {
       try {
         spssFile.close();
@@ -157,7 +228,9 @@ public class SpssValueTable extends AbstractValueTable implements Disposable {
     public Set<VariableEntity> getVariableEntities() {
 
       if(variableEntities == null) {
-        loadData();
+        if(dataReader == null) {
+          loadData();
+        }
         variableEntities = getVariableEntitiesInternal();
       }
 
@@ -168,11 +241,13 @@ public class SpssValueTable extends AbstractValueTable implements Disposable {
       Collection<String> entityIdentifiers = new HashSet<>();
       ImmutableSet.Builder<VariableEntity> entitiesBuilder = ImmutableSet.builder();
       SPSSVariable entityVariable = spssFile.getVariable(0);
-      int numberOfObservations = entityVariable.getNumberOfObservations();
+      int numberOfObservations = dataReader == null
+          ? entityVariable.getNumberOfObservations()
+          : dataReader.getNumberOfCases();
       ValueType valueType = SpssVariableTypeMapper.map(entityVariable);
 
       for(int i = 1; i <= numberOfObservations; i++) {
-        Value identifierValue = new SpssVariableValueFactory(i, entityVariable, valueType, true).create();
+        Value identifierValue = createValue(i, 0, entityVariable, valueType, true);
 
         if(identifierValue.isNull()) {
           throw new SpssDatasourceParsingException("Empty entity identifier found.", "SpssEmptyIdentifier",
@@ -15,6 +15,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.AbstractVariableValueSource;
@@ -25,6 +26,8 @@ import org.obiba.magma.Variable;
 import org.obiba.magma.VariableEntity;
 import org.obiba.magma.VariableValueSource;
 import org.obiba.magma.VectorSource;
+import org.obiba.magma.datasource.spss.support.SpssDataReader;
+import org.obiba.magma.datasource.spss.support.SpssMappedValueFactory;
 import org.obiba.magma.datasource.spss.support.SpssVariableValueFactory;
 import org.opendatafoundation.data.spss.SPSSVariable;
 
@@ -34,13 +37,32 @@ public class SpssVariableValueSource extends AbstractVariableValueSource impleme
 
   private final SPSSVariable spssVariable;
 
+  private final int dictionaryIndex;
+
   private final Map<String, Integer> identifierToVariableIndex;
 
+  @Nullable
+  private final SpssDataReader dataReader;
+
   public SpssVariableValueSource(Variable variable, SPSSVariable spssVariable,
       Map<String, Integer> map) {
+    this(variable, spssVariable, variable.getIndex(), map, null);
+  }
+
+  /**
+   * @param variable
+   * @param spssVariable
+   * @param dictionaryIndex index of the variable in the SPSS file dictionary
+   * @param map
+   * @param dataReader reads the values from the memory-mapped file, null if the data are loaded
+   */
+  public SpssVariableValueSource(Variable variable, SPSSVariable spssVariable, int dictionaryIndex,
+      Map<String, Integer> map, @Nullable SpssDataReader dataReader) {
     this.variable = variable;
     this.spssVariable = spssVariable;
+    this.dictionaryIndex = dictionaryIndex;
     identifierToVariableIndex = map;
+    this.dataReader = dataReader;
   }
 
   @NotNull
@@ -108,8 +130,10 @@ public class SpssVariableValueSource extends AbstractVariableValueSource impleme
 
       VariableEntity variableEntity = entitiesIterator.next();
       int variableIndex = identifierToVariableIndex.get(variableEntity.getIdentifier());
-      return new SpssVariableValueFactory(variableIndex, spssVariable, variable.getValueType())
-          .create();
+      return dataReader == null
+          ? new SpssVariableValueFactory(variableIndex, spssVariable, variable.getValueType()).create()
+          : new SpssMappedValueFactory(dataReader, variableIndex, dictionaryIndex, spssVariable,
+              variable.getValueType(), false).create();
     }
 
     @Override
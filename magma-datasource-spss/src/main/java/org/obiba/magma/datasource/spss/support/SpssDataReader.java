@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2015 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.datasource.spss.support;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.obiba.magma.type.TextType;
+import org.opendatafoundation.data.spss.SPSSFile;
+import org.opendatafoundation.data.spss.SPSSNumericVariable;
+import org.opendatafoundation.data.spss.SPSSStringVariable;
+import org.opendatafoundation.data.spss.SPSSVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the values of a .sav file directly from the memory-mapped file, one variable of one case at a time, instead of
+ * loading the whole data section in memory.
+ * <p>
+ * The dictionary records are only parsed to locate the 8-byte slots of each variable in a case and the start of the data
+ * section. The start of each case is indexed once, with a single pass over the data when the file is compressed.
+ * <p>
+ * Files that cannot be read this way (zlib compression, very long strings, numeric formats that are not mapped to a
+ * number or a date) are not supported: see {@link #open(SPSSFile, String)}.
+ */
+public class SpssDataReader implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(SpssDataReader.class);
+
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  private static final int HEADER_SIZE = 176;
+
+  private static final int NO_COMPRESSION = 0;
+
+  private static final int BYTECODE_COMPRESSION = 1;
+
+  private static final int VARIABLE_RECORD = 2;
+
+  private static final int VALUE_LABEL_RECORD = 3;
+
+  private static final int VALUE_LABEL_VARIABLES_RECORD = 4;
+
+  private static final int DOCUMENT_RECORD = 6;
+
+  private static final int EXTENSION_RECORD = 7;
+
+  private static final int DICTIONARY_TERMINATION_RECORD = 999;
+
+  private static final int VERY_LONG_STRING_SUBTYPE = 14;
+
+  private static final int PADDING_CODE = 0;
+
+  private static final int END_OF_DATA_CODE = 252;
+
+  private static final int RAW_CODE = 253;
+
+  private static final int SPACES_CODE = 254;
+
+  private static final int SYSMIS_CODE = 255;
+
+  private static final double SYSMIS = -Double.MAX_VALUE;
+
+  private static final int INITIAL_CASES = 1024;
+
+  private final RandomAccessFile file;
+
+  private final MappedByteBuffer[] segments;
+
+  private final long length;
+
+  private final Charset charset;
+
+  private ByteOrder order = ByteOrder.LITTLE_ENDIAN;
+
+  private int compression;
+
+  private int caseSize;
+
+  private double bias;
+
+  private long dataStart;
+
+  /**
+   * Slot of the first 8 bytes of each variable in a case, in the order of the dictionary.
+   */
+  private final List<Integer> variableSlots = new ArrayList<>();
+
+  private final List<Integer> variableWidths = new ArrayList<>();
+
+  private boolean veryLongStrings = false;
+
+  private int caseCount = -1;
+
+  // start of each case in compressed data: position of the command block, index of the command in the block and
+  // position of the next raw data
+  private long[] caseBlockPositions;
+
+  private byte[] caseCommandIndexes;
+
+  private long[] caseDataPositions;
+
+  private SpssDataReader(File spssFile, Charset charset) throws IOException {
+    this.charset = charset;
+    file = new RandomAccessFile(spssFile, "r");
+    length = file.length();
+    FileChannel channel = file.getChannel();
+    segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+    for(int i = 0; i < segments.length; i++) {
+      long position = i * SEGMENT_SIZE;
+      segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+    }
+  }
+
+  /**
+   * Memory-map the data of a .sav file which metadata are loaded.
+   *
+   * @param spssFile
+   * @param characterSet
+   * @return null if the file cannot be read this way and its data must be loaded
+   * @throws IOException
+   */
+  @Nullable
+  public static SpssDataReader open(SPSSFile spssFile, @Nullable String characterSet) throws IOException {
+    SpssDataReader reader = new SpssDataReader(spssFile.file,
+        characterSet == null ? Charset.defaultCharset() : Charset.forName(characterSet));
+    String unsupported = reader.readDictionary(spssFile);
+    if(unsupported != null) {
+      log.info("Data of SPSS file {} cannot be memory-mapped ({}), it will be loaded.", spssFile.file.getName(),
+          unsupported);
+      reader.close();
+      return null;
+    }
+    return reader;
+  }
+
+  /**
+   * Get the number of cases, indexing them on first call.
+   *
+   * @return
+   */
+  public synchronized int getNumberOfCases() {
+    if(caseCount < 0) {
+      indexCases();
+    }
+    return caseCount;
+  }
+
+  /**
+   * Read the value of a numeric variable.
+   *
+   * @param caseNumber case number, starting at 1
+   * @param variableIndex index of the variable in the dictionary, starting at 0
+   * @return null if the value is system missing
+   */
+  @Nullable
+  public Double readNumber(int caseNumber, int variableIndex) {
+    double[] numbers = new double[1];
+    readSlots(caseNumber, variableIndex, numbers, null);
+    return numbers[0] == SYSMIS ? null : numbers[0];
+  }
+
+  /**
+   * Read the value of a string variable, trailing spaces included.
+   *
+   * @param caseNumber case number, starting at 1
+   * @param variableIndex index of the variable in the dictionary, starting at 0
+   * @return
+   */
+  public String readString(int caseNumber, int variableIndex) {
+    int width = variableWidths.get(variableIndex);
+    byte[] bytes = new byte[(width + 7) / 8 * 8];
+    readSlots(caseNumber, variableIndex, null, bytes);
+    return new String(bytes, 0, width, charset);
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+  //
+  // Private methods
+  //
+
+  /**
+   * Parse the header and the dictionary records.
+   *
+   * @param spssFile
+   * @return the reason why the file is not supported, null if supported
+   */
+  @Nullable
+  @SuppressWarnings({ "OverlyLongMethod", "OverlyComplexMethod" })
+  private String readDictionary(SPSSFile spssFile) {
+    if(length < HEADER_SIZE) return "no header";
+    int layoutCode = getInt(64);
+    if(layoutCode != 2 && layoutCode != 3) {
+      order = ByteOrder.BIG_ENDIAN;
+    }
+    caseSize = getInt(68);
+    compression = getInt(72);
+    if(compression != NO_COMPRESSION && compression != BYTECODE_COMPRESSION) return "unsupported compression";
+    int headerCaseCount = getInt(80);
+    bias = getDouble(84);
+
+    long position = HEADER_SIZE;
+    int slot = 0;
+    while(dataStart == 0) {
+      if(position + 4 > length) return "no dictionary termination record";
+      int recordType = getInt(position);
+      position += 4;
+      switch(recordType) {
+        case VARIABLE_RECORD:
+          int type = getInt(position);
+          int hasLabel = getInt(position + 4);
+          int missingValues = Math.abs(getInt(position + 8));
+          position += 28;
+          if(hasLabel != 0) {
+            position += 4 + (getInt(position) + 3) / 4 * 4;
+          }
+          position += missingValues * 8;
+          // continuation records occupy the extra slots of long strings
+          if(type >= 0) {
+            variableSlots.add(slot);
+            variableWidths.add(type);
+          }
+          slot++;
+          break;
+        case VALUE_LABEL_RECORD:
+          int labels = getInt(position);
+          position += 4;
+          for(int i = 0; i < labels; i++) {
+            position += 8;
+            position += ((get(position) & 0xFF) + 1 + 7) / 8 * 8;
+          }
+          if(getInt(position) != VALUE_LABEL_VARIABLES_RECORD) return "invalid value labels";
+          position += 8 + getInt(position + 4) * 4L;
+          break;
+        case DOCUMENT_RECORD:
+          position += 4 + getInt(position) * 80L;
+          break;
+        case EXTENSION_RECORD:
+          if(getInt(position) == VERY_LONG_STRING_SUBTYPE) veryLongStrings = true;
+          position += 12 + (long) getInt(position + 4) * getInt(position + 8);
+          break;
+        case DICTIONARY_TERMINATION_RECORD:
+          dataStart = position + 4;
+          break;
+        default:
+          return "unknown record type " + recordType;
+      }
+    }
+    if(veryLongStrings) return "very long strings";
+    if(slot != caseSize && caseSize > 0) return "inconsistent case size";
+    caseSize = slot;
+    if(compression == NO_COMPRESSION) {
+      caseCount = headerCaseCount >= 0 ? headerCaseCount : (int) ((length - dataStart) / (caseSize * 8L));
+    }
+    return checkVariables(spssFile);
+  }
+
+  /**
+   * Check that the variables of the dictionary are the ones of the SPSS file, and that values can be decoded.
+   *
+   * @param spssFile
+   * @return
+   */
+  @Nullable
+  private String checkVariables(SPSSFile spssFile) {
+    if(variableSlots.size() != spssFile.getVariableCount()) return "unexpected number of variables";
+    for(int i = 0; i < variableSlots.size(); i++) {
+      SPSSVariable variable = spssFile.getVariable(i);
+      boolean string = variableWidths.get(i) > 0;
+      if(string != variable instanceof SPSSStringVariable) return "unexpected type of variable " + variable.getName();
+      if(variable instanceof SPSSNumericVariable && SpssVariableTypeMapper.map(variable) == TextType.get()) {
+        return "unsupported format of variable " + variable.getName();
+      }
+    }
+    return null;
+  }
+
+  private void indexCases() {
+    if(compression == NO_COMPRESSION) return;
+    int capacity = INITIAL_CASES;
+    caseBlockPositions = new long[capacity];
+    caseCommandIndexes = new byte[capacity];
+    caseDataPositions = new long[capacity];
+
+    CompressedDataCursor cursor = new CompressedDataCursor(dataStart, 8, dataStart);
+    int count = 0;
+    while(cursor.skipToNextValue()) {
+      if(count == capacity) {
+        capacity *= 2;
+        caseBlockPositions = Arrays.copyOf(caseBlockPositions, capacity);
+        caseCommandIndexes = Arrays.copyOf(caseCommandIndexes, capacity);
+        caseDataPositions = Arrays.copyOf(caseDataPositions, capacity);
+      }
+      caseBlockPositions[count] = cursor.blockPosition;
+      caseCommandIndexes[count] = (byte) cursor.commandIndex;
+      caseDataPositions[count] = cursor.dataPosition;
+      count++;
+      for(int i = 0; i < caseSize; i++) {
+        if(!cursor.skipToNextValue()) break;
+        cursor.next();
+      }
+    }
+    caseCount = count;
+  }
+
+  /**
+   * Read the slots of a variable, as numbers or bytes.
+   *
+   * @param caseNumber
+   * @param variableIndex
+   * @param numbers
+   * @param bytes
+   */
+  private void readSlots(int caseNumber, int variableIndex, @Nullable double[] numbers, @Nullable byte[] bytes) {
+    if(caseNumber < 1 || caseNumber > getNumberOfCases()) {
+      throw new IndexOutOfBoundsException("No such case: " + caseNumber);
+    }
+    int firstSlot = variableSlots.get(variableIndex);
+    int slots = numbers == null ? bytes.length / 8 : 1;
+    if(compression == NO_COMPRESSION) {
+      long position = dataStart + (caseNumber - 1) * caseSize * 8L + firstSlot * 8L;
+      for(int i = 0; i < slots; i++) {
+        if(numbers == null) {
+          getBytes(position + i * 8, bytes, i * 8);
+        } else {
+          numbers[i] = getDouble(position + i * 8);
+        }
+      }
+      return;
+    }
+
+    int index = caseNumber - 1;
+    CompressedDataCursor cursor = new CompressedDataCursor(caseBlockPositions[index], caseCommandIndexes[index],
+        caseDataPositions[index]);
+    for(int i = 0; i < firstSlot; i++) {
+      cursor.skipToNextValue();
+      cursor.next();
+    }
+    for(int i = 0; i < slots; i++) {
+      cursor.skipToNextValue();
+      if(numbers == null) {
+        cursor.nextBytes(bytes, i * 8);
+      } else {
+        numbers[i] = cursor.nextNumber();
+      }
+    }
+  }
+
+  private byte get(long position) {
+    return segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE));
+  }
+
+  private void getBytes(long position, byte[] bytes, int offset) {
+    for(int i = 0; i < 8; i++) {
+      bytes[offset + i] = get(position + i);
+    }
+  }
+
+  private int getInt(long position) {
+    int value = 0;
+    for(int i = 0; i < 4; i++) {
+      int b = get(position + i) & 0xFF;
+      value |= order == ByteOrder.LITTLE_ENDIAN ? b << 8 * i : b << 8 * (3 - i);
+    }
+    return value;
+  }
+
+  private double getDouble(long position) {
+    long value = 0;
+    for(int i = 0; i < 8; i++) {
+      long b = get(position + i) & 0xFF;
+      value |= order == ByteOrder.LITTLE_ENDIAN ? b << 8 * i : b << 8 * (7 - i);
+    }
+    return Double.longBitsToDouble(value);
+  }
+
+  /**
+   * Walks bytecode compressed data: blocks of 8 command bytes, each command being followed by the 8-byte raw values of
+   * the block commands that require one.
+   */
+  private class CompressedDataCursor {
+
+    private long blockPosition;
+
+    private int commandIndex;
+
+    private long dataPosition;
+
+    private int command;
+
+    private CompressedDataCursor(long blockPosition, int commandIndex, long dataPosition) {
+      this.blockPosition = blockPosition;
+      this.commandIndex = commandIndex;
+      this.dataPosition = dataPosition;
+    }
+
+    /**
+     * Move to the command of the next value, skipping padding commands.
+     *
+     * @return false if the end of the data was reached
+     */
+    private boolean skipToNextValue() {
+      while(true) {
+        if(commandIndex == 8) {
+          if(dataPosition + 8 > length) return false;
+          blockPosition = dataPosition;
+          dataPosition += 8;
+          commandIndex = 0;
+        }
+        command = get(blockPosition + commandIndex) & 0xFF;
+        if(command == END_OF_DATA_CODE) return false;
+        if(command != PADDING_CODE) return true;
+        commandIndex++;
+      }
+    }
+
+    /**
+     * Consume the current value.
+     */
+    private void next() {
+      if(command == RAW_CODE) dataPosition += 8;
+      commandIndex++;
+    }
+
+    private double nextNumber() {
+      double number;
+      switch(command) {
+        case RAW_CODE:
+          number = getDouble(dataPosition);
+          break;
+        case SPACES_CODE:
+        case SYSMIS_CODE:
+          number = SYSMIS;
+          break;
+        default:
+          number = command - bias;
+      }
+      next();
+      return number;
+    }
+
+    private void nextBytes(byte[] bytes, int offset) {
+      if(command == RAW_CODE) {
+        getBytes(dataPosition, bytes, offset);
+      } else {
+        Arrays.fill(bytes, offset, offset + 8, (byte) ' ');
+      }
+      next();
+    }
+  }
+
+}
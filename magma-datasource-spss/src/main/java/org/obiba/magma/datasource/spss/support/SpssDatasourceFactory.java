@@ -44,6 +44,8 @@ public class SpssDatasourceFactory extends AbstractDatasourceFactory {
 
   private String locale;
 
+  private boolean memoryMapped;
+
   public void setFile(String path) {
     setFile(new File(path));
   }
@@ -72,6 +74,15 @@ public class SpssDatasourceFactory extends AbstractDatasourceFactory {
     this.locale = locale;
   }
 
+  /**
+   * Experimental, off by default: see {@link SpssDatasource#setMemoryMapped(boolean)}.
+   *
+   * @param memoryMapped
+   */
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+
   @Override
   public Datasource create() {
     return internalCreate();
@@ -92,6 +103,8 @@ public class SpssDatasourceFactory extends AbstractDatasourceFactory {
       locale = DEFAULT_LOCALE;
     }
 
-    return new SpssDatasource(getName(), files, characterSet, entityType, locale);
+    SpssDatasource datasource = new SpssDatasource(getName(), files, characterSet, entityType, locale);
+    datasource.setMemoryMapped(memoryMapped);
+    return datasource;
   }
 }
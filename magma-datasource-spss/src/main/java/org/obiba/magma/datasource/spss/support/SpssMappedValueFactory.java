@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.datasource.spss.support;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+import org.obiba.magma.MagmaDate;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueType;
+import org.obiba.magma.type.DateType;
+import org.obiba.magma.type.IntegerType;
+import org.opendatafoundation.data.spss.SPSSStringVariable;
+import org.opendatafoundation.data.spss.SPSSVariable;
+
+/**
+ * Creates the value of a variable for a case from the memory-mapped data of the SPSS file (see {@link SpssDataReader}).
+ */
+public class SpssMappedValueFactory extends SpssVariableValueFactory {
+
+  /**
+   * SPSS dates are the number of seconds since the beginning of the Gregorian calendar.
+   */
+  private static final LocalDate SPSS_EPOCH = LocalDate.of(1582, 10, 14);
+
+  private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+  private final SpssDataReader dataReader;
+
+  private final int dictionaryIndex;
+
+  /**
+   * @param dataReader
+   * @param variableIndex case number
+   * @param dictionaryIndex index of the variable in the SPSS file dictionary
+   * @param spssVariable
+   * @param valueType
+   * @param withValidation
+   */
+  public SpssMappedValueFactory(SpssDataReader dataReader, int variableIndex, int dictionaryIndex,
+      SPSSVariable spssVariable, ValueType valueType, boolean withValidation) {
+    super(variableIndex, spssVariable, valueType, withValidation);
+    this.dataReader = dataReader;
+    this.dictionaryIndex = dictionaryIndex;
+  }
+
+  @Override
+  protected Value createValue() throws SpssInvalidCharacterException {
+    if(spssVariable instanceof SPSSStringVariable) {
+      return super.createValue();
+    }
+    Double number = dataReader.readNumber(variableIndex, dictionaryIndex);
+    if(number == null) {
+      return valueType.nullValue();
+    }
+    if(valueType instanceof DateType) {
+      long days = Math.floorDiv(number.longValue(), SECONDS_PER_DAY);
+      LocalDate date = SPSS_EPOCH.plusDays(days);
+      return valueType.valueOf(new MagmaDate(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth()));
+    }
+    SpssNumericDataType numericDataType = SpssVariableTypeMapper.getSpssNumericDataType(spssVariable);
+    if(numericDataType == SpssNumericDataType.SCIENTIFIC) {
+      return valueType.valueOf(roundSignificant(number, spssVariable.getDecimals() + 1).doubleValue());
+    }
+    BigDecimal rounded = round(number, valueType instanceof IntegerType ? 0 : spssVariable.getDecimals());
+    if(spssVariable.getLength() > 0 && getPrintedWidth(rounded, numericDataType) > spssVariable.getLength()) {
+      // printed as asterisks when loaded, which are removed
+      return valueType.nullValue();
+    }
+    return valueType instanceof IntegerType
+        ? valueType.valueOf(rounded.longValue())
+        : valueType.valueOf(rounded.doubleValue());
+  }
+
+  @Override
+  protected String getValue() {
+    return dataReader.readString(variableIndex, dictionaryIndex);
+  }
+
+  /**
+   * Round as the value would be printed using the variable format.
+   *
+   * @param number
+   * @param decimals
+   * @return
+   */
+  private BigDecimal round(double number, int decimals) {
+    return BigDecimal.valueOf(number).setScale(decimals, RoundingMode.HALF_UP);
+  }
+
+  /**
+   * Round as the value would be printed in scientific notation, with one digit before the decimal point.
+   *
+   * @param number
+   * @param digits
+   * @return
+   */
+  private BigDecimal roundSignificant(double number, int digits) {
+    return BigDecimal.valueOf(number).round(new MathContext(digits, RoundingMode.HALF_UP));
+  }
+
+  /**
+   * Get the number of characters of the printed value, sign, currency symbol and grouping separators included.
+   *
+   * @param rounded
+   * @param numericDataType
+   * @return
+   */
+  private int getPrintedWidth(BigDecimal rounded, SpssNumericDataType numericDataType) {
+    String printed = rounded.toPlainString();
+    int width = printed.length();
+    int integerDigits = rounded.abs().setScale(0, RoundingMode.DOWN).toPlainString().length();
+    switch(numericDataType) {
+      case DOLLAR:
+        width++;
+        // fall through
+      case COMMA:
+      case DOT:
+        width += (integerDigits - 1) / 3;
+        break;
+      default:
+    }
+    return width;
+  }
+
+}
@@ -40,6 +40,8 @@ public class SpssValueTableFactory {
 
   private final String name;
 
+  private boolean memoryMapped;
+
   public SpssValueTableFactory(@NotNull Datasource datasource, @NotNull String entityType, @NotNull File file,
       @NotNull String characterSet, @NotNull String locale) {
     this.datasource = datasource;
@@ -50,13 +52,17 @@ public class SpssValueTableFactory {
     name = createValidFileName(file);
   }
 
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+
   public SpssValueTable create() {
     try {
       SPSSFile spssFile = new SPSSFile(file,
           Strings.isNullOrEmpty(characterSet) ? null : Charset.forName(characterSet));
       spssFile.logFlag = false;
 
-      return new SpssValueTable(datasource, name, entityType, locale, spssFile);
+      return new SpssValueTable(datasource, name, entityType, locale, spssFile, memoryMapped, characterSet);
     } catch(IOException e) {
       String fileName = file.getName();
       throw new DatasourceParsingException("Could not open file " + fileName + " to create ValueTable.", e,
@@ -53,6 +53,9 @@ public class SpssVariableValueSourceFactory implements VariableValueSourceFactor
 
   private final Map<String, Integer> identifierToVariableIndex;
 
+  @Nullable
+  private final SpssDataReader dataReader;
+
   /**
    *
    * @param spssFile
@@ -62,10 +65,16 @@ public class SpssVariableValueSourceFactory implements VariableValueSourceFactor
    */
   public SpssVariableValueSourceFactory(@NotNull SPSSFile spssFile, @NotNull String entityType, @NotNull String locale,
       Map<String, Integer> map) {
+    this(spssFile, entityType, locale, map, null);
+  }
+
+  public SpssVariableValueSourceFactory(@NotNull SPSSFile spssFile, @NotNull String entityType, @NotNull String locale,
+      Map<String, Integer> map, @Nullable SpssDataReader dataReader) {
     this.spssFile = spssFile;
     this.entityType = entityType;
     this.locale = locale;
     identifierToVariableIndex = map;
+    this.dataReader = dataReader;
   }
 
   @Override
@@ -75,8 +84,8 @@ public class SpssVariableValueSourceFactory implements VariableValueSourceFactor
     for(int i = 1; i < spssFile.getVariableCount(); i++) {
       SPSSVariable spssVariable = spssFile.getVariable(i);
       try {
-        sources.add(new SpssVariableValueSource(createVariableBuilder(i, spssVariable), spssVariable,
-            identifierToVariableIndex));
+        sources.add(new SpssVariableValueSource(createVariableBuilder(i, spssVariable), spssVariable, i,
+            identifierToVariableIndex, dataReader));
       } catch(SpssInvalidCharacterException e) {
         String variableName = spssVariable.getName();
         // In the dictionary the first row is reserved for entity variable
@@ -17,6 +17,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.junit.After;
 import org.junit.Before;
@@ -32,11 +34,14 @@ import org.obiba.magma.VariableEntity;
 import org.obiba.magma.datasource.spss.support.SpssDatasourceFactory;
 import org.obiba.magma.datasource.spss.support.SpssDatasourceParsingException;
 import org.obiba.magma.support.DatasourceParsingException;
+import org.obiba.magma.support.Disposables;
 import org.obiba.magma.support.EntitiesPredicate;
 import org.obiba.magma.type.DateType;
 import org.obiba.magma.type.DecimalType;
 import org.obiba.magma.type.TextType;
 
+import com.google.common.collect.Lists;
+
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
@@ -448,6 +453,55 @@ public class SpssDatasourceTest {
     }
   }
 
+  @Test
+  public void testDataAreLoadedByDefault() throws Exception {
+    dsFactory.setFile(getResourceFile("org/obiba/magma/datasource/spss/DatabaseTest.sav"));
+    SpssDatasource ds = (SpssDatasource) dsFactory.create();
+    assertThat(ds.isMemoryMapped()).isFalse();
+  }
+
+  @Test
+  public void testMemoryMappedValuesAreLoadedValues() throws Exception {
+    for(String name : new String[] { "DatabaseTest", "StringCategories", "spss-variable-types",
+        "ScientificNotationVar", "OverflowVarValue", "variable-value-overflow", "date-value-types",
+        "dictionnaire_variables-french-characters", "empty" }) {
+      File file = getResourceFile("org/obiba/magma/datasource/spss/" + name + ".sav");
+      Datasource loaded = newDatasource(file, false);
+      Datasource mapped = newDatasource(file, true);
+      try {
+        assertSameValues(loaded.getValueTable(name), mapped.getValueTable(name));
+      } finally {
+        Disposables.dispose(loaded, mapped);
+      }
+    }
+  }
+
+  private Datasource newDatasource(File file, boolean memoryMapped) {
+    SpssDatasourceFactory factory = new SpssDatasourceFactory();
+    factory.setName(memoryMapped ? "mapped" : "loaded");
+    factory.setFile(file);
+    factory.setMemoryMapped(memoryMapped);
+    Datasource ds = factory.create();
+    ds.initialise();
+    return ds;
+  }
+
+  private void assertSameValues(ValueTable expected, ValueTable actual) {
+    SortedSet<VariableEntity> entities = new TreeSet<>(expected.getVariableEntities());
+    assertThat(actual.getVariableEntities()).isEqualTo(expected.getVariableEntities());
+    for(Variable variable : expected.getVariables()) {
+      List<Value> values = Lists
+          .newArrayList(actual.getVariableValueSource(variable.getName()).asVectorSource().getValues(entities));
+      int i = 0;
+      for(VariableEntity entity : entities) {
+        Value value = expected.getValue(variable, expected.getValueSet(entity));
+        String description = expected.getName() + ":" + variable.getName() + " of " + entity.getIdentifier();
+        assertThat(actual.getValue(variable, actual.getValueSet(entity))).as(description).isEqualTo(value);
+        assertThat(values.get(i++)).as(description).isEqualTo(value);
+      }
+    }
+  }
+
   @SuppressWarnings("ConstantConditions")
   private File getResourceFile(String resourcePath) throws URISyntaxException {
     return new File(getClass().getClassLoader().getResource(resourcePath).toURI());
@@ -0,0 +1,458 @@
+package org.obiba.magma.js.methods;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.annotation.Nullable;
+
+import org.mozilla.javascript.regexp.NativeRegExp;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * A javascript regular expression compiled once into a {@link Pattern} that has the same semantics, so that it can be
+ * applied to the values without going through Rhino. Only the regular expressions for which the translation is exact
+ * are compiled (no back references, no multiline flag, ASCII only patterns when case insensitive...): the other ones
+ * are left to Rhino.
+ * <p/>
+ * Compiled regular expressions are cached by source and flags.
+ */
+final class JavaRegExp {
+
+  private static final int CACHE_SIZE = 1000;
+
+  private static final int NOTHING = 0;
+
+  private static final int ATOM = 1;
+
+  private static final int QUANTIFIER = 2;
+
+  private static final int LAZY_QUANTIFIER = 3;
+
+  /**
+   * Javascript white spaces and line terminators, for \s.
+   */
+  private static final String WHITE_SPACES
+      = "\\t\\n\\x0B\\f\\r\\x20\\xA0\\u1680\\u180E\\u2000-\\u200A\\u2028\\u2029\\u202F\\u205F\\u3000\\uFEFF";
+
+  /**
+   * Javascript line terminators are not matched by '.'.
+   */
+  private static final String DOT = "[^\\n\\r\\u2028\\u2029]";
+
+  /**
+   * Java word boundaries are not limited to ASCII word characters.
+   */
+  private static final String WORD_BOUNDARY = "(?:(?<=\\w)(?!\\w)|(?<!\\w)(?=\\w))";
+
+  private static final String NOT_WORD_BOUNDARY = "(?:(?<=\\w)(?=\\w)|(?<!\\w)(?!\\w))";
+
+  private static final LoadingCache<String, Optional<JavaRegExp>> CACHE = CacheBuilder.newBuilder()
+      .maximumSize(CACHE_SIZE).build(new CacheLoader<String, Optional<JavaRegExp>>() {
+        @Override
+        public Optional<JavaRegExp> load(String key) {
+          int separator = key.indexOf('/');
+          return Optional.fromNullable(compile(key.substring(separator + 1), key.substring(0, separator)));
+        }
+      });
+
+  private final Pattern pattern;
+
+  private final boolean global;
+
+  /**
+   * Whether the pattern is a string searched as is.
+   */
+  private final boolean literal;
+
+  private JavaRegExp(Pattern pattern, boolean global, boolean literal) {
+    this.pattern = pattern;
+    this.global = global;
+    this.literal = literal;
+  }
+
+  /**
+   * Get the regular expression of a {@code String.match()} argument: a regular expression or its source.
+   *
+   * @param arg
+   * @return null if the argument must be handled by Rhino
+   */
+  @Nullable
+  static JavaRegExp forMatch(@Nullable Object arg) {
+    if(arg instanceof NativeRegExp) return forRegExp((NativeRegExp) arg);
+    if(arg instanceof CharSequence) return cached(arg.toString(), "");
+    return null;
+  }
+
+  /**
+   * Get the regular expression of a {@code String.replace()} pattern argument: a regular expression or a string that is
+   * searched as is.
+   *
+   * @param arg
+   * @return null if the argument must be handled by Rhino
+   */
+  @Nullable
+  static JavaRegExp forReplace(@Nullable Object arg) {
+    if(arg instanceof NativeRegExp) return forRegExp((NativeRegExp) arg);
+    if(arg instanceof CharSequence) return new JavaRegExp(Pattern.compile(Pattern.quote(arg.toString())), false, true);
+    return null;
+  }
+
+  @Nullable
+  private static JavaRegExp forRegExp(NativeRegExp regExp) {
+    // "/source/flags"
+    String regExpString = regExp.toString();
+    int separator = regExpString.lastIndexOf('/');
+    if(separator <= 0) return null;
+    return cached(regExpString.substring(1, separator), regExpString.substring(separator + 1));
+  }
+
+  @Nullable
+  private static JavaRegExp cached(String source, String flags) {
+    return CACHE.getUnchecked(flags + "/" + source).orNull();
+  }
+
+  /**
+   * Whether the regular expression matches the input.
+   *
+   * @param input
+   * @return null if the input must be handled by Rhino
+   */
+  @Nullable
+  Boolean find(String input) {
+    return hasSurrogates(input) ? null : pattern.matcher(input).find();
+  }
+
+  /**
+   * Replace the first match, or all the matches of a global regular expression, expanding the $ patterns of the
+   * replacement as javascript does.
+   *
+   * @param input
+   * @param replacement
+   * @return null if the input or the replacement must be handled by Rhino
+   */
+  @Nullable
+  String replace(String input, String replacement) {
+    if(hasSurrogates(input) || !isSupportedReplacement(replacement)) return null;
+    Matcher matcher = pattern.matcher(input);
+    if(!matcher.find()) return input;
+    StringBuilder sb = new StringBuilder(input.length() + replacement.length());
+    int position = 0;
+    do {
+      sb.append(input, position, matcher.start());
+      appendReplacement(sb, matcher, input, replacement);
+      position = matcher.end();
+    } while(global && matcher.find());
+    sb.append(input, position, input.length());
+    return sb.toString();
+  }
+
+  /**
+   * Java patterns match code points where javascript matches UTF-16 chars.
+   */
+  private static boolean hasSurrogates(CharSequence input) {
+    for(int i = 0; i < input.length(); i++) {
+      if(Character.isSurrogate(input.charAt(i))) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Whether the $ patterns of the replacement are the standard ones. Rhino expands the $n of a string pattern from the
+   * groups of the last regular expression.
+   */
+  private boolean isSupportedReplacement(String replacement) {
+    for(int i = replacement.indexOf('$'); i >= 0 && i < replacement.length() - 1;
+        i = replacement.indexOf('$', i + 2)) {
+      char c = replacement.charAt(i + 1);
+      boolean group = isAsciiDigit(c);
+      if(group ? literal : c != '$' && c != '&' && c != '`' && c != '\'') return false;
+    }
+    return true;
+  }
+
+  @SuppressWarnings("OverlyComplexMethod")
+  private static void appendReplacement(StringBuilder sb, Matcher matcher, String input, String replacement) {
+    int length = replacement.length();
+    for(int i = 0; i < length; i++) {
+      char c = replacement.charAt(i);
+      if(c != '$' || i == length - 1) {
+        sb.append(c);
+        continue;
+      }
+      char next = replacement.charAt(i + 1);
+      switch(next) {
+        case '$':
+          sb.append('$');
+          i++;
+          break;
+        case '&':
+          sb.append(input, matcher.start(), matcher.end());
+          i++;
+          break;
+        case '`':
+          sb.append(input, 0, matcher.start());
+          i++;
+          break;
+        case '\'':
+          sb.append(input, matcher.end(), input.length());
+          i++;
+          break;
+        default:
+          // $n or $nn as Rhino's interpretDollar: kept as is when there is no such group, $0 and $00 included
+          int group = next - '0';
+          if(group > matcher.groupCount()) {
+            sb.append(c);
+            break;
+          }
+          int digits = 1;
+          if(i + 2 < length && isAsciiDigit(replacement.charAt(i + 2))) {
+            int twoDigits = group * 10 + replacement.charAt(i + 2) - '0';
+            if(twoDigits <= matcher.groupCount()) {
+              group = twoDigits;
+              digits = 2;
+            }
+          }
+          if(group == 0) {
+            sb.append(c);
+            break;
+          }
+          i += digits;
+          String value = matcher.group(group);
+          if(value != null) sb.append(value);
+      }
+    }
+  }
+
+  private static boolean isAsciiDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Translate a javascript regular expression into a Java one.
+   *
+   * @param source
+   * @param flags
+   * @return null if the translation would not have the same semantics
+   */
+  @Nullable
+  @SuppressWarnings({ "OverlyComplexMethod", "OverlyLongMethod" })
+  static JavaRegExp compile(String source, String flags) {
+    boolean global = false;
+    boolean ignoreCase = false;
+    for(char flag : flags.toCharArray()) {
+      switch(flag) {
+        case 'g':
+          global = true;
+          break;
+        case 'i':
+          ignoreCase = true;
+          break;
+        default:
+          // multiline and other flags
+          return null;
+      }
+    }
+    StringBuilder sb = new StringBuilder(source.length() + 16);
+    // whether each open group can be quantified (lookaheads cannot)
+    Deque<Boolean> groups = new ArrayDeque<>();
+    boolean inClass = false;
+    // what precedes: quantifiers are only translated after an atom
+    int previous = NOTHING;
+    int length = source.length();
+    for(int i = 0; i < length; i++) {
+      char c = source.charAt(i);
+      // case insensitive matching of non ASCII characters differs
+      if(ignoreCase && c > 0x7F || Character.isSurrogate(c)) return null;
+      if(c == '\\') {
+        if(++i == length) return null;
+        char e = source.charAt(i);
+        String escape = translateEscape(source, i, inClass, ignoreCase);
+        if(escape == null) return null;
+        // ranges of character class escapes are not the same in Java
+        if(inClass && isClassEscape(e) && (source.charAt(i - 2) == '-' || i + 1 < length && source.charAt(i + 1) == '-')) {
+          return null;
+        }
+        sb.append(escape);
+        if(e == 'x') i += 2;
+        else if(e == 'u') i += 4;
+        if(!inClass) previous = e == 'b' || e == 'B' ? NOTHING : ATOM;
+        continue;
+      }
+      if(inClass) {
+        if(c == ']') {
+          inClass = false;
+          previous = ATOM;
+        }
+        sb.append(c == '[' || c == '&' ? "\\" + c : String.valueOf(c));
+        continue;
+      }
+      switch(c) {
+        case '[':
+          // empty classes, [] and [^], have no Java equivalent
+          int start = i + 1 < length && source.charAt(i + 1) == '^' ? i + 2 : i + 1;
+          if(start >= length || source.charAt(start) == ']') return null;
+          sb.append(source, i, start);
+          i = start - 1;
+          inClass = true;
+          break;
+        case '(':
+          boolean quantifiable = true;
+          if(i + 1 < length && source.charAt(i + 1) == '?') {
+            char group = i + 2 < length ? source.charAt(i + 2) : 0;
+            if(group != ':' && group != '=' && group != '!') return null;
+            quantifiable = group == ':';
+          }
+          groups.push(quantifiable);
+          sb.append(c);
+          previous = NOTHING;
+          break;
+        case ')':
+          if(groups.isEmpty()) return null;
+          sb.append(c);
+          previous = groups.pop() ? ATOM : NOTHING;
+          break;
+        case '|':
+        case '^':
+          sb.append(c);
+          previous = NOTHING;
+          break;
+        case '$':
+          sb.append("\\z");
+          previous = NOTHING;
+          break;
+        case '*':
+        case '+':
+        case '?':
+          if(previous == ATOM) {
+            previous = QUANTIFIER;
+          } else if(c == '?' && previous == QUANTIFIER) {
+            previous = LAZY_QUANTIFIER;
+          } else {
+            // nothing to repeat or possessive quantifier
+            return null;
+          }
+          sb.append(c);
+          break;
+        case '{':
+          int end = quantifierEnd(source, i);
+          if(end < 0) {
+            // Rhino rejects incomplete quantifiers
+            if(i + 1 < length && Character.isDigit(source.charAt(i + 1))) return null;
+            sb.append("\\{");
+            previous = ATOM;
+          } else {
+            if(previous != ATOM) return null;
+            sb.append(source, i, end + 1);
+            i = end;
+            previous = QUANTIFIER;
+          }
+          break;
+        case '}':
+        case ']':
+          sb.append('\\').append(c);
+          previous = ATOM;
+          break;
+        case '.':
+          sb.append(DOT);
+          previous = ATOM;
+          break;
+        default:
+          sb.append(c);
+          previous = ATOM;
+      }
+    }
+    if(inClass || !groups.isEmpty()) return null;
+    try {
+      return new JavaRegExp(Pattern.compile(sb.toString(), ignoreCase ? Pattern.CASE_INSENSITIVE : 0), global, false);
+    } catch(PatternSyntaxException e) {
+      // let Rhino report the error
+      return null;
+    }
+  }
+
+  /**
+   * Translate the escape sequence starting at the given position, after the backslash.
+   *
+   * @return null if the escape has no exact translation
+   */
+  @Nullable
+  @SuppressWarnings("OverlyComplexMethod")
+  private static String translateEscape(String source, int position, boolean inClass, boolean ignoreCase) {
+    char c = source.charAt(position);
+    switch(c) {
+      case 'd':
+      case 'D':
+      case 'w':
+      case 'W':
+      case 'n':
+      case 'r':
+      case 't':
+      case 'f':
+        return "\\" + c;
+      case 'b':
+        return inClass ? "\\x08" : WORD_BOUNDARY;
+      case 'B':
+        return inClass ? null : NOT_WORD_BOUNDARY;
+      case 's':
+        return inClass ? WHITE_SPACES : "[" + WHITE_SPACES + "]";
+      case 'S':
+        return inClass ? null : "[^" + WHITE_SPACES + "]";
+      case 'v':
+        return "\\x0B";
+      case 'x':
+        return hexEscape(source, position + 1, 2, ignoreCase);
+      case 'u':
+        return hexEscape(source, position + 1, 4, ignoreCase);
+      default:
+        // back references, octal and control escapes or identity escapes of letters
+        if(Character.isLetterOrDigit(c) || c == '_') return null;
+        return c < 0x80 ? "\\" + c : String.valueOf(c);
+    }
+  }
+
+  @Nullable
+  private static String hexEscape(String source, int start, int digits, boolean ignoreCase) {
+    if(start + digits > source.length()) return null;
+    int value = 0;
+    for(int i = start; i < start + digits; i++) {
+      int digit = Character.digit(source.charAt(i), 16);
+      if(digit < 0) return null;
+      value = value * 16 + digit;
+    }
+    if(ignoreCase && value > 0x7F || value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE) return null;
+    return String.format("\\x{%X}", value);
+  }
+
+  private static boolean isClassEscape(char c) {
+    return c == 'd' || c == 'D' || c == 'w' || c == 'W' || c == 's' || c == 'S';
+  }
+
+  /**
+   * Get the position of the closing brace of a {n}, {n,} or {n,m} quantifier.
+   *
+   * @return -1 if the brace does not start a quantifier
+   */
+  private static int quantifierEnd(CharSequence source, int start) {
+    int i = start + 1;
+    int digits = 0;
+    while(i < source.length() && Character.isDigit(source.charAt(i))) {
+      i++;
+      digits++;
+    }
+    if(digits == 0 || i == source.length()) return -1;
+    if(source.charAt(i) == ',') {
+      i++;
+      while(i < source.length() && Character.isDigit(source.charAt(i))) i++;
+      if(i == source.length()) return -1;
+    }
+    return source.charAt(i) == '}' ? i : -1;
+  }
+
+}
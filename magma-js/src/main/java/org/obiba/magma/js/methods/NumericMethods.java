@@ -28,6 +28,11 @@ import org.unitsofmeasurement.unit.Unit;
 @SuppressWarnings({ "UnusedParameters", "UnusedDeclaration" })
 public class NumericMethods {
 
+  /**
+   * Largest magnitude under which all the integers are exact doubles.
+   */
+  private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
   private NumericMethods() {
   }
 
@@ -38,6 +43,21 @@ public class NumericMethods {
         return lhs.divide(rhs, MathContext.DECIMAL128);
       }
 
+      @Nullable
+      @Override
+      public Number operate(long lhs, long rhs) {
+        if(rhs == 0 || lhs == Long.MIN_VALUE && rhs == -1) return null;
+        if(lhs % rhs == 0) return lhs / rhs;
+        // the exact quotient of two exact doubles is never within the DECIMAL128 rounding error of a double rounding
+        // boundary, so rounding it once gives the double of the DECIMAL128 quotient
+        return isExactDouble(lhs) && isExactDouble(rhs) ? (double) lhs / rhs : null;
+      }
+
+      @Override
+      public double operate(double lhs, double rhs) {
+        return lhs / rhs;
+      }
+
       @Override
       public Unit<?> operate(Unit<?> lhs, Unit<?> rhs) {
         return lhs.divide(rhs);
@@ -48,6 +68,16 @@ public class NumericMethods {
       public BigDecimal operate(BigDecimal lhs, BigDecimal rhs) {
         return lhs.subtract(rhs);
       }
+
+      @Override
+      public Number operate(long lhs, long rhs) {
+        return Math.subtractExact(lhs, rhs);
+      }
+
+      @Override
+      public double operate(double lhs, double rhs) {
+        return lhs - rhs;
+      }
     },
     MULTIPLY() {
       @Override
@@ -55,6 +85,16 @@ public class NumericMethods {
         return lhs.multiply(rhs);
       }
 
+      @Override
+      public Number operate(long lhs, long rhs) {
+        return Math.multiplyExact(lhs, rhs);
+      }
+
+      @Override
+      public double operate(double lhs, double rhs) {
+        return lhs * rhs;
+      }
+
       @Override
       public Unit<?> operate(Unit<?> lhs, Unit<?> rhs) {
         return lhs.multiply(rhs);
@@ -65,6 +105,16 @@ public class NumericMethods {
       public BigDecimal operate(BigDecimal lhs, BigDecimal rhs) {
         return lhs.add(rhs);
       }
+
+      @Override
+      public Number operate(long lhs, long rhs) {
+        return Math.addExact(lhs, rhs);
+      }
+
+      @Override
+      public double operate(double lhs, double rhs) {
+        return lhs + rhs;
+      }
     };
 
     /**
@@ -77,6 +127,26 @@ public class NumericMethods {
      */
     public abstract BigDecimal operate(BigDecimal lhs, BigDecimal rhs) throws ArithmeticException;
 
+    /**
+     * Performs this operation on integer operands.
+     *
+     * @param lhs
+     * @param rhs
+     * @return a Long when the result is an integer, a Double otherwise, null if the result cannot be computed exactly
+     * @throws ArithmeticException on overflow
+     */
+    @Nullable
+    public abstract Number operate(long lhs, long rhs) throws ArithmeticException;
+
+    /**
+     * Performs this operation on decimal operands, the result being rounded once as the {@code BigDecimal} result is.
+     *
+     * @param lhs
+     * @param rhs
+     * @return
+     */
+    public abstract double operate(double lhs, double rhs);
+
     public Unit<?> operate(Unit<?> lhs, Unit<?> rhs) {
       return lhs;
     }
@@ -123,6 +193,15 @@ public class NumericMethods {
       public BigDecimal operate(BigDecimal value, Object... args) {
         return value.abs();
       }
+
+      @Nullable
+      @Override
+      public Number operate(Number value, Object... args) {
+        if(value instanceof Long) {
+          return value.longValue() == Long.MIN_VALUE ? null : Math.abs(value.longValue());
+        }
+        return Math.abs(value.doubleValue());
+      }
     },
     POW() {
       @Override
@@ -136,6 +215,24 @@ public class NumericMethods {
         }
       }
 
+      @Nullable
+      @Override
+      public Number operate(Number value, Object... args) {
+        if(!(args[0] instanceof Number)) return null;
+        double power = ((Number) args[0]).doubleValue();
+        // BigDecimal#pow rejects negative powers: the decimal operation falls back on Math#pow, and so does this one
+        if(power < 0) return Math.pow(value.doubleValue(), power);
+        if(power == 0) return 1L;
+        if(power == 1) return value;
+        if(power == 2) {
+          if(value instanceof Long) return Math.multiplyExact(value.longValue(), value.longValue());
+          // rounded once, as the exact square is, but an integral square may come from a decimal exact square
+          double square = value.doubleValue() * value.doubleValue();
+          return square == Math.rint(square) ? null : square;
+        }
+        return null;
+      }
+
       @Override
       public Unit<?> operate(Unit<?> unit, Object... args) {
         BigDecimal power = asBigDecimal(args[0]);
@@ -163,6 +260,21 @@ public class NumericMethods {
         return BigDecimal.valueOf(Math.pow(value.doubleValue(), 1 / root.doubleValue()));
       }
 
+      @Nullable
+      @Override
+      public Number operate(Number value, Object... args) {
+        if(args[0] instanceof Integer) {
+          switch((Integer) args[0]) {
+            case 2:
+              return Math.sqrt(value.doubleValue());
+            case 3:
+              return Math.cbrt(value.doubleValue());
+          }
+        }
+        if(!(args[0] instanceof Number)) return null;
+        return Math.pow(value.doubleValue(), 1 / ((Number) args[0]).doubleValue());
+      }
+
       @Override
       public Unit<?> operate(Unit<?> unit, Object... args) {
         BigDecimal root = asBigDecimal(args[0]);
@@ -184,12 +296,28 @@ public class NumericMethods {
         }
         return BigDecimal.valueOf(log);
       }
+
+      @Nullable
+      @Override
+      public Number operate(Number value, Object... args) {
+        double log = Math.log10(value.doubleValue());
+        if(args.length > 0) {
+          if(!(args[0] instanceof Number)) return null;
+          log = log / Math.log10(((Number) args[0]).doubleValue());
+        }
+        return log;
+      }
     },
     LN() {
       @Override
       public BigDecimal operate(BigDecimal value, Object... args) {
         return BigDecimal.valueOf(Math.log(value.doubleValue()));
       }
+
+      @Override
+      public Number operate(Number value, Object... args) {
+        return Math.log(value.doubleValue());
+      }
     };
 
     /**
@@ -201,6 +329,18 @@ public class NumericMethods {
      */
     public abstract BigDecimal operate(BigDecimal value, Object... args) throws ArithmeticException;
 
+    /**
+     * Performs this operation on a primitive value.
+     *
+     * @param value a Long or a Double
+     * @param args
+     * @return a Long when the result is an exact integer, a Double otherwise, null if the result must be computed on
+     * {@code BigDecimal}
+     * @throws ArithmeticException on overflow
+     */
+    @Nullable
+    public abstract Number operate(Number value, Object... args) throws ArithmeticException;
+
     public Unit<?> operate(Unit<?> unit, Object... args) {
       return unit;
     }
@@ -566,6 +706,8 @@ public class NumericMethods {
   }
 
   static Value compare(ScriptableValue thisObj, Object args[], Comps comparator) {
+    Value result = comparePrimitives(thisObj.getValue(), args, comparator);
+    if(result != null) return result;
     BigDecimal value = asBigDecimal(thisObj);
     if(value == null) return BooleanType.get().nullValue();
     for(Object argument : args) {
@@ -578,44 +720,263 @@ public class NumericMethods {
     return BooleanType.get().trueValue();
   }
 
+  /**
+   * Compares primitive operands without converting them to {@code BigDecimal}.
+   *
+   * @return null if one of the operands is not a primitive
+   */
+  @Nullable
+  private static Value comparePrimitives(Value thisValue, Object[] args, Comps comparator) {
+    Number value = asPrimitive(thisValue);
+    if(value == null) return null;
+    Number[] operands = new Number[args.length];
+    for(int i = 0; i < args.length; i++) {
+      operands[i] = asPrimitive(args[i]);
+      if(operands[i] == null) return null;
+    }
+    for(Number rhs : operands) {
+      if(!comparator.apply(compare(value, rhs))) {
+        return BooleanType.get().falseValue();
+      }
+    }
+    return BooleanType.get().trueValue();
+  }
+
+  private static int compare(Number lhs, Number rhs) {
+    if(lhs instanceof Long && rhs instanceof Long) {
+      long l = lhs.longValue();
+      long r = rhs.longValue();
+      return l < r ? -1 : l == r ? 0 : 1;
+    }
+    // primitives are finite and longs are exact doubles: 0.0 and -0.0 are equal, as they are for BigDecimal
+    double l = lhs.doubleValue();
+    double r = rhs.doubleValue();
+    return l < r ? -1 : l == r ? 0 : 1;
+  }
+
   static ScriptableValue operate(ScriptableValue thisObj, Object args[], Unary operation) {
+    Value value = thisObj.getValue();
+    if(!value.isSequence()) {
+      Value result = operate(value, args, operation);
+      if(result.isNull()) return new ScriptableValue(thisObj, result);
+      return new ScriptableValue(thisObj, result,
+          operation.operate(UnitMethods.extractUnit(thisObj), args).toString());
+    }
+    if(value.isNull()) return new ScriptableValue(thisObj, thisObj.getValueType().nullSequence());
+    Unit<?> unit = operation.operate(UnitMethods.extractUnit(thisObj), args);
+    List<Value> results = new ArrayList<>(value.asSequence().getSize());
+    for(Value element : value.asSequence().getValue()) {
+      results.add(operate(element, args, operation));
+    }
+    return new ScriptableValue(thisObj, numericSequenceOf(results), unit.toString());
+  }
+
+  private static Value operate(Value value, Object args[], Unary operation) {
     try {
-      BigDecimal value = asBigDecimal(thisObj);
-      if(value == null) return new ScriptableValue(thisObj, thisObj.getValueType().nullValue());
-      value = operation.operate(value, args);
-      Unit<?> unit = operation.operate(UnitMethods.extractUnit(thisObj), args);
-      try {
-        long longValue = value.longValueExact();
-        return new ScriptableValue(thisObj, IntegerType.get().valueOf(longValue), unit.toString());
-      } catch(ArithmeticException e) {
-        return new ScriptableValue(thisObj, DecimalType.get().valueOf(value.doubleValue()), unit.toString());
-      }
+      Value result = operatePrimitive(value, args, operation);
+      if(result != null) return result;
+      BigDecimal decimal = asBigDecimal(value);
+      if(decimal == null) return value.getValueType().nullValue();
+      return numericValueOf(operation.operate(decimal, args));
     } catch(ArithmeticException e) {
-      return new ScriptableValue(thisObj, DecimalType.get().nullValue());
+      return DecimalType.get().nullValue();
+    }
+  }
+
+  /**
+   * Applies the operation on a primitive operand.
+   *
+   * @return null when the operand is not a primitive or when the {@code BigDecimal} computation may give another result
+   */
+  @Nullable
+  private static Value operatePrimitive(Value value, Object args[], Unary operation) {
+    Number number = asPrimitive(value);
+    if(number == null) return null;
+    Number result;
+    try {
+      result = operation.operate(number, args);
+    } catch(ArithmeticException e) {
+      // overflow
+      return null;
+    }
+    if(result instanceof Long) return IntegerType.get().valueOf(result);
+    if(result == null) return null;
+    double d = result.doubleValue();
+    // let BigDecimal fail on infinite and NaN results as before
+    if(Double.isNaN(d) || Double.isInfinite(d)) return null;
+    if(d == Math.rint(d)) {
+      return Math.abs(d) < Long.MAX_VALUE ? IntegerType.get().valueOf((long) d) : null;
     }
+    return DecimalType.get().valueOf(d);
   }
 
   static ScriptableValue operate(ScriptableValue thisObj, Object args[], Ops operation) {
+    Unit<?> unit = UnitMethods.extractUnit(thisObj);
+    for(Object argument : args) {
+      unit = operation.operate(unit, UnitMethods.extractUnit(argument));
+    }
+    Value value = thisObj.getValue();
+    if(!value.isSequence()) {
+      Value result = operate(value, args, operation);
+      return result.isNull()
+          ? new ScriptableValue(thisObj, result)
+          : new ScriptableValue(thisObj, result, unit.toString());
+    }
+    if(value.isNull()) return new ScriptableValue(thisObj, thisObj.getValueType().nullSequence());
+    ValueSequence sequence = value.asSequence();
+    List<Value> results = new ArrayList<>(sequence.getSize());
+    Object[] elementArgs = new Object[args.length];
+    for(int i = 0; i < sequence.getSize(); i++) {
+      for(int j = 0; j < args.length; j++) {
+        elementArgs[j] = elementAt(args[j], i, sequence.getSize());
+      }
+      results.add(operate(sequence.get(i), elementArgs, operation));
+    }
+    return new ScriptableValue(thisObj, numericSequenceOf(results), unit.toString());
+  }
+
+  private static Value operate(Value value, Object args[], Ops operation) {
     try {
-      BigDecimal value = asBigDecimal(thisObj);
-      if(value == null) return new ScriptableValue(thisObj, thisObj.getValueType().nullValue());
-      Unit<?> unit = UnitMethods.extractUnit(thisObj);
+      Value result = operatePrimitives(value, args, operation);
+      if(result != null) return result;
+      BigDecimal decimal = asBigDecimal(value);
+      if(decimal == null) return value.getValueType().nullValue();
       for(Object argument : args) {
         BigDecimal rhs = asBigDecimal(argument);
-        if(rhs == null) return new ScriptableValue(thisObj, thisObj.getValueType().nullValue());
-        value = operation.operate(value, rhs);
-        unit = operation.operate(unit, UnitMethods.extractUnit(argument));
+        if(rhs == null) return value.getValueType().nullValue();
+        decimal = operation.operate(decimal, rhs);
       }
+      return numericValueOf(decimal);
+    } catch(ArithmeticException e) {
+      return DecimalType.get().nullValue();
+    }
+  }
 
-      try {
-        long longValue = value.longValueExact();
-        return new ScriptableValue(thisObj, IntegerType.get().valueOf(longValue), unit.toString());
-      } catch(ArithmeticException e) {
-        return new ScriptableValue(thisObj, DecimalType.get().valueOf(value.doubleValue()), unit.toString());
+  /**
+   * Applies the operation on primitive operands. Integer operations are exact, decimal operations are only applied once
+   * so that the result is the rounding of the exact result, as it is with {@code BigDecimal}.
+   *
+   * @return null when an operand is not a primitive or when the {@code BigDecimal} computation may give another result
+   */
+  @Nullable
+  private static Value operatePrimitives(Value value, Object args[], Ops operation) {
+    Number result = asPrimitive(value);
+    if(result == null) return null;
+    boolean rounded = false;
+    for(Object argument : args) {
+      Number rhs = asPrimitive(argument);
+      if(rhs == null || rounded) return null;
+      if(result instanceof Long && rhs instanceof Long) {
+        try {
+          result = operation.operate(result.longValue(), rhs.longValue());
+        } catch(ArithmeticException e) {
+          // overflow
+          return null;
+        }
+        if(result == null) return null;
+        rounded = result instanceof Double;
+      } else {
+        if(result instanceof Long && !isExactDouble(result.longValue())) return null;
+        result = operation.operate(result.doubleValue(), rhs.doubleValue());
+        rounded = true;
       }
+    }
+    if(result instanceof Long) return IntegerType.get().valueOf(result);
+    double d = result.doubleValue();
+    // an integral rounded result may come from a decimal exact result: BigDecimal decides of its type
+    if(Double.isNaN(d) || Double.isInfinite(d) || d == Math.rint(d)) return null;
+    return DecimalType.get().valueOf(d);
+  }
+
+  /**
+   * Get the operand of a sequence element: the element at the same position when the argument is a sequence, the
+   * argument itself otherwise.
+   */
+  private static Object elementAt(Object argument, int index, int size) {
+    if(!(argument instanceof ScriptableValue)) return argument;
+    Value value = ((ScriptableValue) argument).getValue();
+    if(!value.isSequence()) return argument;
+    if(value.isNull()) return value.getValueType().nullValue();
+    ValueSequence sequence = value.asSequence();
+    if(sequence.getSize() != size) {
+      throw new MagmaJsEvaluationRuntimeException(
+          "Sequences of different sizes cannot be operated: " + size + " and " + sequence.getSize());
+    }
+    return sequence.get(index);
+  }
+
+  private static Value numericValueOf(BigDecimal value) {
+    try {
+      return IntegerType.get().valueOf(value.longValueExact());
     } catch(ArithmeticException e) {
-      return new ScriptableValue(thisObj, DecimalType.get().nullValue());
+      return DecimalType.get().valueOf(value.doubleValue());
+    }
+  }
+
+  /**
+   * Get the sequence of the results: a sequence of decimals if one of the results is a decimal, of integers otherwise.
+   */
+  private static Value numericSequenceOf(List<Value> values) {
+    ValueType valueType = IntegerType.get();
+    for(Value value : values) {
+      if(value.getValueType() == DecimalType.get() && !value.isNull()) {
+        valueType = DecimalType.get();
+        break;
+      }
+    }
+    List<Value> converted = new ArrayList<>(values.size());
+    for(Value value : values) {
+      converted.add(valueType.convert(value));
+    }
+    return valueType.sequenceOf(converted);
+  }
+
+  /**
+   * Get the operand as a Long or a Double when it can be operated without {@code BigDecimal}: integers that are exact
+   * doubles, finite decimal values and integral numbers. Other numbers (decimal literals are exact decimals, not
+   * doubles) and other types are operated as {@code BigDecimal}.
+   *
+   * @return null if the operand must be converted to {@code BigDecimal}
+   */
+  @Nullable
+  private static Number asPrimitive(Object object) {
+    if(object instanceof ScriptableValue) {
+      return asPrimitive(((ScriptableValue) object).getValue());
+    }
+    if(object instanceof Value) {
+      Value value = (Value) object;
+      if(value.isNull() || value.isSequence()) return null;
+      if(value.getValueType() == IntegerType.get()) {
+        return asPrimitive((Number) value.getValue(), false);
+      }
+      if(value.getValueType() == DecimalType.get()) {
+        return asPrimitive((Number) value.getValue(), true);
+      }
+      return null;
+    }
+    if(object instanceof Number) {
+      return asPrimitive((Number) object, false);
     }
+    return null;
+  }
+
+  @Nullable
+  private static Number asPrimitive(Number number, boolean decimal) {
+    if(number instanceof Long || number instanceof Integer) {
+      long l = number.longValue();
+      return Math.abs(l) <= MAX_EXACT_DOUBLE ? l : null;
+    }
+    if(number instanceof Double) {
+      double d = number.doubleValue();
+      if(Double.isNaN(d) || Double.isInfinite(d)) return null;
+      if(d == Math.rint(d) && Math.abs(d) <= MAX_EXACT_DOUBLE) return (long) d;
+      return decimal ? d : null;
+    }
+    return null;
+  }
+
+  private static boolean isExactDouble(long value) {
+    return Math.abs(value) <= MAX_EXACT_DOUBLE;
   }
 
   static Double asDouble(Object obj) {
@@ -640,6 +1001,9 @@ public class NumericMethods {
     if(object instanceof ScriptableValue) {
       return asBigDecimal((ScriptableValue) object);
     }
+    if(object instanceof Value) {
+      return asBigDecimal((Value) object);
+    }
     if(object instanceof Number) {
       return new BigDecimal(object.toString());
     }
@@ -651,14 +1015,17 @@ public class NumericMethods {
 
   static BigDecimal asBigDecimal(ScriptableValue scriptableValue) {
     if(scriptableValue == null) throw new IllegalArgumentException("value cannot be null");
-    Value value = scriptableValue.getValue();
+    return asBigDecimal(scriptableValue.getValue());
+  }
+
+  static BigDecimal asBigDecimal(Value value) {
     if(value.isNull()) {
       // Throw a runtime exception if the null value provided in scriptableValue argument is not convertible to decimal.
       // This is to manipulate the null value only created by a "Number" Type.
-      ValueType.Factory.converterFor(scriptableValue.getValueType(), DecimalType.get());
+      ValueType.Factory.converterFor(value.getValueType(), DecimalType.get());
       return null;
     }
-    if(scriptableValue.getValueType().isNumeric()) {
+    if(value.getValueType().isNumeric()) {
       return new BigDecimal(((Number) value.getValue()).doubleValue());
     }
     Value decimalValue = DecimalType.get().convert(value);
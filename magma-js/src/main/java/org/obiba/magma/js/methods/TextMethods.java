@@ -192,6 +192,10 @@ public class TextMethods {
    */
   public static ScriptableValue replace(final Context ctx, final Scriptable thisObj, final Object[] args,
       @Nullable Function funObj) {
+    // compiled once for all the values
+    final JavaRegExp regExp = args.length == 2 && args[1] instanceof CharSequence
+        ? JavaRegExp.forReplace(args[0])
+        : null;
     com.google.common.base.Function<Value, Value> replaceFunction
         = new com.google.common.base.Function<Value, Value>() {
 
@@ -199,9 +203,12 @@ public class TextMethods {
       public Value apply(Value input) {
         String stringValue = input == null || input.isNull() ? null : input.toString();
 
-        // Delegate to Javascript's String.replace method
-        String result = (String) ScriptRuntime.checkRegExpProxy(ctx)
-            .action(ctx, thisObj, ScriptRuntime.toObject(ctx, thisObj, stringValue), args, RegExpProxy.RA_REPLACE);
+        String result = regExp == null || stringValue == null ? null : regExp.replace(stringValue, args[1].toString());
+        if(result == null) {
+          // Delegate to Javascript's String.replace method
+          result = (String) ScriptRuntime.checkRegExpProxy(ctx)
+              .action(ctx, thisObj, ScriptRuntime.toObject(ctx, thisObj, stringValue), args, RegExpProxy.RA_REPLACE);
+        }
 
         return TextType.get().valueOf(result);
       }
@@ -216,6 +223,11 @@ public class TextMethods {
    */
   public static ScriptableValue matches(final Context ctx, final Scriptable thisObj, final Object[] args,
       @Nullable Function funObj) {
+    // compiled once for all the values
+    final JavaRegExp[] regExps = new JavaRegExp[args.length];
+    for(int i = 0; i < args.length; i++) {
+      regExps[i] = JavaRegExp.forMatch(args[i]);
+    }
     com.google.common.base.Function<Value, Value> matchesFunction
         = new com.google.common.base.Function<Value, Value>() {
 
@@ -223,16 +235,17 @@ public class TextMethods {
       public Value apply(Value input) {
         String stringValue = input == null || input.isNull() ? null : input.toString();
 
-        // Delegate to Javascript's String.replace method
         boolean matches = false;
         if(stringValue != null) {
-          for(Object arg : args) {
-            Object result = ScriptRuntime.checkRegExpProxy(ctx)
-                .action(ctx, thisObj, ScriptRuntime.toObject(ctx, thisObj, stringValue), new Object[] { arg },
-                    RegExpProxy.RA_MATCH);
-            if(result != null) {
-              matches = true;
+          for(int i = 0; i < args.length; i++) {
+            Boolean found = regExps[i] == null ? null : regExps[i].find(stringValue);
+            if(found == null) {
+              // Delegate to Javascript's String.match method
+              found = ScriptRuntime.checkRegExpProxy(ctx)
+                  .action(ctx, thisObj, ScriptRuntime.toObject(ctx, thisObj, stringValue), new Object[] { args[i] },
+                      RegExpProxy.RA_MATCH) != null;
             }
+            if(found) matches = true;
           }
         }
 
@@ -1,16 +1,25 @@
 package org.obiba.magma.js.methods;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 import org.mozilla.javascript.Context;
 import org.obiba.magma.Value;
 import org.obiba.magma.ValueType;
 import org.obiba.magma.js.AbstractJsTest;
+import org.obiba.magma.js.MagmaJsEvaluationRuntimeException;
 import org.obiba.magma.js.ScriptableValue;
 import org.obiba.magma.type.BooleanType;
 import org.obiba.magma.type.DecimalType;
 import org.obiba.magma.type.IntegerType;
 import org.obiba.magma.type.TextType;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
 import static org.fest.assertions.api.Assertions.assertThat;
 
 @SuppressWarnings("ReuseOfLocalVariable")
@@ -78,6 +87,32 @@ public class NumericMethodsTest extends AbstractJsTest {
     assertThat(result.getValue()).isEqualTo(DecimalType.get().valueOf(3.5));
   }
 
+  @Test
+  public void test_div_is_rounded_as_decimal_div() {
+    List<Value> operands = Lists.newArrayList();
+    for(long l : new long[] { 1, 2, 3, 7, 10, -3, 1L << 52, (1L << 53) - 1, 1L << 53, -(1L << 53), (1L << 53) + 1,
+        Long.MAX_VALUE }) {
+      operands.add(IntegerType.get().valueOf(l));
+    }
+    for(double d : new double[] { 0.1, 0.5, -2.5, 1e-300, 1e300, Math.PI, 4.0 }) {
+      operands.add(DecimalType.get().valueOf(d));
+    }
+    Random random = new Random(42);
+    for(int i = 0; i < 50; i++) {
+      operands.add(IntegerType.get().valueOf(random.nextInt()));
+      operands.add(IntegerType.get().valueOf(random.nextLong() >> 11));
+      operands.add(DecimalType.get().valueOf(random.nextGaussian() * 1000));
+    }
+    for(Value lhs : operands) {
+      for(Value rhs : operands) {
+        ScriptableValue result = NumericMethods
+            .div(Context.getCurrentContext(), newValue(lhs), new Object[] { newValue(rhs) }, null);
+        BigDecimal quotient = asBigDecimal(lhs).divide(asBigDecimal(rhs), MathContext.DECIMAL128);
+        assertThat(result.getValue()).as(lhs + " / " + rhs).isEqualTo(numericValueOf(quotient));
+      }
+    }
+  }
+
   @Test
   public void test_integer_plus_decimal() {
     ScriptableValue integerOne = newValue(IntegerType.get().valueOf(2));
@@ -192,6 +227,63 @@ public class NumericMethodsTest extends AbstractJsTest {
     assertThat(result.getUnit()).isEqualTo("m.s2");
   }
 
+  @Test
+  public void test_integer_multiply_integer_overflows() {
+    ScriptableValue result = evaluate("multiply(3037000500)", IntegerType.get().valueOf(3037000500L));
+    assertThat(result.getValue()).isEqualTo(DecimalType.get().valueOf(3037000500d * 3037000500d));
+  }
+
+  @Test
+  public void test_decimal_plus_decimal() {
+    // the exact sum of the doubles is not an integer
+    ScriptableValue result = evaluate("plus(newValue(0.9,'decimal'))", DecimalType.get().valueOf(0.1));
+    assertThat(result.getValue()).isEqualTo(DecimalType.get().valueOf(1));
+
+    result = evaluate("plus(newValue(0.5,'decimal'))", DecimalType.get().valueOf(0.5));
+    assertThat(result.getValue()).isEqualTo(IntegerType.get().valueOf(1));
+
+    result = evaluate("plus(newValue(0.2,'decimal'))", DecimalType.get().valueOf(0.1));
+    assertThat(result.getValue()).isEqualTo(DecimalType.get().valueOf(0.1 + 0.2));
+  }
+
+  // sequences
+
+  @Test
+  public void test_sequence_plus_integer() {
+    ScriptableValue result = evaluate("plus(1)", IntegerType.get()
+        .sequenceOf(ImmutableList.of(IntegerType.get().valueOf(1), IntegerType.get().nullValue())));
+    assertThat(result.getValue()).isEqualTo(IntegerType.get()
+        .sequenceOf(ImmutableList.of(IntegerType.get().valueOf(2), IntegerType.get().nullValue())));
+  }
+
+  @Test
+  public void test_sequence_multiply_sequence() {
+    ScriptableValue result = evaluate("multiply(newSequence([1.5,2],'decimal'))", IntegerType.get()
+        .sequenceOf(ImmutableList.of(IntegerType.get().valueOf(3), IntegerType.get().valueOf(3))));
+    assertThat(result.getValue()).isEqualTo(DecimalType.get()
+        .sequenceOf(ImmutableList.of(DecimalType.get().valueOf(4.5), DecimalType.get().valueOf(6))));
+  }
+
+  @Test(expected = MagmaJsEvaluationRuntimeException.class)
+  public void test_sequence_plus_sequence_of_other_size() {
+    evaluate("plus(newSequence([1,2,3],'integer'))", IntegerType.get()
+        .sequenceOf(ImmutableList.of(IntegerType.get().valueOf(1), IntegerType.get().valueOf(2))));
+  }
+
+  @Test
+  public void test_null_sequence_plus_integer() {
+    ScriptableValue result = evaluate("plus(1)", IntegerType.get().nullSequence());
+    assertThat(result.getValue()).isEqualTo(IntegerType.get().nullSequence());
+  }
+
+  @Test
+  public void test_sequence_abs() {
+    ScriptableValue result = evaluate("abs()", DecimalType.get()
+        .sequenceOf(ImmutableList.of(DecimalType.get().valueOf(-1.5), DecimalType.get().valueOf(-2))));
+    assertThat(result.getValue()).isEqualTo(DecimalType.get()
+        .sequenceOf(ImmutableList.of(DecimalType.get().valueOf(1.5), DecimalType.get().valueOf(2))));
+  }
+
   // div
 
   @Test
@@ -582,6 +674,26 @@ public class NumericMethodsTest extends AbstractJsTest {
     assertThat(result.getValue()).isEqualTo(DecimalType.get().valueOf(0.1));
   }
 
+  @Test
+  public void test_pow_negative_powers_as_decimal_pow() {
+    List<Value> values = ImmutableList.of(IntegerType.get().valueOf(10), IntegerType.get().valueOf(4),
+        IntegerType.get().valueOf(1), IntegerType.get().valueOf(-3), DecimalType.get().valueOf(0.5),
+        DecimalType.get().valueOf(-2.5), DecimalType.get().valueOf(Math.E));
+    for(Value value : values) {
+      for(int power : new int[] { -1, -2, -3 }) {
+        ScriptableValue result = evaluate("pow(" + power + ")", value);
+        // BigDecimal#pow rejects negative powers, the decimal operation is the double power
+        BigDecimal expected = BigDecimal.valueOf(Math.pow(((Number) value.getValue()).doubleValue(), power));
+        assertThat(result.getValue()).as(value + " pow " + power).isEqualTo(numericValueOf(expected));
+      }
+    }
+
+    assertThat(evaluate("pow(-1)", IntegerType.get().valueOf(4)).getValue())
+        .isEqualTo(DecimalType.get().valueOf(0.25));
+    assertThat(evaluate("pow(-2)", DecimalType.get().valueOf(0.5)).getValue())
+        .isEqualTo(IntegerType.get().valueOf(4));
+  }
+
   @Test
   public void test_pow_acceptsFractionalPowers() {
     ScriptableValue result = evaluate("pow(1.1)", IntegerType.get().valueOf(5));
@@ -704,4 +816,17 @@ public class NumericMethodsTest extends AbstractJsTest {
     assertThat(value).isNotNull();
     assertThat(value.getValue()).isEqualTo(TextType.get().valueOf(numberType.valueOf("11")));
   }
+
+  private static BigDecimal asBigDecimal(Value value) {
+    return new BigDecimal(((Number) value.getValue()).doubleValue());
+  }
+
+  private static Value numericValueOf(BigDecimal value) {
+    try {
+      return IntegerType.get().valueOf(value.longValueExact());
+    } catch(ArithmeticException e) {
+      return DecimalType.get().valueOf(value.doubleValue());
+    }
+  }
+
 }
@@ -138,6 +138,58 @@ public class TextMethodsTest extends AbstractJsTest {
     assertThat(result.getValue()).isEqualTo(TextType.get().valueOf("H2R"));
   }
 
+  @Test
+  public void testReplaceRegExp() {
+    ScriptableValue result = evaluate("replace(/\\s+(\\w)/g, '-$1')", TextType.get().valueOf(" H2R  2E1"));
+    assertThat(result.getValue()).isEqualTo(TextType.get().valueOf("-H2R-2E1"));
+
+    result = evaluate("replace(/^\\s+|\\s+$/, '')", TextType.get().valueOf("  H2R 2E1 "));
+    assertThat(result.getValue()).isEqualTo(TextType.get().valueOf("H2R 2E1 "));
+
+    result = evaluate("replace(/h(\\d)r/i, '[$`|$&|$\\'|$$]')", TextType.get().valueOf("1H2R2"));
+    assertThat(result.getValue()).isEqualTo(TextType.get().valueOf("1[1|H2R|2|$]2"));
+  }
+
+  @Test
+  public void testReplaceRegExpWithLeadingZeroGroup() {
+    // same as Rhino: $0n is group n, $0 and $00 are kept as is
+    assertThat(evaluate("replace(/(b)/, '$01')", TextType.get().valueOf("abc")).getValue())
+        .isEqualTo(TextType.get().valueOf("abc"));
+    assertThat(evaluate("replace(/(b)(c)/, '$012')", TextType.get().valueOf("abc")).getValue())
+        .isEqualTo(TextType.get().valueOf("ab2"));
+    assertThat(evaluate("replace(/(b)/, '$10')", TextType.get().valueOf("abc")).getValue())
+        .isEqualTo(TextType.get().valueOf("ab0c"));
+    assertThat(evaluate("replace(/(b)/, '[$0|$00]')", TextType.get().valueOf("abc")).getValue())
+        .isEqualTo(TextType.get().valueOf("a[$0|$00]c"));
+    assertThat(evaluate("replace(/b/, '$01')", TextType.get().valueOf("abc")).getValue())
+        .isEqualTo(TextType.get().valueOf("a$01c"));
+  }
+
+  @Test
+  public void testReplaceRegExpWithBackReference() {
+    // not translated, applied by Rhino
+    ScriptableValue result = evaluate("replace(/(\\w)\\1/g, '$1')", TextType.get().valueOf("aabbc"));
+    assertThat(result.getValue()).isEqualTo(TextType.get().valueOf("abc"));
+  }
+
+  @Test
+  public void testReplaceRegExpValueSequence() {
+    ScriptableValue result = evaluate("replace(/[^0-9]/g, '')", TextType.get().sequenceOf("\"a1b2\",\"3c\""));
+    assertThat(result.getValue().asSequence().getSize()).isEqualTo(2);
+    assertThat(result.getValue().asSequence().get(0)).isEqualTo(TextType.get().valueOf("12"));
+    assertThat(result.getValue().asSequence().get(1)).isEqualTo(TextType.get().valueOf("3"));
+  }
+
+  @Test
+  public void testMatchesRegExp() {
+    assertThat(evaluate("matches(/^va.ue$/i)", TextType.get().valueOf("VALUE")).getValue())
+        .isEqualTo(BooleanType.get().trueValue());
+    assertThat(evaluate("matches(/^va.ue$/i)", TextType.get().valueOf("VALUE\n")).getValue())
+        .isEqualTo(BooleanType.get().falseValue());
+    assertThat(evaluate("matches('^x', /\\bue/, 'lu')", TextType.get().valueOf("Value")).getValue())
+        .isEqualTo(BooleanType.get().trueValue());
+  }
+
   @Test
   public void testStringConcatString() throws Exception {
     ScriptableValue hello = newValue(TextType.get().valueOf("Hello "));
@@ -6,11 +6,12 @@ import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.obiba.magma.Value;
 import org.obiba.magma.VariableEntity;
 import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.math.stat.Moments;
 
 /**
- * Abstract implementation of {@code DescriptiveStatisticsProvider} extending classes should implement {@code
- * #processValue(VariableValueSource, Value, DescriptiveStatistics)} by either adding the value to the instance of
- * {@code DescriptiveStatistics} or not
+ * Abstract implementation of {@code DescriptiveStatisticsProvider} extending classes should override {@code
+ * #isIncluded(VariableValueSource, Value)} by either accepting the value in the statistical summary or not. By default,
+ * all the non-null values are accepted.
  */
 public abstract class AbstractDescriptiveStatisticsProvider implements DescriptiveStatisticsProvider {
 
@@ -28,6 +29,37 @@ public abstract class AbstractDescriptiveStatisticsProvider implements Descripti
     return ds;
   }
 
-  protected abstract void processValue(VariableValueSource valueSource, Value value, DescriptiveStatistics stats);
+  /**
+   * Adds the value to the moments when it is included in the statistical summary, so that the summary can be computed
+   * without retaining the values.
+   *
+   * @param valueSource
+   * @param value
+   * @param moments
+   */
+  public void processValue(VariableValueSource valueSource, Value value, Moments moments) {
+    if(isIncluded(valueSource, value)) {
+      moments.add(((Number) value.getValue()).doubleValue());
+    }
+  }
+
+  protected void processValue(VariableValueSource valueSource, Value value, DescriptiveStatistics stats) {
+    if(isIncluded(valueSource, value)) {
+      stats.addValue(((Number) value.getValue()).doubleValue());
+    }
+  }
+
+  /**
+   * Whether the value is included in the statistical summary, both in {@code DescriptiveStatistics} and in {@code
+   * Moments}. Extending classes that still override {@code #processValue(VariableValueSource, Value,
+   * DescriptiveStatistics)} should override this method accordingly.
+   *
+   * @param valueSource
+   * @param value
+   * @return true when the value is not null
+   */
+  protected boolean isIncluded(VariableValueSource valueSource, Value value) {
+    return !value.isNull();
+  }
 
 }
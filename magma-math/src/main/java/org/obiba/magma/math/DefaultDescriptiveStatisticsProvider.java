@@ -1,6 +1,5 @@
 package org.obiba.magma.math;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.obiba.magma.Value;
 import org.obiba.magma.VariableValueSource;
 
@@ -11,10 +10,8 @@ import org.obiba.magma.VariableValueSource;
 public class DefaultDescriptiveStatisticsProvider extends AbstractDescriptiveStatisticsProvider {
 
   @Override
-  protected void processValue(VariableValueSource valueSource, Value value, DescriptiveStatistics stats) {
-    if(!value.isNull()) {
-      stats.addValue(((Number) value.getValue()).doubleValue());
-    }
+  protected boolean isIncluded(VariableValueSource valueSource, Value value) {
+    return !value.isNull();
   }
 
 }
@@ -2,7 +2,6 @@ package org.obiba.magma.math;
 
 import java.util.Objects;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.obiba.magma.Category;
 import org.obiba.magma.Value;
 import org.obiba.magma.Variable;
@@ -15,10 +14,8 @@ import org.obiba.magma.VariableValueSource;
 public class ExcludeMissingDescriptiveStatisticsProvider extends AbstractDescriptiveStatisticsProvider {
 
   @Override
-  protected void processValue(VariableValueSource valueSource, Value value, DescriptiveStatistics stats) {
-    if(!isMissing(valueSource.getVariable(), value)) {
-      stats.addValue(((Number) value.getValue()).doubleValue());
-    }
+  protected boolean isIncluded(VariableValueSource valueSource, Value value) {
+    return !isMissing(valueSource.getVariable(), value);
   }
 
   /**
@@ -0,0 +1,123 @@
+package org.obiba.magma.math;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.obiba.magma.MagmaCacheExtension;
+import org.obiba.magma.MagmaEngine;
+import org.obiba.magma.Value;
+import org.springframework.cache.Cache;
+
+/**
+ * Values computed from a table, kept in a cache of the {@link MagmaCacheExtension} together with the last update of
+ * their table. A value is up to date as long as the last update of its table does not change. Nothing is cached when
+ * there is no such cache, or when the table has no last update.
+ */
+public class LastUpdateCache {
+
+  @NotNull
+  private final String cacheName;
+
+  public LastUpdateCache(@NotNull String cacheName) {
+    //noinspection ConstantConditions
+    if(cacheName == null) throw new IllegalArgumentException("cacheName cannot be null");
+    this.cacheName = cacheName;
+  }
+
+  @NotNull
+  public String getCacheName() {
+    return cacheName;
+  }
+
+  /**
+   * Whether values of a table with the given last update can be cached.
+   *
+   * @param lastUpdate
+   * @return
+   */
+  public boolean isEnabled(@NotNull Value lastUpdate) {
+    return !lastUpdate.isNull() && getCache() != null;
+  }
+
+  /**
+   * Get the value cached for the key if it is up to date.
+   *
+   * @param key
+   * @param lastUpdate the last update of the table of the value
+   * @param <T>
+   * @return null if there is no such value, or if it is not up to date
+   */
+  @Nullable
+  public <T> T get(@NotNull String key, @NotNull Value lastUpdate) {
+    Cache cache = lastUpdate.isNull() ? null : getCache();
+    if(cache == null) return null;
+    Cache.ValueWrapper wrapper = cache.get(key);
+    if(wrapper == null) return null;
+    @SuppressWarnings("unchecked")
+    Entry<T> entry = (Entry<T>) wrapper.get();
+    return entry.isUpToDate(lastUpdate) ? entry.getValue() : null;
+  }
+
+  /**
+   * Cache the value for the key, if values of a table with the given last update can be cached.
+   *
+   * @param key
+   * @param value
+   * @param lastUpdate the last update of the table of the value, read before the value was computed
+   */
+  public void put(@NotNull String key, @NotNull Object value, @NotNull Value lastUpdate) {
+    Cache cache = lastUpdate.isNull() ? null : getCache();
+    if(cache != null) cache.put(key, new Entry<>(value, lastUpdate));
+  }
+
+  public void evict(@NotNull String key) {
+    Cache cache = getCache();
+    if(cache != null) cache.evict(key);
+  }
+
+  @Nullable
+  private Cache getCache() {
+    if(!MagmaEngine.get().hasExtension(MagmaCacheExtension.class)) return null;
+    MagmaCacheExtension cacheExtension = MagmaEngine.get().getExtension(MagmaCacheExtension.class);
+    return cacheExtension.hasCacheManager() ? cacheExtension.getCacheManager().getCache(cacheName) : null;
+  }
+
+  /**
+   * A value with the last update of its table.
+   *
+   * @param <T>
+   */
+  public static final class Entry<T> implements Serializable {
+
+    private static final long serialVersionUID = 2412066716395738208L;
+
+    private final T value;
+
+    // null when the table has no last update
+    @Nullable
+    private final Long lastUpdate;
+
+    public Entry(T value, @NotNull Value lastUpdate) {
+      this.value = value;
+      this.lastUpdate = getTime(lastUpdate);
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    public boolean isUpToDate(@NotNull Value updated) {
+      return Objects.equals(lastUpdate, getTime(updated));
+    }
+
+    @Nullable
+    private static Long getTime(Value lastUpdate) {
+      return lastUpdate.isNull() ? null : ((Date) lastUpdate.getValue()).getTime();
+    }
+  }
+
+}
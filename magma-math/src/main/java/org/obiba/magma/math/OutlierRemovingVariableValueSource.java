@@ -5,7 +5,6 @@ import java.util.SortedSet;
 import javax.validation.constraints.NotNull;
 
 import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
-import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
 import org.obiba.magma.Value;
 import org.obiba.magma.ValueSet;
 import org.obiba.magma.ValueTable;
@@ -15,8 +14,8 @@ import org.obiba.magma.VectorSource;
 import org.obiba.magma.support.AbstractVariableValueSourceWrapper;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Sets;
 
 /**
  * Detects and removes outliers from a {@code VariableValueSource}. Outliers are "removed" by assigning them another
@@ -36,12 +35,7 @@ import com.google.common.collect.Sets;
 public class OutlierRemovingVariableValueSource extends AbstractVariableValueSourceWrapper implements VectorSource {
 
   @NotNull
-  private final ValueTable valueTable;
-
-  @NotNull
-  private final DescriptiveStatisticsProvider statisticsProvider;
-
-  private transient StatisticalSummary variableStatistics;
+  private final ValueTableMoments tableMoments;
 
   public OutlierRemovingVariableValueSource(@NotNull ValueTable valueTable,
       @NotNull VariableValueSource wrappedSource) {
@@ -54,8 +48,20 @@ public class OutlierRemovingVariableValueSource extends AbstractVariableValueSou
     super(wrappedSource);
     if(statisticsProvider == null) throw new IllegalArgumentException("statisticsProvider cannot be null");
     if(valueTable == null) throw new IllegalArgumentException("valueTable cannot be null");
-    this.statisticsProvider = statisticsProvider;
-    this.valueTable = valueTable;
+    tableMoments = new ValueTableMoments(valueTable, statisticsProvider,
+        ImmutableList.<VariableValueSource>of(wrappedSource));
+  }
+
+  /**
+   * @param wrappedSource
+   * @param tableMoments the moments of the table of the source, which can be shared with other sources
+   */
+  @SuppressWarnings("ConstantConditions")
+  public OutlierRemovingVariableValueSource(@NotNull VariableValueSource wrappedSource,
+      @NotNull ValueTableMoments tableMoments) {
+    super(wrappedSource);
+    if(tableMoments == null) throw new IllegalArgumentException("tableMoments cannot be null");
+    this.tableMoments = tableMoments;
   }
 
   @NotNull
@@ -73,11 +79,13 @@ public class OutlierRemovingVariableValueSource extends AbstractVariableValueSou
 
   @Override
   public Iterable<Value> getValues(SortedSet<VariableEntity> entities) {
+    // statistics are looked up once for all the values
+    final StatisticalSummary stats = getStatistics();
     return Iterables.transform(getWrapped().asVectorSource().getValues(entities), new Function<Value, Value>() {
 
       @Override
       public Value apply(Value from) {
-        return isOutlier(from) ? valueForOutlier(from) : from;
+        return isOutlier(from, stats) ? valueForOutlier(from) : from;
       }
 
     });
@@ -90,11 +98,16 @@ public class OutlierRemovingVariableValueSource extends AbstractVariableValueSou
    * @return
    */
   protected boolean isOutlier(Value value) {
+    // statistics are not needed for nulls
+    return !value.isNull() && isOutlier(value, getStatistics());
+  }
+
+  private boolean isOutlier(Value value, StatisticalSummary stats) {
     if(value.isNull()) {
       return false;
     }
     Number number = (Number) value.getValue();
-    return isOutlier(number.doubleValue(), calculateStats());
+    return isOutlier(number.doubleValue(), stats);
   }
 
   /**
@@ -121,15 +134,12 @@ public class OutlierRemovingVariableValueSource extends AbstractVariableValueSou
     return getValueType().nullValue();
   }
 
-  private synchronized StatisticalSummary calculateStats() {
-    if(variableStatistics == null) {
-      StatisticalSummary summary = statisticsProvider
-          .compute(getWrapped(), Sets.newTreeSet(valueTable.getVariableEntities()));
-      // Copy into value-object so we don't keep a reference to the actual values (DescriptiveStatistics keeps all
-      // values)
-      variableStatistics = new StatisticalSummaryValues(summary.getMean(), summary.getVariance(), summary.getN(),
-          summary.getMax(), summary.getMin(), summary.getSum());
-    }
-    return variableStatistics;
+  /**
+   * Get the statistics of the wrapped variable, which are computed again when its table is updated.
+   *
+   * @return
+   */
+  protected StatisticalSummary getStatistics() {
+    return tableMoments.getMoments(getWrapped());
   }
 }
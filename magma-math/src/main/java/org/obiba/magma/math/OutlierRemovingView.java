@@ -33,6 +33,12 @@ public class OutlierRemovingView extends View {
    */
   private final Map<String, OutlierRemovingVariableValueSource> sources = Maps.newHashMap();
 
+  /**
+   * The statistics of all the variables of the wrapped table, computed together when the first one is needed.
+   */
+  @Nullable
+  private ValueTableMoments tableMoments;
+
   public OutlierRemovingView() {
     this(new ExcludeMissingDescriptiveStatisticsProvider());
   }
@@ -73,7 +79,8 @@ public class OutlierRemovingView extends View {
     String variableName = from == null ? null : from.getVariable().getName();
     OutlierRemovingVariableValueSource source = variableName == null ? null : sources.get(variableName);
     if(source == null) {
-      source = new OutlierRemovingVariableValueSource(getWrappedValueTable(), from, statisticsProvider) {
+      if(tableMoments == null) tableMoments = new ValueTableMoments(getWrappedValueTable(), statisticsProvider);
+      source = new OutlierRemovingVariableValueSource(from, tableMoments) {
         @NotNull
         @Override
         public Value getValue(ValueSet valueSet) {
@@ -6,7 +6,6 @@ import java.util.Set;
 
 import javax.validation.constraints.NotNull;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.obiba.magma.AbstractVariableValueSource;
 import org.obiba.magma.Datasource;
 import org.obiba.magma.Initialisable;
@@ -21,6 +20,7 @@ import org.obiba.magma.VariableEntity;
 import org.obiba.magma.VariableValueSource;
 import org.obiba.magma.VectorSource;
 import org.obiba.magma.VectorSourceNotSupportedException;
+import org.obiba.magma.math.stat.Moments;
 import org.obiba.magma.support.AbstractValueTable;
 import org.obiba.magma.support.NullTimestamps;
 import org.obiba.magma.support.ValueSetBean;
@@ -32,7 +32,6 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Sets;
 
 /**
  * A {@code ValueTable} implementation that will compute a statistical summary for all numerical variables of another
@@ -44,12 +43,25 @@ public class SummaryStatisticsView extends AbstractValueTable implements Initial
 
   private final ValueTable valueTable;
 
-  private final DescriptiveStatisticsProvider statsProvider = new DefaultDescriptiveStatisticsProvider();
+  private final ValueTableMoments tableMoments;
 
   public SummaryStatisticsView(Datasource ds, String name, ValueTable valueTable) {
+    this(ds, name, valueTable, new DefaultDescriptiveStatisticsProvider());
+  }
+
+  /**
+   * @param ds
+   * @param name
+   * @param valueTable
+   * @param statsProvider decides which values are included in the statistics
+   */
+  public SummaryStatisticsView(Datasource ds, String name, ValueTable valueTable,
+      DescriptiveStatisticsProvider statsProvider) {
     super(ds, name);
     if(valueTable == null) throw new IllegalArgumentException("valueTable cannot be null");
+    if(statsProvider == null) throw new IllegalArgumentException("statsProvider cannot be null");
     this.valueTable = valueTable;
+    tableMoments = new ValueTableMoments(valueTable, statsProvider);
   }
 
   @Override
@@ -83,16 +95,16 @@ public class SummaryStatisticsView extends AbstractValueTable implements Initial
 
   private class AggregateValueSet extends ValueSetBean {
 
-    private final DescriptiveStatistics ds;
+    private final Moments moments;
 
     protected AggregateValueSet(VariableEntity entity) {
       super(SummaryStatisticsView.this, entity);
-      ds = statsProvider.compute(valueTable.getVariableValueSource(entity.getIdentifier()),
-          Sets.newTreeSet(valueTable.getVariableEntities()));
+      // the statistics of all the variables are computed together, once per update of the table
+      moments = tableMoments.getMoments(valueTable.getVariableValueSource(entity.getIdentifier()));
     }
 
-    DescriptiveStatistics getStats() {
-      return ds;
+    Moments getStats() {
+      return moments;
     }
 
   }
@@ -105,7 +117,7 @@ public class SummaryStatisticsView extends AbstractValueTable implements Initial
 
     private StatVariableValueSource(String name) {
       statName = name;
-      getter = Iterables.find(Arrays.asList(DescriptiveStatistics.class.getMethods()), new Predicate<Method>() {
+      getter = Iterables.find(Arrays.asList(Moments.class.getMethods()), new Predicate<Method>() {
 
         @Override
         public boolean apply(Method input) {
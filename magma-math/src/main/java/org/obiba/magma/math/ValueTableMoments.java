@@ -0,0 +1,189 @@
+package org.obiba.magma.math;
+
+import java.util.Map;
+import java.util.SortedSet;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.obiba.magma.MagmaCacheExtension;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.math.stat.Moments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+
+/**
+ * The moments of the numeric variables of a table. The moments of all the variables are computed together: the
+ * entities of the table are resolved once and the values of each variable are read once, without being retained. They
+ * are kept until the last update of the table changes, in the cache {@value #CACHE_NAME} of the {@link
+ * MagmaCacheExtension} when there is one, so that they are shared by all the views of the table.
+ * <p/>
+ * Values are included in the moments as decided by the {@link AbstractDescriptiveStatisticsProvider}. With any other
+ * {@link DescriptiveStatisticsProvider}, the moments of each variable are computed from its descriptive statistics.
+ */
+public class ValueTableMoments {
+
+  private static final Logger log = LoggerFactory.getLogger(ValueTableMoments.class);
+
+  public static final String CACHE_NAME = "magma-variable-moments";
+
+  private static final LastUpdateCache cache = new LastUpdateCache(CACHE_NAME);
+
+  @NotNull
+  private final ValueTable table;
+
+  @NotNull
+  private final DescriptiveStatisticsProvider statisticsProvider;
+
+  @Nullable
+  private final Iterable<VariableValueSource> sources;
+
+  // moments of the table when they are not in the cache
+  @Nullable
+  private LastUpdateCache.Entry<Map<String, Moments>> tableMoments;
+
+  // moments of the variables that are not among the numeric variables of the table
+  @Nullable
+  private LastUpdateCache.Entry<Map<String, Moments>> otherMoments;
+
+  /**
+   * The moments of the numeric variables of the table that are not repeatable.
+   *
+   * @param table
+   * @param statisticsProvider
+   */
+  public ValueTableMoments(@NotNull ValueTable table, @NotNull DescriptiveStatisticsProvider statisticsProvider) {
+    this(table, statisticsProvider, null);
+  }
+
+  /**
+   * The moments of some variables of the table. These moments are not shared.
+   *
+   * @param table
+   * @param statisticsProvider
+   * @param sources the variables to compute together, all the numeric variables of the table if null
+   */
+  @SuppressWarnings("ConstantConditions")
+  public ValueTableMoments(@NotNull ValueTable table, @NotNull DescriptiveStatisticsProvider statisticsProvider,
+      @Nullable Iterable<VariableValueSource> sources) {
+    if(table == null) throw new IllegalArgumentException("table cannot be null");
+    if(statisticsProvider == null) throw new IllegalArgumentException("statisticsProvider cannot be null");
+    this.table = table;
+    this.statisticsProvider = statisticsProvider;
+    this.sources = sources == null ? null : ImmutableList.copyOf(sources);
+  }
+
+  /**
+   * Get the moments of a variable of the table, computing those of all the variables if they are not up to date.
+   *
+   * @param source
+   * @return
+   */
+  @NotNull
+  public synchronized Moments getMoments(@NotNull VariableValueSource source) {
+    Value lastUpdate = table.getTimestamps().getLastUpdate();
+    String name = source.getVariable().getName();
+    Moments moments = getTableMoments(lastUpdate).get(name);
+    if(moments == null) {
+      if(otherMoments == null || !otherMoments.isUpToDate(lastUpdate)) {
+        otherMoments = new LastUpdateCache.Entry<Map<String, Moments>>(Maps.<String, Moments>newHashMap(),
+            lastUpdate);
+      }
+      moments = otherMoments.getValue().get(name);
+      if(moments == null) {
+        moments = compute(ImmutableList.of(source)).get(name);
+        otherMoments.getValue().put(name, moments);
+      }
+    }
+    return moments;
+  }
+
+  /**
+   * Get the moments of all the variables, by variable name.
+   *
+   * @return
+   */
+  @NotNull
+  public synchronized Map<String, Moments> getMoments() {
+    return getTableMoments(table.getTimestamps().getLastUpdate());
+  }
+
+  private Map<String, Moments> getTableMoments(Value lastUpdate) {
+    if(sources == null && cache.isEnabled(lastUpdate)) {
+      String key = getCacheKey();
+      Map<String, Moments> moments = cache.get(key, lastUpdate);
+      if(moments == null) {
+        moments = compute(getSources());
+        cache.put(key, moments, lastUpdate);
+      }
+      return moments;
+    }
+
+    if(tableMoments == null || !tableMoments.isUpToDate(lastUpdate)) {
+      tableMoments = new LastUpdateCache.Entry<>(compute(getSources()), lastUpdate);
+    }
+    return tableMoments.getValue();
+  }
+
+  private Iterable<VariableValueSource> getSources() {
+    if(sources != null) return sources;
+    ImmutableList.Builder<VariableValueSource> builder = ImmutableList.builder();
+    for(Variable variable : table.getVariables()) {
+      if(variable.getValueType().isNumeric() && !variable.isRepeatable()) {
+        VariableValueSource source = table.getVariableValueSource(variable.getName());
+        if(source.supportVectorSource()) builder.add(source);
+      }
+    }
+    return builder.build();
+  }
+
+  private Map<String, Moments> compute(Iterable<VariableValueSource> variableSources) {
+    SortedSet<VariableEntity> entities = ImmutableSortedSet.copyOf(table.getVariableEntities());
+    ImmutableMap.Builder<String, Moments> builder = ImmutableMap.builder();
+    int count = 0;
+    for(VariableValueSource source : variableSources) {
+      builder.put(source.getVariable().getName(), compute(source, entities));
+      count++;
+    }
+    log.debug("Computed the moments of {} variables of {} over {} entities", count, table.getName(),
+        entities.size());
+    return builder.build();
+  }
+
+  private Moments compute(VariableValueSource source, SortedSet<VariableEntity> entities) {
+    Moments moments = new Moments();
+    if(statisticsProvider instanceof AbstractDescriptiveStatisticsProvider) {
+      if(source.supportVectorSource()) {
+        for(Value value : source.asVectorSource().getValues(entities)) {
+          ((AbstractDescriptiveStatisticsProvider) statisticsProvider).processValue(source, value, moments);
+        }
+      }
+    } else {
+      DescriptiveStatistics stats = statisticsProvider.compute(source, entities);
+      for(double value : stats.getValues()) {
+        moments.add(value);
+      }
+    }
+    return moments;
+  }
+
+  /**
+   * Values are included differently by each kind of provider, the kind is part of the cache key.
+   *
+   * @return
+   */
+  private String getCacheKey() {
+    return table.getTableReference() + ";" + statisticsProvider.getClass().getName();
+  }
+
+}
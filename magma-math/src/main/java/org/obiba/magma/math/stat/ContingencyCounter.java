@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Counts the occurrences of combinations of names, one name per dimension. As in {@link FrequencyCounter}, each name of
+ * a dimension gets an index, in the order names are first seen, so that combinations can be counted by their indices.
+ * Only the combinations that occur are kept, so that the counts grow with the values rather than with the product of the
+ * number of names of each dimension.
+ */
+public class ContingencyCounter implements Serializable {
+
+  private static final long serialVersionUID = -6206418536425011948L;
+
+  private final List<Map<String, Integer>> indices = Lists.newArrayList();
+
+  private final List<List<String>> names = Lists.newArrayList();
+
+  // count of each combination that occurred, in a mutable holder
+  private final Map<Combination, long[]> counts = Maps.newHashMap();
+
+  private long sumFreq;
+
+  public ContingencyCounter(int dimensions) {
+    if(dimensions < 1) throw new IllegalArgumentException("dimensions must be positive");
+    for(int d = 0; d < dimensions; d++) {
+      indices.add(Maps.<String, Integer>newHashMap());
+      names.add(Lists.<String>newArrayList());
+    }
+  }
+
+  public int getDimensions() {
+    return names.size();
+  }
+
+  /**
+   * Get the index of a name in a dimension, registering it if it was not seen yet.
+   *
+   * @param dimension
+   * @param name
+   * @return
+   */
+  public int index(int dimension, String name) {
+    Integer index = indices.get(dimension).get(name);
+    if(index == null) {
+      index = names.get(dimension).size();
+      indices.get(dimension).put(name, index);
+      names.get(dimension).add(name);
+    }
+    return index;
+  }
+
+  /**
+   * Get the index of a name in a dimension.
+   *
+   * @param dimension
+   * @param name
+   * @return -1 if the name was not seen yet
+   */
+  public int indexOf(int dimension, String name) {
+    Integer index = indices.get(dimension).get(name);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Number of names seen in a dimension.
+   *
+   * @param dimension
+   * @return
+   */
+  public int size(int dimension) {
+    return names.get(dimension).size();
+  }
+
+  /**
+   * Get the names of a dimension, by index.
+   *
+   * @param dimension
+   * @return
+   */
+  public List<String> getNames(int dimension) {
+    return ImmutableList.copyOf(names.get(dimension));
+  }
+
+  /**
+   * Counts a combination of names, given by their index in each dimension.
+   *
+   * @param indices
+   */
+  public void increment(int... indices) {
+    increment(indices, 1);
+  }
+
+  public void increment(int[] indices, long count) {
+    long[] counted = counts.get(new Combination(indices));
+    if(counted == null) {
+      // the indices array may be reused by the caller
+      counted = new long[1];
+      counts.put(new Combination(indices.clone()), counted);
+    }
+    counted[0] += count;
+    sumFreq += count;
+  }
+
+  public long getCount(int... indices) {
+    long[] counted = counts.get(new Combination(indices));
+    return counted == null ? 0 : counted[0];
+  }
+
+  public long getCount(String... names) {
+    if(names.length != getDimensions()) {
+      throw new IllegalArgumentException("Expecting " + getDimensions() + " names, got " + names.length);
+    }
+    int[] combination = new int[names.length];
+    for(int d = 0; d < names.length; d++) {
+      combination[d] = indexOf(d, names[d]);
+    }
+    return getCount(combination);
+  }
+
+  public long getSumFreq() {
+    return sumFreq;
+  }
+
+  /**
+   * Adds the counts of another counter with the same number of dimensions.
+   *
+   * @param other
+   */
+  public void merge(ContingencyCounter other) {
+    if(other == this) throw new IllegalArgumentException("Cannot merge a counter with itself");
+    if(other.getDimensions() != getDimensions()) {
+      throw new IllegalArgumentException("Cannot merge counters of different dimensions");
+    }
+    int[][] translations = new int[getDimensions()][];
+    for(int d = 0; d < getDimensions(); d++) {
+      translations[d] = new int[other.size(d)];
+      for(int i = 0; i < translations[d].length; i++) {
+        translations[d][i] = index(d, other.names.get(d).get(i));
+      }
+    }
+    int[] translated = new int[getDimensions()];
+    for(Map.Entry<Combination, long[]> entry : other.counts.entrySet()) {
+      for(int d = 0; d < getDimensions(); d++) {
+        translated[d] = translations[d][entry.getKey().indices[d]];
+      }
+      increment(translated, entry.getValue()[0]);
+    }
+  }
+
+  /**
+   * The indices of a combination of names, as a map key.
+   */
+  private static final class Combination implements Serializable {
+
+    private static final long serialVersionUID = -2937410938532176473L;
+
+    private final int[] indices;
+
+    private Combination(int... indices) {
+      this.indices = indices;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Combination && Arrays.equals(indices, ((Combination) obj).indices);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(indices);
+    }
+  }
+
+}
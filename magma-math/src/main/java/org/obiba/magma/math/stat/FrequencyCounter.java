@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+
+/**
+ * Counts the occurrences of names. Each name gets an index, in the order names are first seen, so that frequent names
+ * (such as the categories of a variable) can be registered once and then counted by their index.
+ */
+public class FrequencyCounter implements Serializable {
+
+  private static final long serialVersionUID = -4728279590358719522L;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Map<String, Integer> indices = Maps.newHashMap();
+
+  private final List<String> names = Lists.newArrayList();
+
+  private long[] counts = new long[INITIAL_CAPACITY];
+
+  private long sumFreq;
+
+  /**
+   * Get the index of a name, registering it if it was not seen yet.
+   *
+   * @param name
+   * @return
+   */
+  public int index(String name) {
+    Integer index = indices.get(name);
+    if(index == null) {
+      index = names.size();
+      indices.put(name, index);
+      names.add(name);
+      if(index == counts.length) counts = Arrays.copyOf(counts, index * 2);
+    }
+    return index;
+  }
+
+  /**
+   * Get the index of a name.
+   *
+   * @param name
+   * @return -1 if the name was not seen yet
+   */
+  public int indexOf(String name) {
+    Integer index = indices.get(name);
+    return index == null ? -1 : index;
+  }
+
+  public void increment(int index) {
+    increment(index, 1);
+  }
+
+  public void increment(int index, long count) {
+    counts[index] += count;
+    sumFreq += count;
+  }
+
+  public void add(String name) {
+    increment(index(name));
+  }
+
+  /**
+   * Adds the counts of another counter.
+   *
+   * @param other
+   */
+  public void merge(FrequencyCounter other) {
+    if(other == this) throw new IllegalArgumentException("Cannot merge a counter with itself");
+    for(int i = 0; i < other.names.size(); i++) {
+      if(other.counts[i] > 0) {
+        increment(index(other.names.get(i)), other.counts[i]);
+      }
+    }
+  }
+
+  public long getCount(String name) {
+    int index = indexOf(name);
+    return index < 0 ? 0 : counts[index];
+  }
+
+  /**
+   * Get the proportion of the occurrences of a name.
+   *
+   * @param name
+   * @return NaN if nothing was counted
+   */
+  public double getPct(String name) {
+    return (double) getCount(name) / sumFreq;
+  }
+
+  /**
+   * Number of names seen.
+   *
+   * @return
+   */
+  public int size() {
+    return names.size();
+  }
+
+  public long getSumFreq() {
+    return sumFreq;
+  }
+
+  /**
+   * Get the names that were counted at least once, sorted.
+   *
+   * @return
+   */
+  public List<String> getCountedNames() {
+    List<String> counted = Lists.newArrayList();
+    for(int i = 0; i < names.size(); i++) {
+      if(counts[i] > 0) counted.add(names.get(i));
+    }
+    return Ordering.natural().sortedCopy(counted);
+  }
+
+}
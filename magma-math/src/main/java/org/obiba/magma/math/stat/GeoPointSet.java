@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+import org.obiba.magma.Coordinate;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The points of a stream of coordinates, with the number of times each was added. The points are either retained as
+ * is, or aggregated in the cells of a grid (a cell is then represented by the mean of its points), or sampled, so that
+ * the number of points does not grow with the number of coordinates.
+ */
+public class GeoPointSet implements Serializable {
+
+  private static final long serialVersionUID = 7432187053615297823L;
+
+  private static final long SEED = 20140;
+
+  @Nullable
+  private final Double resolution;
+
+  @Nullable
+  private final Integer sampleSize;
+
+  // points by coordinate, or by cell of the grid
+  private final Map<Coordinate, Cell> cells = Maps.newLinkedHashMap();
+
+  private final List<Coordinate> sample = Lists.newArrayList();
+
+  private final Random random = new Random(SEED);
+
+  private long n;
+
+  /**
+   * Retains all the points.
+   */
+  public GeoPointSet() {
+    this(null, null);
+  }
+
+  private GeoPointSet(@Nullable Double resolution, @Nullable Integer sampleSize) {
+    this.resolution = resolution;
+    this.sampleSize = sampleSize;
+  }
+
+  /**
+   * Aggregates the points in the cells of a grid.
+   *
+   * @param resolution size of a cell, in degrees
+   * @return
+   */
+  public static GeoPointSet withResolution(double resolution) {
+    if(!(resolution > 0)) throw new IllegalArgumentException("resolution must be positive");
+    return new GeoPointSet(resolution, null);
+  }
+
+  /**
+   * Retains a uniform sample of the points.
+   *
+   * @param sampleSize maximum number of points retained
+   * @return
+   */
+  public static GeoPointSet withSampleSize(int sampleSize) {
+    if(sampleSize < 1) throw new IllegalArgumentException("sampleSize must be positive");
+    return new GeoPointSet(null, sampleSize);
+  }
+
+  @Nullable
+  public Double getResolution() {
+    return resolution;
+  }
+
+  @Nullable
+  public Integer getSampleSize() {
+    return sampleSize;
+  }
+
+  /**
+   * Number of coordinates added.
+   *
+   * @return
+   */
+  public long getN() {
+    return n;
+  }
+
+  public void add(double longitude, double latitude) {
+    n++;
+    if(sampleSize == null) {
+      getCell(longitude, latitude).add(longitude, latitude);
+    } else if(sample.size() < sampleSize) {
+      sample.add(new Coordinate(longitude, latitude));
+    } else {
+      // reservoir sampling: the coordinate replaces a sampled one with probability sampleSize / n
+      long index = (long) (random.nextDouble() * n);
+      if(index < sampleSize) sample.set((int) index, new Coordinate(longitude, latitude));
+    }
+  }
+
+  /**
+   * Adds the points of another set, which must retain its points the same way.
+   *
+   * @param other
+   */
+  public void merge(GeoPointSet other) {
+    if(other == this) throw new IllegalArgumentException("Cannot merge a point set with itself");
+    if(!Objects.equal(resolution, other.resolution) || !Objects.equal(sampleSize, other.sampleSize)) {
+      throw new IllegalArgumentException("Cannot merge point sets with different resolutions or sample sizes");
+    }
+    if(sampleSize == null) {
+      for(Map.Entry<Coordinate, Cell> entry : other.cells.entrySet()) {
+        Cell cell = cells.get(entry.getKey());
+        if(cell == null) {
+          cell = new Cell();
+          cells.put(entry.getKey(), cell);
+        }
+        cell.merge(entry.getValue());
+      }
+    } else {
+      mergeSample(other);
+    }
+    n += other.n;
+  }
+
+  /**
+   * Get the points, with the number of coordinates they represent.
+   *
+   * @return
+   */
+  public List<WeightedPoint> getPoints() {
+    ImmutableList.Builder<WeightedPoint> builder = ImmutableList.builder();
+    if(sampleSize == null) {
+      for(Map.Entry<Coordinate, Cell> entry : cells.entrySet()) {
+        Cell cell = entry.getValue();
+        // the points of a cell of the grid are represented by their mean
+        Coordinate coordinate = resolution == null
+            ? entry.getKey()
+            : new Coordinate(cell.sumLongitude / cell.count, cell.sumLatitude / cell.count);
+        builder.add(new WeightedPoint(coordinate, cell.count));
+      }
+    } else {
+      Map<Coordinate, Long> counts = Maps.newLinkedHashMap();
+      for(Coordinate coordinate : sample) {
+        Long count = counts.get(coordinate);
+        counts.put(coordinate, count == null ? 1 : count + 1);
+      }
+      for(Map.Entry<Coordinate, Long> entry : counts.entrySet()) {
+        builder.add(new WeightedPoint(entry.getKey(), entry.getValue()));
+      }
+    }
+    return builder.build();
+  }
+
+  private Cell getCell(double longitude, double latitude) {
+    Coordinate key = resolution == null
+        ? new Coordinate(longitude, latitude)
+        : new Coordinate(Math.floor(longitude / resolution), Math.floor(latitude / resolution));
+    Cell cell = cells.get(key);
+    if(cell == null) {
+      cell = new Cell();
+      cells.put(key, cell);
+    }
+    return cell;
+  }
+
+  /**
+   * Each sampled coordinate stands for the same number of added coordinates: the merged sample is drawn from both
+   * samples in proportion of the number of coordinates that remain to be represented.
+   *
+   * @param other
+   */
+  private void mergeSample(GeoPointSet other) {
+    List<Coordinate> mine = Lists.newArrayList(sample);
+    List<Coordinate> others = Lists.newArrayList(other.sample);
+    Collections.shuffle(mine, random);
+    Collections.shuffle(others, random);
+    double myWeight = mine.isEmpty() ? 0 : (double) n / mine.size();
+    double otherWeight = others.isEmpty() ? 0 : (double) other.n / others.size();
+    sample.clear();
+    int size = (int) Math.min(sampleSize, mine.size() + (long) others.size());
+    while(sample.size() < size) {
+      double myRemaining = myWeight * mine.size();
+      double otherRemaining = otherWeight * others.size();
+      List<Coordinate> from = random.nextDouble() * (myRemaining + otherRemaining) < myRemaining ? mine : others;
+      sample.add(from.remove(from.size() - 1));
+    }
+  }
+
+  /**
+   * A point that stands for some of the coordinates.
+   */
+  public static class WeightedPoint implements Serializable {
+
+    private static final long serialVersionUID = -1536960328459217326L;
+
+    private final Coordinate coordinate;
+
+    private final long count;
+
+    public WeightedPoint(Coordinate coordinate, long count) {
+      this.coordinate = coordinate;
+      this.count = count;
+    }
+
+    public Coordinate getCoordinate() {
+      return coordinate;
+    }
+
+    public long getCount() {
+      return count;
+    }
+  }
+
+  private static final class Cell implements Serializable {
+
+    private static final long serialVersionUID = 2968204861529187716L;
+
+    private double sumLongitude;
+
+    private double sumLatitude;
+
+    private long count;
+
+    private void add(double longitude, double latitude) {
+      sumLongitude += longitude;
+      sumLatitude += latitude;
+      count++;
+    }
+
+    private void merge(Cell other) {
+      sumLongitude += other.sumLongitude;
+      sumLatitude += other.sumLatitude;
+      count += other.count;
+    }
+  }
+
+}
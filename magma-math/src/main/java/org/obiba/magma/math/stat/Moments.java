@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.io.Serializable;
+
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
+
+/**
+ * Computes the moments of a stream of values without retaining them. Moments computed over distinct sets of values can
+ * be merged (see Chan, Golub and LeVeque, "Updating Formulae and a Pairwise Algorithm for Computing Sample
+ * Variances", and Pébay, "Formulas for Robust, One-Pass Parallel Computation of Covariances and Arbitrary-Order
+ * Statistical Moments" for the third and fourth moments).
+ */
+public class Moments implements StatisticalSummary, Serializable {
+
+  private static final long serialVersionUID = 4377917546719063375L;
+
+  private long n;
+
+  private double mean;
+
+  // sum of the squared differences to the mean
+  private double m2;
+
+  // sums of the cubed and fourth powers of the differences to the mean
+  private double m3;
+
+  private double m4;
+
+  private double sum;
+
+  private double sumsq;
+
+  private double sumOfLogs;
+
+  private double min = Double.NaN;
+
+  private double max = Double.NaN;
+
+  public void add(double value) {
+    if(n == 0 || value < min) min = value;
+    if(n == 0 || value > max) max = value;
+    long previous = n++;
+    double delta = value - mean;
+    double deltaN = delta / n;
+    double term = delta * deltaN * previous;
+    mean += deltaN;
+    m4 += term * deltaN * deltaN * (n * n - 3 * n + 3) + 6 * deltaN * deltaN * m2 - 4 * deltaN * m3;
+    m3 += term * deltaN * (n - 2) - 3 * deltaN * m2;
+    m2 += term;
+    sum += value;
+    sumsq += value * value;
+    sumOfLogs += Math.log(value);
+  }
+
+  /**
+   * Adds the values of other moments.
+   *
+   * @param other
+   */
+  public void merge(Moments other) {
+    if(other == this) throw new IllegalArgumentException("Cannot merge moments with themselves");
+    if(other.n == 0) return;
+    if(n == 0 || other.min < min) min = other.min;
+    if(n == 0 || other.max > max) max = other.max;
+    double na = n;
+    double nb = other.n;
+    double merged = na + nb;
+    double delta = other.mean - mean;
+    double delta2 = delta * delta;
+    mean += delta * nb / merged;
+    m4 += other.m4 + delta2 * delta2 * na * nb * (na * na - na * nb + nb * nb) / (merged * merged * merged) +
+        6 * delta2 * (na * na * other.m2 + nb * nb * m2) / (merged * merged) + 4 * delta * (na * other.m3 - nb * m3) /
+        merged;
+    m3 += other.m3 + delta2 * delta * na * nb * (na - nb) / (merged * merged) +
+        3 * delta * (na * other.m2 - nb * m2) / merged;
+    m2 += other.m2 + delta2 * na * nb / merged;
+    sum += other.sum;
+    sumsq += other.sumsq;
+    sumOfLogs += other.sumOfLogs;
+    n += other.n;
+  }
+
+  @Override
+  public long getN() {
+    return n;
+  }
+
+  @Override
+  public double getMean() {
+    return n == 0 ? Double.NaN : mean;
+  }
+
+  /**
+   * Returns the (bias corrected) sample variance.
+   *
+   * @return
+   */
+  @Override
+  public double getVariance() {
+    if(n == 0) return Double.NaN;
+    return n == 1 ? 0d : m2 / (n - 1);
+  }
+
+  @Override
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+
+  /**
+   * Returns the (bias corrected) sample skewness, as computed by {@link
+   * org.apache.commons.math3.stat.descriptive.moment.Skewness}.
+   *
+   * @return NaN when there are less than 3 values
+   */
+  public double getSkewness() {
+    if(n < 3) return Double.NaN;
+    double variance = getVariance();
+    return n * m3 / ((n - 1) * (n - 2) * Math.sqrt(variance) * variance);
+  }
+
+  /**
+   * Returns the (bias corrected) sample kurtosis, as computed by {@link
+   * org.apache.commons.math3.stat.descriptive.moment.Kurtosis}.
+   *
+   * @return NaN when there are less than 4 values
+   */
+  public double getKurtosis() {
+    if(n < 4) return Double.NaN;
+    double variance = getVariance();
+    return (n * (n + 1) * m4 - 3 * m2 * m2 * (n - 1)) / ((n - 1) * (n - 2) * (n - 3) * variance * variance);
+  }
+
+  /**
+   * @return NaN when there is no value or a negative value
+   */
+  public double getGeometricMean() {
+    return n == 0 ? Double.NaN : Math.exp(sumOfLogs / n);
+  }
+
+  @Override
+  public double getMax() {
+    return max;
+  }
+
+  @Override
+  public double getMin() {
+    return min;
+  }
+
+  @Override
+  public double getSum() {
+    return sum;
+  }
+
+  /**
+   * Returns the sum of the squares of the values.
+   *
+   * @return
+   */
+  public double getSumsq() {
+    return sumsq;
+  }
+
+}
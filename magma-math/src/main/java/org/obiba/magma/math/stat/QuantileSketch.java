@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Estimates the quantiles of a stream of values with bounded memory (KLL sketch, see Karnin, Lang and Liberty,
+ * "Optimal Quantile Approximation in Streams"). The sketch retains a number of values that grows with the logarithm of
+ * the number of values added; the rank of an estimated quantile is within about {@code 2 / k} of the requested
+ * one, with high probability.
+ */
+public class QuantileSketch implements Serializable {
+
+  private static final long serialVersionUID = -3104733407251720870L;
+
+  public static final int DEFAULT_K = 200;
+
+  // rank error is about RANK_ERROR_FACTOR / k
+  private static final double RANK_ERROR_FACTOR = 2;
+
+  // ratio of the capacities of two consecutive levels
+  private static final double CAPACITY_RATIO = 2d / 3d;
+
+  private static final int MIN_CAPACITY = 2;
+
+  private final int k;
+
+  private final Random random = new Random();
+
+  // values retained at level h weigh 2^h
+  private final List<Level> levels = Lists.newArrayList();
+
+  // number of values retained
+  private int size;
+
+  // number of values retained before compaction
+  private int maxSize;
+
+  private long n;
+
+  private double min = Double.NaN;
+
+  private double max = Double.NaN;
+
+  public QuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+  /**
+   * @param k accuracy parameter, the higher the more accurate
+   */
+  public QuantileSketch(int k) {
+    if(k < MIN_CAPACITY) throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY);
+    this.k = k;
+    grow();
+  }
+
+  /**
+   * Creates a sketch which estimated quantiles are ranked within {@code rankError} of the requested ones.
+   *
+   * @param rankError normalized rank error, in ]0, 1[
+   * @return
+   */
+  public static QuantileSketch withRankError(double rankError) {
+    if(rankError <= 0 || rankError >= 1) throw new IllegalArgumentException("rank error must be in ]0, 1[");
+    return new QuantileSketch((int) Math.max(MIN_CAPACITY, Math.ceil(RANK_ERROR_FACTOR / rankError)));
+  }
+
+  public int getK() {
+    return k;
+  }
+
+  public double getRankError() {
+    return RANK_ERROR_FACTOR / k;
+  }
+
+  /**
+   * Number of values added to the sketch.
+   *
+   * @return
+   */
+  public long getN() {
+    return n;
+  }
+
+  /**
+   * Number of values retained by the sketch.
+   *
+   * @return
+   */
+  public int getRetained() {
+    return size;
+  }
+
+  public double getMin() {
+    return min;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  /**
+   * Adds a value. NaN values are ignored.
+   *
+   * @param value
+   */
+  public void add(double value) {
+    if(Double.isNaN(value)) return;
+    if(n == 0 || value < min) min = value;
+    if(n == 0 || value > max) max = value;
+    n++;
+    levels.get(0).add(value);
+    size++;
+    if(size >= maxSize) compress();
+  }
+
+  /**
+   * Adds the values added to another sketch, which must have the same accuracy parameter.
+   *
+   * @param other
+   */
+  public void merge(QuantileSketch other) {
+    if(other == this) throw new IllegalArgumentException("Cannot merge a sketch with itself");
+    if(other.k != k) throw new IllegalArgumentException("Cannot merge sketches of different k: " + k + "," + other.k);
+    if(other.n == 0) return;
+    if(n == 0 || other.min < min) min = other.min;
+    if(n == 0 || other.max > max) max = other.max;
+    n += other.n;
+    while(levels.size() < other.levels.size()) {
+      grow();
+    }
+    for(int h = 0; h < other.levels.size(); h++) {
+      Level otherLevel = other.levels.get(h);
+      for(int i = 0; i < otherLevel.size; i++) {
+        levels.get(h).add(otherLevel.values[i]);
+      }
+      size += otherLevel.size;
+    }
+    while(size >= maxSize) {
+      compress();
+    }
+  }
+
+  /**
+   * Returns the estimated quantile of the values added.
+   *
+   * @param q the quantile, in [0, 1]
+   * @return NaN if no value was added
+   */
+  public double getQuantile(double q) {
+    if(q < 0 || q > 1) throw new IllegalArgumentException("quantile must be in [0, 1]: " + q);
+    if(n == 0) return Double.NaN;
+    if(q == 0) return min;
+    if(q == 1) return max;
+
+    double[] values = new double[size];
+    long[] weights = new long[size];
+    int i = 0;
+    for(int h = 0; h < levels.size(); h++) {
+      Level level = levels.get(h);
+      for(int j = 0; j < level.size; j++) {
+        values[i] = level.values[j];
+        weights[i] = 1L << h;
+        i++;
+      }
+    }
+    sortByValue(values, weights);
+
+    double rank = q * n;
+    long cumulated = 0;
+    for(int j = 0; j < size; j++) {
+      cumulated += weights[j];
+      if(cumulated >= rank) return values[j];
+    }
+    return max;
+  }
+
+  private void compress() {
+    for(int h = 0; h < levels.size(); h++) {
+      Level level = levels.get(h);
+      if(level.size >= capacity(h)) {
+        if(h + 1 >= levels.size()) grow();
+        size -= level.compactTo(levels.get(h + 1), random.nextBoolean());
+        if(size < maxSize) break;
+      }
+    }
+  }
+
+  private void grow() {
+    levels.add(new Level());
+    maxSize = 0;
+    for(int h = 0; h < levels.size(); h++) {
+      maxSize += capacity(h);
+    }
+  }
+
+  private int capacity(int h) {
+    int depth = levels.size() - h - 1;
+    return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth))) + 1;
+  }
+
+  private static void sortByValue(double[] values, long[] weights) {
+    Integer[] order = new Integer[values.length];
+    for(int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    final double[] keys = values.clone();
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return Double.compare(keys[o1], keys[o2]);
+      }
+    });
+    long[] sortedWeights = weights.clone();
+    for(int i = 0; i < order.length; i++) {
+      values[i] = keys[order[i]];
+      weights[i] = sortedWeights[order[i]];
+    }
+  }
+
+  private static final class Level implements Serializable {
+
+    private static final long serialVersionUID = 2710526012485069087L;
+
+    private double[] values = new double[MIN_CAPACITY];
+
+    private int size;
+
+    private void add(double value) {
+      if(size == values.length) values = Arrays.copyOf(values, size * 2);
+      values[size++] = value;
+    }
+
+    /**
+     * Promotes one value out of two to the next level, the lowest value stays when there is an odd number of values.
+     *
+     * @return the number of values removed from the sketch
+     */
+    private int compactTo(Level next, boolean odd) {
+      Arrays.sort(values, 0, size);
+      int start = size % 2;
+      int promoted = 0;
+      for(int i = start + (odd ? 1 : 0); i < size; i += 2) {
+        next.add(values[i]);
+        promoted++;
+      }
+      int removed = size - start - promoted;
+      size = start;
+      return removed;
+    }
+  }
+
+}
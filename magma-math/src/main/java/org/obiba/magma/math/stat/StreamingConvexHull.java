@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import org.obiba.magma.Coordinate;
+
+import com.google.common.collect.ImmutableList;
+import com.vividsolutions.jts.algorithm.ConvexHull;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Computes the bounding box and the convex hull of a stream of coordinates without retaining them. The points added
+ * since the hull was last computed are buffered, then only the vertices of the hull of the buffered points and of the
+ * previous hull are kept.
+ */
+public class StreamingConvexHull implements Serializable {
+
+  private static final long serialVersionUID = -3815094738153618297L;
+
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  private final Envelope envelope = new Envelope();
+
+  // vertices of the hull of the points added before the buffered ones
+  private com.vividsolutions.jts.geom.Coordinate[] vertices = new com.vividsolutions.jts.geom.Coordinate[0];
+
+  private com.vividsolutions.jts.geom.Coordinate[] buffer;
+
+  private int buffered;
+
+  private long n;
+
+  public StreamingConvexHull() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param bufferSize minimum number of points added before the hull is computed again
+   */
+  public StreamingConvexHull(int bufferSize) {
+    if(bufferSize < 1) throw new IllegalArgumentException("bufferSize must be positive");
+    buffer = new com.vividsolutions.jts.geom.Coordinate[bufferSize];
+  }
+
+  public void add(double longitude, double latitude) {
+    add(new com.vividsolutions.jts.geom.Coordinate(longitude, latitude));
+  }
+
+  /**
+   * Adds the points of another hull.
+   *
+   * @param other
+   */
+  public void merge(StreamingConvexHull other) {
+    if(other == this) throw new IllegalArgumentException("Cannot merge a hull with itself");
+    long count = n + other.n;
+    for(com.vividsolutions.jts.geom.Coordinate vertex : other.getVertices()) {
+      add(vertex);
+    }
+    n = count;
+  }
+
+  /**
+   * Number of points added.
+   *
+   * @return
+   */
+  public long getN() {
+    return n;
+  }
+
+  /**
+   * Get the south-west and north-east corners of the bounding box of the points.
+   *
+   * @return empty when no point was added
+   */
+  public List<Coordinate> getBoundingBox() {
+    if(envelope.isNull()) return ImmutableList.of();
+    return ImmutableList.of(new Coordinate(envelope.getMinX(), envelope.getMinY()),
+        new Coordinate(envelope.getMaxX(), envelope.getMaxY()));
+  }
+
+  /**
+   * Get the vertices of the convex hull of the points. When there are more than 2 vertices, the first vertex is
+   * repeated at the end to close the polygon.
+   *
+   * @return
+   */
+  public List<Coordinate> getConvexHull() {
+    ImmutableList.Builder<Coordinate> hull = ImmutableList.builder();
+    for(com.vividsolutions.jts.geom.Coordinate vertex : getVertices()) {
+      hull.add(new Coordinate(vertex.x, vertex.y));
+    }
+    return hull.build();
+  }
+
+  private void add(com.vividsolutions.jts.geom.Coordinate coordinate) {
+    n++;
+    envelope.expandToInclude(coordinate);
+    if(buffered == buffer.length) computeHull();
+    buffer[buffered++] = coordinate;
+  }
+
+  private com.vividsolutions.jts.geom.Coordinate[] getVertices() {
+    if(buffered > 0) computeHull();
+    return vertices;
+  }
+
+  private void computeHull() {
+    com.vividsolutions.jts.geom.Coordinate[] points = Arrays.copyOf(vertices, vertices.length + buffered);
+    System.arraycopy(buffer, 0, points, vertices.length, buffered);
+    vertices = new ConvexHull(points, new GeometryFactory()).getConvexHull().getCoordinates();
+    // the buffer is at least as large as the hull, so that computing the hull stays linear in the number of points
+    if(vertices.length > buffer.length) buffer = new com.vividsolutions.jts.geom.Coordinate[vertices.length];
+    buffered = 0;
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Counts a stream of values into a fixed number of bins of equal width, so that an {@link IntervalFrequency} can be
+ * computed without retaining the values. The first values are kept until there are as many as bins, then the range of
+ * the bins is set from them; the range is doubled (and adjacent bins are merged) whenever a value falls outside of it.
+ * <p/>
+ * Counts are exact as long as no more values than bins were added, otherwise the values of a bin are counted in the
+ * interval of the lowest of them, which differs from their own when the bin spans an interval bound.
+ */
+public class StreamingHistogram implements Serializable {
+
+  private static final long serialVersionUID = 6227330848209327575L;
+
+  public static final int DEFAULT_BINS = 1024;
+
+  private final int bins;
+
+  // values added until the range of the bins is set
+  private double[] buffer;
+
+  private int buffered;
+
+  private long[] counts;
+
+  // lowest value of each bin
+  private double[] lowests;
+
+  private double lower;
+
+  private double width;
+
+  private double min = Double.NaN;
+
+  private double max = Double.NaN;
+
+  public StreamingHistogram() {
+    this(DEFAULT_BINS);
+  }
+
+  /**
+   * @param bins number of bins, rounded up to an even number
+   */
+  public StreamingHistogram(int bins) {
+    if(bins < 2) throw new IllegalArgumentException("bins must be at least 2");
+    this.bins = bins % 2 == 0 ? bins : bins + 1;
+    buffer = new double[this.bins];
+  }
+
+  public double getMin() {
+    return min;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  /**
+   * Adds a value. NaN and infinite values are ignored.
+   *
+   * @param value
+   */
+  public void add(double value) {
+    if(Double.isNaN(value) || Double.isInfinite(value)) return;
+    if(Double.isNaN(min) || value < min) min = value;
+    if(Double.isNaN(max) || value > max) max = value;
+
+    if(counts == null) {
+      buffer[buffered++] = value;
+      if(buffered == bins) {
+        setRange();
+      }
+    } else {
+      count(value, 1);
+    }
+  }
+
+  /**
+   * Adds the values counted by another histogram. When both histograms have set the range of their bins, the values of
+   * a bin of the other histogram are counted in the bin of the lowest of them.
+   *
+   * @param other
+   */
+  public void merge(StreamingHistogram other) {
+    if(other == this) throw new IllegalArgumentException("Cannot merge a histogram with itself");
+    if(other.counts == null) {
+      for(int i = 0; i < other.buffered; i++) {
+        add(other.buffer[i]);
+      }
+      return;
+    }
+    if(Double.isNaN(min) || other.min < min) min = other.min;
+    if(Double.isNaN(max) || other.max > max) max = other.max;
+    if(counts == null) {
+      // adopt the range of the bins of the other histogram
+      double[] values = buffer;
+      int count = buffered;
+      counts = new long[bins];
+      lowests = newLowests();
+      lower = other.lower;
+      width = other.width;
+      buffer = null;
+      buffered = 0;
+      for(int i = 0; i < count; i++) {
+        count(values[i], 1);
+      }
+    }
+    for(int i = 0; i < other.bins; i++) {
+      if(other.counts[i] > 0) {
+        count(other.lowests[i], other.counts[i]);
+      }
+    }
+  }
+
+  /**
+   * Adds the values counted by this histogram to the frequencies of the intervals. The intervals must cover the
+   * minimum and maximum values of this histogram.
+   *
+   * @param intervalFrequency
+   */
+  public void addTo(IntervalFrequency intervalFrequency) {
+    if(counts == null) {
+      for(int i = 0; i < buffered; i++) {
+        intervalFrequency.add(buffer[i]);
+      }
+      return;
+    }
+    for(int i = 0; i < bins; i++) {
+      if(counts[i] > 0) {
+        // a bin is represented by its lowest value
+        intervalFrequency.add(lowests[i], counts[i]);
+      }
+    }
+  }
+
+  private void setRange() {
+    double span = max - min;
+    lower = min;
+    // the maximum value must fall in the last bin
+    width = span > 0 ? span / (bins - 1) : Math.max(Math.abs(min), 1d) / bins;
+    counts = new long[bins];
+    lowests = newLowests();
+    for(int i = 0; i < buffered; i++) {
+      count(buffer[i], 1);
+    }
+    buffer = null;
+    buffered = 0;
+  }
+
+  private void count(double value, long count) {
+    int index = index(value);
+    while(index < 0 || index >= bins) {
+      if(index < 0) {
+        growDown();
+      } else {
+        growUp();
+      }
+      index = index(value);
+    }
+    counts[index] += count;
+    lowests[index] = Math.min(lowests[index], value);
+  }
+
+  private int index(double value) {
+    double index = Math.floor((value - lower) / width);
+    return index < 0 ? -1 : index >= bins ? bins : (int) index;
+  }
+
+  /**
+   * Doubles the width of the bins, keeping the lower bound.
+   */
+  private void growUp() {
+    long[] grown = new long[bins];
+    double[] grownLowests = newLowests();
+    for(int i = 0; i < bins; i++) {
+      grown[i / 2] += counts[i];
+      grownLowests[i / 2] = Math.min(grownLowests[i / 2], lowests[i]);
+    }
+    counts = grown;
+    lowests = grownLowests;
+    width *= 2;
+  }
+
+  /**
+   * Doubles the width of the bins, keeping the upper bound.
+   */
+  private void growDown() {
+    long[] grown = new long[bins];
+    double[] grownLowests = newLowests();
+    for(int i = 0; i < bins; i++) {
+      grown[(bins + i) / 2] += counts[i];
+      grownLowests[(bins + i) / 2] = Math.min(grownLowests[(bins + i) / 2], lowests[i]);
+    }
+    counts = grown;
+    lowests = grownLowests;
+    lower -= bins * width;
+    width *= 2;
+  }
+
+  private double[] newLowests() {
+    double[] newLowests = new double[bins];
+    Arrays.fill(newLowests, Double.POSITIVE_INFINITY);
+    return newLowests;
+  }
+
+}
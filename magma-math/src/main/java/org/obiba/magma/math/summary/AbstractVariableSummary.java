@@ -2,6 +2,7 @@ package org.obiba.magma.math.summary;
 
 import java.util.SortedSet;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.Value;
@@ -10,6 +11,7 @@ import org.obiba.magma.ValueTable;
 import org.obiba.magma.Variable;
 import org.obiba.magma.VariableEntity;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
@@ -36,17 +38,56 @@ public abstract class AbstractVariableSummary implements VariableSummary {
   }
 
   protected SortedSet<VariableEntity> getFilteredVariableEntities(@NotNull ValueTable table) {
-    if(offset == null && limit == null) return Sets.newTreeSet(table.getVariableEntities());
+    return getFilteredVariableEntities(table, offset, limit);
+  }
 
-    Iterable<VariableEntity> entities = Sets.newTreeSet(table.getVariableEntities());
+  /**
+   * Get the entities of the table, sorted, with the offset then the limit (in that order) applied.
+   *
+   * @param table
+   * @param offset ignored if null
+   * @param limit ignored if null or negative
+   * @return
+   */
+  static SortedSet<VariableEntity> getFilteredVariableEntities(@NotNull ValueTable table, @Nullable Integer offset,
+      @Nullable Integer limit) {
+    SortedSet<VariableEntity> entities = Sets.newTreeSet(table.getVariableEntities());
+    if(offset == null && limit == null) return entities;
+
+    Iterable<VariableEntity> filtered = entities;
     // Apply offset then limit (in that order)
     if(offset != null) {
-      entities = Iterables.skip(entities, offset);
+      filtered = Iterables.skip(filtered, offset);
     }
     if(limit != null && limit >= 0) {
-      entities = Iterables.limit(entities, limit);
+      filtered = Iterables.limit(filtered, limit);
     }
-    return Sets.newTreeSet(entities);
+    return Sets.newTreeSet(filtered);
+  }
+
+  /**
+   * Check that the builder of another summary can be merged in the builder of a summary of {@code variable}.
+   *
+   * @param variable
+   * @param other
+   */
+  static void checkMergeable(@NotNull Variable variable, VariableSummaryBuilder<?, ?> other) {
+    //noinspection ConstantConditions
+    Preconditions.checkArgument(other != null, "other cannot be null");
+    Preconditions.checkArgument(variable.getName().equals(other.getVariable().getName()),
+        "Cannot merge summaries of different variables: " + variable.getName() + ", " +
+            other.getVariable().getName());
+  }
+
+  /**
+   * Check that a summary has the same offset and limit as another one, so that their builders can be merged.
+   *
+   * @param summary
+   * @param other
+   */
+  static void checkSameFilter(@NotNull AbstractVariableSummary summary, @NotNull AbstractVariableSummary other) {
+    Preconditions.checkArgument(Objects.equal(summary.offset, other.offset) && Objects.equal(summary.limit, other.limit),
+        "Cannot merge summaries of different offsets or limits");
   }
 
   @NotNull
@@ -91,6 +132,17 @@ public abstract class AbstractVariableSummary implements VariableSummary {
     TVariableSummaryBuilder addTable(@NotNull ValueTable table, @NotNull ValueSource variableValueSource);
 
     TVariableSummaryBuilder addValue(@NotNull Value value);
+
+    TVariableSummaryBuilder filter(Integer offset, Integer limit);
+
+    /**
+     * Adds the values that were added to another builder of a summary of the same variable, with the same options.
+     * Both builders must not have been built.
+     *
+     * @param other
+     * @return
+     */
+    TVariableSummaryBuilder merge(@NotNull TVariableSummaryBuilder other);
   }
 
 }
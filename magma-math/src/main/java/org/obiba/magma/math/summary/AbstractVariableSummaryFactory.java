@@ -15,6 +15,16 @@ public abstract class AbstractVariableSummaryFactory<TVariableSummary extends Va
 
   private ValueSource valueSource;
 
+  @NotNull
+  @Override
+  public TVariableSummary getSummary() {
+    AbstractVariableSummary.VariableSummaryBuilder<TVariableSummary, ?> builder = newBuilder();
+    if(builder == null) {
+      throw new IllegalStateException(getClass().getName() + " must implement getSummary() or newBuilder()");
+    }
+    return builder.addTable(getTable(), getValueSource()).build();
+  }
+
   @Override
   @NotNull
   public Variable getVariable() {
@@ -37,13 +37,12 @@ public class BinaryVariableSummaryFactory extends AbstractVariableSummaryFactory
 
   @NotNull
   @Override
-  public BinaryVariableSummary getSummary() {
+  public BinaryVariableSummary.Builder newBuilder() {
     return new BinaryVariableSummary.Builder(getVariable()) //
-        .filter(offset, limit) //
-        .addTable(getTable(), getValueSource()) //
-        .build();
+        .filter(offset, limit);
   }
 
+  @Override
   public Integer getOffset() {
     return offset;
   }
@@ -52,6 +51,7 @@ public class BinaryVariableSummaryFactory extends AbstractVariableSummaryFactory
     this.offset = offset;
   }
 
+  @Override
   public Integer getLimit() {
     return limit;
   }
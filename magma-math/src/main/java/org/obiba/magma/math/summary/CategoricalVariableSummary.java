@@ -23,6 +23,7 @@ import org.obiba.magma.Value;
 import org.obiba.magma.ValueSource;
 import org.obiba.magma.ValueTable;
 import org.obiba.magma.Variable;
+import org.obiba.magma.math.stat.FrequencyCounter;
 import org.obiba.magma.type.BooleanType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,7 +49,7 @@ public class CategoricalVariableSummary extends AbstractVariableSummary implemen
 
   private static final String OTHER_NAME = "OTHER_VALUES";
 
-  private final org.apache.commons.math3.stat.Frequency frequencyDist = new org.apache.commons.math3.stat.Frequency();
+  private final FrequencyCounter frequencyDist = new FrequencyCounter();
 
   /**
    * Mode is the most frequent value
@@ -151,9 +152,26 @@ public class CategoricalVariableSummary extends AbstractVariableSummary implemen
 
     private boolean addedValue;
 
+    @NotNull
+    private final List<String> categoryNames;
+
+    // categories are counted first: their indices are lower than this one
+    private final int categoriesCount;
+
+    private final int nullIndex;
+
+    private final int otherIndex;
+
     public Builder(@NotNull Variable variable) {
       this.variable = variable;
       summary = new CategoricalVariableSummary(variable);
+      categoryNames = categoryNames();
+      for(String categoryName : categoryNames) {
+        summary.frequencyDist.index(categoryName);
+      }
+      categoriesCount = summary.frequencyDist.size();
+      nullIndex = summary.frequencyDist.index(NULL_NAME);
+      otherIndex = summary.frequencyDist.index(OTHER_NAME);
     }
 
     @Override
@@ -162,7 +180,7 @@ public class CategoricalVariableSummary extends AbstractVariableSummary implemen
         throw new IllegalStateException("Cannot add value for variable " + summary.variable.getName() +
             " because values where previously added from the whole table with addTable().");
       }
-      add(value, categoryNames());
+      add(value);
       addedValue = true;
       return this;
     }
@@ -186,46 +204,50 @@ public class CategoricalVariableSummary extends AbstractVariableSummary implemen
       Preconditions.checkArgument(variableValueSource != null, "variableValueSource cannot be null");
       if(!variableValueSource.supportVectorSource()) return;
       for(Value value : variableValueSource.asVectorSource().getValues(summary.getFilteredVariableEntities(table))) {
-        add(value, categoryNames());
+        add(value);
       }
     }
 
-    private void add(@NotNull Value value, List<String> categoryNames) {
+    private void add(@NotNull Value value) {
       //noinspection ConstantConditions
       Preconditions.checkArgument(value != null, "value cannot be null");
 
       if(summary.empty) summary.empty = false;
       if(value.isSequence()) {
         if(value.isNull()) {
-          summary.frequencyDist.addValue(NULL_NAME);
+          summary.frequencyDist.increment(nullIndex);
         } else {
           for(Value v : value.asSequence().getValue()) {
-            add(v, categoryNames);
+            add(v);
           }
         }
       } else {
         if(value.isNull()) {
-          summary.frequencyDist.addValue(NULL_NAME);
-        } else if(summary.distinct || categoryNames.contains(value.toString())) {
-          summary.frequencyDist.addValue(value.toString());
+          summary.frequencyDist.increment(nullIndex);
         } else {
-          summary.frequencyDist.addValue(OTHER_NAME);
+          String name = value.toString();
+          int index = summary.frequencyDist.indexOf(name);
+          if(index >= 0 && (summary.distinct || index < categoriesCount)) {
+            summary.frequencyDist.increment(index);
+          } else if(summary.distinct) {
+            summary.frequencyDist.add(name);
+          } else {
+            summary.frequencyDist.increment(otherIndex);
+          }
         }
-
       }
     }
 
-    /**
-     * Returns an iterator of frequencyDist names
-     */
-    private Iterator<String> freqNames(org.apache.commons.math3.stat.Frequency freq) {
-      return Iterators.transform(freq.valuesIterator(), new Function<Comparable<?>, String>() {
-
-        @Override
-        public String apply(Comparable<?> input) {
-          return input.toString();
-        }
-      });
+    @Override
+    public Builder merge(@NotNull Builder other) {
+      checkMergeable(variable, other);
+      Preconditions.checkArgument(other != this, "Cannot merge a builder with itself");
+      Preconditions.checkArgument(summary.distinct == other.summary.distinct,
+          "Cannot merge summaries of different distinct options");
+      checkSameFilter(summary, other.summary);
+      summary.frequencyDist.merge(other.summary.frequencyDist);
+      if(!other.summary.empty) summary.empty = false;
+      return this;
     }
 
     /**
@@ -261,8 +283,8 @@ public class CategoricalVariableSummary extends AbstractVariableSummary implemen
       log.trace("Start compute categorical {}", summary.variable.getName());
       long max = 0;
       Iterator<String> concat = summary.distinct //
-          ? freqNames(summary.frequencyDist)  // category names, null values and distinct values
-          : Iterators.concat(categoryNames().iterator(),
+          ? summary.frequencyDist.getCountedNames().iterator()  // category names, null values and distinct values
+          : Iterators.concat(categoryNames.iterator(),
               ImmutableList.of(NULL_NAME).iterator()); // category names and null values
 
       // Iterate over all category names including or not distinct values.
@@ -294,6 +316,7 @@ public class CategoricalVariableSummary extends AbstractVariableSummary implemen
       return this;
     }
 
+    @Override
     public Builder filter(Integer offset, Integer limit) {
       summary.setOffset(offset);
       summary.setLimit(limit);
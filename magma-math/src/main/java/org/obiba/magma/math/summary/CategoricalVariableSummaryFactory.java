@@ -39,12 +39,10 @@ public class CategoricalVariableSummaryFactory extends AbstractVariableSummaryFa
 
   @NotNull
   @Override
-  public CategoricalVariableSummary getSummary() {
+  public CategoricalVariableSummary.Builder newBuilder() {
     return new CategoricalVariableSummary.Builder(getVariable()) //
         .distinct(distinct) //
-        .filter(offset, limit) //
-        .addTable(getTable(), getValueSource()) //
-        .build();
+        .filter(offset, limit);
   }
 
   public boolean isDistinct() {
@@ -55,6 +53,7 @@ public class CategoricalVariableSummaryFactory extends AbstractVariableSummaryFa
     this.distinct = distinct;
   }
 
+  @Override
   public Integer getOffset() {
     return offset;
   }
@@ -63,6 +62,7 @@ public class CategoricalVariableSummaryFactory extends AbstractVariableSummaryFa
     this.offset = offset;
   }
 
+  @Override
   public Integer getLimit() {
     return limit;
   }
@@ -23,6 +23,7 @@ import org.apache.commons.math3.distribution.ExponentialDistribution;
 import org.apache.commons.math3.distribution.NormalDistribution;
 import org.apache.commons.math3.distribution.RealDistribution;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
 import org.obiba.magma.Category;
 import org.obiba.magma.MagmaRuntimeException;
 import org.obiba.magma.Value;
@@ -30,11 +31,15 @@ import org.obiba.magma.ValueSource;
 import org.obiba.magma.ValueTable;
 import org.obiba.magma.Variable;
 import org.obiba.magma.math.stat.IntervalFrequency;
+import org.obiba.magma.math.stat.Moments;
+import org.obiba.magma.math.stat.QuantileSketch;
+import org.obiba.magma.math.stat.StreamingHistogram;
 import org.obiba.magma.type.IntegerType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
@@ -80,6 +85,19 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
   @NotNull
   private final DescriptiveStatistics descriptiveStats = new DescriptiveStatistics();
 
+  // When summarised with bounded memory, values are not retained: rank error of the percentiles
+  @Nullable
+  private Double rankError;
+
+  @Nullable
+  private Moments moments;
+
+  @Nullable
+  private QuantileSketch sketch;
+
+  @Nullable
+  private StreamingHistogram histogram;
+
   @NotNull
   private final List<Double> percentiles = Lists.newArrayList();
 
@@ -92,7 +110,7 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
   @Override
   public String getCacheKey(ValueTable table) {
     return ContinuousVariableSummaryFactory
-        .getCacheKey(variable, table, distribution, defaultPercentiles, intervals, getOffset(), getLimit());
+        .getCacheKey(variable, table, distribution, defaultPercentiles, intervals, getOffset(), getLimit(), rankError);
   }
 
   private ContinuousVariableSummary(@NotNull Variable variable, @NotNull Distribution distribution) {
@@ -127,11 +145,36 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
     return intervals;
   }
 
+  /**
+   * Statistics of the values, retained. Empty when summarised with bounded memory, see {@link #getStatistics()}.
+   *
+   * @return
+   */
   @NotNull
   public DescriptiveStatistics getDescriptiveStats() {
     return descriptiveStats;
   }
 
+  /**
+   * Statistics of the values (mean, variance, min, max etc.), whether they are retained or not.
+   *
+   * @return
+   */
+  @NotNull
+  public StatisticalSummary getStatistics() {
+    return moments == null ? descriptiveStats : moments;
+  }
+
+  /**
+   * Rank error of the percentiles when summarised with bounded memory.
+   *
+   * @return null when values are retained and percentiles are exact
+   */
+  @Nullable
+  public Double getRankError() {
+    return rankError;
+  }
+
   @NotNull
   public List<Double> getPercentiles() {
     return percentiles;
@@ -156,20 +199,20 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
     normal {
       @Nullable
       @Override
-      public RealDistribution getDistribution(DescriptiveStatistics ds) {
+      public RealDistribution getDistribution(StatisticalSummary ds) {
         return ds.getStandardDeviation() > 0 ? new NormalDistribution(ds.getMean(), ds.getStandardDeviation()) : null;
       }
     },
     exponential {
       @NotNull
       @Override
-      public RealDistribution getDistribution(DescriptiveStatistics ds) {
+      public RealDistribution getDistribution(StatisticalSummary ds) {
         return new ExponentialDistribution(ds.getMean());
       }
     };
 
     @Nullable
-    abstract RealDistribution getDistribution(DescriptiveStatistics ds);
+    abstract RealDistribution getDistribution(StatisticalSummary ds);
 
   }
 
@@ -243,6 +286,28 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
       return this;
     }
 
+    /**
+     * Summarise with bounded memory: values are not retained, the percentiles are estimated with a quantile sketch
+     * and the interval frequencies are computed from a fixed-bin histogram.
+     *
+     * @param rankError normalized rank error of the percentiles, values are retained when null
+     * @return
+     */
+    public Builder rankError(@Nullable Double rankError) {
+      summary.rankError = rankError;
+      if(rankError == null) {
+        summary.moments = null;
+        summary.sketch = null;
+        summary.histogram = null;
+      } else {
+        summary.moments = new Moments();
+        summary.sketch = QuantileSketch.withRankError(rankError);
+        summary.histogram = new StreamingHistogram();
+      }
+      return this;
+    }
+
+    @Override
     public Builder filter(Integer offset, Integer limit) {
       summary.setOffset(offset);
       summary.setLimit(limit);
@@ -296,7 +361,7 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
           }
         } else {
           if(!summary.missing.contains(value)) {
-            summary.descriptiveStats.addValue(((Number) value.getValue()).doubleValue());
+            add(((Number) value.getValue()).doubleValue());
           }
 
           // A continuous variable can have missing categories
@@ -311,6 +376,45 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
       }
     }
 
+    private void add(double value) {
+      if(summary.sketch == null) {
+        summary.descriptiveStats.addValue(value);
+      } else {
+        //noinspection ConstantConditions
+        summary.moments.add(value);
+        summary.sketch.add(value);
+        //noinspection ConstantConditions
+        summary.histogram.add(value);
+      }
+    }
+
+    @Override
+    public Builder merge(@NotNull Builder other) {
+      checkMergeable(variable, other);
+      Preconditions.checkArgument(other != this, "Cannot merge a builder with itself");
+      Preconditions.checkArgument(Objects.equal(summary.rankError, other.summary.rankError),
+          "Cannot merge summaries of different rank errors");
+      Preconditions.checkArgument(summary.distribution == other.summary.distribution &&
+          summary.intervals == other.summary.intervals &&
+          Objects.equal(summary.defaultPercentiles, other.summary.defaultPercentiles),
+          "Cannot merge summaries of different distributions, intervals or percentiles");
+      checkSameFilter(summary, other.summary);
+      summary.frequencyDist.merge(other.summary.frequencyDist);
+      if(summary.sketch == null) {
+        for(double value : other.summary.descriptiveStats.getValues()) {
+          summary.descriptiveStats.addValue(value);
+        }
+      } else {
+        //noinspection ConstantConditions
+        summary.moments.merge(other.summary.moments);
+        //noinspection ConstantConditions
+        summary.sketch.merge(other.summary.sketch);
+        //noinspection ConstantConditions
+        summary.histogram.merge(other.summary.histogram);
+      }
+      return this;
+    }
+
     /**
      * Returns an iterator of frequencyDist names
      */
@@ -327,7 +431,7 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
     @SuppressWarnings("MagicNumber")
     private void compute() {
       log.trace("Start compute continuous {}", summary.variable.getName());
-      double variance = summary.descriptiveStats.getVariance();
+      double variance = summary.getStatistics().getVariance();
       computeFrequencies();
       if(Double.isNaN(variance) || Double.isInfinite(variance) || variance <= 0) return;
 
@@ -337,11 +441,15 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
     }
 
     private void computeIntervalFrequencies() {
-      IntervalFrequency intervalFrequency = new IntervalFrequency(summary.descriptiveStats.getMin(),
-          summary.descriptiveStats.getMax(), summary.intervals,
+      IntervalFrequency intervalFrequency = new IntervalFrequency(summary.getStatistics().getMin(),
+          summary.getStatistics().getMax(), summary.intervals,
           summary.getVariable().getValueType() == IntegerType.get());
-      for(double d : summary.descriptiveStats.getSortedValues()) {
-        intervalFrequency.add(d);
+      if(summary.histogram == null) {
+        for(double d : summary.descriptiveStats.getSortedValues()) {
+          intervalFrequency.add(d);
+        }
+      } else {
+        summary.histogram.addTo(intervalFrequency);
       }
 
       for(IntervalFrequency.Interval interval : intervalFrequency.intervals()) {
@@ -350,9 +458,11 @@ public class ContinuousVariableSummary extends AbstractVariableSummary implement
     }
 
     private void computeDistributionPercentiles() {
-      RealDistribution realDistribution = summary.distribution.getDistribution(summary.descriptiveStats);
+      RealDistribution realDistribution = summary.distribution.getDistribution(summary.getStatistics());
       for(Double p : summary.defaultPercentiles) {
-        summary.percentiles.add(summary.descriptiveStats.getPercentile(p));
+        summary.percentiles.add(summary.sketch == null
+            ? summary.descriptiveStats.getPercentile(p)
+            : summary.sketch.getQuantile(p / 100d));
         if(realDistribution != null) {
           summary.distributionPercentiles.add(realDistribution.inverseCumulativeProbability(p / 100d));
         }
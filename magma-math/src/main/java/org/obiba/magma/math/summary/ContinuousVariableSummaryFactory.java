@@ -34,31 +34,39 @@ public class ContinuousVariableSummaryFactory extends AbstractVariableSummaryFac
 
   private Integer limit;
 
+  private Double rankError;
+
   @NotNull
   @Override
   public String getCacheKey() {
-    return getCacheKey(getVariable(), getTable(), distribution, percentiles, intervals, offset, limit);
+    return getCacheKey(getVariable(), getTable(), distribution, percentiles, intervals, offset, limit, rankError);
   }
 
   @SuppressWarnings("PMD.ExcessiveParameterList")
   public static String getCacheKey(Variable variable, ValueTable table, Distribution distribution,
       Collection<Double> percentiles, int intervals, Integer offset, Integer limit) {
+    return getCacheKey(variable, table, distribution, percentiles, intervals, offset, limit, null);
+  }
+
+  @SuppressWarnings("PMD.ExcessiveParameterList")
+  public static String getCacheKey(Variable variable, ValueTable table, Distribution distribution,
+      Collection<Double> percentiles, int intervals, Integer offset, Integer limit, Double rankError) {
     String key = variable.getVariableReference(table) + ";d=" + distribution + ";i=" + intervals;
     if(percentiles != null && percentiles.size() > 0) key += ";p=" + Joiner.on(",").skipNulls().join(percentiles);
     if(offset != null) key += ";o=" + offset;
     if(limit != null) key += ";l=" + limit;
+    if(rankError != null) key += ";e=" + rankError;
     return key;
   }
 
   @NotNull
   @Override
-  public ContinuousVariableSummary getSummary() {
+  public ContinuousVariableSummary.Builder newBuilder() {
     return new ContinuousVariableSummary.Builder(getVariable(), distribution) //
         .defaultPercentiles(percentiles) //
         .intervals(intervals) //
         .filter(offset, limit) //
-        .addTable(getTable(), getValueSource()) //
-        .build();
+        .rankError(rankError);
   }
 
   public Distribution getDistribution() {
@@ -85,6 +93,7 @@ public class ContinuousVariableSummaryFactory extends AbstractVariableSummaryFac
     this.intervals = intervals;
   }
 
+  @Override
   public Integer getOffset() {
     return offset;
   }
@@ -93,6 +102,7 @@ public class ContinuousVariableSummaryFactory extends AbstractVariableSummaryFac
     this.offset = offset;
   }
 
+  @Override
   public Integer getLimit() {
     return limit;
   }
@@ -101,6 +111,14 @@ public class ContinuousVariableSummaryFactory extends AbstractVariableSummaryFac
     this.limit = limit;
   }
 
+  public Double getRankError() {
+    return rankError;
+  }
+
+  public void setRankError(Double rankError) {
+    this.rankError = rankError;
+  }
+
   @SuppressWarnings("ParameterHidesMemberVariable")
   public static class Builder {
 
@@ -148,6 +166,11 @@ public class ContinuousVariableSummaryFactory extends AbstractVariableSummaryFac
       return this;
     }
 
+    public Builder rankError(Double rankError) {
+      factory.rankError = rankError;
+      return this;
+    }
+
     public ContinuousVariableSummaryFactory build() {
       return factory;
     }
@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.obiba.magma.Category;
+import org.obiba.magma.MagmaRuntimeException;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueSource;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.math.stat.ContingencyCounter;
+import org.obiba.magma.type.BooleanType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+/**
+ * Cross-tabulation of the values of several categorical variables of a table: the number of entities for each
+ * combination of the values of the variables. As in {@link CategoricalVariableSummary}, the values of a variable are its
+ * categories, {@value #NULL_NAME} for null values and {@value #OTHER_NAME} for any other value, unless distinct values
+ * are counted. All the combinations of the values of repeatable variables are counted.
+ */
+public class CrosstabSummary implements Serializable {
+
+  private static final long serialVersionUID = -5931178920516223412L;
+
+  private static final Logger log = LoggerFactory.getLogger(CrosstabSummary.class);
+
+  public static final String NULL_NAME = CategoricalVariableSummary.NULL_NAME;
+
+  public static final String OTHER_NAME = "OTHER_VALUES";
+
+  public static final int DEFAULT_BATCH_SIZE = ValueTableSummaryBuilder.DEFAULT_BATCH_SIZE;
+
+  // not serialized, a deserialized summary only has the names of its variables
+  @Nullable
+  private final transient List<Variable> variables;
+
+  @NotNull
+  private final List<String> variableNames;
+
+  private final ContingencyCounter counter;
+
+  // names of the values of each variable, in presentation order
+  private final List<List<String>> names = Lists.newArrayList();
+
+  private boolean distinct;
+
+  private boolean empty = true;
+
+  private Integer offset;
+
+  private Integer limit;
+
+  private CrosstabSummary(@NotNull List<Variable> variables) {
+    this.variables = ImmutableList.copyOf(variables);
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for(Variable variable : variables) {
+      builder.add(variable.getName());
+    }
+    variableNames = builder.build();
+    counter = new ContingencyCounter(variables.size());
+  }
+
+  public String getCacheKey(ValueTable table) {
+    return CrosstabSummaryFactory.getCacheKey(table, variableNames, distinct, offset, limit);
+  }
+
+  /**
+   * Get the variables of the cross-tabulation.
+   *
+   * @return null if the summary was deserialized, see {@link #getVariableNames()}
+   */
+  @Nullable
+  public List<Variable> getVariables() {
+    return variables;
+  }
+
+  @NotNull
+  public List<String> getVariableNames() {
+    return variableNames;
+  }
+
+  /**
+   * Get the names of the values of a variable: its categories, then its distinct values if they are counted, then
+   * {@value #NULL_NAME}, then {@value #OTHER_NAME} if distinct values are not counted.
+   *
+   * @param dimension index of the variable
+   * @return
+   */
+  @NotNull
+  public List<String> getNames(int dimension) {
+    return names.get(dimension);
+  }
+
+  /**
+   * Get the number of entities with the given combination of values.
+   *
+   * @param names one name per variable
+   * @return
+   */
+  public long getCount(String... names) {
+    return counter.getCount(names);
+  }
+
+  /**
+   * Get the number of entities with the given value of a variable, whatever the values of the other variables.
+   *
+   * @param dimension index of the variable
+   * @param name
+   * @return
+   */
+  public long getTotal(int dimension, String name) {
+    int index = counter.indexOf(dimension, name);
+    if(index < 0) return 0;
+    int[] combination = new int[counter.getDimensions()];
+    combination[dimension] = index;
+    return sum(combination, dimension, 0);
+  }
+
+  public long getN() {
+    return counter.getSumFreq();
+  }
+
+  public boolean isDistinct() {
+    return distinct;
+  }
+
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  public boolean isFiltered() {
+    return offset != null || limit != null;
+  }
+
+  public Integer getOffset() {
+    return offset;
+  }
+
+  public Integer getLimit() {
+    return limit;
+  }
+
+  private long sum(int[] combination, int fixed, int dimension) {
+    if(dimension == combination.length) return counter.getCount(combination);
+    if(dimension == fixed) return sum(combination, fixed, dimension + 1);
+    long sum = 0;
+    for(int i = 0; i < counter.size(dimension); i++) {
+      combination[dimension] = i;
+      sum += sum(combination, fixed, dimension + 1);
+    }
+    return sum;
+  }
+
+  @SuppressWarnings("ParameterHidesMemberVariable")
+  public static class Builder {
+
+    private final CrosstabSummary summary;
+
+    @NotNull
+    private final List<Variable> variables;
+
+    private boolean addedTable;
+
+    private boolean addedValue;
+
+    // categories are counted first: their indices are lower than these ones
+    private final int[] categoriesCounts;
+
+    private final int[] nullIndices;
+
+    private final int[] otherIndices;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    @Nullable
+    private ExecutorService executor;
+
+    private int parallelism = 1;
+
+    public Builder(@NotNull List<Variable> variables) {
+      //noinspection ConstantConditions
+      Preconditions.checkArgument(variables != null && variables.size() > 1, "At least two variables are required");
+      this.variables = ImmutableList.copyOf(variables);
+      summary = new CrosstabSummary(variables);
+      categoriesCounts = new int[variables.size()];
+      nullIndices = new int[variables.size()];
+      otherIndices = new int[variables.size()];
+      for(int d = 0; d < variables.size(); d++) {
+        for(String categoryName : categoryNames(variables.get(d))) {
+          summary.counter.index(d, categoryName);
+        }
+        categoriesCounts[d] = summary.counter.size(d);
+        nullIndices[d] = summary.counter.index(d, NULL_NAME);
+        otherIndices[d] = summary.counter.index(d, OTHER_NAME);
+      }
+    }
+
+    public Builder distinct(boolean distinct) {
+      summary.distinct = distinct;
+      return this;
+    }
+
+    public Builder filter(Integer offset, Integer limit) {
+      summary.offset = offset;
+      summary.limit = limit;
+      return this;
+    }
+
+    /**
+     * Number of entities for which the values of the variables are read at once.
+     *
+     * @param batchSize
+     * @return
+     */
+    public Builder batchSize(int batchSize) {
+      Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Count the values of the table in parallel: the batches of entities are split in groups that are counted by the
+     * executor, then the counts are merged. The value sources must support concurrent reads.
+     *
+     * @param executor
+     * @param parallelism number of groups of batches
+     * @return
+     */
+    public Builder parallel(@NotNull ExecutorService executor, int parallelism) {
+      //noinspection ConstantConditions
+      Preconditions.checkArgument(executor != null, "executor cannot be null");
+      Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+      this.executor = executor;
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Adds the values of one entity.
+     *
+     * @param values one value per variable
+     * @return
+     */
+    public Builder addValues(@NotNull List<Value> values) {
+      if(addedTable) {
+        throw new IllegalStateException("Cannot add values for variables " + summary.variableNames +
+            " because values where previously added from the whole table with addTable().");
+      }
+      //noinspection ConstantConditions
+      Preconditions.checkArgument(values != null && values.size() == variables.size(),
+          "Expecting one value per variable");
+      add(values);
+      addedValue = true;
+      return this;
+    }
+
+    public Builder addTable(@NotNull ValueTable table) {
+      ImmutableList.Builder<ValueSource> sources = ImmutableList.builder();
+      for(Variable variable : variables) {
+        sources.add(table.getVariableValueSource(variable.getName()));
+      }
+      return addTable(table, sources.build());
+    }
+
+    /**
+     * Adds the values of the (filtered) entities of the table. The values of all the variables are read by batches of
+     * entities, with their vector sources if they have one.
+     *
+     * @param table
+     * @param sources one source per variable
+     * @return
+     */
+    public Builder addTable(@NotNull ValueTable table, @NotNull List<? extends ValueSource> sources) {
+      if(addedValue) {
+        throw new IllegalStateException("Cannot add table for variables " + summary.variableNames +
+            " because values where previously added with addValues().");
+      }
+      //noinspection ConstantConditions
+      Preconditions.checkArgument(table != null, "table cannot be null");
+      //noinspection ConstantConditions
+      Preconditions.checkArgument(sources != null && sources.size() == variables.size(),
+          "Expecting one value source per variable");
+      add(table, sources);
+      addedTable = true;
+      return this;
+    }
+
+    /**
+     * Adds the values that were added to another builder of the cross-tabulation of the same variables, with the same
+     * options. Both builders must not have been built.
+     *
+     * @param other
+     * @return
+     */
+    public Builder merge(@NotNull Builder other) {
+      //noinspection ConstantConditions
+      Preconditions.checkArgument(other != null, "other cannot be null");
+      Preconditions.checkArgument(other != this, "Cannot merge a builder with itself");
+      Preconditions.checkArgument(summary.variableNames.equals(other.summary.variableNames),
+          "Cannot merge cross-tabulations of different variables: " + summary.variableNames + ", " +
+              other.summary.variableNames);
+      Preconditions.checkArgument(summary.distinct == other.summary.distinct,
+          "Cannot merge cross-tabulations of different distinct options");
+      summary.counter.merge(other.summary.counter);
+      if(!other.summary.empty) summary.empty = false;
+      return this;
+    }
+
+    @NotNull
+    public CrosstabSummary build() {
+      for(int d = 0; d < variables.size(); d++) {
+        summary.names.add(names(d));
+      }
+      return summary;
+    }
+
+    private void add(ValueTable table, List<? extends ValueSource> sources) {
+      SortedSet<VariableEntity> entities = AbstractVariableSummary
+          .getFilteredVariableEntities(table, summary.offset, summary.limit);
+      log.trace("Start compute cross-tabulation of {} over {} entities", summary.variableNames, entities.size());
+      List<SortedSet<VariableEntity>> batches = Lists.newArrayList();
+      for(List<VariableEntity> batch : Iterables.partition(entities, batchSize)) {
+        batches.add(ImmutableSortedSet.copyOf(batch));
+      }
+
+      if(executor == null || parallelism == 1 || batches.size() < 2) {
+        addBatches(table, sources, batches);
+      } else {
+        addBatchesInParallel(table, sources, batches);
+      }
+    }
+
+    private void addBatchesInParallel(final ValueTable table, final List<? extends ValueSource> sources,
+        List<SortedSet<VariableEntity>> batches) {
+      int groupSize = (batches.size() + parallelism - 1) / parallelism;
+      List<Builder> partials = Lists.newArrayList();
+      List<Future<Void>> futures = Lists.newArrayList();
+      for(final List<SortedSet<VariableEntity>> group : Lists.partition(batches, groupSize)) {
+        final Builder partial = new Builder(variables).distinct(summary.distinct);
+        partials.add(partial);
+        //noinspection ConstantConditions
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            partial.addBatches(table, sources, group);
+            return null;
+          }
+        }));
+      }
+      try {
+        for(Future<Void> future : futures) {
+          future.get();
+        }
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MagmaRuntimeException("Interrupted while computing cross-tabulation of " + summary.variableNames,
+            e);
+      } catch(ExecutionException e) {
+        if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        throw new MagmaRuntimeException(e.getCause());
+      } finally {
+        // no-op for the completed ones
+        for(Future<Void> future : futures) {
+          future.cancel(true);
+        }
+      }
+      for(Builder partial : partials) {
+        merge(partial);
+      }
+    }
+
+    private void addBatches(ValueTable table, List<? extends ValueSource> sources,
+        Iterable<SortedSet<VariableEntity>> batches) {
+      List<Iterator<Value>> columns = Lists.newArrayListWithCapacity(sources.size());
+      List<Value> row = Lists.newArrayListWithCapacity(sources.size());
+      for(SortedSet<VariableEntity> batch : batches) {
+        columns.clear();
+        for(ValueSource source : sources) {
+          columns.add(getValues(table, source, batch).iterator());
+        }
+        // zip the columns of the batch
+        for(int i = 0; i < batch.size(); i++) {
+          row.clear();
+          for(Iterator<Value> column : columns) {
+            row.add(column.next());
+          }
+          add(row);
+        }
+      }
+    }
+
+    private Iterable<Value> getValues(ValueTable table, ValueSource source, SortedSet<VariableEntity> batch) {
+      if(source.supportVectorSource()) return source.asVectorSource().getValues(batch);
+      List<Value> values = Lists.newArrayListWithCapacity(batch.size());
+      for(VariableEntity entity : batch) {
+        values.add(source.getValue(table.getValueSet(entity)));
+      }
+      return values;
+    }
+
+    private void add(List<Value> values) {
+      if(summary.empty) summary.empty = false;
+      int[] combination = new int[values.size()];
+      boolean single = true;
+      for(int d = 0; d < values.size(); d++) {
+        Value value = values.get(d);
+        if(value.isSequence() && !value.isNull()) {
+          single = false;
+          break;
+        }
+        combination[d] = index(d, value);
+      }
+      if(single) {
+        summary.counter.increment(combination);
+      } else {
+        addCombinations(values, combination, 0);
+      }
+    }
+
+    /**
+     * Counts all the combinations of the values of the sequences.
+     */
+    private void addCombinations(List<Value> values, int[] combination, int dimension) {
+      if(dimension == values.size()) {
+        summary.counter.increment(combination);
+        return;
+      }
+      Value value = values.get(dimension);
+      if(value.isSequence() && !value.isNull()) {
+        for(Value v : value.asSequence().getValue()) {
+          combination[dimension] = index(dimension, v);
+          addCombinations(values, combination, dimension + 1);
+        }
+      } else {
+        combination[dimension] = index(dimension, value);
+        addCombinations(values, combination, dimension + 1);
+      }
+    }
+
+    private int index(int dimension, Value value) {
+      if(value.isNull()) return nullIndices[dimension];
+      String name = value.toString();
+      int index = summary.counter.indexOf(dimension, name);
+      if(index >= 0 && (summary.distinct || index < categoriesCounts[dimension])) return index;
+      return summary.distinct ? summary.counter.index(dimension, name) : otherIndices[dimension];
+    }
+
+    private List<String> names(int dimension) {
+      ImmutableList.Builder<String> builder = ImmutableList.builder();
+      List<String> counted = summary.counter.getNames(dimension);
+      builder.addAll(counted.subList(0, categoriesCounts[dimension]));
+      if(summary.distinct) {
+        builder.addAll(Ordering.natural().sortedCopy(counted.subList(otherIndices[dimension] + 1, counted.size())));
+      }
+      builder.add(NULL_NAME);
+      if(!summary.distinct) builder.add(OTHER_NAME);
+      return builder.build();
+    }
+
+    private static List<String> categoryNames(Variable variable) {
+      if(variable.getValueType().equals(BooleanType.get())) {
+        return ImmutableList.of(BooleanType.get().trueValue().toString(), BooleanType.get().falseValue().toString());
+      }
+      ImmutableList.Builder<String> builder = ImmutableList.builder();
+      for(Category category : variable.getCategories()) {
+        builder.add(category.getName());
+      }
+      return builder.build();
+    }
+
+  }
+
+}
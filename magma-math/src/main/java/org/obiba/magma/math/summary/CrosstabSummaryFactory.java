@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+
+import com.google.common.collect.ImmutableList;
+
+public class CrosstabSummaryFactory {
+
+  private List<Variable> variables;
+
+  private ValueTable table;
+
+  private boolean distinct;
+
+  private Integer offset;
+
+  private Integer limit;
+
+  /**
+   * Compute the cross-tabulation of the variable values of the table.
+   *
+   * @return
+   */
+  @NotNull
+  public CrosstabSummary getSummary() {
+    return newBuilder().addTable(getTable()).build();
+  }
+
+  /**
+   * Get a new builder of the cross-tabulation, with the options of this factory.
+   *
+   * @return
+   */
+  @NotNull
+  public CrosstabSummary.Builder newBuilder() {
+    return new CrosstabSummary.Builder(getVariables()) //
+        .distinct(distinct) //
+        .filter(offset, limit);
+  }
+
+  @NotNull
+  public String getCacheKey() {
+    return getCacheKey(getVariables(), getTable(), distinct, offset, limit);
+  }
+
+  public static String getCacheKey(List<Variable> variables, ValueTable table, boolean distinct, Integer offset,
+      Integer limit) {
+    ImmutableList.Builder<String> variableNames = ImmutableList.builder();
+    for(Variable variable : variables) {
+      variableNames.add(variable.getName());
+    }
+    return getCacheKey(table, variableNames.build(), distinct, offset, limit);
+  }
+
+  /**
+   * Get the cache key of a cross-tabulation from the names of its variables, which are the only ones kept by a
+   * deserialized summary.
+   *
+   * @param table
+   * @param variableNames
+   * @param distinct
+   * @param offset
+   * @param limit
+   * @return
+   */
+  static String getCacheKey(ValueTable table, Iterable<String> variableNames, boolean distinct, Integer offset,
+      Integer limit) {
+    StringBuilder key = new StringBuilder();
+    for(String variableName : variableNames) {
+      if(key.length() > 0) key.append('|');
+      key.append(table.getTableReference()).append(':').append(variableName);
+    }
+    key.append(";d=").append(distinct);
+    if(offset != null) key.append(";o=").append(offset);
+    if(limit != null) key.append(";l=").append(limit);
+    return key.toString();
+  }
+
+  @NotNull
+  public List<Variable> getVariables() {
+    return variables;
+  }
+
+  public void setVariables(List<Variable> variables) {
+    this.variables = ImmutableList.copyOf(variables);
+  }
+
+  @NotNull
+  public ValueTable getTable() {
+    return table;
+  }
+
+  public void setTable(ValueTable table) {
+    this.table = table;
+  }
+
+  public boolean isDistinct() {
+    return distinct;
+  }
+
+  public void setDistinct(boolean distinct) {
+    this.distinct = distinct;
+  }
+
+  public Integer getOffset() {
+    return offset;
+  }
+
+  public void setOffset(Integer offset) {
+    this.offset = offset;
+  }
+
+  public Integer getLimit() {
+    return limit;
+  }
+
+  public void setLimit(Integer limit) {
+    this.limit = limit;
+  }
+
+  @SuppressWarnings("ParameterHidesMemberVariable")
+  public static class Builder {
+
+    private final CrosstabSummaryFactory factory = new CrosstabSummaryFactory();
+
+    public Builder variables(Variable... variables) {
+      factory.setVariables(ImmutableList.copyOf(variables));
+      return this;
+    }
+
+    public Builder variables(List<Variable> variables) {
+      factory.setVariables(variables);
+      return this;
+    }
+
+    public Builder table(ValueTable table) {
+      factory.setTable(table);
+      return this;
+    }
+
+    public Builder distinct(boolean distinct) {
+      factory.distinct = distinct;
+      return this;
+    }
+
+    public Builder offset(Integer offset) {
+      factory.offset = offset;
+      return this;
+    }
+
+    public Builder limit(Integer limit) {
+      factory.limit = limit;
+      return this;
+    }
+
+    public CrosstabSummaryFactory build() {
+      return factory;
+    }
+  }
+
+}
@@ -20,13 +20,12 @@ import org.obiba.magma.Value;
 import org.obiba.magma.ValueSource;
 import org.obiba.magma.ValueTable;
 import org.obiba.magma.Variable;
+import org.obiba.magma.math.stat.FrequencyCounter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 
 /**
  *
@@ -41,7 +40,7 @@ public class DefaultVariableSummary extends AbstractVariableSummary implements S
 
   public static final String NOT_NULL_NAME = "NOT_NULL";
 
-  private final org.apache.commons.math3.stat.Frequency frequencyDist = new org.apache.commons.math3.stat.Frequency();
+  private final FrequencyCounter frequencyDist = new FrequencyCounter();
 
   private long n;
 
@@ -119,9 +118,15 @@ public class DefaultVariableSummary extends AbstractVariableSummary implements S
 
     private boolean addedValue;
 
+    private final int nullIndex;
+
+    private final int notNullIndex;
+
     public Builder(@NotNull Variable variable) {
       this.variable = variable;
       summary = new DefaultVariableSummary(variable);
+      nullIndex = summary.frequencyDist.index(NULL_NAME);
+      notNullIndex = summary.frequencyDist.index(NOT_NULL_NAME);
     }
 
     @Override
@@ -166,34 +171,31 @@ public class DefaultVariableSummary extends AbstractVariableSummary implements S
       if(summary.empty) summary.empty = false;
       if(value.isSequence()) {
         if(value.isNull()) {
-          summary.frequencyDist.addValue(NULL_NAME);
+          summary.frequencyDist.increment(nullIndex);
         } else {
           for(Value v : value.asSequence().getValue()) {
             add(v);
           }
         }
       } else {
-        summary.frequencyDist.addValue(value.isNull() ? NULL_NAME : NOT_NULL_NAME);
+        summary.frequencyDist.increment(value.isNull() ? nullIndex : notNullIndex);
       }
     }
 
-    /**
-     * Returns an iterator of frequencyDist names
-     */
-    private Iterator<String> freqNames(org.apache.commons.math3.stat.Frequency freq) {
-      return Iterators.transform(freq.valuesIterator(), new Function<Comparable<?>, String>() {
-
-        @Override
-        public String apply(Comparable<?> input) {
-          return input.toString();
-        }
-      });
+    @Override
+    public Builder merge(@NotNull Builder other) {
+      checkMergeable(variable, other);
+      Preconditions.checkArgument(other != this, "Cannot merge a builder with itself");
+      checkSameFilter(summary, other.summary);
+      summary.frequencyDist.merge(other.summary.frequencyDist);
+      if(!other.summary.empty) summary.empty = false;
+      return this;
     }
 
     private void compute() {
       log.trace("Start compute default summary {}", summary.variable);
       long max = 0;
-      Iterator<String> concat = freqNames(summary.frequencyDist);
+      Iterator<String> concat = summary.frequencyDist.getCountedNames().iterator();
 
       // Iterate over all values.
       // The loop will also determine the mode of the distribution (most frequent value)
@@ -210,6 +212,7 @@ public class DefaultVariableSummary extends AbstractVariableSummary implements S
       summary.n = summary.frequencyDist.getSumFreq();
     }
 
+    @Override
     public Builder filter(Integer offset, Integer limit) {
       summary.setOffset(offset);
       summary.setLimit(limit);
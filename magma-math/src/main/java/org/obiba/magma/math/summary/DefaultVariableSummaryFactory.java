@@ -37,13 +37,12 @@ public class DefaultVariableSummaryFactory extends AbstractVariableSummaryFactor
 
   @NotNull
   @Override
-  public DefaultVariableSummary getSummary() {
+  public DefaultVariableSummary.Builder newBuilder() {
     return new DefaultVariableSummary.Builder(getVariable()) //
-        .filter(offset, limit) //
-        .addTable(getTable(), getValueSource()) //
-        .build();
+        .filter(offset, limit);
   }
 
+  @Override
   public Integer getOffset() {
     return offset;
   }
@@ -52,6 +51,7 @@ public class DefaultVariableSummaryFactory extends AbstractVariableSummaryFactor
     this.offset = offset;
   }
 
+  @Override
   public Integer getLimit() {
     return limit;
   }
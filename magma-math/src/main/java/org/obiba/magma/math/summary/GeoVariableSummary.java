@@ -15,6 +15,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.Coordinate;
@@ -22,6 +23,8 @@ import org.obiba.magma.Value;
 import org.obiba.magma.ValueSource;
 import org.obiba.magma.ValueTable;
 import org.obiba.magma.Variable;
+import org.obiba.magma.math.stat.GeoPointSet;
+import org.obiba.magma.math.stat.StreamingConvexHull;
 import org.obiba.magma.type.LineStringType;
 import org.obiba.magma.type.PointType;
 import org.obiba.magma.type.PolygonType;
@@ -30,12 +33,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.index.SpatialIndex;
+import com.vividsolutions.jts.index.strtree.STRtree;
 
 /**
  *
@@ -58,13 +65,29 @@ public class GeoVariableSummary extends AbstractVariableSummary implements Seria
 
   private final Collection<Frequency> frequencies = new ArrayList<>();
 
+  @Nullable
+  private Double resolution;
+
+  @Nullable
+  private Integer sampleSize;
+
+  private List<Coordinate> boundingBox = ImmutableList.of();
+
+  private List<Coordinate> convexHull = ImmutableList.of();
+
+  private List<GeoPointSet.WeightedPoint> points = ImmutableList.of();
+
+  // built when first queried
+  @Nullable
+  private transient STRtree pointIndex;
+
   private GeoVariableSummary(@NotNull Variable variable) {
     super(variable);
   }
 
   @Override
   public String getCacheKey(ValueTable table) {
-    return GeoVariableSummaryFactory.getCacheKey(variable, table, getOffset(), getLimit());
+    return GeoVariableSummaryFactory.getCacheKey(variable, table, getOffset(), getLimit(), resolution, sampleSize);
   }
 
   @NotNull
@@ -80,10 +103,86 @@ public class GeoVariableSummary extends AbstractVariableSummary implements Seria
     return empty;
   }
 
+  /**
+   * Get the concave hull of the points.
+   *
+   * @return
+   */
   public ArrayList<Coordinate> getCoordinates() {
     return coordinates;
   }
 
+  /**
+   * Get the south-west and north-east corners of the bounding box of all the coordinates.
+   *
+   * @return empty when there is no coordinate
+   */
+  public List<Coordinate> getBoundingBox() {
+    return boundingBox;
+  }
+
+  /**
+   * Get the convex hull of all the coordinates.
+   *
+   * @return
+   */
+  public List<Coordinate> getConvexHull() {
+    return convexHull;
+  }
+
+  /**
+   * Get the points of the coordinates: their aggregation on a grid when there is a resolution, or a sample of them when
+   * there is a sample size. The points are not kept otherwise, as they could be all the coordinates.
+   *
+   * @return empty when there is neither a resolution nor a sample size
+   */
+  public List<GeoPointSet.WeightedPoint> getPoints() {
+    return points;
+  }
+
+  /**
+   * Get the points that are within a bounding box.
+   *
+   * @see #getPoints()
+   * @param southWest
+   * @param northEast
+   * @return
+   */
+  @SuppressWarnings("unchecked")
+  public List<GeoPointSet.WeightedPoint> getPoints(@NotNull Coordinate southWest, @NotNull Coordinate northEast) {
+    return getPointIndex().query(new Envelope(southWest.getLongitude(), northEast.getLongitude(),
+        southWest.getLatitude(), northEast.getLatitude()));
+  }
+
+  /**
+   * Get a spatial index of the points, which items are the {@link GeoPointSet.WeightedPoint}s.
+   *
+   * @return
+   */
+  public synchronized SpatialIndex getPointIndex() {
+    if(pointIndex == null) {
+      STRtree index = new STRtree();
+      for(GeoPointSet.WeightedPoint point : points) {
+        Coordinate coordinate = point.getCoordinate();
+        index.insert(new Envelope(coordinate.getLongitude(), coordinate.getLongitude(), coordinate.getLatitude(),
+            coordinate.getLatitude()), point);
+      }
+      index.build();
+      pointIndex = index;
+    }
+    return pointIndex;
+  }
+
+  @Nullable
+  public Double getResolution() {
+    return resolution;
+  }
+
+  @Nullable
+  public Integer getSampleSize() {
+    return sampleSize;
+  }
+
   public ArrayList<Coordinate> coordinates = new ArrayList<>();
 
   public static class Frequency implements Serializable {
@@ -125,7 +224,9 @@ public class GeoVariableSummary extends AbstractVariableSummary implements Seria
   @SuppressWarnings("ParameterHidesMemberVariable")
   public static class Builder implements VariableSummaryBuilder<GeoVariableSummary, Builder> {
 
-    public ArrayList<Coordinate> coords = new ArrayList<>();
+    private final StreamingConvexHull hull = new StreamingConvexHull();
+
+    private GeoPointSet points = new GeoPointSet();
 
     private final GeoVariableSummary summary;
 
@@ -141,6 +242,40 @@ public class GeoVariableSummary extends AbstractVariableSummary implements Seria
       summary = new GeoVariableSummary(variable);
     }
 
+    /**
+     * Aggregate the points on a grid, the concave hull is then computed from the points of the grid.
+     *
+     * @param resolution size of a cell of the grid in degrees, all the points are retained when null
+     * @return
+     */
+    public Builder resolution(@Nullable Double resolution) {
+      Preconditions.checkArgument(resolution == null || summary.sampleSize == null,
+          "Cannot summarise with both a resolution and a sample size");
+      summary.resolution = resolution;
+      points = newPoints();
+      return this;
+    }
+
+    /**
+     * Sample the points, the concave hull is then computed from the sampled points.
+     *
+     * @param sampleSize maximum number of sampled points, all the points are retained when null
+     * @return
+     */
+    public Builder sampleSize(@Nullable Integer sampleSize) {
+      Preconditions.checkArgument(sampleSize == null || summary.resolution == null,
+          "Cannot summarise with both a resolution and a sample size");
+      summary.sampleSize = sampleSize;
+      points = newPoints();
+      return this;
+    }
+
+    private GeoPointSet newPoints() {
+      if(summary.resolution != null) return GeoPointSet.withResolution(summary.resolution);
+      if(summary.sampleSize != null) return GeoPointSet.withSampleSize(summary.sampleSize);
+      return new GeoPointSet();
+    }
+
     @Override
     public Builder addValue(@NotNull Value value) {
       if(addedTable) {
@@ -198,19 +333,62 @@ public class GeoVariableSummary extends AbstractVariableSummary implements Seria
       }
     }
 
+    @SuppressWarnings("unchecked")
     private void getCoordinates(Value value) {
       if(value.getValueType() == PointType.get()) {
-        coords.add((Coordinate) value.getValue());
+        add((Coordinate) value.getValue());
       } else if(value.getValueType() == LineStringType.get()) {
-        coords.addAll((Collection<Coordinate>) value.getValue());
+        add((Collection<Coordinate>) value.getValue());
       } else if(value.getValueType() == PolygonType.get()) {
         Collection<List<Coordinate>> coordinateList = (Collection<List<Coordinate>>) value.getValue();
         for(List<Coordinate> coordinate : coordinateList) {
-          coords.addAll(coordinate);
+          add(coordinate);
         }
       }
     }
 
+    private void add(Iterable<Coordinate> coordinates) {
+      for(Coordinate coordinate : coordinates) {
+        add(coordinate);
+      }
+    }
+
+    /**
+     * Get the coordinates retained so far: the distinct ones, or the aggregated or sampled ones when there is a
+     * resolution or a sample size.
+     *
+     * @return
+     * @deprecated the builder no longer keeps all the coordinates, use {@link GeoVariableSummary#getPoints()}.
+     */
+    @Deprecated
+    public List<Coordinate> getCoords() {
+      ImmutableList.Builder<Coordinate> coords = ImmutableList.builder();
+      for(GeoPointSet.WeightedPoint point : points.getPoints()) {
+        coords.add(point.getCoordinate());
+      }
+      return coords.build();
+    }
+
+    private void add(Coordinate coordinate) {
+      hull.add(coordinate.getLongitude(), coordinate.getLatitude());
+      points.add(coordinate.getLongitude(), coordinate.getLatitude());
+    }
+
+    @Override
+    public Builder merge(@NotNull Builder other) {
+      checkMergeable(variable, other);
+      Preconditions.checkArgument(other != this, "Cannot merge a builder with itself");
+      Preconditions.checkArgument(Objects.equal(summary.resolution, other.summary.resolution) &&
+          Objects.equal(summary.sampleSize, other.summary.sampleSize),
+          "Cannot merge summaries of different resolutions or sample sizes");
+      checkSameFilter(summary, other.summary);
+      summary.frequencyDist.merge(other.summary.frequencyDist);
+      if(!other.summary.empty) summary.empty = false;
+      hull.merge(other.hull);
+      points.merge(other.points);
+      return this;
+    }
+
     /**
      * Returns an iterator of frequencyDist names
      */
@@ -242,9 +420,15 @@ public class GeoVariableSummary extends AbstractVariableSummary implements Seria
             value.equals(NULL_NAME)));
       }
       summary.n = summary.frequencyDist.getSumFreq();
-      summary.coordinates.addAll(getConcaveHull(coords));
+      summary.boundingBox = hull.getBoundingBox();
+      summary.convexHull = hull.getConvexHull();
+      List<GeoPointSet.WeightedPoint> retained = points.getPoints();
+      // the summary may be cached: the points are only kept when a resolution or a sample size bounds their number
+      if(summary.resolution != null || summary.sampleSize != null) summary.points = retained;
+      summary.coordinates.addAll(getConcaveHull(retained));
     }
 
+    @Override
     public Builder filter(Integer offset, Integer limit) {
       summary.setOffset(offset);
       summary.setLimit(limit);
@@ -264,9 +448,9 @@ public class GeoVariableSummary extends AbstractVariableSummary implements Seria
       return variable;
     }
 
-    private static Collection<Coordinate> getConcaveHull(List<Coordinate> coordinates) {
+    private static Collection<Coordinate> getConcaveHull(List<GeoPointSet.WeightedPoint> points) {
       // adjust the treshold to have more or less lines... Lower treshold means more complex polygon
-      GeometryCollection geometryCollection = getGeometryCollection(coordinates);
+      GeometryCollection geometryCollection = getGeometryCollection(points);
       ConcaveHull concaveHull = new ConcaveHull(geometryCollection, 2);
 
       com.vividsolutions.jts.geom.Coordinate[] coordinatesConcave = concaveHull.getConcaveHull().getCoordinates();
@@ -280,14 +464,14 @@ public class GeoVariableSummary extends AbstractVariableSummary implements Seria
       return result;
     }
 
-    private static GeometryCollection getGeometryCollection(List<Coordinate> coordinates) {
+    private static GeometryCollection getGeometryCollection(List<GeoPointSet.WeightedPoint> points) {
 
-      Point[] coordinatesArray = new Point[coordinates.size()];
+      Point[] coordinatesArray = new Point[points.size()];
 
       // From Magma Coordinate to JTS coordinate
       GeometryFactory factory = new GeometryFactory();
-      for(int i = 0; i < coordinates.size(); i++) {
-        Coordinate coordinate = coordinates.get(i);
+      for(int i = 0; i < points.size(); i++) {
+        Coordinate coordinate = points.get(i).getCoordinate();
         coordinatesArray[i] = factory.createPoint(
             new com.vividsolutions.jts.geom.Coordinate(coordinate.getLongitude(), coordinate.getLatitude()));
       }
@@ -21,29 +21,42 @@ public class GeoVariableSummaryFactory extends AbstractVariableSummaryFactory<Ge
 
   private Integer limit;
 
+  private Double resolution;
+
+  private Integer sampleSize;
+
   @NotNull
   @Override
   public String getCacheKey() {
-    return getCacheKey(getVariable(), getTable(), offset, limit);
+    return getCacheKey(getVariable(), getTable(), offset, limit, resolution, sampleSize);
   }
 
   @SuppressWarnings("PMD.ExcessiveParameterList")
   public static String getCacheKey(Variable variable, ValueTable table, Integer offset, Integer limit) {
+    return getCacheKey(variable, table, offset, limit, null, null);
+  }
+
+  @SuppressWarnings("PMD.ExcessiveParameterList")
+  public static String getCacheKey(Variable variable, ValueTable table, Integer offset, Integer limit,
+      Double resolution, Integer sampleSize) {
     String key = variable.getVariableReference(table);
     if(offset != null) key += ";o=" + offset;
     if(limit != null) key += ";l=" + limit;
+    if(resolution != null) key += ";r=" + resolution;
+    if(sampleSize != null) key += ";s=" + sampleSize;
     return key;
   }
 
   @NotNull
   @Override
-  public GeoVariableSummary getSummary() {
+  public GeoVariableSummary.Builder newBuilder() {
     return new GeoVariableSummary.Builder(getVariable()) //
-        .filter(offset, limit) //
-        .addTable(getTable(), getValueSource()) //
-        .build();
+        .resolution(resolution) //
+        .sampleSize(sampleSize) //
+        .filter(offset, limit);
   }
 
+  @Override
   public Integer getOffset() {
     return offset;
   }
@@ -52,6 +65,7 @@ public class GeoVariableSummaryFactory extends AbstractVariableSummaryFactory<Ge
     this.offset = offset;
   }
 
+  @Override
   public Integer getLimit() {
     return limit;
   }
@@ -60,6 +74,22 @@ public class GeoVariableSummaryFactory extends AbstractVariableSummaryFactory<Ge
     this.limit = limit;
   }
 
+  public Double getResolution() {
+    return resolution;
+  }
+
+  public void setResolution(Double resolution) {
+    this.resolution = resolution;
+  }
+
+  public Integer getSampleSize() {
+    return sampleSize;
+  }
+
+  public void setSampleSize(Integer sampleSize) {
+    this.sampleSize = sampleSize;
+  }
+
   @SuppressWarnings("ParameterHidesMemberVariable")
   public static class Builder {
 
@@ -90,6 +120,16 @@ public class GeoVariableSummaryFactory extends AbstractVariableSummaryFactory<Ge
       return this;
     }
 
+    public Builder resolution(Double resolution) {
+      factory.resolution = resolution;
+      return this;
+    }
+
+    public Builder sampleSize(Integer sampleSize) {
+      factory.sampleSize = sampleSize;
+      return this;
+    }
+
     public GeoVariableSummaryFactory build() {
       return factory;
     }
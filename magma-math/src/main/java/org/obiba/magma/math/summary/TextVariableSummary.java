@@ -22,13 +22,12 @@ import org.obiba.magma.Value;
 import org.obiba.magma.ValueSource;
 import org.obiba.magma.ValueTable;
 import org.obiba.magma.Variable;
+import org.obiba.magma.math.stat.FrequencyCounter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 
 /**
  *
@@ -43,7 +42,7 @@ public class TextVariableSummary extends AbstractVariableSummary implements Seri
 
   public static final String NOT_NULL_NAME = "NOT_NULL";
 
-  private final org.apache.commons.math3.stat.Frequency frequencyDist = new org.apache.commons.math3.stat.Frequency();
+  private final FrequencyCounter frequencyDist = new FrequencyCounter();
 
   private long n;
 
@@ -168,33 +167,30 @@ public class TextVariableSummary extends AbstractVariableSummary implements Seri
       if(summary.empty) summary.empty = false;
       if(value.isSequence()) {
         if(value.isNull()) {
-          summary.frequencyDist.addValue(NULL_NAME);
+          summary.frequencyDist.add(NULL_NAME);
         } else {
           for(Value v : value.asSequence().getValue()) {
             add(v);
           }
         }
       } else {
-        summary.frequencyDist.addValue(value.isNull() ? NULL_NAME : value.toString());
+        summary.frequencyDist.add(value.isNull() ? NULL_NAME : value.toString());
       }
     }
 
-    /**
-     * Returns an iterator of frequencyDist names
-     */
-    private Iterator<String> freqNames(org.apache.commons.math3.stat.Frequency freq) {
-      return Iterators.transform(freq.valuesIterator(), new Function<Comparable<?>, String>() {
-
-        @Override
-        public String apply(Comparable<?> input) {
-          return input.toString();
-        }
-      });
+    @Override
+    public Builder merge(@NotNull Builder other) {
+      checkMergeable(variable, other);
+      Preconditions.checkArgument(other != this, "Cannot merge a builder with itself");
+      checkSameFilter(summary, other.summary);
+      summary.frequencyDist.merge(other.summary.frequencyDist);
+      if(!other.summary.empty) summary.empty = false;
+      return this;
     }
 
     private void compute() {
       log.trace("Start compute default summary {}", summary.variable);
-      Iterator<String> concat = freqNames(summary.frequencyDist);
+      Iterator<String> concat = summary.frequencyDist.getCountedNames().iterator();
 
       // Iterate over all category names including or not distinct values.
       // The loop will also determine the mode of the distribution (most frequent value)
@@ -215,6 +211,7 @@ public class TextVariableSummary extends AbstractVariableSummary implements Seri
       summary.n = summary.frequencyDist.getSumFreq();
     }
 
+    @Override
     public Builder filter(Integer offset, Integer limit) {
       summary.setOffset(offset);
       summary.setLimit(limit);
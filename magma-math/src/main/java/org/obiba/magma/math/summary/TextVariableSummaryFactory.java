@@ -37,13 +37,12 @@ public class TextVariableSummaryFactory extends AbstractVariableSummaryFactory<T
 
   @NotNull
   @Override
-  public TextVariableSummary getSummary() {
+  public TextVariableSummary.Builder newBuilder() {
     return new TextVariableSummary.Builder(getVariable()) //
-        .filter(offset, limit) //
-        .addTable(getTable(), getValueSource()) //
-        .build();
+        .filter(offset, limit);
   }
 
+  @Override
   public Integer getOffset() {
     return offset;
   }
@@ -52,6 +51,7 @@ public class TextVariableSummaryFactory extends AbstractVariableSummaryFactory<T
     this.offset = offset;
   }
 
+  @Override
   public Integer getLimit() {
     return limit;
   }
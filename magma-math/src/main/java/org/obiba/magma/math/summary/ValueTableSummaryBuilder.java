@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.obiba.magma.MagmaRuntimeException;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueSource;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VectorSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import static org.obiba.magma.math.summary.AbstractVariableSummary.VariableSummaryBuilder;
+
+/**
+ * Computes the summaries of several variables of a table in one pass. The (filtered) entities of the table are
+ * resolved once, then the values of all the variables are read by batches of entities and fed to the summary
+ * builders. Groups of variables can be summarised in parallel.
+ * <p/>
+ * The summary builders must be new: values are added to them with {@link VariableSummaryBuilder#addValue(Value)} and
+ * their filter is set to the one of this builder.
+ */
+public class ValueTableSummaryBuilder {
+
+  private static final Logger log = LoggerFactory.getLogger(ValueTableSummaryBuilder.class);
+
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  @NotNull
+  private final ValueTable table;
+
+  private final List<Entry> entries = Lists.newArrayList();
+
+  private Integer offset;
+
+  private Integer limit;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  @Nullable
+  private ExecutorService executor;
+
+  private int parallelism = 1;
+
+  public ValueTableSummaryBuilder(@NotNull ValueTable table) {
+    //noinspection ConstantConditions
+    Preconditions.checkArgument(table != null, "table cannot be null");
+    this.table = table;
+  }
+
+  /**
+   * Summarise the variable of the builder, which values are read from the table.
+   *
+   * @param builder
+   * @return
+   */
+  public ValueTableSummaryBuilder add(@NotNull VariableSummaryBuilder<?, ?> builder) {
+    return add(builder, table.getVariableValueSource(builder.getVariable().getName()));
+  }
+
+  public ValueTableSummaryBuilder add(@NotNull VariableSummaryBuilder<?, ?> builder,
+      @NotNull ValueSource variableValueSource) {
+    //noinspection ConstantConditions
+    Preconditions.checkArgument(builder != null, "builder cannot be null");
+    //noinspection ConstantConditions
+    Preconditions.checkArgument(variableValueSource != null, "variableValueSource cannot be null");
+    entries.add(new Entry(builder, variableValueSource));
+    return this;
+  }
+
+  public ValueTableSummaryBuilder filter(Integer offset, Integer limit) {
+    this.offset = offset;
+    this.limit = limit;
+    return this;
+  }
+
+  /**
+   * Number of entities for which the values of a variable are read at once.
+   *
+   * @param batchSize
+   * @return
+   */
+  public ValueTableSummaryBuilder batchSize(int batchSize) {
+    Preconditions.checkArgument(batchSize > 0, "batchSize must be positive");
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  /**
+   * Summarise the variables in parallel: they are split in groups that are summarised by the executor. The value
+   * sources must support concurrent reads.
+   *
+   * @param executor
+   * @param parallelism number of groups of variables
+   * @return
+   */
+  public ValueTableSummaryBuilder parallel(@NotNull ExecutorService executor, int parallelism) {
+    //noinspection ConstantConditions
+    Preconditions.checkArgument(executor != null, "executor cannot be null");
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+    this.executor = executor;
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Read the values and build the summaries.
+   *
+   * @return the summaries, in the order their builders were added
+   */
+  @NotNull
+  public List<VariableSummary> build() {
+    SortedSet<VariableEntity> entities = AbstractVariableSummary.getFilteredVariableEntities(table, offset, limit);
+    log.trace("Start compute summaries of {} variables of {} over {} entities", entries.size(), table.getName(),
+        entities.size());
+    List<SortedSet<VariableEntity>> batches = Lists.newArrayList();
+    for(List<VariableEntity> batch : Iterables.partition(entities, batchSize)) {
+      batches.add(ImmutableSortedSet.copyOf(batch));
+    }
+    for(Entry entry : entries) {
+      entry.builder.filter(offset, limit);
+    }
+
+    if(executor == null || parallelism == 1 || entries.size() < 2) {
+      addValues(entries, batches);
+    } else {
+      addValuesInParallel(batches);
+    }
+
+    ImmutableList.Builder<VariableSummary> summaries = ImmutableList.builder();
+    for(Entry entry : entries) {
+      summaries.add(entry.builder.build());
+    }
+    return summaries.build();
+  }
+
+  private void addValuesInParallel(final List<SortedSet<VariableEntity>> batches) {
+    int groupSize = (entries.size() + parallelism - 1) / parallelism;
+    List<Future<Void>> futures = Lists.newArrayList();
+    for(final List<Entry> group : Lists.partition(entries, groupSize)) {
+      //noinspection ConstantConditions
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          addValues(group, batches);
+          return null;
+        }
+      }));
+    }
+    try {
+      for(Future<Void> future : futures) {
+        future.get();
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MagmaRuntimeException("Interrupted while computing summaries of " + table.getName(), e);
+    } catch(ExecutionException e) {
+      for(Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new MagmaRuntimeException(e.getCause());
+    }
+  }
+
+  private static void addValues(Iterable<Entry> group, Iterable<SortedSet<VariableEntity>> batches) {
+    for(SortedSet<VariableEntity> batch : batches) {
+      for(Entry entry : group) {
+        entry.addValues(batch);
+      }
+    }
+  }
+
+  private static final class Entry {
+
+    private final VariableSummaryBuilder<?, ?> builder;
+
+    @Nullable
+    private final VectorSource vectorSource;
+
+    private Entry(VariableSummaryBuilder<?, ?> builder, ValueSource variableValueSource) {
+      this.builder = builder;
+      // values of variables that are not vectors are not summarised, as in addTable()
+      vectorSource = variableValueSource.supportVectorSource() ? variableValueSource.asVectorSource() : null;
+    }
+
+    private void addValues(SortedSet<VariableEntity> batch) {
+      if(vectorSource == null) return;
+      for(Value value : vectorSource.getValues(batch)) {
+        builder.addValue(value);
+      }
+    }
+  }
+
+}
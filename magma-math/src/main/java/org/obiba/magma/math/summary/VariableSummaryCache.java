@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.validation.constraints.NotNull;
+
+import org.obiba.magma.MagmaCacheExtension;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+import org.obiba.magma.math.LastUpdateCache;
+import org.obiba.magma.support.VariableNature;
+import org.obiba.magma.type.BinaryType;
+import org.obiba.magma.type.TextType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Keeps the computed summaries and cross-tabulations in the cache {@value #CACHE_NAME} of the {@link
+ * MagmaCacheExtension}. A summary is computed again when the last update of its table has changed. Summaries are not
+ * cached when there is no such cache, or when the table has no last update.
+ */
+public class VariableSummaryCache {
+
+  private static final Logger log = LoggerFactory.getLogger(VariableSummaryCache.class);
+
+  public static final String CACHE_NAME = "magma-variable-summaries";
+
+  private final LastUpdateCache cache = new LastUpdateCache(CACHE_NAME);
+
+  /**
+   * Get the summary from the cache if it is up to date, otherwise compute it and cache it.
+   *
+   * @param factory
+   * @param <TVariableSummary>
+   * @return
+   */
+  @NotNull
+  public <TVariableSummary extends VariableSummary> TVariableSummary getSummary(
+      @NotNull final VariableSummaryFactory<TVariableSummary> factory) {
+    return getSummary(factory.getTable(), getCacheKey(factory), new Supplier<TVariableSummary>() {
+      @Override
+      public TVariableSummary get() {
+        return factory.getSummary();
+      }
+    });
+  }
+
+  /**
+   * Get the cross-tabulation from the cache if it is up to date, otherwise compute it and cache it.
+   *
+   * @param factory
+   * @return
+   */
+  @NotNull
+  public CrosstabSummary getSummary(@NotNull final CrosstabSummaryFactory factory) {
+    return getSummary(factory.getTable(), getCacheKey(factory), new Supplier<CrosstabSummary>() {
+      @Override
+      public CrosstabSummary get() {
+        return factory.getSummary();
+      }
+    });
+  }
+
+  /**
+   * Whether the summary is cached and up to date.
+   *
+   * @param factory
+   * @return
+   */
+  public boolean isCached(@NotNull VariableSummaryFactory<?> factory) {
+    return isCached(factory.getTable(), getCacheKey(factory));
+  }
+
+  public boolean isCached(@NotNull CrosstabSummaryFactory factory) {
+    return isCached(factory.getTable(), getCacheKey(factory));
+  }
+
+  public void evict(@NotNull VariableSummaryFactory<?> factory) {
+    evict(getCacheKey(factory));
+  }
+
+  public void evict(@NotNull CrosstabSummaryFactory factory) {
+    evict(getCacheKey(factory));
+  }
+
+  /**
+   * Compute in the background the summaries of all the variables of the table that are not up to date, with the
+   * default options of the summary of their nature.
+   *
+   * @param executor
+   * @param table
+   * @return
+   */
+  public Future<Void> warmUp(@NotNull ExecutorService executor, @NotNull ValueTable table) {
+    ImmutableList.Builder<VariableSummaryFactory<?>> factories = ImmutableList.builder();
+    for(Variable variable : table.getVariables()) {
+      factories.add(newFactory(table, variable));
+    }
+    return warmUp(executor, table, factories.build());
+  }
+
+  /**
+   * Compute in the background the summaries that are not up to date. Summaries with the same offset and limit are
+   * computed in one pass over the values of the table.
+   *
+   * @param executor
+   * @param table the table of the summaries
+   * @param factories
+   * @return
+   */
+  public Future<Void> warmUp(@NotNull ExecutorService executor, @NotNull final ValueTable table,
+      @NotNull final Iterable<? extends VariableSummaryFactory<?>> factories) {
+    return executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        try {
+          computeSummaries(table, factories);
+        } catch(RuntimeException e) {
+          log.error("Failed to compute the summaries of {}", table.getName(), e);
+          throw e;
+        }
+        return null;
+      }
+    });
+  }
+
+  private void computeSummaries(ValueTable table, Iterable<? extends VariableSummaryFactory<?>> factories) {
+    // read before the values, so that the summaries of values updated meanwhile will not be up to date
+    Value lastUpdate = table.getTimestamps().getLastUpdate();
+    if(!cache.isEnabled(lastUpdate)) return;
+
+    Map<List<Integer>, List<VariableSummaryFactory<?>>> factoriesByFilter = Maps.newLinkedHashMap();
+    for(VariableSummaryFactory<?> factory : factories) {
+      if(cache.get(getCacheKey(factory), lastUpdate) != null) continue;
+      if(factory.newBuilder() == null) {
+        // cannot be computed together with the others
+        cache.put(getCacheKey(factory), factory.getSummary(), lastUpdate);
+        continue;
+      }
+      List<Integer> filter = Lists.newArrayList(factory.getOffset(), factory.getLimit());
+      if(!factoriesByFilter.containsKey(filter)) {
+        factoriesByFilter.put(filter, Lists.<VariableSummaryFactory<?>>newArrayList());
+      }
+      factoriesByFilter.get(filter).add(factory);
+    }
+
+    for(Map.Entry<List<Integer>, List<VariableSummaryFactory<?>>> entry : factoriesByFilter.entrySet()) {
+      ValueTableSummaryBuilder builder = new ValueTableSummaryBuilder(table)
+          .filter(entry.getKey().get(0), entry.getKey().get(1));
+      for(VariableSummaryFactory<?> factory : entry.getValue()) {
+        builder.add(factory.newBuilder(), factory.getValueSource());
+      }
+      List<VariableSummary> summaries = builder.build();
+      for(int i = 0; i < summaries.size(); i++) {
+        cache.put(getCacheKey(entry.getValue().get(i)), summaries.get(i), lastUpdate);
+      }
+      log.debug("Cached {} summaries of {}", summaries.size(), table.getName());
+    }
+  }
+
+  private <TSummary extends Serializable> TSummary getSummary(ValueTable table, String key,
+      Supplier<TSummary> summarySupplier) {
+    Value lastUpdate = table.getTimestamps().getLastUpdate();
+    TSummary summary = cache.get(key, lastUpdate);
+    if(summary == null) {
+      summary = summarySupplier.get();
+      cache.put(key, summary, lastUpdate);
+    }
+    return summary;
+  }
+
+  private boolean isCached(ValueTable table, String key) {
+    return cache.get(key, table.getTimestamps().getLastUpdate()) != null;
+  }
+
+  private void evict(String key) {
+    cache.evict(key);
+  }
+
+  private VariableSummaryFactory<?> newFactory(ValueTable table, Variable variable) {
+    VariableNature nature = VariableNature.getNature(variable);
+    if(nature == VariableNature.CATEGORICAL) {
+      return new CategoricalVariableSummaryFactory.Builder().variable(variable).table(table)
+          .valueSource(table.getVariableValueSource(variable.getName())).build();
+    }
+    if(nature == VariableNature.CONTINUOUS && variable.getValueType().isNumeric()) {
+      return new ContinuousVariableSummaryFactory.Builder().variable(variable).table(table)
+          .valueSource(table.getVariableValueSource(variable.getName()))
+          .distribution(ContinuousVariableSummary.Distribution.normal).percentiles(null)
+          .intervals(ContinuousVariableSummary.DEFAULT_INTERVALS).build();
+    }
+    if(nature == VariableNature.GEO) {
+      return new GeoVariableSummaryFactory.Builder().variable(variable).table(table)
+          .valueSource(table.getVariableValueSource(variable.getName())).build();
+    }
+    if(variable.getValueType() == TextType.get()) {
+      return new TextVariableSummaryFactory.Builder().variable(variable).table(table)
+          .valueSource(table.getVariableValueSource(variable.getName())).build();
+    }
+    if(variable.getValueType() == BinaryType.get()) {
+      return new BinaryVariableSummaryFactory.Builder().variable(variable).table(table)
+          .valueSource(table.getVariableValueSource(variable.getName())).build();
+    }
+    return new DefaultVariableSummaryFactory.Builder().variable(variable).table(table)
+        .valueSource(table.getVariableValueSource(variable.getName())).build();
+  }
+
+  /**
+   * Summaries of different kinds can have the same key, the kind is part of the cache key.
+   *
+   * @param factory
+   * @return
+   */
+  private String getCacheKey(VariableSummaryFactory<?> factory) {
+    return factory.getClass().getName() + ";" + factory.getCacheKey();
+  }
+
+  private String getCacheKey(CrosstabSummaryFactory factory) {
+    return factory.getClass().getName() + ";" + factory.getCacheKey();
+  }
+
+}
@@ -1,16 +1,35 @@
 package org.obiba.magma.math.summary;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.ValueSource;
 import org.obiba.magma.ValueTable;
 import org.obiba.magma.Variable;
 
+import static org.obiba.magma.math.summary.AbstractVariableSummary.VariableSummaryBuilder;
+
 public interface VariableSummaryFactory<TVariableSummary extends VariableSummary> {
 
+  /**
+   * Compute the summary of the variable values of the table.
+   *
+   * @return
+   */
   @NotNull
   TVariableSummary getSummary();
 
+  /**
+   * Get a new builder of the summary, with the options of this factory, so that the summary can be computed in the same
+   * pass as others (see {@link VariableSummaryCache#warmUp}).
+   *
+   * @return null if the summary can only be computed by {@link #getSummary()}
+   */
+  @Nullable
+  default VariableSummaryBuilder<TVariableSummary, ?> newBuilder() {
+    return null;
+  }
+
   @NotNull
   String getCacheKey();
 
@@ -28,4 +47,24 @@ public interface VariableSummaryFactory<TVariableSummary extends VariableSummary
   void setTable(ValueTable table);
 
   void setVariable(Variable variable);
+
+  /**
+   * Get the position of the first entity of the table that is summarized.
+   *
+   * @return null if the entities are summarized from the first one
+   */
+  @Nullable
+  default Integer getOffset() {
+    return null;
+  }
+
+  /**
+   * Get the maximum number of entities of the table that are summarized.
+   *
+   * @return null if all the entities are summarized
+   */
+  @Nullable
+  default Integer getLimit() {
+    return null;
+  }
 }
@@ -17,6 +17,7 @@ import org.obiba.magma.VariableEntity;
 import org.obiba.magma.VariableValueSource;
 import org.obiba.magma.VariableValueSourceWrapper;
 import org.obiba.magma.VectorSource;
+import org.obiba.magma.support.NullTimestamps;
 import org.obiba.magma.support.Values;
 import org.obiba.magma.type.IntegerType;
 
@@ -137,9 +138,11 @@ public class OutlierRemovingVariableValueSourceTest {
   }
 
   private void setupForStatsCompute(Iterable<Value> values) {
+    when(mockSource.getVariable()).thenReturn(testVariable);
     when(mockSource.supportVectorSource()).thenReturn(true);
     when(mockSource.asVectorSource()).thenReturn(mockVector);
     when(mockSource.getValueType()).thenReturn(IntegerType.get());
+    when(mockTable.getTimestamps()).thenReturn(NullTimestamps.get());
     when(mockTable.getVariableEntities()).thenReturn(emptySet);
     when(mockVector.getValues(emptySet)).thenReturn(values);
   }
@@ -0,0 +1,140 @@
+package org.obiba.magma.math;
+
+import java.util.Date;
+import java.util.SortedSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.obiba.magma.Category;
+import org.obiba.magma.MagmaCacheExtension;
+import org.obiba.magma.MagmaEngine;
+import org.obiba.magma.Timestamps;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.VectorSource;
+import org.obiba.magma.math.stat.Moments;
+import org.obiba.magma.support.Values;
+import org.obiba.magma.support.VariableEntityBean;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.DateTimeType;
+import org.obiba.magma.type.DecimalType;
+import org.obiba.magma.type.IntegerType;
+import org.obiba.magma.type.TextType;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ValueTableMomentsTest extends AbstractMagmaTest {
+
+  private final Variable age = Variable.Builder.newVariable("age", IntegerType.get(), "Participant")
+      .addCategory(Category.Builder.newCategory("999").missing(true).build()).build();
+
+  private final Variable weight = Variable.Builder.newVariable("weight", DecimalType.get(), "Participant").build();
+
+  private final Variable name = Variable.Builder.newVariable("name", TextType.get(), "Participant").build();
+
+  private ValueTable table;
+
+  private Timestamps timestamps;
+
+  private VariableValueSource ageSource;
+
+  private VectorSource ages;
+
+  private VectorSource weights;
+
+  private VectorSource names;
+
+  @Override
+  @Before
+  public void before() {
+    super.before();
+    table = mock(ValueTable.class);
+    timestamps = mock(Timestamps.class);
+    when(timestamps.getLastUpdate()).thenReturn(DateTimeType.get().valueOf(new Date(1000)));
+    when(table.getName()).thenReturn("table");
+    when(table.getTableReference()).thenReturn("ds.table");
+    when(table.getTimestamps()).thenReturn(timestamps);
+    when(table.getVariableEntities()).thenReturn(ImmutableSortedSet
+        .<VariableEntity>of(new VariableEntityBean("Participant", "1"), new VariableEntityBean("Participant", "2"),
+            new VariableEntityBean("Participant", "3")));
+    when(table.getVariables()).thenReturn(ImmutableList.of(age, weight, name));
+    ages = mockVectorSource(age, Values.asValues(IntegerType.get(), 20, 40, 999));
+    ageSource = table.getVariableValueSource(age.getName());
+    weights = mockVectorSource(weight, Values.asValues(DecimalType.get(), 50.0, null, 70.0));
+    names = mockVectorSource(name, Values.asValues(TextType.get(), "a", "b", "c"));
+  }
+
+  @Test
+  public void test_getMoments_computesAllVariablesTogether() {
+    ValueTableMoments tableMoments = new ValueTableMoments(table, new DefaultDescriptiveStatisticsProvider());
+
+    Moments ageMoments = tableMoments.getMoments(ageSource);
+    assertThat(ageMoments.getN()).isEqualTo(3);
+    assertThat(ageMoments.getMean()).isEqualTo(353, offset(1e-9));
+    Moments weightMoments = tableMoments.getMoments(table.getVariableValueSource(weight.getName()));
+    assertThat(weightMoments.getN()).isEqualTo(2);
+    assertThat(weightMoments.getMean()).isEqualTo(60, offset(1e-9));
+    assertThat(tableMoments.getMoments().keySet()).containsOnly(age.getName(), weight.getName());
+
+    verify(table, times(1)).getVariableEntities();
+    verify(ages, times(1)).getValues(Mockito.<SortedSet<VariableEntity>>any());
+    verify(weights, times(1)).getValues(Mockito.<SortedSet<VariableEntity>>any());
+    verify(names, never()).getValues(Mockito.<SortedSet<VariableEntity>>any());
+  }
+
+  @Test
+  public void test_getMoments_excludeMissing() {
+    ValueTableMoments tableMoments = new ValueTableMoments(table, new ExcludeMissingDescriptiveStatisticsProvider());
+    Moments ageMoments = tableMoments.getMoments(ageSource);
+    assertThat(ageMoments.getN()).isEqualTo(2);
+    assertThat(ageMoments.getMean()).isEqualTo(30, offset(1e-9));
+  }
+
+  @Test
+  public void test_getMoments_computedAgainWhenUpdated() {
+    ValueTableMoments tableMoments = new ValueTableMoments(table, new DefaultDescriptiveStatisticsProvider());
+    Moments moments = tableMoments.getMoments(ageSource);
+    assertThat(tableMoments.getMoments(ageSource)).isSameAs(moments);
+
+    when(timestamps.getLastUpdate()).thenReturn(DateTimeType.get().valueOf(new Date(2000)));
+    assertThat(tableMoments.getMoments(ageSource)).isNotSameAs(moments);
+    verify(ages, times(2)).getValues(Mockito.<SortedSet<VariableEntity>>any());
+  }
+
+  @Test
+  public void test_getMoments_sharedThroughCache() {
+    MagmaEngine.get().extend(new MagmaCacheExtension(new ConcurrentMapCacheManager()));
+    Moments moments = new ValueTableMoments(table, new DefaultDescriptiveStatisticsProvider()).getMoments(ageSource);
+    assertThat(new ValueTableMoments(table, new DefaultDescriptiveStatisticsProvider()).getMoments(ageSource))
+        .isSameAs(moments);
+    assertThat(new ValueTableMoments(table, new ExcludeMissingDescriptiveStatisticsProvider()).getMoments(ageSource))
+        .isNotSameAs(moments);
+    verify(ages, times(2)).getValues(Mockito.<SortedSet<VariableEntity>>any());
+  }
+
+  private VectorSource mockVectorSource(Variable variable, Iterable<Value> values) {
+    VectorSource vectorSource = mock(VectorSource.class);
+    when(vectorSource.getValues(Mockito.<SortedSet<VariableEntity>>any())).thenReturn(values);
+    VariableValueSource valueSource = mock(VariableValueSource.class);
+    when(valueSource.getVariable()).thenReturn(variable);
+    when(valueSource.supportVectorSource()).thenReturn(true);
+    when(valueSource.asVectorSource()).thenReturn(vectorSource);
+    when(table.getVariableValueSource(variable.getName())).thenReturn(valueSource);
+    return vectorSource;
+  }
+
+}
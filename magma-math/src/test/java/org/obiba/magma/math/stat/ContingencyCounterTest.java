@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ContingencyCounterTest {
+
+  @Test
+  public void test_increment_growsDimensions() {
+    Random random = new Random(23);
+    long[][] expected = new long[10][37];
+    ContingencyCounter counter = new ContingencyCounter(2);
+    for(int i = 0; i < 10000; i++) {
+      int row = random.nextInt(10);
+      int column = random.nextInt(37);
+      expected[row][column]++;
+      counter.increment(counter.index(0, "r" + row), counter.index(1, "c" + column));
+    }
+    assertThat(counter.getSumFreq()).isEqualTo(10000);
+    assertThat(counter.size(0)).isEqualTo(10);
+    assertThat(counter.size(1)).isEqualTo(37);
+    for(int row = 0; row < 10; row++) {
+      for(int column = 0; column < 37; column++) {
+        assertThat(counter.getCount("r" + row, "c" + column)).isEqualTo(expected[row][column]);
+      }
+    }
+    assertThat(counter.getCount("r0", "unknown")).isEqualTo(0);
+  }
+
+  @Test
+  public void test_increment_manyNames() {
+    // as many names in each dimension as values: only the combinations that occur are counted
+    ContingencyCounter counter = new ContingencyCounter(3);
+    for(int i = 0; i < 5000; i++) {
+      counter.increment(counter.index(0, "a" + i), counter.index(1, "b" + i), counter.index(2, "c" + i));
+    }
+    assertThat(counter.getSumFreq()).isEqualTo(5000);
+    assertThat(counter.size(2)).isEqualTo(5000);
+    assertThat(counter.getCount("a4999", "b4999", "c4999")).isEqualTo(1);
+    assertThat(counter.getCount("a0", "b1", "c2")).isEqualTo(0);
+  }
+
+  @Test
+  public void test_merge() {
+    ContingencyCounter counter = new ContingencyCounter(2);
+    counter.increment(counter.index(0, "a"), counter.index(1, "x"));
+    counter.increment(counter.index(0, "b"), counter.index(1, "y"));
+    ContingencyCounter other = new ContingencyCounter(2);
+    for(int i = 0; i < 10; i++) {
+      other.index(1, "z" + i);
+    }
+    other.increment(new int[] { other.index(0, "b"), other.index(1, "x") }, 3);
+    other.increment(other.index(0, "a"), other.index(1, "x"));
+
+    counter.merge(other);
+    assertThat(counter.getSumFreq()).isEqualTo(6);
+    assertThat(counter.getCount("a", "x")).isEqualTo(2);
+    assertThat(counter.getCount("b", "x")).isEqualTo(3);
+    assertThat(counter.getCount("b", "y")).isEqualTo(1);
+    assertThat(counter.getNames(1)).contains("x", "y", "z9");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_merge_differentDimensions() {
+    new ContingencyCounter(2).merge(new ContingencyCounter(3));
+  }
+
+}
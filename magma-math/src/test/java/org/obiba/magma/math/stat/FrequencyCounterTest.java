@@ -0,0 +1,57 @@
+package org.obiba.magma.math.stat;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class FrequencyCounterTest {
+
+  @Test
+  public void test_count() {
+    FrequencyCounter counter = new FrequencyCounter();
+    int yes = counter.index("YES");
+    counter.index("NO");
+    counter.increment(yes);
+    counter.add("YES");
+    counter.add("MAYBE");
+
+    assertThat(counter.getCount("YES")).isEqualTo(2);
+    assertThat(counter.getCount("NO")).isEqualTo(0);
+    assertThat(counter.getCount("DNK")).isEqualTo(0);
+    assertThat(counter.getSumFreq()).isEqualTo(3);
+    assertThat(counter.getPct("MAYBE")).isEqualTo(1d / 3);
+    assertThat(counter.indexOf("DNK")).isEqualTo(-1);
+    assertThat(counter.getCountedNames()).containsExactly("MAYBE", "YES");
+  }
+
+  @Test
+  public void test_manyNames() {
+    FrequencyCounter counter = new FrequencyCounter();
+    for(int i = 0; i < 1000; i++) {
+      counter.add("" + i % 100);
+    }
+    assertThat(counter.size()).isEqualTo(100);
+    assertThat(counter.getCount("99")).isEqualTo(10);
+  }
+
+  @Test
+  public void test_merge() {
+    FrequencyCounter counter = new FrequencyCounter();
+    counter.add("YES");
+    FrequencyCounter other = new FrequencyCounter();
+    other.index("NO");
+    other.add("YES");
+    other.add("MAYBE");
+    counter.merge(other);
+
+    assertThat(counter.getCount("YES")).isEqualTo(2);
+    assertThat(counter.getSumFreq()).isEqualTo(3);
+    assertThat(counter.getCountedNames()).containsExactly("MAYBE", "YES");
+  }
+
+  @Test
+  public void test_empty_pctIsNaN() {
+    assertThat(new FrequencyCounter().getPct("YES")).isNaN();
+  }
+
+}
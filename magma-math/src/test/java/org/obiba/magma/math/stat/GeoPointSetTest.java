@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.obiba.magma.Coordinate;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+
+public class GeoPointSetTest {
+
+  @Test
+  public void test_getPoints_retainsAll() {
+    GeoPointSet points = new GeoPointSet();
+    points.add(1, 2);
+    points.add(3, 4);
+    points.add(1, 2);
+    List<GeoPointSet.WeightedPoint> retained = points.getPoints();
+    assertThat(points.getN()).isEqualTo(3);
+    assertThat(retained).hasSize(2);
+    assertThat(retained.get(0).getCoordinate()).isEqualTo(new Coordinate(1, 2));
+    assertThat(retained.get(0).getCount()).isEqualTo(2);
+    assertThat(retained.get(1).getCoordinate()).isEqualTo(new Coordinate(3, 4));
+    assertThat(retained.get(1).getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_getPoints_withResolution() {
+    GeoPointSet points = GeoPointSet.withResolution(1);
+    points.add(0.2, 0.2);
+    points.add(0.4, 0.6);
+    points.add(1.5, 0.5);
+    GeoPointSet other = GeoPointSet.withResolution(1);
+    other.add(0.9, 0.1);
+    points.merge(other);
+
+    List<GeoPointSet.WeightedPoint> retained = points.getPoints();
+    assertThat(points.getN()).isEqualTo(4);
+    assertThat(retained).hasSize(2);
+    assertThat(retained.get(0).getCount()).isEqualTo(3);
+    assertThat(retained.get(0).getCoordinate().getLongitude()).isEqualTo(0.5, offset(1e-9));
+    assertThat(retained.get(0).getCoordinate().getLatitude()).isEqualTo(0.3, offset(1e-9));
+    assertThat(retained.get(1).getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void test_getPoints_withSampleSize() {
+    GeoPointSet points = GeoPointSet.withSampleSize(100);
+    GeoPointSet other = GeoPointSet.withSampleSize(100);
+    for(int i = 0; i < 10000; i++) {
+      points.add(i, 0);
+      other.add(i, 1);
+    }
+    assertThat(getCount(points.getPoints())).isEqualTo(100);
+    points.merge(other);
+    assertThat(points.getN()).isEqualTo(20000);
+    List<GeoPointSet.WeightedPoint> retained = points.getPoints();
+    assertThat(getCount(retained)).isEqualTo(100);
+    // both sets are represented
+    long fromOther = 0;
+    for(GeoPointSet.WeightedPoint point : retained) {
+      if(point.getCoordinate().getLatitude() == 1) fromOther += point.getCount();
+    }
+    assertThat(fromOther).isGreaterThan(25).isLessThan(75);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_merge_differentResolutions() {
+    GeoPointSet.withResolution(1).merge(GeoPointSet.withResolution(2));
+  }
+
+  private long getCount(List<GeoPointSet.WeightedPoint> points) {
+    long count = 0;
+    for(GeoPointSet.WeightedPoint point : points) {
+      count += point.getCount();
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,71 @@
+package org.obiba.magma.math.stat;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+
+public class MomentsTest {
+
+  @Test
+  public void test_sameAsDescriptiveStatistics() {
+    Random random = new Random(11);
+    DescriptiveStatistics expected = new DescriptiveStatistics();
+    Moments moments = new Moments();
+    for(int i = 0; i < 1000; i++) {
+      double value = 100 + random.nextGaussian() * 5;
+      expected.addValue(value);
+      moments.add(value);
+    }
+    assertSame(moments, expected);
+  }
+
+  @Test
+  public void test_merge() {
+    Random random = new Random(13);
+    DescriptiveStatistics expected = new DescriptiveStatistics();
+    Moments moments = new Moments();
+    Moments other = new Moments();
+    for(int i = 0; i < 1000; i++) {
+      double value = random.nextDouble() * 10;
+      expected.addValue(value);
+      if(i % 3 == 0) {
+        moments.add(value);
+      } else {
+        other.add(value);
+      }
+    }
+    moments.merge(other);
+    moments.merge(new Moments());
+    assertSame(moments, expected);
+  }
+
+  @Test
+  public void test_empty() {
+    Moments moments = new Moments();
+    assertThat(moments.getN()).isEqualTo(0);
+    assertThat(moments.getMean()).isNaN();
+    assertThat(moments.getVariance()).isNaN();
+    assertThat(moments.getMin()).isNaN();
+    assertThat(moments.getSkewness()).isNaN();
+    assertThat(moments.getKurtosis()).isNaN();
+    assertThat(moments.getGeometricMean()).isNaN();
+  }
+
+  private void assertSame(Moments moments, DescriptiveStatistics expected) {
+    assertThat(moments.getN()).isEqualTo(expected.getN());
+    assertThat(moments.getMean()).isEqualTo(expected.getMean(), offset(1e-9));
+    assertThat(moments.getVariance()).isEqualTo(expected.getVariance(), offset(1e-9));
+    assertThat(moments.getSum()).isEqualTo(expected.getSum(), offset(1e-6));
+    assertThat(moments.getMin()).isEqualTo(expected.getMin());
+    assertThat(moments.getMax()).isEqualTo(expected.getMax());
+    assertThat(moments.getSumsq()).isEqualTo(expected.getSumsq(), offset(1e-3));
+    assertThat(moments.getGeometricMean()).isEqualTo(expected.getGeometricMean(), offset(1e-9));
+    assertThat(moments.getSkewness()).isEqualTo(expected.getSkewness(), offset(1e-9));
+    assertThat(moments.getKurtosis()).isEqualTo(expected.getKurtosis(), offset(1e-9));
+  }
+
+}
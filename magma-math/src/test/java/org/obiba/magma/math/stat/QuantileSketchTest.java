@@ -0,0 +1,80 @@
+package org.obiba.magma.math.stat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class QuantileSketchTest {
+
+  @Test
+  public void test_fewValues_exactQuantiles() {
+    QuantileSketch sketch = new QuantileSketch();
+    for(int i = 1; i <= 100; i++) {
+      sketch.add(i);
+    }
+    assertThat(sketch.getN()).isEqualTo(100);
+    assertThat(sketch.getQuantile(0)).isEqualTo(1d);
+    assertThat(sketch.getQuantile(0.5)).isEqualTo(50d);
+    assertThat(sketch.getQuantile(0.95)).isEqualTo(95d);
+    assertThat(sketch.getQuantile(1)).isEqualTo(100d);
+  }
+
+  @Test
+  public void test_manyValues_boundedMemoryAndRankError() {
+    int n = 200000;
+    Random random = new Random(7);
+    QuantileSketch sketch = QuantileSketch.withRankError(0.01);
+    double[] values = new double[n];
+    for(int i = 0; i < n; i++) {
+      values[i] = random.nextGaussian();
+      sketch.add(values[i]);
+    }
+    Arrays.sort(values);
+
+    assertThat(sketch.getRetained()).isLessThan(1000);
+    for(double q = 0.01; q < 1; q += 0.01) {
+      double rank = Arrays.binarySearch(values, sketch.getQuantile(q)) / (double) n;
+      assertThat(Math.abs(rank - q)).isLessThan(sketch.getRankError());
+    }
+  }
+
+  @Test
+  public void test_merge() {
+    int n = 100000;
+    Random random = new Random(9);
+    QuantileSketch sketch = new QuantileSketch();
+    QuantileSketch other = new QuantileSketch();
+    double[] values = new double[n];
+    for(int i = 0; i < n; i++) {
+      values[i] = random.nextDouble();
+      // partitions of different sizes and ranges
+      if(values[i] < 0.3) {
+        sketch.add(values[i]);
+      } else {
+        other.add(values[i]);
+      }
+    }
+    sketch.merge(other);
+    Arrays.sort(values);
+
+    assertThat(sketch.getN()).isEqualTo(n);
+    assertThat(sketch.getMin()).isEqualTo(values[0]);
+    assertThat(sketch.getMax()).isEqualTo(values[n - 1]);
+    for(double q = 0.01; q < 1; q += 0.01) {
+      double rank = Arrays.binarySearch(values, sketch.getQuantile(q)) / (double) n;
+      assertThat(Math.abs(rank - q)).isLessThan(sketch.getRankError());
+    }
+  }
+
+  @Test
+  public void test_empty_isNaN() {
+    QuantileSketch sketch = new QuantileSketch();
+    sketch.add(Double.NaN);
+    assertThat(sketch.getN()).isEqualTo(0);
+    assertThat(sketch.getQuantile(0.5)).isNaN();
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.stat;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.obiba.magma.Coordinate;
+
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.algorithm.ConvexHull;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class StreamingConvexHullTest {
+
+  @Test
+  public void test_sameAsConvexHull() {
+    Random random = new Random(17);
+    List<com.vividsolutions.jts.geom.Coordinate> all = Lists.newArrayList();
+    StreamingConvexHull hull = new StreamingConvexHull(16);
+    for(int i = 0; i < 5000; i++) {
+      double longitude = random.nextGaussian() * 10;
+      double latitude = random.nextGaussian() * 5;
+      all.add(new com.vividsolutions.jts.geom.Coordinate(longitude, latitude));
+      hull.add(longitude, latitude);
+    }
+    assertThat(hull.getN()).isEqualTo(5000);
+    assertThat(hull.getConvexHull()).isEqualTo(getConvexHull(all));
+  }
+
+  @Test
+  public void test_merge() {
+    Random random = new Random(19);
+    List<com.vividsolutions.jts.geom.Coordinate> all = Lists.newArrayList();
+    StreamingConvexHull hull = new StreamingConvexHull(8);
+    StreamingConvexHull other = new StreamingConvexHull(8);
+    for(int i = 0; i < 1000; i++) {
+      double longitude = random.nextDouble() * 100;
+      double latitude = random.nextDouble() * 50;
+      all.add(new com.vividsolutions.jts.geom.Coordinate(longitude, latitude));
+      if(i % 2 == 0) {
+        hull.add(longitude, latitude);
+      } else {
+        other.add(longitude, latitude);
+      }
+    }
+    hull.merge(other);
+    hull.merge(new StreamingConvexHull());
+    assertThat(hull.getN()).isEqualTo(1000);
+    assertThat(hull.getConvexHull()).isEqualTo(getConvexHull(all));
+  }
+
+  @Test
+  public void test_getBoundingBox() {
+    StreamingConvexHull hull = new StreamingConvexHull();
+    assertThat(hull.getBoundingBox()).isEmpty();
+    assertThat(hull.getConvexHull()).isEmpty();
+    hull.add(-73.5, 45.5);
+    hull.add(2.35, 48.85);
+    hull.add(151.2, -33.9);
+    assertThat(hull.getBoundingBox()).containsExactly(new Coordinate(-73.5, -33.9), new Coordinate(151.2, 48.85));
+  }
+
+  private List<Coordinate> getConvexHull(List<com.vividsolutions.jts.geom.Coordinate> coordinates) {
+    List<Coordinate> hull = Lists.newArrayList();
+    for(com.vividsolutions.jts.geom.Coordinate vertex : new ConvexHull(
+        coordinates.toArray(new com.vividsolutions.jts.geom.Coordinate[coordinates.size()]), new GeometryFactory())
+        .getConvexHull().getCoordinates()) {
+      hull.add(new Coordinate(vertex.x, vertex.y));
+    }
+    return hull;
+  }
+
+}
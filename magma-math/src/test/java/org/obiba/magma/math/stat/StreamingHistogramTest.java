@@ -0,0 +1,86 @@
+package org.obiba.magma.math.stat;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+import org.obiba.magma.math.stat.IntervalFrequency.Interval;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class StreamingHistogramTest {
+
+  @Test
+  public void test_integerValues_sameFrequenciesAsValues() {
+    Random random = new Random(3);
+    StreamingHistogram histogram = new StreamingHistogram();
+    IntervalFrequency expected = new IntervalFrequency(-50, 149, 10, true);
+    // values out of the initial range make the bins grow both ways, bins still hold a single integer
+    for(int i = 0; i < 10000; i++) {
+      int value = i < 100 ? random.nextInt(10) : random.nextInt(200) - 50;
+      histogram.add(value);
+      expected.add(value);
+    }
+    IntervalFrequency actual = new IntervalFrequency(-50, 149, 10, true);
+    histogram.addTo(actual);
+
+    assertThat(histogram.getMin()).isEqualTo(-50d);
+    assertThat(histogram.getMax()).isEqualTo(149d);
+    Iterator<Interval> actualIntervals = actual.intervals().iterator();
+    for(Interval interval : expected.intervals()) {
+      assertThat(actualIntervals.next().getFreq()).isEqualTo(interval.getFreq());
+    }
+  }
+
+  @Test
+  public void test_merge() {
+    Random random = new Random(17);
+    StreamingHistogram histogram = new StreamingHistogram();
+    StreamingHistogram other = new StreamingHistogram();
+    StreamingHistogram buffered = new StreamingHistogram();
+    IntervalFrequency expected = new IntervalFrequency(0, 999, 10, true);
+    // set the same range of bins for both histograms
+    for(int value : new int[] { 0, 999 }) {
+      histogram.add(value);
+      other.add(value);
+      expected.add(value);
+      expected.add(value);
+    }
+    for(int i = 0; i < 5000; i++) {
+      int value = random.nextInt(1000);
+      expected.add(value);
+      if(i < 10) {
+        buffered.add(value);
+      } else if(i % 2 == 0) {
+        histogram.add(value);
+      } else {
+        other.add(value);
+      }
+    }
+    buffered.merge(histogram);
+    buffered.merge(other);
+    IntervalFrequency actual = new IntervalFrequency(0, 999, 10, true);
+    buffered.addTo(actual);
+
+    Iterator<Interval> actualIntervals = actual.intervals().iterator();
+    for(Interval interval : expected.intervals()) {
+      assertThat(actualIntervals.next().getFreq()).isEqualTo(interval.getFreq());
+    }
+  }
+
+  @Test
+  public void test_fewValues_exactFrequencies() {
+    StreamingHistogram histogram = new StreamingHistogram();
+    IntervalFrequency expected = new IntervalFrequency(0, 1, 4);
+    Random random = new Random(5);
+    for(int i = 0; i < 100; i++) {
+      double value = random.nextDouble();
+      histogram.add(value);
+      expected.add(value);
+    }
+    IntervalFrequency actual = new IntervalFrequency(0, 1, 4);
+    histogram.addTo(actual);
+    assertThat(actual.toString()).isEqualTo(expected.toString());
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.obiba.magma.Variable;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.BinaryType;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class BinaryVariableSummaryTest extends AbstractMagmaTest {
+
+  @Test
+  public void test_merge() {
+    BinaryVariableSummary.Builder builder = new BinaryVariableSummary.Builder(newVariable());
+    builder.addValue(BinaryType.get().valueOf(new byte[] { 1 }));
+    BinaryVariableSummary.Builder other = new BinaryVariableSummary.Builder(newVariable());
+    builder.addValue(BinaryType.get().valueOf(new byte[] { 2 }));
+    other.addValue(BinaryType.get().nullValue());
+
+    assertThat(builder.merge(other).build().getN()).isEqualTo(3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_merge_differentVariables() {
+    new BinaryVariableSummary.Builder(newVariable())
+        .merge(new BinaryVariableSummary.Builder(Variable.Builder.newVariable("other", BinaryType.get(), "Participant").build()));
+  }
+
+  @Test
+  public void test_merge_differentSettings() {
+    List<BinaryVariableSummary.Builder> others = ImmutableList
+        .of(new BinaryVariableSummary.Builder(newVariable()).filter(10, null),
+            new BinaryVariableSummary.Builder(newVariable()).filter(null, 100));
+    for(BinaryVariableSummary.Builder other : others) {
+      try {
+        new BinaryVariableSummary.Builder(newVariable()).merge(other);
+        fail("Merged summaries of different settings");
+      } catch(IllegalArgumentException e) {
+        assertThat(e.getMessage()).startsWith("Cannot merge summaries of different");
+      }
+    }
+    // same settings
+    new BinaryVariableSummary.Builder(newVariable()).filter(10, 100)
+        .merge(new BinaryVariableSummary.Builder(newVariable()).filter(10, 100));
+  }
+
+  private static Variable newVariable() {
+    return Variable.Builder.newVariable("binary", BinaryType.get(), "Participant").build();
+  }
+
+}
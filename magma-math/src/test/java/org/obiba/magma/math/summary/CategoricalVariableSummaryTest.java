@@ -9,6 +9,7 @@
  */
 package org.obiba.magma.math.summary;
 
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -28,6 +29,7 @@ import org.obiba.magma.type.TextType;
 import com.google.common.collect.ImmutableList;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -81,6 +83,49 @@ public class CategoricalVariableSummaryTest extends AbstractMagmaTest {
     assertThat(summary.getMode()).isEqualTo("CAT1");
   }
 
+  @Test
+  public void test_merge() {
+    Variable variable = Variable.Builder.newVariable("mock", TextType.get(), "mock").addCategories("YES", "NO").build();
+    CategoricalVariableSummary.Builder builder = new CategoricalVariableSummary.Builder(variable);
+    for(Value value : Values.asValues(TextType.get(), "YES", "NO", "NO")) {
+      builder.addValue(value);
+    }
+    CategoricalVariableSummary.Builder other = new CategoricalVariableSummary.Builder(variable);
+    for(Value value : Values.asValues(TextType.get(), "YES", "YES", "MAYBE", null)) {
+      other.addValue(value);
+    }
+    CategoricalVariableSummary summary = builder.merge(other).build();
+    assertThat(summary.getMode()).isEqualTo("YES");
+    assertThat(summary.getN()).isEqualTo(7);
+    assertThat(summary.getOtherFrequency()).isEqualTo(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_merge_differentVariables() {
+    new CategoricalVariableSummary.Builder(Variable.Builder.newVariable("a", TextType.get(), "mock").build())
+        .merge(new CategoricalVariableSummary.Builder(Variable.Builder.newVariable("b", TextType.get(), "mock").build()));
+  }
+
+  @Test
+  public void test_merge_differentSettings() {
+    Variable variable = Variable.Builder.newVariable("mock", TextType.get(), "mock").addCategories("YES", "NO").build();
+    List<CategoricalVariableSummary.Builder> others = ImmutableList
+        .of(new CategoricalVariableSummary.Builder(variable).distinct(true),
+            new CategoricalVariableSummary.Builder(variable).filter(10, null),
+            new CategoricalVariableSummary.Builder(variable).filter(null, 100));
+    for(CategoricalVariableSummary.Builder other : others) {
+      try {
+        new CategoricalVariableSummary.Builder(variable).merge(other);
+        fail("Merged summaries of different settings");
+      } catch(IllegalArgumentException e) {
+        assertThat(e.getMessage()).startsWith("Cannot merge summaries of different");
+      }
+    }
+    // same settings
+    new CategoricalVariableSummary.Builder(variable).filter(10, 100)
+        .merge(new CategoricalVariableSummary.Builder(variable).filter(10, 100));
+  }
+
   private CategoricalVariableSummary computeFromTable(Variable variable, Iterable<Value> values) {
 
     VectorSource vectorSource = mock(VectorSource.class);
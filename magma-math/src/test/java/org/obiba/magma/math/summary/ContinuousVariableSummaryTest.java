@@ -9,6 +9,9 @@
  */
 package org.obiba.magma.math.summary;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -21,11 +24,20 @@ import org.obiba.magma.Variable;
 import org.obiba.magma.VariableEntity;
 import org.obiba.magma.VariableValueSource;
 import org.obiba.magma.VectorSource;
+import org.obiba.magma.math.stat.IntervalFrequency;
 import org.obiba.magma.support.Values;
 import org.obiba.magma.test.AbstractMagmaTest;
 import org.obiba.magma.type.IntegerType;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+import static org.fest.assertions.api.Assertions.offset;
+import static org.obiba.magma.math.summary.ContinuousVariableSummary.DEFAULT_PERCENTILES;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -70,6 +82,87 @@ public class ContinuousVariableSummaryTest extends AbstractMagmaTest {
     assertThat(descriptiveStats.getN()).isEqualTo(3l);
   }
 
+  @Test
+  public void test_compute_withRankError() {
+    Variable mockVariable = Variable.Builder.newVariable("mock", IntegerType.get(), "mock").build();
+    List<Value> values = Lists.newArrayList();
+    for(int i = 1; i <= 10000; i++) {
+      values.add(IntegerType.get().valueOf(i % 1000));
+    }
+    ContinuousVariableSummary exact = computeFromTable(mockVariable, values, null);
+    ContinuousVariableSummary sketched = computeFromTable(mockVariable, values, 0.01);
+
+    assertThat(sketched.getDescriptiveStats().getN()).isEqualTo(0l);
+    assertThat(sketched.getStatistics().getN()).isEqualTo(10000l);
+    assertThat(sketched.getStatistics().getMean()).isEqualTo(exact.getStatistics().getMean(), offset(1e-9));
+    assertThat(sketched.getStatistics().getVariance()).isEqualTo(exact.getStatistics().getVariance(), offset(1e-6));
+    for(int i = 0; i < exact.getPercentiles().size(); i++) {
+      // 1% of the ranks is 10 for values uniformly distributed in [0, 999]
+      assertThat(sketched.getPercentiles().get(i)).isEqualTo(exact.getPercentiles().get(i), offset(11d));
+    }
+    Iterator<IntervalFrequency.Interval> intervals = sketched.getIntervalFrequencies().iterator();
+    for(IntervalFrequency.Interval interval : exact.getIntervalFrequencies()) {
+      assertThat(intervals.next().getFreq()).isEqualTo(interval.getFreq());
+    }
+  }
+
+  @Test
+  public void test_merge() {
+    Variable mockVariable = Variable.Builder.newVariable("mock", IntegerType.get(), "mock").addCategory("999", "", true)
+        .build();
+    for(Double rankError : Lists.newArrayList(null, 0.01)) {
+      ContinuousVariableSummary.Builder builder = newBuilder(mockVariable, rankError);
+      ContinuousVariableSummary.Builder other = newBuilder(mockVariable, rankError);
+      for(int i = 1; i <= 100; i++) {
+        (i % 2 == 0 ? builder : other).addValue(IntegerType.get().valueOf(i == 50 ? 999 : i));
+      }
+      other.addValue(IntegerType.get().nullValue());
+      ContinuousVariableSummary summary = builder.merge(other).build();
+
+      assertThat(summary.getStatistics().getN()).isEqualTo(99l);
+      assertThat(summary.getStatistics().getMax()).isEqualTo(100.0);
+      assertThat(summary.getPercentiles().get(DEFAULT_PERCENTILES.indexOf(50d))).isEqualTo(51.0, offset(1.0));
+      Map<String, Long> frequencies = Maps.newHashMap();
+      for(ContinuousVariableSummary.Frequency frequency : summary.getFrequencies()) {
+        frequencies.put(frequency.getValue(), frequency.getFreq());
+      }
+      assertThat(frequencies).isEqualTo(
+          ImmutableMap.of(ContinuousVariableSummary.NOT_NULL_NAME, 99l, "999", 1l, ContinuousVariableSummary.NULL_NAME,
+              1l));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_merge_differentRankErrors() {
+    Variable mockVariable = Variable.Builder.newVariable("mock", IntegerType.get(), "mock").build();
+    newBuilder(mockVariable, null).merge(newBuilder(mockVariable, 0.01));
+  }
+
+  @Test
+  public void test_merge_differentSettings() {
+    Variable mockVariable = Variable.Builder.newVariable("mock", IntegerType.get(), "mock").build();
+    List<ContinuousVariableSummary.Builder> others = ImmutableList
+        .of(new ContinuousVariableSummary.Builder(mockVariable, ContinuousVariableSummary.Distribution.exponential),
+            newBuilder(mockVariable, null).intervals(5),
+            newBuilder(mockVariable, null).defaultPercentiles(ImmutableList.of(25d, 50d, 75d)),
+            newBuilder(mockVariable, null).filter(10, null), newBuilder(mockVariable, null).filter(null, 100));
+    for(ContinuousVariableSummary.Builder other : others) {
+      try {
+        newBuilder(mockVariable, null).merge(other);
+        fail("Merged summaries of different settings");
+      } catch(IllegalArgumentException e) {
+        assertThat(e.getMessage()).startsWith("Cannot merge summaries of different");
+      }
+    }
+    // same settings
+    newBuilder(mockVariable, null).filter(10, 100).merge(newBuilder(mockVariable, null).filter(10, 100));
+  }
+
+  private ContinuousVariableSummary.Builder newBuilder(Variable variable, Double rankError) {
+    return new ContinuousVariableSummary.Builder(variable, ContinuousVariableSummary.Distribution.normal)
+        .rankError(rankError);
+  }
+
   /*
     @Test
     public void test_compute_withNullValue() {
@@ -101,6 +194,10 @@ public class ContinuousVariableSummaryTest extends AbstractMagmaTest {
   */
 
   private ContinuousVariableSummary computeFromTable(Variable variable, Iterable<Value> values) {
+    return computeFromTable(variable, values, null);
+  }
+
+  private ContinuousVariableSummary computeFromTable(Variable variable, Iterable<Value> values, Double rankError) {
     ValueTable table = mock(ValueTable.class);
     VectorSource vectorSource = mock(VectorSource.class);
     VariableValueSource valueSource = mock(VariableValueSource.class);
@@ -112,7 +209,7 @@ public class ContinuousVariableSummaryTest extends AbstractMagmaTest {
     when(table.getVariableValueSource(variable.getName())).thenReturn(valueSource);
 
     return new ContinuousVariableSummary.Builder(variable, ContinuousVariableSummary.Distribution.normal)
-        .addTable(table, table.getVariableValueSource(variable.getName())).build();
+        .rankError(rankError).addTable(table, table.getVariableValueSource(variable.getName())).build();
   }
 
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.VectorSource;
+import org.obiba.magma.support.VariableEntityBean;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.TextType;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CrosstabSummaryTest extends AbstractMagmaTest {
+
+  private static final int ENTITIES = 2500;
+
+  private final Variable sex = Variable.Builder.newVariable("sex", TextType.get(), "Participant")
+      .addCategories("M", "F").build();
+
+  private final Variable smoker = Variable.Builder.newVariable("smoker", TextType.get(), "Participant")
+      .addCategories("YES", "NO").build();
+
+  private ValueTable table;
+
+  @Override
+  @Before
+  public void before() {
+    super.before();
+    table = mock(ValueTable.class);
+    List<VariableEntity> entities = Lists.newArrayList();
+    for(int i = 0; i < ENTITIES; i++) {
+      entities.add(new VariableEntityBean("Participant", String.format("%05d", i)));
+    }
+    when(table.getVariableEntities()).thenReturn(ImmutableSortedSet.copyOf(entities));
+    Random random = new Random(29);
+    mockVectorSource(sex, random, "M", "F", null);
+    mockVectorSource(smoker, random, "YES", "NO", "MAYBE", null);
+  }
+
+  @Test
+  public void test_serialization() throws Exception {
+    when(table.getTableReference()).thenReturn("ds.table");
+    CrosstabSummary summary = new CrosstabSummary.Builder(ImmutableList.of(sex, smoker)) //
+        .addValues(values("M", "YES")) //
+        .addValues(values("F", "NO")) //
+        .build();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      oos.writeObject(summary);
+    }
+    CrosstabSummary deserialized;
+    try(ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      deserialized = (CrosstabSummary) ois.readObject();
+    }
+
+    assertThat(deserialized.getCacheKey(table)).isEqualTo(summary.getCacheKey(table));
+    assertThat(deserialized.getCacheKey(table))
+        .isEqualTo(CrosstabSummaryFactory.getCacheKey(ImmutableList.of(sex, smoker), table, false, null, null));
+    assertThat(deserialized.getVariableNames()).containsExactly("sex", "smoker");
+    assertThat(deserialized.getN()).isEqualTo(2);
+  }
+
+  @Test
+  public void test_addValues() {
+    CrosstabSummary summary = new CrosstabSummary.Builder(ImmutableList.of(sex, smoker)) //
+        .addValues(values("M", "YES")) //
+        .addValues(values("M", "YES")) //
+        .addValues(values("F", "MAYBE")) //
+        .addValues(values(null, "NO")) //
+        .build();
+
+    assertThat(summary.getN()).isEqualTo(4);
+    assertThat(summary.getNames(0)).containsExactly("M", "F", CrosstabSummary.NULL_NAME, CrosstabSummary.OTHER_NAME);
+    assertThat(summary.getCount("M", "YES")).isEqualTo(2);
+    assertThat(summary.getCount("F", CrosstabSummary.OTHER_NAME)).isEqualTo(1);
+    assertThat(summary.getCount(CrosstabSummary.NULL_NAME, "NO")).isEqualTo(1);
+    assertThat(summary.getCount("F", "YES")).isEqualTo(0);
+    assertThat(summary.getTotal(0, "M")).isEqualTo(2);
+    assertThat(summary.getTotal(1, "YES")).isEqualTo(2);
+  }
+
+  @Test
+  public void test_addValues_distinct() {
+    CrosstabSummary summary = new CrosstabSummary.Builder(ImmutableList.of(sex, smoker)).distinct(true) //
+        .addValues(values("F", "MAYBE")) //
+        .addValues(values("F", "ALWAYS")) //
+        .build();
+
+    assertThat(summary.getNames(1)).containsExactly("YES", "NO", "ALWAYS", "MAYBE", CrosstabSummary.NULL_NAME);
+    assertThat(summary.getCount("F", "MAYBE")).isEqualTo(1);
+    assertThat(summary.getCount("F", "ALWAYS")).isEqualTo(1);
+  }
+
+  @Test
+  public void test_addTable_sameAsCategoricalSummaries() {
+    CrosstabSummary summary = new CrosstabSummary.Builder(ImmutableList.of(sex, smoker)).batchSize(100)
+        .addTable(table).build();
+
+    assertThat(summary.getN()).isEqualTo(ENTITIES);
+    CategoricalVariableSummary sexSummary = new CategoricalVariableSummary.Builder(sex)
+        .addTable(table, table.getVariableValueSource(sex.getName())).build();
+    for(CategoricalVariableSummary.Frequency frequency : sexSummary.getFrequencies()) {
+      assertThat(summary.getTotal(0, frequency.getValue())).isEqualTo(frequency.getFreq());
+    }
+  }
+
+  @Test
+  public void test_addTable_parallel() throws Exception {
+    CrosstabSummary expected = new CrosstabSummary.Builder(ImmutableList.of(sex, smoker)).filter(10, 2000)
+        .addTable(table).build();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    CrosstabSummary summary;
+    try {
+      summary = new CrosstabSummary.Builder(ImmutableList.of(sex, smoker)).filter(10, 2000).batchSize(100)
+          .parallel(executor, 3).addTable(table).build();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(summary.getN()).isEqualTo(2000);
+    for(String sexName : expected.getNames(0)) {
+      for(String smokerName : expected.getNames(1)) {
+        assertThat(summary.getCount(sexName, smokerName)).isEqualTo(expected.getCount(sexName, smokerName));
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_merge_differentVariables() {
+    new CrosstabSummary.Builder(ImmutableList.of(sex, smoker))
+        .merge(new CrosstabSummary.Builder(ImmutableList.of(smoker, sex)));
+  }
+
+  private List<Value> values(String... values) {
+    List<Value> list = Lists.newArrayList();
+    for(String value : values) {
+      list.add(TextType.get().valueOf(value));
+    }
+    return list;
+  }
+
+  private void mockVectorSource(Variable variable, Random random, String... names) {
+    // the value of each entity is fixed, whatever the batch it is read in
+    final Map<VariableEntity, Value> values = Maps.newHashMap();
+    for(VariableEntity entity : table.getVariableEntities()) {
+      values.put(entity, TextType.get().valueOf(names[random.nextInt(names.length)]));
+    }
+    VectorSource vectorSource = mock(VectorSource.class);
+    when(vectorSource.getValues(Mockito.<SortedSet<VariableEntity>>any())).thenAnswer(new Answer<Iterable<Value>>() {
+      @Override
+      public Iterable<Value> answer(InvocationOnMock invocation) throws Throwable {
+        List<Value> batch = Lists.newArrayList();
+        for(Object entity : (SortedSet<?>) invocation.getArguments()[0]) {
+          batch.add(values.get(entity));
+        }
+        return batch;
+      }
+    });
+    VariableValueSource valueSource = mock(VariableValueSource.class);
+    when(valueSource.getVariable()).thenReturn(variable);
+    when(valueSource.supportVectorSource()).thenReturn(true);
+    when(valueSource.asVectorSource()).thenReturn(vectorSource);
+    when(table.getVariableValueSource(variable.getName())).thenReturn(valueSource);
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.obiba.magma.Variable;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.DateTimeType;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class DefaultVariableSummaryTest extends AbstractMagmaTest {
+
+  @Test
+  public void test_merge() {
+    DefaultVariableSummary.Builder builder = new DefaultVariableSummary.Builder(newVariable());
+    builder.addValue(DateTimeType.get().now());
+    DefaultVariableSummary.Builder other = new DefaultVariableSummary.Builder(newVariable());
+    builder.addValue(DateTimeType.get().now());
+    other.addValue(DateTimeType.get().nullValue());
+
+    assertThat(builder.merge(other).build().getN()).isEqualTo(3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_merge_differentVariables() {
+    new DefaultVariableSummary.Builder(newVariable())
+        .merge(new DefaultVariableSummary.Builder(Variable.Builder.newVariable("other", DateTimeType.get(), "Participant").build()));
+  }
+
+  @Test
+  public void test_merge_differentSettings() {
+    List<DefaultVariableSummary.Builder> others = ImmutableList
+        .of(new DefaultVariableSummary.Builder(newVariable()).filter(10, null),
+            new DefaultVariableSummary.Builder(newVariable()).filter(null, 100));
+    for(DefaultVariableSummary.Builder other : others) {
+      try {
+        new DefaultVariableSummary.Builder(newVariable()).merge(other);
+        fail("Merged summaries of different settings");
+      } catch(IllegalArgumentException e) {
+        assertThat(e.getMessage()).startsWith("Cannot merge summaries of different");
+      }
+    }
+    // same settings
+    new DefaultVariableSummary.Builder(newVariable()).filter(10, 100)
+        .merge(new DefaultVariableSummary.Builder(newVariable()).filter(10, 100));
+  }
+
+  private static Variable newVariable() {
+    return Variable.Builder.newVariable("date", DateTimeType.get(), "Participant").build();
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.obiba.magma.Coordinate;
+import org.obiba.magma.Variable;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.PointType;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class GeoVariableSummaryTest extends AbstractMagmaTest {
+
+  @Test
+  public void test_points_are_not_kept_by_default() {
+    GeoVariableSummary summary = addGrid(new GeoVariableSummary.Builder(newVariable())).build();
+
+    assertThat(summary.getN()).isEqualTo(100);
+    assertThat(summary.getPoints()).isEmpty();
+    assertThat(summary.getPoints(new Coordinate(0, 0), new Coordinate(10, 10))).isEmpty();
+    assertThat(summary.getConvexHull()).isNotEmpty();
+    assertThat(summary.getCoordinates()).isNotEmpty();
+  }
+
+  @Test
+  public void test_points_are_kept_with_resolution() {
+    GeoVariableSummary summary = addGrid(new GeoVariableSummary.Builder(newVariable()).resolution(5.0)).build();
+
+    assertThat(summary.getPoints()).hasSize(4);
+    assertThat(summary.getPoints(new Coordinate(0, 0), new Coordinate(4.9, 4.9))).hasSize(1);
+  }
+
+  @Test
+  public void test_points_are_kept_with_sample_size() {
+    GeoVariableSummary summary = addGrid(new GeoVariableSummary.Builder(newVariable()).sampleSize(10)).build();
+
+    assertThat(summary.getPoints()).hasSize(10);
+    assertThat(summary.getCoordinates()).isNotEmpty();
+  }
+
+  @SuppressWarnings("deprecation")
+  @Test
+  public void test_builder_coords() {
+    GeoVariableSummary.Builder builder = addGrid(new GeoVariableSummary.Builder(newVariable()));
+
+    assertThat(builder.getCoords()).hasSize(100).contains(new Coordinate(0, 0), new Coordinate(9, 9));
+  }
+
+  @Test
+  public void test_merge_differentSettings() {
+    List<GeoVariableSummary.Builder> others = ImmutableList
+        .of(new GeoVariableSummary.Builder(newVariable()).resolution(5.0),
+            new GeoVariableSummary.Builder(newVariable()).sampleSize(10),
+            new GeoVariableSummary.Builder(newVariable()).filter(10, null),
+            new GeoVariableSummary.Builder(newVariable()).filter(null, 100));
+    for(GeoVariableSummary.Builder other : others) {
+      try {
+        new GeoVariableSummary.Builder(newVariable()).merge(other);
+        fail("Merged summaries of different settings");
+      } catch(IllegalArgumentException e) {
+        assertThat(e.getMessage()).startsWith("Cannot merge summaries of different");
+      }
+    }
+    // same settings
+    new GeoVariableSummary.Builder(newVariable()).filter(10, 100)
+        .merge(new GeoVariableSummary.Builder(newVariable()).filter(10, 100));
+  }
+
+  private static Variable newVariable() {
+    return Variable.Builder.newVariable("geo", PointType.get(), "Participant").build();
+  }
+
+  private static GeoVariableSummary.Builder addGrid(GeoVariableSummary.Builder builder) {
+    for(int x = 0; x < 10; x++) {
+      for(int y = 0; y < 10; y++) {
+        builder.addValue(PointType.get().valueOf(new Coordinate(x, y)));
+      }
+    }
+    return builder;
+  }
+
+}
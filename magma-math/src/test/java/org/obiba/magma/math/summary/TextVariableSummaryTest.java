@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.obiba.magma.Variable;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.TextType;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class TextVariableSummaryTest extends AbstractMagmaTest {
+
+  @Test
+  public void test_merge() {
+    TextVariableSummary.Builder builder = new TextVariableSummary.Builder(newVariable());
+    builder.addValue(TextType.get().valueOf("a"));
+    TextVariableSummary.Builder other = new TextVariableSummary.Builder(newVariable());
+    builder.addValue(TextType.get().valueOf("b"));
+    other.addValue(TextType.get().nullValue());
+
+    assertThat(builder.merge(other).build().getN()).isEqualTo(3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_merge_differentVariables() {
+    new TextVariableSummary.Builder(newVariable())
+        .merge(new TextVariableSummary.Builder(Variable.Builder.newVariable("other", TextType.get(), "Participant").build()));
+  }
+
+  @Test
+  public void test_merge_differentSettings() {
+    List<TextVariableSummary.Builder> others = ImmutableList
+        .of(new TextVariableSummary.Builder(newVariable()).filter(10, null),
+            new TextVariableSummary.Builder(newVariable()).filter(null, 100));
+    for(TextVariableSummary.Builder other : others) {
+      try {
+        new TextVariableSummary.Builder(newVariable()).merge(other);
+        fail("Merged summaries of different settings");
+      } catch(IllegalArgumentException e) {
+        assertThat(e.getMessage()).startsWith("Cannot merge summaries of different");
+      }
+    }
+    // same settings
+    new TextVariableSummary.Builder(newVariable()).filter(10, 100)
+        .merge(new TextVariableSummary.Builder(newVariable()).filter(10, 100));
+  }
+
+  private static Variable newVariable() {
+    return Variable.Builder.newVariable("text", TextType.get(), "Participant").build();
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.VectorSource;
+import org.obiba.magma.support.VariableEntityBean;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.IntegerType;
+import org.obiba.magma.type.TextType;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ValueTableSummaryBuilderTest extends AbstractMagmaTest {
+
+  private final Variable age = Variable.Builder.newVariable("age", IntegerType.get(), "Participant").build();
+
+  private final Variable answer = Variable.Builder.newVariable("answer", TextType.get(), "Participant")
+      .addCategories("YES", "NO").build();
+
+  @Test
+  public void test_build_readsEntitiesOnce() {
+    ValueTable table = mockTable();
+    List<VariableSummary> summaries = new ValueTableSummaryBuilder(table) //
+        .batchSize(2) //
+        .add(new ContinuousVariableSummary.Builder(age, ContinuousVariableSummary.Distribution.normal)) //
+        .add(new CategoricalVariableSummary.Builder(answer)) //
+        .build();
+
+    verify(table, times(1)).getVariableEntities();
+    assertThat(summaries).hasSize(2);
+    assertAge((ContinuousVariableSummary) summaries.get(0), 5, 3.0);
+    assertAnswer((CategoricalVariableSummary) summaries.get(1), 5, "YES");
+  }
+
+  @Test
+  public void test_build_filter() {
+    List<VariableSummary> summaries = new ValueTableSummaryBuilder(mockTable()) //
+        .filter(1, 1) //
+        .add(new ContinuousVariableSummary.Builder(age, ContinuousVariableSummary.Distribution.normal)) //
+        .add(new CategoricalVariableSummary.Builder(answer)) //
+        .build();
+
+    ContinuousVariableSummary ageSummary = (ContinuousVariableSummary) summaries.get(0);
+    assertAge(ageSummary, 1, 2.0);
+    assertThat(ageSummary.getOffset()).isEqualTo(1);
+    assertThat(ageSummary.getLimit()).isEqualTo(1);
+    assertAnswer((CategoricalVariableSummary) summaries.get(1), 1, "NO");
+  }
+
+  @Test
+  public void test_build_parallel() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<VariableSummary> summaries = new ValueTableSummaryBuilder(mockTable()) //
+          .parallel(executor, 2) //
+          .add(new ContinuousVariableSummary.Builder(age, ContinuousVariableSummary.Distribution.normal)) //
+          .add(new CategoricalVariableSummary.Builder(answer)) //
+          .add(new TextVariableSummary.Builder(answer)) //
+          .build();
+
+      assertAge((ContinuousVariableSummary) summaries.get(0), 5, 3.0);
+      assertAnswer((CategoricalVariableSummary) summaries.get(1), 5, "YES");
+      assertThat(((TextVariableSummary) summaries.get(2)).getN()).isEqualTo(5);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void assertAge(ContinuousVariableSummary summary, long n, double mean) {
+    assertThat(summary.getDescriptiveStats().getN()).isEqualTo(n);
+    assertThat(summary.getDescriptiveStats().getMean()).isEqualTo(mean);
+  }
+
+  private void assertAnswer(CategoricalVariableSummary summary, long n, String mode) {
+    assertThat(summary.getN()).isEqualTo(n);
+    assertThat(summary.getMode()).isEqualTo(mode);
+  }
+
+  private ValueTable mockTable() {
+    List<VariableEntity> entities = Lists.newArrayList();
+    for(int i = 1; i <= 5; i++) {
+      entities.add(new VariableEntityBean("Participant", "" + i));
+    }
+    ValueTable table = mock(ValueTable.class);
+    when(table.getName()).thenReturn("table");
+    when(table.getVariableEntities()).thenReturn(ImmutableSortedSet.copyOf(entities));
+    mockValueSource(table, age, ImmutableMap.<String, Object>builder().put("1", 1).put("2", 2).put("3", 3).put("4", 4)
+        .put("5", 5).build());
+    mockValueSource(table, answer,
+        ImmutableMap.<String, Object>builder().put("1", "YES").put("2", "NO").put("3", "YES").put("4", "YES")
+            .put("5", "NO").build());
+    return table;
+  }
+
+  private void mockValueSource(ValueTable table, final Variable variable, final Map<String, Object> values) {
+    VectorSource vectorSource = mock(VectorSource.class);
+    when(vectorSource.getValues(Mockito.<SortedSet<VariableEntity>>any())).thenAnswer(new Answer<Iterable<Value>>() {
+      @Override
+      public Iterable<Value> answer(InvocationOnMock invocation) throws Throwable {
+        @SuppressWarnings("unchecked")
+        Iterable<VariableEntity> entities = (Iterable<VariableEntity>) invocation.getArguments()[0];
+        List<Value> result = Lists.newArrayList();
+        for(VariableEntity entity : entities) {
+          result.add(variable.getValueType().valueOf(values.get(entity.getIdentifier())));
+        }
+        return result;
+      }
+    });
+
+    VariableValueSource valueSource = mock(VariableValueSource.class);
+    when(valueSource.supportVectorSource()).thenReturn(true);
+    when(valueSource.asVectorSource()).thenReturn(vectorSource);
+    when(table.getVariableValueSource(variable.getName())).thenReturn(valueSource);
+  }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014 OBiBa. All rights reserved.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the GNU Public License v3.0.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.obiba.magma.math.summary;
+
+import java.util.Date;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.validation.constraints.NotNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.obiba.magma.MagmaCacheExtension;
+import org.obiba.magma.MagmaEngine;
+import org.obiba.magma.Timestamps;
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+import org.obiba.magma.VariableEntity;
+import org.obiba.magma.VariableValueSource;
+import org.obiba.magma.VectorSource;
+import org.obiba.magma.support.Values;
+import org.obiba.magma.support.VariableEntityBean;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.DateTimeType;
+import org.obiba.magma.type.IntegerType;
+import org.obiba.magma.type.TextType;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VariableSummaryCacheTest extends AbstractMagmaTest {
+
+  private final Variable answer = Variable.Builder.newVariable("answer", TextType.get(), "Participant")
+      .addCategories("YES", "NO").build();
+
+  private final Variable age = Variable.Builder.newVariable("age", IntegerType.get(), "Participant").build();
+
+  private ValueTable table;
+
+  private Timestamps timestamps;
+
+  private VectorSource answers;
+
+  @Override
+  @Before
+  public void before() {
+    super.before();
+    table = mock(ValueTable.class);
+    timestamps = mock(Timestamps.class);
+    when(timestamps.getLastUpdate()).thenReturn(DateTimeType.get().valueOf(new Date(1000)));
+    when(table.getName()).thenReturn("table");
+    when(table.getTimestamps()).thenReturn(timestamps);
+    when(table.getVariableEntities())
+        .thenReturn(ImmutableSortedSet.<VariableEntity>of(new VariableEntityBean("Participant", "1")));
+    when(table.getVariables()).thenReturn(ImmutableList.of(answer, age));
+    answers = mockVectorSource(answer, Values.asValues(TextType.get(), "YES"));
+    mockVectorSource(age, Values.asValues(IntegerType.get(), 30));
+  }
+
+  @Test
+  public void test_getSummary_cachedUntilUpdated() {
+    MagmaEngine.get().extend(new MagmaCacheExtension(new ConcurrentMapCacheManager()));
+    VariableSummaryCache summaryCache = new VariableSummaryCache();
+
+    CategoricalVariableSummary summary = summaryCache.getSummary(newFactory());
+    assertThat(summaryCache.getSummary(newFactory())).isSameAs(summary);
+    assertThat(summaryCache.isCached(newFactory())).isTrue();
+    verify(answers, times(1)).getValues(Mockito.<SortedSet<VariableEntity>>any());
+
+    when(timestamps.getLastUpdate()).thenReturn(DateTimeType.get().valueOf(new Date(2000)));
+    assertThat(summaryCache.isCached(newFactory())).isFalse();
+    assertThat(summaryCache.getSummary(newFactory())).isNotSameAs(summary);
+    verify(answers, times(2)).getValues(Mockito.<SortedSet<VariableEntity>>any());
+  }
+
+  @Test
+  public void test_getSummary_crosstabCachedUntilUpdated() {
+    MagmaEngine.get().extend(new MagmaCacheExtension(new ConcurrentMapCacheManager()));
+    VariableSummaryCache summaryCache = new VariableSummaryCache();
+    CrosstabSummaryFactory factory = new CrosstabSummaryFactory.Builder().variables(answer, age).table(table).build();
+
+    CrosstabSummary summary = summaryCache.getSummary(factory);
+    assertThat(summary.getCount("YES", CrosstabSummary.OTHER_NAME)).isEqualTo(1);
+    assertThat(summaryCache.getSummary(factory)).isSameAs(summary);
+    assertThat(summaryCache.isCached(newFactory())).isFalse();
+
+    when(timestamps.getLastUpdate()).thenReturn(DateTimeType.get().valueOf(new Date(2000)));
+    assertThat(summaryCache.isCached(factory)).isFalse();
+    assertThat(summaryCache.getSummary(factory)).isNotSameAs(summary);
+  }
+
+  @Test
+  public void test_getSummary_withoutCache() {
+    VariableSummaryCache summaryCache = new VariableSummaryCache();
+    assertThat(summaryCache.getSummary(newFactory())).isNotSameAs(summaryCache.getSummary(newFactory()));
+    assertThat(summaryCache.isCached(newFactory())).isFalse();
+  }
+
+  @Test
+  public void test_warmUp() throws Exception {
+    MagmaEngine.get().extend(new MagmaCacheExtension(new ConcurrentMapCacheManager()));
+    VariableSummaryCache summaryCache = new VariableSummaryCache();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      summaryCache.warmUp(executor, table).get();
+    } finally {
+      executor.shutdown();
+    }
+
+    verify(table, times(1)).getVariableEntities();
+    assertThat(summaryCache.isCached(newFactory())).isTrue();
+    assertThat(summaryCache.getSummary(newFactory()).getMode()).isEqualTo("YES");
+    assertThat(summaryCache.isCached(new ContinuousVariableSummaryFactory.Builder().variable(age).table(table)
+        .distribution(ContinuousVariableSummary.Distribution.normal).percentiles(null)
+        .intervals(ContinuousVariableSummary.DEFAULT_INTERVALS).build())).isTrue();
+  }
+
+  @Test
+  public void test_warmUp_factoryWithoutBuilder() throws Exception {
+    MagmaEngine.get().extend(new MagmaCacheExtension(new ConcurrentMapCacheManager()));
+    VariableSummaryCache summaryCache = new VariableSummaryCache();
+    SummaryOnlyFactory factory = new SummaryOnlyFactory();
+    factory.setVariable(answer);
+    factory.setTable(table);
+    factory.setValueSource(table.getVariableValueSource(answer.getName()));
+    assertThat(factory.newBuilder()).isNull();
+    assertThat(factory.getOffset()).isNull();
+    assertThat(factory.getLimit()).isNull();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      summaryCache.warmUp(executor, table, ImmutableList.of(factory)).get();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(factory.computed).isEqualTo(1);
+    assertThat(summaryCache.isCached(factory)).isTrue();
+    assertThat(summaryCache.getSummary(factory).getMode()).isEqualTo("YES");
+    assertThat(factory.computed).isEqualTo(1);
+  }
+
+  private CategoricalVariableSummaryFactory newFactory() {
+    return new CategoricalVariableSummaryFactory.Builder().variable(answer).table(table)
+        .valueSource(table.getVariableValueSource(answer.getName())).build();
+  }
+
+  private VectorSource mockVectorSource(Variable variable, Iterable<Value> values) {
+    VectorSource vectorSource = mock(VectorSource.class);
+    when(vectorSource.getValues(Mockito.<SortedSet<VariableEntity>>any())).thenReturn(values);
+    VariableValueSource valueSource = mock(VariableValueSource.class);
+    when(valueSource.supportVectorSource()).thenReturn(true);
+    when(valueSource.asVectorSource()).thenReturn(vectorSource);
+    when(table.getVariableValueSource(variable.getName())).thenReturn(valueSource);
+    return vectorSource;
+  }
+
+  /**
+   * A factory that only implements the methods that are not defaults.
+   */
+  private static class SummaryOnlyFactory extends AbstractVariableSummaryFactory<CategoricalVariableSummary> {
+
+    private int computed;
+
+    @NotNull
+    @Override
+    public CategoricalVariableSummary getSummary() {
+      computed++;
+      return new CategoricalVariableSummary.Builder(getVariable()).addTable(getTable(), getValueSource()).build();
+    }
+
+    @NotNull
+    @Override
+    public String getCacheKey() {
+      return "summary-only;" + getVariable().getName();
+    }
+  }
+
+}
@@ -7,6 +7,20 @@ public interface Authorizer extends Serializable {
 
   boolean isPermitted(String permission);
 
+  /**
+   * Check several permissions at once. By default, each permission is checked by {@link #isPermitted(String)}.
+   *
+   * @param permissions
+   * @return whether each permission is permitted, in the same order
+   */
+  default boolean[] isPermitted(String... permissions) {
+    boolean[] permitted = new boolean[permissions.length];
+    for(int i = 0; i < permissions.length; i++) {
+      permitted[i] = isPermitted(permissions[i]);
+    }
+    return permitted;
+  }
+
   <V> V silentSudo(Callable<V> sudo);
 
   <V> V sudo(Callable<V> sudo) throws Exception;
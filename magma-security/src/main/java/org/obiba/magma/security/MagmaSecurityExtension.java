@@ -13,7 +13,19 @@ public class MagmaSecurityExtension implements MagmaEngineExtension {
 
   private static final long serialVersionUID = 8901321475619160822L;
 
-  private final Authorizer authorizer = new ShiroAuthorizer();
+  private final Authorizer authorizer;
+
+  public MagmaSecurityExtension() {
+    this(new ShiroAuthorizer());
+  }
+
+  /**
+   * @param authorizer for instance a {@link ShiroAuthorizer} with a {@link PermissionCache}
+   */
+  public MagmaSecurityExtension(Authorizer authorizer) {
+    if(authorizer == null) throw new IllegalArgumentException("authorizer cannot be null");
+    this.authorizer = authorizer;
+  }
 
   @Override
   public String getName() {
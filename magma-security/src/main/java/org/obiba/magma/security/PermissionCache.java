@@ -0,0 +1,110 @@
+package org.obiba.magma.security;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+
+/**
+ * Permission decisions of subjects, kept for a limited time. Decisions must be invalidated when the permissions of a
+ * subject, or of all subjects, are changed before they expire.
+ */
+public class PermissionCache {
+
+  private static final long DEFAULT_MAXIMUM_SIZE = 100000;
+
+  private final Cache<Key, Boolean> decisions;
+
+  /**
+   * @param duration how long a decision is kept
+   * @param unit
+   */
+  public PermissionCache(long duration, TimeUnit unit) {
+    this(duration, unit, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * @param duration how long a decision is kept
+   * @param unit
+   * @param maximumSize maximum number of decisions kept, for all the subjects
+   */
+  public PermissionCache(long duration, TimeUnit unit, long maximumSize) {
+    this(duration, unit, maximumSize, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  PermissionCache(long duration, TimeUnit unit, long maximumSize, Ticker ticker) {
+    decisions = CacheBuilder.newBuilder().expireAfterWrite(duration, unit).maximumSize(maximumSize).ticker(ticker)
+        .build();
+  }
+
+  /**
+   * Get the decision for a permission of a subject.
+   *
+   * @param subject
+   * @param permission
+   * @return null if the decision is not known
+   */
+  @Nullable
+  public Boolean get(Object subject, String permission) {
+    return decisions.getIfPresent(new Key(subject, permission));
+  }
+
+  public void put(Object subject, String permission, boolean permitted) {
+    decisions.put(new Key(subject, permission), permitted);
+  }
+
+  /**
+   * Forget the decisions of a subject.
+   *
+   * @param subject
+   */
+  public void invalidate(final Object subject) {
+    Iterables.removeIf(decisions.asMap().keySet(), new Predicate<Key>() {
+      @Override
+      public boolean apply(Key input) {
+        return input.subject.equals(subject);
+      }
+    });
+  }
+
+  /**
+   * Forget the decisions of all the subjects.
+   */
+  public void invalidateAll() {
+    decisions.invalidateAll();
+  }
+
+  private static final class Key {
+
+    private final Object subject;
+
+    private final String permission;
+
+    private Key(Object subject, String permission) {
+      this.subject = subject;
+      this.permission = permission;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) return true;
+      if(!(obj instanceof Key)) return false;
+      Key other = (Key) obj;
+      return subject.equals(other.subject) && permission.equals(other.permission);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(subject, permission);
+    }
+  }
+
+}
@@ -1,5 +1,6 @@
 package org.obiba.magma.security;
 
+import java.util.List;
 import java.util.Set;
 
 import org.obiba.magma.Datasource;
@@ -10,9 +11,8 @@ import org.obiba.magma.security.permissions.Permissions;
 import org.obiba.magma.security.permissions.Permissions.DatasourcePermissionBuilder;
 import org.obiba.magma.support.AbstractDatasourceWrapper;
 
-import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 
 public class SecuredDatasource extends AbstractDatasourceWrapper {
 
@@ -33,15 +33,18 @@ public class SecuredDatasource extends AbstractDatasourceWrapper {
 
   @Override
   public Set<ValueTable> getValueTables() {
-    return ImmutableSet.copyOf(Iterables.transform(
-        Iterables.filter(getWrappedDatasource().getValueTables(), builder().tables().read().asPredicate(authz)),
-        new Function<ValueTable, ValueTable>() {
-
-          @Override
-          public ValueTable apply(ValueTable from) {
-            return new SecuredValueTable(authz, SecuredDatasource.this, from);
-          }
-        }));
+    // authorized in one pass
+    List<ValueTable> tables = ImmutableList.copyOf(getWrappedDatasource().getValueTables());
+    String[] permissions = new String[tables.size()];
+    for(int i = 0; i < permissions.length; i++) {
+      permissions[i] = builder().table(tables.get(i).getName()).read().build();
+    }
+    boolean[] permitted = authz.isPermitted(permissions);
+    ImmutableSet.Builder<ValueTable> readable = ImmutableSet.builder();
+    for(int i = 0; i < permitted.length; i++) {
+      if(permitted[i]) readable.add(new SecuredValueTable(authz, this, tables.get(i)));
+    }
+    return readable.build();
   }
 
   @Override
@@ -1,5 +1,7 @@
 package org.obiba.magma.security;
 
+import java.util.List;
+
 import javax.validation.constraints.NotNull;
 
 import org.obiba.magma.Datasource;
@@ -10,8 +12,7 @@ import org.obiba.magma.security.permissions.Permissions;
 import org.obiba.magma.security.permissions.Permissions.ValueTablePermissionBuilder;
 import org.obiba.magma.support.AbstractValueTableWrapper;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.ImmutableList;
 
 public class SecuredValueTable extends AbstractValueTableWrapper {
 
@@ -53,14 +54,18 @@ public class SecuredValueTable extends AbstractValueTableWrapper {
 
   @Override
   public Iterable<Variable> getVariables() {
-    return Iterables.filter(super.getVariables(), new Predicate<Variable>() {
-
-      @Override
-      public boolean apply(Variable input) {
-        return isReadable(input);
-      }
-
-    });
+    // authorized in one pass
+    List<Variable> variables = ImmutableList.copyOf(super.getVariables());
+    String[] permissions = new String[variables.size()];
+    for(int i = 0; i < permissions.length; i++) {
+      permissions[i] = readPermission(variables.get(i).getName());
+    }
+    boolean[] permitted = authz.isPermitted(permissions);
+    ImmutableList.Builder<Variable> readable = ImmutableList.builder();
+    for(int i = 0; i < permitted.length; i++) {
+      if(permitted[i]) readable.add(variables.get(i));
+    }
+    return readable.build();
   }
 
   @Override
@@ -69,7 +74,11 @@ public class SecuredValueTable extends AbstractValueTableWrapper {
   }
 
   private boolean isReadable(String name) {
-    return authz.isPermitted(builder().variable(name).read().build());
+    return authz.isPermitted(readPermission(name));
+  }
+
+  private String readPermission(String name) {
+    return builder().variable(name).read().build();
   }
 
   private boolean isReadable(Variable variable) {
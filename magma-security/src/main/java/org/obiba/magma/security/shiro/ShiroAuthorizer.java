@@ -1,29 +1,86 @@
 package org.obiba.magma.security.shiro;
 
+import java.util.List;
 import java.util.concurrent.Callable;
 
+import javax.annotation.Nullable;
+
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.session.Session;
+import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.obiba.magma.security.Authorizer;
+import org.obiba.magma.security.PermissionCache;
 import org.obiba.shiro.authc.SudoAuthToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 public class ShiroAuthorizer implements Authorizer {
 
   private static final long serialVersionUID = -3683635184800703377L;
 
   private static final Logger log = LoggerFactory.getLogger(ShiroAuthorizer.class);
 
+  @Nullable
+  private final transient PermissionCache permissionCache;
+
+  public ShiroAuthorizer() {
+    this(null);
+  }
+
+  /**
+   * @param permissionCache decisions cache, keyed by the principals of the subjects
+   */
+  public ShiroAuthorizer(@Nullable PermissionCache permissionCache) {
+    this.permissionCache = permissionCache;
+  }
+
+  @Nullable
+  public PermissionCache getPermissionCache() {
+    return permissionCache;
+  }
+
   @Override
   public boolean isPermitted(String permission) {
-    boolean p = SecurityUtils.getSubject().isPermitted(permission);
-    log.debug(String.format("isPermitted(%s, %s)==%s", SecurityUtils.getSubject().getPrincipal(), permission, p));
-    Session session = SecurityUtils.getSubject().getSession(false);
+    return isPermitted(new String[] { permission })[0];
+  }
+
+  @Override
+  public boolean[] isPermitted(String... permissions) {
+    Subject subject = SecurityUtils.getSubject();
+    // anonymous subjects decisions are not cached
+    PrincipalCollection principals = permissionCache == null ? null : subject.getPrincipals();
+    if(principals != null && principals.isEmpty()) principals = null;
+    boolean[] permitted = new boolean[permissions.length];
+    List<Integer> unknown = Lists.newArrayList();
+    for(int i = 0; i < permissions.length; i++) {
+      Boolean decision = principals == null ? null : permissionCache.get(principals, permissions[i]);
+      if(decision == null) {
+        unknown.add(i);
+      } else {
+        permitted[i] = decision;
+      }
+    }
+    if(!unknown.isEmpty()) {
+      String[] toCheck = new String[unknown.size()];
+      for(int i = 0; i < toCheck.length; i++) {
+        toCheck[i] = permissions[unknown.get(i)];
+      }
+      boolean[] checked = subject.isPermitted(toCheck);
+      for(int i = 0; i < toCheck.length; i++) {
+        permitted[unknown.get(i)] = checked[i];
+        if(principals != null) permissionCache.put(principals, toCheck[i], checked[i]);
+        if(log.isDebugEnabled()) {
+          log.debug("isPermitted({}, {})=={}", subject.getPrincipal(), toCheck[i], checked[i]);
+        }
+      }
+    }
+    Session session = subject.getSession(false);
     if(session != null) session.touch();
-    return p;
+    return permitted;
   }
 
   @Override
@@ -0,0 +1,87 @@
+package org.obiba.magma.security;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PermissionCacheTest {
+
+  @Test
+  public void test_decisions_are_kept_by_subject() {
+    PermissionCache cache = new PermissionCache(1, TimeUnit.MINUTES);
+    cache.put("alice", "a", true);
+    cache.put("alice", "b", false);
+
+    assertThat(cache.get("alice", "a")).isTrue();
+    assertThat(cache.get("alice", "b")).isFalse();
+    assertThat(cache.get("alice", "c")).isNull();
+    assertThat(cache.get("bob", "a")).isNull();
+  }
+
+  @Test
+  public void test_decisions_expire() {
+    FakeTicker ticker = new FakeTicker();
+    PermissionCache cache = new PermissionCache(1, TimeUnit.MINUTES, 10, ticker);
+    cache.put("alice", "a", true);
+
+    ticker.advance(59, TimeUnit.SECONDS);
+    assertThat(cache.get("alice", "a")).isTrue();
+    ticker.advance(1, TimeUnit.SECONDS);
+    assertThat(cache.get("alice", "a")).isNull();
+  }
+
+  @Test
+  public void test_invalidate_subject() {
+    PermissionCache cache = new PermissionCache(1, TimeUnit.MINUTES);
+    cache.put("alice", "a", true);
+    cache.put("alice", "b", true);
+    cache.put("bob", "a", true);
+
+    cache.invalidate("alice");
+
+    assertThat(cache.get("alice", "a")).isNull();
+    assertThat(cache.get("alice", "b")).isNull();
+    assertThat(cache.get("bob", "a")).isTrue();
+  }
+
+  @Test
+  public void test_invalidate_all() {
+    PermissionCache cache = new PermissionCache(1, TimeUnit.MINUTES);
+    cache.put("alice", "a", true);
+    cache.put("bob", "a", false);
+
+    cache.invalidateAll();
+
+    assertThat(cache.get("alice", "a")).isNull();
+    assertThat(cache.get("bob", "a")).isNull();
+  }
+
+  @Test
+  public void test_maximum_size() {
+    PermissionCache cache = new PermissionCache(1, TimeUnit.MINUTES, 1);
+    cache.put("alice", "a", true);
+    cache.put("alice", "b", true);
+
+    assertThat(cache.get("alice", "a")).isNull();
+    assertThat(cache.get("alice", "b")).isTrue();
+  }
+
+  static class FakeTicker extends Ticker {
+
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+  }
+
+}
@@ -0,0 +1,145 @@
+package org.obiba.magma.security;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.obiba.magma.NoSuchVariableException;
+import org.obiba.magma.ValueTable;
+import org.obiba.magma.Variable;
+import org.obiba.magma.security.permissions.Permissions;
+import org.obiba.magma.support.StaticDatasource;
+import org.obiba.magma.support.StaticValueTable;
+import org.obiba.magma.test.AbstractMagmaTest;
+import org.obiba.magma.type.TextType;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class SecuredDatasourceTest extends AbstractMagmaTest {
+
+  private StaticDatasource datasource;
+
+  @Override
+  @Before
+  public void before() {
+    super.before();
+    datasource = new StaticDatasource("ds");
+    for(String name : new String[] { "t1", "t2", "t3" }) {
+      StaticValueTable table = new StaticValueTable(datasource, name, ImmutableList.of("1", "2"));
+      table.addVariables(TextType.get(), "a", "b", "c");
+      datasource.addValueTable(table);
+    }
+  }
+
+  @Test
+  public void test_default_bulk_check() {
+    RecordingAuthorizer authorizer = new RecordingAuthorizer("x", "z");
+
+    assertThat(authorizer.isPermitted("x", "y", "z")).isEqualTo(new boolean[] { true, false, true });
+    assertThat(authorizer.isPermitted()).isEmpty();
+  }
+
+  @Test
+  public void test_tables_filtered_by_bulk_result() {
+    RecordingAuthorizer authorizer = new RecordingAuthorizer(readTable("t1"), readTable("t3"));
+    SecuredDatasource secured = new SecuredDatasource(authorizer, datasource);
+
+    Set<String> names = Sets.newHashSet();
+    for(ValueTable table : secured.getValueTables()) {
+      names.add(table.getName());
+      assertThat(table).isInstanceOf(SecuredValueTable.class);
+    }
+
+    assertThat(names).containsOnly("t1", "t3");
+    // a single check of all the tables
+    assertThat(authorizer.batches).hasSize(1);
+    assertThat(authorizer.batches.get(0)).hasSize(3);
+  }
+
+  @Test
+  public void test_no_readable_tables() {
+    RecordingAuthorizer authorizer = new RecordingAuthorizer();
+    SecuredDatasource secured = new SecuredDatasource(authorizer, datasource);
+
+    assertThat(secured.getValueTables()).isEmpty();
+    assertThat(secured.hasValueTable("t1")).isFalse();
+  }
+
+  @Test
+  public void test_variables_filtered_by_bulk_result() {
+    ValueTable table = datasource.getValueTable("t1");
+    RecordingAuthorizer authorizer = new RecordingAuthorizer(readTable("t1"), readVariable(table, "a"),
+        readVariable(table, "c"));
+    ValueTable secured = new SecuredDatasource(authorizer, datasource).getValueTable("t1");
+
+    List<String> names = Lists.newArrayList();
+    for(Variable variable : secured.getVariables()) {
+      names.add(variable.getName());
+    }
+
+    assertThat(names).containsExactly("a", "c");
+    assertThat(authorizer.batches).hasSize(1);
+    assertThat(authorizer.batches.get(0)).hasSize(3);
+    assertThat(secured.hasVariable("a")).isTrue();
+    assertThat(secured.hasVariable("b")).isFalse();
+  }
+
+  @Test(expected = NoSuchVariableException.class)
+  public void test_variable_not_readable() {
+    RecordingAuthorizer authorizer = new RecordingAuthorizer(readTable("t1"));
+    new SecuredDatasource(authorizer, datasource).getValueTable("t1").getVariable("b");
+  }
+
+  private String readTable(String name) {
+    return Permissions.DatasourcePermissionBuilder.forDatasource(datasource).table(name).read().build();
+  }
+
+  private String readVariable(ValueTable table, String name) {
+    return Permissions.ValueTablePermissionBuilder.forValueTable(table).variable(name).read().build();
+  }
+
+  /**
+   * Permits a fixed set of permissions, and records the permissions checked at once.
+   */
+  private static class RecordingAuthorizer implements Authorizer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Set<String> permitted;
+
+    private final List<List<String>> batches = Lists.newArrayList();
+
+    private RecordingAuthorizer(String... permitted) {
+      this.permitted = ImmutableSet.copyOf(permitted);
+    }
+
+    @Override
+    public boolean isPermitted(String permission) {
+      return permitted.contains(permission);
+    }
+
+    @Override
+    public boolean[] isPermitted(String... permissions) {
+      batches.add(ImmutableList.copyOf(permissions));
+      return Authorizer.super.isPermitted(permissions);
+    }
+
+    @Override
+    public <V> V silentSudo(Callable<V> sudo) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <V> V sudo(Callable<V> sudo) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+}
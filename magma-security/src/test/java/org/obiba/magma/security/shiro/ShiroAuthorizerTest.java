@@ -0,0 +1,115 @@
+package org.obiba.magma.security.shiro;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.realm.SimpleAccountRealm;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obiba.magma.security.PermissionCache;
+
+import com.google.common.collect.ImmutableSet;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ShiroAuthorizerTest {
+
+  private CountingRealm realm;
+
+  private DefaultSecurityManager securityManager;
+
+  private Subject subject;
+
+  @Before
+  public void before() {
+    realm = new CountingRealm("a", "c");
+    realm.addAccount("alice", "password");
+    securityManager = new DefaultSecurityManager(realm);
+    subject = new Subject.Builder(securityManager).buildSubject();
+    ThreadContext.bind(securityManager);
+    ThreadContext.bind(subject);
+  }
+
+  @After
+  public void after() {
+    ThreadContext.unbindSubject();
+    ThreadContext.unbindSecurityManager();
+    securityManager.destroy();
+  }
+
+  @Test
+  public void test_cache_miss_then_hit() {
+    subject.login(new UsernamePasswordToken("alice", "password"));
+    PermissionCache cache = new PermissionCache(1, TimeUnit.MINUTES);
+    ShiroAuthorizer authorizer = new ShiroAuthorizer(cache);
+
+    assertThat(authorizer.isPermitted("a", "b", "c")).isEqualTo(new boolean[] { true, false, true });
+    assertThat(realm.checks.get()).isEqualTo(3);
+    assertThat(cache.get(subject.getPrincipals(), "b")).isFalse();
+
+    // only the unknown decisions are checked
+    assertThat(authorizer.isPermitted("c", "d", "a")).isEqualTo(new boolean[] { true, false, true });
+    assertThat(realm.checks.get()).isEqualTo(4);
+    assertThat(authorizer.isPermitted("a")).isTrue();
+    assertThat(realm.checks.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void test_invalidated_decisions_are_checked_again() {
+    subject.login(new UsernamePasswordToken("alice", "password"));
+    PermissionCache cache = new PermissionCache(1, TimeUnit.MINUTES);
+    ShiroAuthorizer authorizer = new ShiroAuthorizer(cache);
+    authorizer.isPermitted("a", "b");
+
+    cache.invalidate(subject.getPrincipals());
+
+    assertThat(authorizer.isPermitted("a", "b")).isEqualTo(new boolean[] { true, false });
+    assertThat(realm.checks.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void test_without_cache() {
+    subject.login(new UsernamePasswordToken("alice", "password"));
+    ShiroAuthorizer authorizer = new ShiroAuthorizer();
+
+    assertThat(authorizer.isPermitted("a", "b")).isEqualTo(new boolean[] { true, false });
+    assertThat(authorizer.isPermitted("a", "b")).isEqualTo(new boolean[] { true, false });
+    assertThat(realm.checks.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void test_anonymous_decisions_are_not_cached() {
+    PermissionCache cache = new PermissionCache(1, TimeUnit.MINUTES);
+    ShiroAuthorizer authorizer = new ShiroAuthorizer(cache);
+
+    assertThat(authorizer.isPermitted("a", "b")).isEqualTo(new boolean[] { false, false });
+    assertThat(authorizer.isPermitted("a")).isFalse();
+  }
+
+  /**
+   * Permits a fixed set of permissions to authenticated subjects, and counts the permission checks.
+   */
+  private static class CountingRealm extends SimpleAccountRealm {
+
+    private final ImmutableSet<String> permitted;
+
+    private final AtomicInteger checks = new AtomicInteger();
+
+    private CountingRealm(String... permitted) {
+      this.permitted = ImmutableSet.copyOf(permitted);
+    }
+
+    @Override
+    public boolean isPermitted(PrincipalCollection principals, String permission) {
+      checks.incrementAndGet();
+      return permitted.contains(permission);
+    }
+  }
+
+}
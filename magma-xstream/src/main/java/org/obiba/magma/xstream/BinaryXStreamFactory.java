@@ -0,0 +1,20 @@
+package org.obiba.magma.xstream;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
+import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
+
+/**
+ * Creates {@code XStream} instances that use the same converters as {@link DefaultXStreamFactory} but read and write a
+ * compact binary form instead of XML, in which node and attribute names are written once per stream. The binary form is
+ * read and written through byte streams only.
+ * <p/>
+ * Value sets are better encoded with {@link XStreamValueSetCodec}.
+ */
+public class BinaryXStreamFactory extends DefaultXStreamFactory {
+
+  @Override
+  protected HierarchicalStreamDriver createDriver() {
+    return new BinaryStreamDriver();
+  }
+
+}
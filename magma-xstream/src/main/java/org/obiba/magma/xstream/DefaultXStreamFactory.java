@@ -18,6 +18,8 @@ import com.google.common.collect.Lists;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
+import com.thoughtworks.xstream.io.xml.XppDriver;
 import com.thoughtworks.xstream.mapper.MapperWrapper;
 
 public class DefaultXStreamFactory implements XStreamFactory {
@@ -32,23 +34,12 @@ public class DefaultXStreamFactory implements XStreamFactory {
   @Override
   @SuppressWarnings("PMD.NcssMethodCount")
   public XStream createXStream(@Nullable ReflectionProvider reflectionProvider) {
-    XStream xstream = null;
-    //noinspection IfMayBeConditional
-    if(reflectionProvider == null) {
-      xstream = new XStream() {
-        @Override
-        protected MapperWrapper wrapMapper(MapperWrapper next) {
-          return new MagmaMapper(next);
-        }
-      };
-    } else {
-      xstream = new XStream(reflectionProvider) {
-        @Override
-        protected MapperWrapper wrapMapper(MapperWrapper next) {
-          return new MagmaMapper(next);
-        }
-      };
-    }
+    XStream xstream = new XStream(reflectionProvider, createDriver()) {
+      @Override
+      protected MapperWrapper wrapMapper(MapperWrapper next) {
+        return new MagmaMapper(next);
+      }
+    };
 
     xstream.registerConverter(new VariableConverter(xstream.getMapper()));
     xstream.registerConverter(new CategoryConverter(xstream.getMapper()));
@@ -71,6 +62,15 @@ public class DefaultXStreamFactory implements XStreamFactory {
     return xstream;
   }
 
+  /**
+   * The driver reading and writing the XStream streams, XML by default.
+   *
+   * @return
+   */
+  protected HierarchicalStreamDriver createDriver() {
+    return new XppDriver();
+  }
+
   @Override
   public void registerConverter(Converter converter) {
     converters.add(converter);
@@ -12,6 +12,8 @@ public class MagmaXStreamExtension implements MagmaEngineExtension {
 
   private final transient XStreamFactory currentFactory = new DefaultXStreamFactory();
 
+  private final transient XStreamFactory binaryFactory = new BinaryXStreamFactory();
+
   @edu.umd.cs.findbugs.annotations.SuppressWarnings("SE_TRANSIENT_FIELD_NOT_RESTORED")
   private final transient Map<String, ? extends XStreamFactory> compatibleFactories = ImmutableMap
       .of("1", currentFactory);
@@ -29,6 +31,15 @@ public class MagmaXStreamExtension implements MagmaEngineExtension {
     return currentFactory;
   }
 
+  /**
+   * Get the factory of {@code XStream} instances reading and writing a binary form instead of XML.
+   *
+   * @return
+   */
+  public XStreamFactory getBinaryXStreamFactory() {
+    return binaryFactory;
+  }
+
   public XStreamFactory getXStreamFactory(String version) {
     return compatibleFactories.get(version);
   }
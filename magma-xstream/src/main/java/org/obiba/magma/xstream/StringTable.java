@@ -0,0 +1,102 @@
+package org.obiba.magma.xstream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Strings identified by their position in the table, so that entries encoded by {@link XStreamValueSetCodec} refer to
+ * variable names and value types without repeating them. Strings are only ever appended: the position of a string does
+ * not change once it is in the table.
+ */
+public class StringTable {
+
+  private static final int MAGIC = 0x4D535442;
+
+  private static final byte VERSION = 1;
+
+  private final List<String> strings = new ArrayList<>();
+
+  private final Map<String, Integer> positions = Maps.newHashMap();
+
+  private boolean modified = false;
+
+  /**
+   * Get the position of a string, appending it to the table if needed.
+   *
+   * @param string
+   * @return
+   */
+  public synchronized int indexOf(String string) {
+    Integer position = positions.get(string);
+    if(position == null) {
+      position = strings.size();
+      strings.add(string);
+      positions.put(string, position);
+      modified = true;
+    }
+    return position;
+  }
+
+  /**
+   * Get the string at a position.
+   *
+   * @param position
+   * @return
+   * @throws IOException if there is no such position, the entry referring to it is corrupted
+   */
+  public synchronized String get(int position) throws IOException {
+    if(position < 0 || position >= strings.size()) {
+      throw new IOException("No string at position " + position + " of the string table");
+    }
+    return strings.get(position);
+  }
+
+  public synchronized int size() {
+    return strings.size();
+  }
+
+  /**
+   * Whether strings were appended since the table was last read or written.
+   *
+   * @return
+   */
+  public synchronized boolean isModified() {
+    return modified;
+  }
+
+  public synchronized void write(DataOutput out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    VarLongs.write(out, strings.size());
+    for(String string : strings) {
+      out.writeUTF(string);
+    }
+    modified = false;
+  }
+
+  public synchronized void read(DataInput in) throws IOException {
+    if(in.readInt() != MAGIC) {
+      throw new IOException("Not a string table");
+    }
+    byte version = in.readByte();
+    if(version > VERSION) {
+      throw new IOException("Unsupported string table version: " + version);
+    }
+    strings.clear();
+    positions.clear();
+    int size = (int) VarLongs.read(in);
+    for(int i = 0; i < size; i++) {
+      String string = in.readUTF();
+      positions.put(string, strings.size());
+      strings.add(string);
+    }
+    modified = false;
+  }
+
+}
@@ -0,0 +1,70 @@
+package org.obiba.magma.xstream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable length encoding of longs shared by the binary entries: small numbers are written on few bytes.
+ */
+public final class VarLongs {
+
+  private VarLongs() {}
+
+  /**
+   * Write an unsigned long on 1 to 10 bytes, 7 bits at a time.
+   *
+   * @param out
+   * @param value
+   * @throws IOException
+   */
+  public static void write(DataOutput out, long value) throws IOException {
+    long l = value;
+    while((l & ~0x7FL) != 0) {
+      out.writeByte((int) (l & 0x7F | 0x80));
+      l >>>= 7;
+    }
+    out.writeByte((int) l);
+  }
+
+  /**
+   * Read an unsigned long written by {@link #write(DataOutput, long)}.
+   *
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  public static long read(DataInput in) throws IOException {
+    long value = 0;
+    for(int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if((b & 0x80) == 0) return value;
+    }
+    throw new IOException("Malformed variable length number");
+  }
+
+  /**
+   * Write a signed long in zigzag encoding, so that small negative numbers are written on few bytes too.
+   *
+   * @param out
+   * @param value
+   * @throws IOException
+   */
+  public static void writeZigZag(DataOutput out, long value) throws IOException {
+    write(out, value << 1 ^ value >> 63);
+  }
+
+  /**
+   * Read a signed long written by {@link #writeZigZag(DataOutput, long)}.
+   *
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  public static long readZigZag(DataInput in) throws IOException {
+    long l = read(in);
+    return l >>> 1 ^ -(l & 1);
+  }
+
+}
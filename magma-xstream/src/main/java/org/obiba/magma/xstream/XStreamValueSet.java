@@ -1,6 +1,6 @@
 package org.obiba.magma.xstream;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -31,7 +31,7 @@ public class XStreamValueSet {
 
   @XStreamImplicit
   @SuppressWarnings("TypeMayBeWeakened")
-  private List<XStreamValueSetValue> values = new LinkedList<>();
+  private List<XStreamValueSetValue> values = new ArrayList<>();
 
   @XStreamOmitField
   private Map<String, XStreamValueSetValue> valueMap = Maps.newHashMap();
@@ -42,15 +42,25 @@ public class XStreamValueSet {
     entityIdentifier = entity.getIdentifier();
   }
 
+  XStreamValueSet(String valueTable, String entityType, String entityIdentifier) {
+    this.valueTable = valueTable;
+    this.entityType = entityType;
+    this.entityIdentifier = entityIdentifier;
+  }
+
   public void setValue(Variable variable, Value value) {
-    XStreamValueSetValue valueSetValue = valueMap.get(variable.getName());
+    setValue(variable.getName(), value);
+  }
+
+  void setValue(String variableName, Value value) {
+    XStreamValueSetValue valueSetValue = valueMap.get(variableName);
 
     if(valueSetValue != null) {
       valueSetValue.setValue(value);
     } else {
-      XStreamValueSetValue xvalue = new XStreamValueSetValue(variable.getName(), value);
+      XStreamValueSetValue xvalue = new XStreamValueSetValue(variableName, value);
       values.add(xvalue);
-      valueMap.put(variable.getName(), xvalue);
+      valueMap.put(variableName, xvalue);
     }
   }
 
@@ -59,6 +69,22 @@ public class XStreamValueSet {
     return valueSetValue == null ? variable.getValueType().nullValue() : valueSetValue.getValue();
   }
 
+  String getValueTable() {
+    return valueTable;
+  }
+
+  String getEntityType() {
+    return entityType;
+  }
+
+  String getEntityIdentifier() {
+    return entityIdentifier;
+  }
+
+  List<XStreamValueSetValue> getValues() {
+    return values;
+  }
+
   /**
    * XStream does not instantiate default values for fields. Thus, we must implement readResolve and set it ourself.
    * <p/>
@@ -68,7 +94,7 @@ public class XStreamValueSet {
    */
   private Object readResolve() {
     if(values == null) {
-      values = new LinkedList<>();
+      values = new ArrayList<>();
     }
     valueMap = Maps.newHashMap();
     for(XStreamValueSetValue xvalue : values) {
@@ -0,0 +1,192 @@
+package org.obiba.magma.xstream;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.obiba.magma.Value;
+import org.obiba.magma.ValueSequence;
+import org.obiba.magma.ValueType;
+import org.obiba.magma.type.BinaryType;
+import org.obiba.magma.type.BooleanType;
+import org.obiba.magma.type.DecimalType;
+import org.obiba.magma.type.IntegerType;
+
+/**
+ * Compact binary form of a {@link XStreamValueSet}, an alternative to its XML form.
+ * <p>
+ * An entry starts with a magic number and the version of the encoding, followed by the value table name, the entity
+ * type and identifier and the number of values. Each value is then encoded as the position of the variable name and of
+ * the value type name in a {@link StringTable} shared by the entries, followed by a tag telling whether the value is
+ * null, a sequence or a single value. Integers, decimals and booleans are stored in their natural binary form, binaries
+ * and the string representation of other types are length-prefixed.
+ */
+public final class XStreamValueSetCodec {
+
+  private static final int MAGIC = 0x4D585653;
+
+  private static final byte VERSION = 1;
+
+  private static final byte NULL_VALUE = 0;
+
+  private static final byte VALUE = 1;
+
+  private static final byte SEQUENCE = 2;
+
+  private static final byte NULL_SEQUENCE = 3;
+
+  private XStreamValueSetCodec() {}
+
+  /**
+   * Encode a value set. The output stream is flushed, not closed.
+   *
+   * @param valueSet
+   * @param strings receives the strings the entry refers to
+   * @param os
+   * @throws IOException
+   */
+  public static void encode(XStreamValueSet valueSet, StringTable strings, OutputStream os) throws IOException {
+    DataOutputStream out = new DataOutputStream(os);
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    out.writeUTF(valueSet.getValueTable());
+    VarLongs.write(out, strings.indexOf(valueSet.getEntityType()));
+    out.writeUTF(valueSet.getEntityIdentifier());
+    List<XStreamValueSetValue> values = new ArrayList<>(valueSet.getValues().size());
+    for(XStreamValueSetValue xvalue : valueSet.getValues()) {
+      if(xvalue.getValue() != null) values.add(xvalue);
+    }
+    VarLongs.write(out, values.size());
+    for(XStreamValueSetValue xvalue : values) {
+      Value value = xvalue.getValue();
+      VarLongs.write(out, strings.indexOf(xvalue.getVariable()));
+      VarLongs.write(out, strings.indexOf(value.getValueType().getName()));
+      writeCell(out, value);
+    }
+    out.flush();
+  }
+
+  /**
+   * Decode a value set.
+   *
+   * @param is
+   * @param strings the strings the entry refers to
+   * @return
+   * @throws IOException
+   */
+  public static XStreamValueSet decode(InputStream is, StringTable strings) throws IOException {
+    DataInputStream in = new DataInputStream(is);
+    if(in.readInt() != MAGIC) {
+      throw new IOException("Not a binary value set entry");
+    }
+    byte version = in.readByte();
+    if(version > VERSION) {
+      throw new IOException("Unsupported binary value set entry version: " + version);
+    }
+    String valueTable = in.readUTF();
+    String entityType = strings.get((int) VarLongs.read(in));
+    XStreamValueSet valueSet = new XStreamValueSet(valueTable, entityType, in.readUTF());
+    int size = (int) VarLongs.read(in);
+    for(int i = 0; i < size; i++) {
+      String variableName = strings.get((int) VarLongs.read(in));
+      ValueType valueType = ValueType.Factory.forName(strings.get((int) VarLongs.read(in)));
+      valueSet.setValue(variableName, readCell(in, valueType));
+    }
+    return valueSet;
+  }
+
+  private static void writeCell(DataOutput out, Value value) throws IOException {
+    if(value.isSequence()) {
+      if(value.isNull()) {
+        out.writeByte(NULL_SEQUENCE);
+      } else {
+        out.writeByte(SEQUENCE);
+        ValueSequence sequence = value.asSequence();
+        VarLongs.write(out, sequence.getSize());
+        for(Value element : sequence.getValue()) {
+          writeCell(out, element);
+        }
+      }
+    } else if(value.isNull()) {
+      out.writeByte(NULL_VALUE);
+    } else {
+      out.writeByte(VALUE);
+      writeValue(out, value);
+    }
+  }
+
+  private static Value readCell(DataInput in, ValueType valueType) throws IOException {
+    byte tag = in.readByte();
+    switch(tag) {
+      case NULL_VALUE:
+        return valueType.nullValue();
+      case NULL_SEQUENCE:
+        return valueType.nullSequence();
+      case SEQUENCE:
+        int size = (int) VarLongs.read(in);
+        List<Value> elements = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+          elements.add(readCell(in, valueType));
+        }
+        return valueType.sequenceOf(elements);
+      case VALUE:
+        return readValue(in, valueType);
+      default:
+        throw new IOException("Unexpected value tag: " + tag);
+    }
+  }
+
+  @SuppressWarnings("ChainOfInstanceofChecks")
+  private static void writeValue(DataOutput out, Value value) throws IOException {
+    ValueType valueType = value.getValueType();
+    Object object = value.getValue();
+    if(valueType instanceof IntegerType) {
+      VarLongs.writeZigZag(out, ((Number) object).longValue());
+    } else if(valueType instanceof DecimalType) {
+      out.writeLong(Double.doubleToLongBits(((Number) object).doubleValue()));
+    } else if(valueType instanceof BooleanType) {
+      out.writeBoolean((Boolean) object);
+    } else if(valueType instanceof BinaryType) {
+      writeBytes(out, (byte[]) object);
+    } else {
+      //noinspection ConstantConditions
+      writeBytes(out, valueType.toString(value).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @SuppressWarnings("ChainOfInstanceofChecks")
+  private static Value readValue(DataInput in, ValueType valueType) throws IOException {
+    if(valueType instanceof IntegerType) {
+      return valueType.valueOf(VarLongs.readZigZag(in));
+    }
+    if(valueType instanceof DecimalType) {
+      return valueType.valueOf(Double.longBitsToDouble(in.readLong()));
+    }
+    if(valueType instanceof BooleanType) {
+      return valueType.valueOf(in.readBoolean());
+    }
+    if(valueType instanceof BinaryType) {
+      return valueType.valueOf(readBytes(in));
+    }
+    return valueType.valueOf(new String(readBytes(in), StandardCharsets.UTF_8));
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+    VarLongs.write(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[(int) VarLongs.read(in)];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,55 @@
+package org.obiba.magma.xstream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class VarLongsTest {
+
+  private static final long[] LONGS = { 0, 1, 63, 64, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1,
+      -64, -65, Integer.MIN_VALUE, Long.MIN_VALUE };
+
+  @Test
+  public void test_var_long() throws IOException {
+    for(long l : LONGS) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      VarLongs.write(new DataOutputStream(bytes), l);
+      assertThat(VarLongs.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))).isEqualTo(l);
+    }
+  }
+
+  @Test
+  public void test_zigzag() throws IOException {
+    for(long l : LONGS) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      VarLongs.writeZigZag(new DataOutputStream(bytes), l);
+      assertThat(VarLongs.readZigZag(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))))
+          .isEqualTo(l);
+    }
+  }
+
+  @Test
+  public void test_small_numbers_are_written_on_one_byte() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    VarLongs.write(out, 127);
+    VarLongs.writeZigZag(out, 63);
+    VarLongs.writeZigZag(out, -64);
+    assertThat(bytes.size()).isEqualTo(3);
+  }
+
+  @Test(expected = IOException.class)
+  public void test_malformed() throws IOException {
+    byte[] bytes = new byte[11];
+    Arrays.fill(bytes, (byte) 0x80);
+    VarLongs.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+}
@@ -0,0 +1,126 @@
+package org.obiba.magma.xstream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+import org.obiba.magma.Category;
+import org.obiba.magma.Value;
+import org.obiba.magma.Variable;
+import org.obiba.magma.support.VariableEntityBean;
+import org.obiba.magma.type.BinaryType;
+import org.obiba.magma.type.BooleanType;
+import org.obiba.magma.type.DecimalType;
+import org.obiba.magma.type.IntegerType;
+import org.obiba.magma.type.TextType;
+
+import com.google.common.collect.ImmutableList;
+import com.thoughtworks.xstream.XStream;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class XStreamValueSetCodecTest extends AbstractMagmaXStreamTest {
+
+  @Test
+  public void testEncodeDecode() throws IOException {
+    Variable text = Variable.Builder.newVariable("text", TextType.get(), "Participant").build();
+    Variable integer = Variable.Builder.newVariable("integer", IntegerType.get(), "Participant").build();
+    Variable decimal = Variable.Builder.newVariable("decimal", DecimalType.get(), "Participant").build();
+    Variable bool = Variable.Builder.newVariable("bool", BooleanType.get(), "Participant").build();
+    Variable binary = Variable.Builder.newVariable("binary", BinaryType.get(), "Participant").build();
+    Variable repeatable = Variable.Builder.newVariable("repeatable", IntegerType.get(), "Participant").repeatable()
+        .build();
+    Variable empty = Variable.Builder.newVariable("empty", TextType.get(), "Participant").build();
+    Variable missing = Variable.Builder.newVariable("missing", TextType.get(), "Participant").build();
+
+    XStreamValueSet valueSet = new XStreamValueSet("table", new VariableEntityBean("Participant", "1234"));
+    valueSet.setValue(text, TextType.get().valueOf("héllo"));
+    valueSet.setValue(integer, IntegerType.get().valueOf(-42));
+    valueSet.setValue(decimal, DecimalType.get().valueOf(3.14));
+    valueSet.setValue(bool, BooleanType.get().trueValue());
+    valueSet.setValue(binary, BinaryType.get().valueOf(new byte[] { 1, 2, 3 }));
+    valueSet.setValue(repeatable, IntegerType.get()
+        .sequenceOf(ImmutableList.of(IntegerType.get().valueOf(1), IntegerType.get().nullValue())));
+    valueSet.setValue(empty, TextType.get().nullValue());
+
+    StringTable strings = new StringTable();
+    XStreamValueSet decoded = XStreamValueSetCodec.decode(new ByteArrayInputStream(encode(valueSet, strings)), strings);
+
+    assertThat(decoded.getValue(text)).isEqualTo(TextType.get().valueOf("héllo"));
+    assertThat(decoded.getValue(integer)).isEqualTo(IntegerType.get().valueOf(-42));
+    assertThat(decoded.getValue(decimal)).isEqualTo(DecimalType.get().valueOf(3.14));
+    assertThat(decoded.getValue(bool)).isEqualTo(BooleanType.get().trueValue());
+    assertThat((byte[]) decoded.getValue(binary).getValue()).isEqualTo(new byte[] { 1, 2, 3 });
+    Value sequence = decoded.getValue(repeatable);
+    assertThat(sequence.isSequence()).isTrue();
+    assertThat(sequence.asSequence().getSize()).isEqualTo(2);
+    assertThat(sequence.asSequence().get(0)).isEqualTo(IntegerType.get().valueOf(1));
+    assertThat(sequence.asSequence().get(1).isNull()).isTrue();
+    assertThat(decoded.getValue(empty).isNull()).isTrue();
+    assertThat(decoded.getValue(missing).isNull()).isTrue();
+  }
+
+  @Test
+  public void testStringTableIsShared() throws IOException {
+    Variable variable = Variable.Builder.newVariable("a_rather_long_variable_name", TextType.get(), "Participant")
+        .build();
+    StringTable strings = new StringTable();
+    for(int i = 0; i < 10; i++) {
+      XStreamValueSet valueSet = new XStreamValueSet("table", new VariableEntityBean("Participant", "id" + i));
+      valueSet.setValue(variable, TextType.get().valueOf("value" + i));
+      encode(valueSet, strings);
+    }
+    // variable name, value type and entity type
+    assertThat(strings.size()).isEqualTo(3);
+    assertThat(strings.isModified()).isTrue();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    strings.write(new DataOutputStream(bytes));
+    assertThat(strings.isModified()).isFalse();
+
+    StringTable read = new StringTable();
+    read.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertThat(read.size()).isEqualTo(3);
+    assertThat(read.indexOf("a_rather_long_variable_name")).isEqualTo(strings.indexOf("a_rather_long_variable_name"));
+    assertThat(read.isModified()).isFalse();
+  }
+
+  @Test(expected = IOException.class)
+  public void testDecodeXmlEntryFails() throws IOException {
+    XStreamValueSet valueSet = new XStreamValueSet("table", new VariableEntityBean("Participant", "1234"));
+    byte[] xml = getDefaultXStream().toXML(valueSet).getBytes("UTF-8");
+    XStreamValueSetCodec.decode(new ByteArrayInputStream(xml), new StringTable());
+  }
+
+  @Test
+  public void testBinaryXStreamVariables() throws IOException, ClassNotFoundException {
+    XStream xstream = new BinaryXStreamFactory().createXStream();
+    Variable variable = Variable.Builder.newVariable("var", IntegerType.get(), "Participant")
+        .addAttribute("label", "A label").addCategory(Category.Builder.newCategory("1").build()).build();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(ObjectOutputStream oos = xstream.createObjectOutputStream(bytes, "variables")) {
+      oos.writeObject(variable);
+      oos.writeObject(variable);
+    }
+    ObjectInputStream ois = xstream.createObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    Variable read = (Variable) ois.readObject();
+    assertThat(read.getName()).isEqualTo("var");
+    assertThat(read.getValueType()).isEqualTo(IntegerType.get());
+    assertThat(read.getAttributeStringValue("label")).isEqualTo("A label");
+    assertThat(read.getCategories()).hasSize(1);
+    assertThat(((Variable) ois.readObject()).getName()).isEqualTo("var");
+  }
+
+  private byte[] encode(XStreamValueSet valueSet, StringTable strings) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    XStreamValueSetCodec.encode(valueSet, strings, bytes);
+    return bytes.toByteArray();
+  }
+
+}